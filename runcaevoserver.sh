@@ -0,0 +1,22 @@
+#!/bin/bash
+#
+# runcaevoserver.sh [-port <port>]
+#
+# Loads all models once, then marks up documents POSTed to localhost:
+#   curl --data-binary @story.txt "http://localhost:8080/raw?name=story.txt"
+#   curl --data-binary @story.tml "http://localhost:8080/rawxml?name=story.tml"
+#
+
+
+props=default.properties
+sieves=default.sieves
+args="server"
+
+# Having extra space at the end of the string seems to make maven angry.
+# Don't add arguments from $@ unless we have to.
+if (( $# > 0 )); then
+    args="$@ server"
+fi
+
+
+mvn exec:java -Dexec.mainClass=caevo.Main -Dprops=$props -Dsieves=$sieves -Dexec.args="$args"
@@ -0,0 +1,637 @@
+package caevo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.jdom.Attribute;
+import org.jdom.Element;
+import org.jdom.Namespace;
+
+import caevo.tlink.TLink;
+import caevo.util.EncodedDependencies;
+import caevo.util.EncodedTree;
+import caevo.util.LabelTable;
+
+/**
+ * A compact binary alternative to the info XML, with random access to any
+ * document by name or position.
+ *
+ * File layout:
+ *
+ * <pre>
+ * "CAEVOSD2"
+ * record*       int length, then the encoded document
+ * trailer       string table: varint count, then each string
+ *               document index: varint count, then each document's name id
+ *               (varint), record offset (long, past the length) and record
+ *               length (int)
+ * long          offset of the trailer
+ * "CAEVOSD2"
+ * </pre>
+ *
+ * The last byte of the magic is the format version, and files of another
+ * version aren't read. Counts and string ids are varints, and strings are
+ * their UTF-8 length as a varint and then the bytes. A document is its name
+ * id, its sentences, its tlinks and its creation times. A sentence is its sid,
+ * its text, its tokens (count + 1, or 0 for none), its parse and dependencies
+ * (each a kind byte: none, text, or encoded as below), and its events and
+ * timexes. Events, timexes and tlinks are their attributes as name and value
+ * ids.
+ *
+ * Every string that repeats across documents (token text and whitespace, tree
+ * labels, dependency relations and words, event/timex/tlink attribute names
+ * and values) is stored once in the string table and referenced by a varint
+ * id. Tokens are stored as (before, text, after) id triples. Parse trees and
+ * dependencies are stored in the EncodedTree and EncodedDependencies form,
+ * with string table ids for label ids: each tree node is its label and the
+ * size of its subtree, each dependency its relation, words, indices and copy
+ * marks. The string table becomes the LabelTable of the trees and
+ * dependencies that are read back, so loading a document builds no parse
+ * strings and re-reads none. A parse or dependency string that couldn't be
+ * encoded is stored as text.
+ *
+ * Reading opens only the trailer; each document is decoded when it is asked
+ * for. Reads are positional, so one reader can be shared by threads.
+ * SieveDocuments reads these files as well as info XML.
+ *
+ * To convert: BinarySieveDocuments tobinary in.xml out.bin, or
+ * BinarySieveDocuments toxml in.bin out.xml
+ */
+public class BinarySieveDocuments implements Iterable<SieveDocument> {
+  private static final byte[] MAGIC = { 'C', 'A', 'E', 'V', 'O', 'S', 'D',
+      '2' };
+  private static final int FOOTER_LENGTH = 8 + MAGIC.length;
+
+  private static final int NONE = 0;
+  private static final int RAW = 1;
+  private static final int ENCODED = 2;
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final LabelTable strings;
+  private final int numStrings;
+  private final String[] docnames;
+  private final long[] offsets;
+  private final int[] lengths;
+  private final Map<String, Integer> nameToIndex =
+      new HashMap<String, Integer>();
+
+  /**
+   * Open a binary documents file. Only the string table and index are read.
+   */
+  public BinarySieveDocuments(String path) throws IOException {
+    file = new RandomAccessFile(path, "r");
+    channel = file.getChannel();
+    long size = channel.size();
+    if (size < MAGIC.length + FOOTER_LENGTH)
+      throw new IOException("Not a binary SieveDocuments file: " + path);
+
+    ByteBuffer footer = read(size - FOOTER_LENGTH, FOOTER_LENGTH);
+    long trailerOffset = footer.getLong();
+    byte[] magic = new byte[MAGIC.length];
+    footer.get(magic);
+    if (!Arrays.equals(magic, MAGIC) || trailerOffset < MAGIC.length
+        || trailerOffset > size - FOOTER_LENGTH)
+      throw new IOException("Not a binary SieveDocuments file (or truncated): "
+          + path);
+
+    ByteBuffer trailerBuf = read(trailerOffset,
+        (int) (size - FOOTER_LENGTH - trailerOffset));
+    DataInputStream trailer = new DataInputStream(new ByteArrayInputStream(
+        trailerBuf.array()));
+    String[] table = new String[readVarint(trailer)];
+    for (int i = 0; i < table.length; i++)
+      table[i] = readUTF(trailer);
+    strings = new LabelTable(table);
+    numStrings = table.length;
+    int numDocs = readVarint(trailer);
+    docnames = new String[numDocs];
+    offsets = new long[numDocs];
+    lengths = new int[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      docnames[i] = string(readVarint(trailer));
+      offsets[i] = trailer.readLong();
+      lengths[i] = trailer.readInt();
+      nameToIndex.put(docnames[i], i);
+    }
+  }
+
+  /**
+   * @return True if the file starts like a binary documents file.
+   */
+  public static boolean isBinary(String path) {
+    byte[] magic = new byte[MAGIC.length];
+    try {
+      DataInputStream in = new DataInputStream(new FileInputStream(path));
+      try {
+        in.readFully(magic);
+      } finally {
+        in.close();
+      }
+    } catch (IOException ex) {
+      return false;
+    }
+    return Arrays.equals(magic, MAGIC);
+  }
+
+  public int size() {
+    return docnames.length;
+  }
+
+  public List<String> getDocnames() {
+    return Arrays.asList(docnames);
+  }
+
+  public boolean hasDocument(String docname) {
+    return nameToIndex.containsKey(docname);
+  }
+
+  /**
+   * @return The named document, decoded from disk, or null if there is no such
+   *         document.
+   */
+  public SieveDocument getDocument(String docname) throws IOException {
+    Integer index = nameToIndex.get(docname);
+    return (index == null ? null : getDocument(index));
+  }
+
+  /**
+   * @return The document at the given position in the file, decoded from disk.
+   */
+  public SieveDocument getDocument(int index) throws IOException {
+    ByteBuffer record = read(offsets[index], lengths[index]);
+    return decodeDocument(new DataInputStream(new ByteArrayInputStream(
+        record.array())));
+  }
+
+  /**
+   * Decode every document into memory.
+   */
+  public SieveDocuments readAll() throws IOException {
+    SieveDocuments docs = new SieveDocuments();
+    for (int i = 0; i < docnames.length; i++)
+      docs.addDocument(getDocument(i));
+    return docs;
+  }
+
+  /**
+   * Iterate over the documents in file order, decoding each as it is reached.
+   */
+  public Iterator<SieveDocument> iterator() {
+    return new Iterator<SieveDocument>() {
+      int next = 0;
+
+      public boolean hasNext() {
+        return next < docnames.length;
+      }
+
+      public SieveDocument next() {
+        if (next >= docnames.length)
+          throw new NoSuchElementException();
+        try {
+          return getDocument(next++);
+        } catch (IOException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  public void close() throws IOException {
+    file.close();
+  }
+
+  private ByteBuffer read(long offset, int length) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(length);
+    while (buf.hasRemaining()) {
+      int read = channel.read(buf, offset + buf.position());
+      if (read < 0)
+        throw new IOException("Unexpected end of binary SieveDocuments file");
+    }
+    buf.flip();
+    return buf;
+  }
+
+  /**
+   * @return The string with the id, checked against the table.
+   */
+  private String string(int id) throws IOException {
+    if (id < 0 || id >= numStrings)
+      throw new IOException("Corrupt binary SieveDocuments file: string " + id);
+    return strings.label(id);
+  }
+
+  private SieveDocument decodeDocument(DataInputStream in)
+      throws IOException {
+    Namespace ns = Namespace.getNamespace(SieveDocuments.INFO_NS);
+    SieveDocument doc = new SieveDocument(string(readVarint(in)));
+
+    int numSentences = readVarint(in);
+    for (int s = 0; s < numSentences; s++) {
+      int sid = readVarint(in);
+      String text = readNullableUTF(in);
+
+      SieveTokens tokens = null;
+      int numTokens = readVarint(in) - 1;
+      if (numTokens >= 0) {
+        SieveTokens.Builder builder = new SieveTokens.Builder(numTokens);
+        for (int t = 0; t < numTokens; t++)
+          builder.add(string(readVarint(in)), string(readVarint(in)),
+              string(readVarint(in)));
+        tokens = builder.build();
+      }
+
+      String parse = null;
+      EncodedTree tree = null;
+      int kind = in.readByte();
+      if (kind == RAW)
+        parse = readUTF(in);
+      else if (kind == ENCODED)
+        tree = decodeTree(in);
+
+      String deps = null;
+      EncodedDependencies encodedDeps = null;
+      kind = in.readByte();
+      if (kind == RAW)
+        deps = readUTF(in);
+      else if (kind == ENCODED)
+        encodedDeps = decodeDeps(in);
+
+      List<TextEvent> events = new ArrayList<TextEvent>();
+      int numEvents = readVarint(in);
+      for (int e = 0; e < numEvents; e++)
+        events.add(new TextEvent(sid, decodeElement(in, TextEvent.NAME_ELEM,
+            ns)));
+
+      List<Timex> timexes = new ArrayList<Timex>();
+      int numTimexes = readVarint(in);
+      for (int t = 0; t < numTimexes; t++) {
+        Timex timex = new Timex(decodeElement(in, Timex.TIMEX_ELEM, ns));
+        timex.setSid(sid);
+        timexes.add(timex);
+      }
+
+      SieveSentence sent = new SieveSentence(doc, sid, text, parse, deps,
+          tokens, events, timexes);
+      sent.setEncoded(tree, encodedDeps);
+      doc.addSentence(sent);
+    }
+
+    int numTlinks = readVarint(in);
+    for (int l = 0; l < numTlinks; l++)
+      doc.addTlink(SieveDocument.tlinkFromElement(decodeElement(in,
+          TLink.TLINK_ELEM, ns)));
+
+    int numDcts = readVarint(in);
+    for (int d = 0; d < numDcts; d++)
+      doc.addCreationTime(new Timex(decodeElement(in, Timex.TIMEX_ELEM, ns)));
+
+    return doc;
+  }
+
+  private Element decodeElement(DataInput in, String name, Namespace ns)
+      throws IOException {
+    Element el = new Element(name, ns);
+    int numAtts = readVarint(in);
+    for (int a = 0; a < numAtts; a++)
+      el.setAttribute(string(readVarint(in)), string(readVarint(in)));
+    return el;
+  }
+
+  /**
+   * Read a tree as its number of nodes, then each node's label (string id + 1,
+   * or 0 for none) and subtree size.
+   */
+  private EncodedTree decodeTree(DataInputStream in) throws IOException {
+    int numNodes = readVarint(in);
+    // Two bytes a node at least; don't trust a corrupt count.
+    if (numNodes < 0 || numNodes > in.available() / 2)
+      throw new IOException("Corrupt binary SieveDocuments file: bad tree");
+    int[] labels = new int[numNodes];
+    int[] ends = new int[numNodes];
+    for (int node = 0; node < numNodes; node++) {
+      labels[node] = readVarint(in) - 1;
+      ends[node] = node + readVarint(in);
+    }
+    EncodedTree tree = EncodedTree.of(strings, labels, ends);
+    if (tree == null)
+      throw new IOException("Corrupt binary SieveDocuments file: bad tree");
+    return tree;
+  }
+
+  /**
+   * Read dependencies as their number, then for each the relation, and the
+   * governor's and dependent's word, index and copy marks.
+   */
+  private EncodedDependencies decodeDeps(DataInputStream in)
+      throws IOException {
+    int numDeps = readVarint(in);
+    if (numDeps < 0 || numDeps > in.available() / 7)
+      throw new IOException(
+          "Corrupt binary SieveDocuments file: bad dependencies");
+    int[] data = new int[7 * numDeps];
+    for (int i = 0; i < data.length; i++)
+      data[i] = readVarint(in);
+    EncodedDependencies deps = EncodedDependencies.of(strings, data);
+    if (deps == null)
+      throw new IOException(
+          "Corrupt binary SieveDocuments file: bad dependencies");
+    return deps;
+  }
+
+  /**
+   * Appends documents to a new binary file. The string table and index are
+   * written by close(); a file that was never closed cannot be read.
+   */
+  public static class Writer {
+    private final RandomAccessFile file;
+    private final Map<String, Integer> stringIds =
+        new HashMap<String, Integer>();
+    private final List<String> strings = new ArrayList<String>();
+    private final List<Integer> docnameIds = new ArrayList<Integer>();
+    private final List<Long> offsets = new ArrayList<Long>();
+    private final List<Integer> lengths = new ArrayList<Integer>();
+    private final ByteArrayOutputStream record =
+        new ByteArrayOutputStream(1 << 16);
+    private int numEncodedParses = 0;
+    private int numRawParses = 0;
+    private int numRawDeps = 0;
+
+    public Writer(String path) throws IOException {
+      File f = new File(path);
+      if (f.exists() && !f.delete())
+        throw new IOException("Could not replace " + path);
+      file = new RandomAccessFile(f, "rw");
+      file.write(MAGIC);
+    }
+
+    public synchronized void write(SieveDocument doc) throws IOException {
+      record.reset();
+      DataOutputStream out = new DataOutputStream(record);
+      encodeDocument(doc, out);
+      out.flush();
+
+      long offset = file.getFilePointer();
+      file.writeInt(record.size());
+      file.write(record.toByteArray());
+      docnameIds.add(id(doc.getDocname()));
+      offsets.add(offset + 4);
+      lengths.add(record.size());
+    }
+
+    public synchronized void write(SieveDocuments docs) throws IOException {
+      for (SieveDocument doc : docs.getDocuments())
+        write(doc);
+    }
+
+    public synchronized int getNumWritten() {
+      return offsets.size();
+    }
+
+    /**
+     * Write the string table and document index, and close the file.
+     */
+    public synchronized void close() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream trailer = new DataOutputStream(bytes);
+      // Docnames must be in the table before it is written.
+      writeVarint(trailer, strings.size());
+      for (String str : strings)
+        writeUTF(trailer, str);
+      writeVarint(trailer, offsets.size());
+      for (int i = 0; i < offsets.size(); i++) {
+        writeVarint(trailer, docnameIds.get(i));
+        trailer.writeLong(offsets.get(i));
+        trailer.writeInt(lengths.get(i));
+      }
+      trailer.flush();
+
+      long trailerOffset = file.getFilePointer();
+      file.write(bytes.toByteArray());
+      file.writeLong(trailerOffset);
+      file.write(MAGIC);
+      file.close();
+      if (numRawParses > 0 || numRawDeps > 0)
+        System.out.println("Binary SieveDocuments: " + numRawParses + " of "
+            + (numRawParses + numEncodedParses) + " parses and "
+            + numRawDeps + " dependency lists stored as text.");
+    }
+
+    private int id(String str) {
+      Integer id = stringIds.get(str);
+      if (id == null) {
+        id = strings.size();
+        strings.add(str);
+        stringIds.put(str, id);
+      }
+      return id;
+    }
+
+    private void encodeDocument(SieveDocument doc, DataOutput out)
+        throws IOException {
+      Namespace ns = Namespace.getNamespace(SieveDocuments.INFO_NS);
+      writeVarint(out, id(doc.getDocname()));
+
+      List<SieveSentence> sentences = doc.getSentences();
+      writeVarint(out, sentences == null ? 0 : sentences.size());
+      if (sentences != null) {
+        for (SieveSentence sent : sentences) {
+          writeVarint(out, sent.sid());
+          writeNullableUTF(out, sent.sentence());
+
+          SieveTokens tokens = sent.tokens();
+          writeVarint(out, tokens == null ? 0 : tokens.size() + 1);
+          if (tokens != null) {
+            for (int t = 0; t < tokens.size(); t++) {
+              writeVarint(out, id(tokens.before(t)));
+              writeVarint(out, id(tokens.text(t)));
+              writeVarint(out, id(tokens.after(t)));
+            }
+          }
+
+          encodeParse(sent, out);
+          encodeDeps(sent, out);
+
+          writeVarint(out, sent.events().size());
+          for (TextEvent event : sent.events())
+            encodeElement(event.toElement(ns), out);
+          writeVarint(out, sent.timexes().size());
+          for (Timex timex : sent.timexes())
+            encodeElement(timex.toElement(ns), out);
+        }
+      }
+
+      List<TLink> tlinks = doc.getTlinks();
+      writeVarint(out, tlinks == null ? 0 : tlinks.size());
+      if (tlinks != null)
+        for (TLink tlink : tlinks)
+          encodeElement(tlink.toElement(ns), out);
+
+      List<Timex> dcts = doc.getDocstamp();
+      writeVarint(out, dcts == null ? 0 : dcts.size());
+      if (dcts != null)
+        for (Timex dct : dcts)
+          encodeElement(dct.toElement(ns), out);
+    }
+
+    private void encodeElement(Element el, DataOutput out) throws IOException {
+      List<?> atts = el.getAttributes();
+      writeVarint(out, atts.size());
+      for (Object obj : atts) {
+        Attribute att = (Attribute) obj;
+        writeVarint(out, id(att.getName()));
+        writeVarint(out, id(att.getValue()));
+      }
+    }
+
+    /**
+     * Write the sentence's EncodedTree, or its parse string if it has none.
+     */
+    private void encodeParse(SieveSentence sent, DataOutput out)
+        throws IOException {
+      EncodedTree tree = sent.getEncodedParse();
+      if (tree != null) {
+        numEncodedParses++;
+        out.writeByte(ENCODED);
+        writeVarint(out, tree.size());
+        for (int node = 0; node < tree.size(); node++) {
+          String label = tree.label(node);
+          writeVarint(out, label == null ? 0 : id(label) + 1);
+          writeVarint(out, tree.subtreeEnd(node) - node);
+        }
+      } else if (sent.parseString() != null) {
+        numRawParses++;
+        out.writeByte(RAW);
+        writeUTF(out, sent.parseString());
+      } else
+        out.writeByte(NONE);
+    }
+
+    /**
+     * Write the sentence's EncodedDependencies, or its dependency string if it
+     * has none.
+     */
+    private void encodeDeps(SieveSentence sent, DataOutput out)
+        throws IOException {
+      EncodedDependencies deps = sent.getEncodedDeps();
+      if (deps != null) {
+        out.writeByte(ENCODED);
+        writeVarint(out, deps.size());
+        for (int i = 0; i < deps.size(); i++) {
+          writeVarint(out, id(deps.relation(i)));
+          writeVarint(out, id(deps.govWord(i)));
+          writeVarint(out, deps.govIndex(i));
+          writeVarint(out, deps.govCopies(i));
+          writeVarint(out, id(deps.depWord(i)));
+          writeVarint(out, deps.depIndex(i));
+          writeVarint(out, deps.depCopies(i));
+        }
+      } else if (sent.depsString() != null) {
+        numRawDeps++;
+        out.writeByte(RAW);
+        writeUTF(out, sent.depsString());
+      } else
+        out.writeByte(NONE);
+    }
+  }
+
+  static void writeVarint(DataOutput out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  static int readVarint(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readByte() & 0xFF;
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  /**
+   * Length-prefixed UTF-8, for strings that may be longer than writeUTF allows.
+   */
+  static void writeUTF(DataOutput out, String str) throws IOException {
+    byte[] bytes = str.getBytes("UTF-8");
+    writeVarint(out, bytes.length);
+    out.write(bytes);
+  }
+
+  static String readUTF(DataInput in) throws IOException {
+    byte[] bytes = new byte[readVarint(in)];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  private static void writeNullableUTF(DataOutput out, String str)
+      throws IOException {
+    out.writeBoolean(str != null);
+    if (str != null)
+      writeUTF(out, str);
+  }
+
+  private static String readNullableUTF(DataInput in) throws IOException {
+    return (in.readBoolean() ? readUTF(in) : null);
+  }
+
+  /**
+   * Convert between info XML and the binary format, streaming one document at
+   * a time.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 3) {
+      System.err.println("BinarySieveDocuments tobinary <info.xml> <out.bin>");
+      System.err.println("BinarySieveDocuments toxml <in.bin> <info.xml>");
+      System.exit(1);
+    }
+
+    if (args[0].equalsIgnoreCase("tobinary")) {
+      SieveDocumentsReader reader = new SieveDocumentsReader(args[1]);
+      Writer writer = new Writer(args[2]);
+      for (SieveDocument doc : reader)
+        writer.write(doc);
+      writer.close();
+      System.out.println("Wrote " + writer.getNumWritten() + " documents to "
+          + args[2]);
+    } else if (args[0].equalsIgnoreCase("toxml")) {
+      BinarySieveDocuments docs = new BinarySieveDocuments(args[1]);
+      SieveDocumentsWriter writer = new SieveDocumentsWriter(args[2]);
+      for (SieveDocument doc : docs)
+        writer.write(doc);
+      writer.close();
+      docs.close();
+      System.out.println("Wrote " + writer.getNumWritten() + " documents to "
+          + args[2]);
+    } else {
+      System.err.println("Unknown command: " + args[0]);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package caevo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import caevo.sieves.Sieve;
+import caevo.util.CaevoProperties;
+import caevo.util.DCTHeursitics;
+import caevo.util.ParseCache;
+import caevo.util.Util;
+import caevo.util.WordNet;
+
+/**
+ * A thread-safe facade over the full CAEVO pipeline, for embedding in other
+ * programs. Build one from properties and a sieve list, then call annotate()
+ * from as many threads as you like.
+ *
+ * The configuration is fixed at construction. The parser grammar, WordNet and
+ * the closure rules are loaded once and shared by all threads. The event
+ * classifiers, SUTime pipeline and sieves are not thread-safe, so each worker
+ * gets its own copy: up to numWorkers of them are created on demand, and a call
+ * to annotate() borrows one for the length of the call. Calls beyond
+ * numWorkers wait for a worker to free up.
+ *
+ * Properties are read with the same keys Main uses (Main.closure,
+ * Main.force24hrdct, Main.dctHeuristic, Main.debug, Main.parseThreads,
+ * Main.parseCache, Main.maxSentenceLength, Main.parseTimeLimit). They are
+ * added to the process-wide CaevoProperties, which the sieves also read, so
+ * two pipelines in one JVM share one set of properties.
+ *
+ * Example:
+ *
+ * <pre>
+ * CaevoPipeline caevo = new CaevoPipeline(props,
+ *     Main.readSieveList(&quot;default.sieves&quot;), 4);
+ * SieveDocument doc = caevo.annotate(&quot;news.txt&quot;, text);
+ * </pre>
+ */
+public class CaevoPipeline {
+  private final String[] sieveNames;
+  private final int numWorkers;
+  private final boolean useClosure;
+  private final boolean force24hrDCT;
+  private final boolean debug;
+  private final String dctHeuristic;
+
+  private final Closure closure;
+  private final WordNet wordnet;
+  private final ParallelParser parser;
+
+  private final BlockingQueue<Worker> idleWorkers =
+      new LinkedBlockingQueue<Worker>();
+  private final AtomicInteger numCreated = new AtomicInteger(0);
+
+  /**
+   * @param props
+   *          Pipeline settings. May be null to use the defaults (and whatever
+   *          -Dprops file is set).
+   * @param sieveNames
+   *          Sieve class names in caevo.sieves, in the order to run them.
+   * @param numWorkers
+   *          How many documents can be marked up at once.
+   */
+  public CaevoPipeline(Properties props, String[] sieveNames, int numWorkers)
+      throws IOException {
+    if (props != null)
+      CaevoProperties.load(props);
+    this.sieveNames = sieveNames.clone();
+    this.numWorkers = Math.max(1, numWorkers);
+    useClosure = CaevoProperties.getBoolean("Main.closure", true);
+    force24hrDCT = CaevoProperties.getBoolean("Main.force24hrdct", true);
+    debug = CaevoProperties.getBoolean("Main.debug", false);
+    dctHeuristic = CaevoProperties.getString("Main.dctHeuristic", "none");
+
+    closure = new Closure();
+    wordnet = sharedWordNet();
+
+    parser = new ParallelParser(Main.serializedGrammar,
+        CaevoProperties.getInt("Main.parseThreads", this.numWorkers));
+    parser.setMaxSentenceLength(
+        CaevoProperties.getInt("Main.maxSentenceLength", 0));
+    parser.setTimeLimit(CaevoProperties.getLong("Main.parseTimeLimit", 0));
+    String cacheDir = CaevoProperties.getString("Main.parseCache", null);
+    if (cacheDir != null)
+      parser.setCache(new ParseCache(cacheDir, Main.serializedGrammar));
+
+    // Build one worker now so that model problems surface here, not on the
+    // first call.
+    numCreated.set(1);
+    idleWorkers.add(new Worker());
+  }
+
+  public CaevoPipeline(Properties props, List<String> sieveNames,
+      int numWorkers) throws IOException {
+    this(props, sieveNames.toArray(new String[sieveNames.size()]), numWorkers);
+  }
+
+  public int getNumWorkers() {
+    return numWorkers;
+  }
+
+  public String[] getSieveNames() {
+    return sieveNames.clone();
+  }
+
+  /**
+   * Stop the parsing threads and close the parse cache. Call this when done
+   * with the pipeline.
+   */
+  public void close() {
+    parser.close();
+    Main.closeCache(parser);
+  }
+
+  /**
+   * Parse raw text and mark it up for events, times, and tlinks.
+   *
+   * @return The marked up document, or null if it could not be parsed.
+   */
+  public SieveDocument annotate(String docname, String text) {
+    SieveDocument doc = parser.parse(docname, text);
+    if (doc == null)
+      return null;
+    return annotate(doc);
+  }
+
+  /**
+   * Mark up a parsed document for events, times, and tlinks. The document is
+   * changed in place and also returned. Existing events, times and tlinks are
+   * not removed first, so give it a document with parses only.
+   */
+  public SieveDocument annotate(SieveDocument doc) {
+    Worker worker = borrow();
+    try {
+      worker.markupEventsAndTimexes(doc);
+      runSieves(worker, doc);
+    } finally {
+      idleWorkers.add(worker);
+    }
+    return doc;
+  }
+
+  /**
+   * Run only the tlink sieves on a document that already has its events and
+   * times. Existing tlinks are removed first.
+   */
+  public SieveDocument annotateTLinks(SieveDocument doc) {
+    doc.removeTlinks();
+    Worker worker = borrow();
+    try {
+      runSieves(worker, doc);
+    } finally {
+      idleWorkers.add(worker);
+    }
+    return doc;
+  }
+
+  private void runSieves(Worker worker, SieveDocument doc) {
+    if (force24hrDCT && doc.getDocstamp() != null) {
+      for (Timex dct : doc.getDocstamp())
+        Util.force24hrTimex(dct);
+    }
+    worker.runner.run(doc, null);
+  }
+
+  /**
+   * Takes an idle worker, creating a new one if none is idle and we are under
+   * the limit, or else waits for one to be returned.
+   */
+  private Worker borrow() {
+    Worker worker = idleWorkers.poll();
+    if (worker != null)
+      return worker;
+
+    while (true) {
+      int created = numCreated.get();
+      if (created >= numWorkers)
+        break;
+      if (numCreated.compareAndSet(created, created + 1)) {
+        try {
+          return new Worker();
+        } catch (RuntimeException ex) {
+          numCreated.decrementAndGet();
+          throw ex;
+        }
+      }
+    }
+
+    try {
+      return idleWorkers.take();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted waiting for a CAEVO worker", ex);
+    }
+  }
+
+  /**
+   * Sieves read WordNet through Main.wordnet, so the pipeline uses that one
+   * instance, creating it if Main has not.
+   */
+  private static WordNet sharedWordNet() {
+    synchronized (Main.class) {
+      if (Main.wordnet == null)
+        Main.wordnet = new WordNet();
+      return Main.wordnet;
+    }
+  }
+
+  /**
+   * The models one thread needs to mark up one document at a time.
+   */
+  private class Worker {
+    final TextEventClassifier eventClassifier;
+    final TimexClassifier timexClassifier;
+    final SieveRunner runner;
+
+    Worker() {
+      eventClassifier = new TextEventClassifier(null, wordnet);
+      eventClassifier.loadClassifiers();
+      timexClassifier = new TimexClassifier(null);
+      timexClassifier.loadPipeline();
+
+      Sieve[] sieves = new Sieve[sieveNames.length];
+      for (int xx = 0; xx < sieveNames.length; xx++)
+        sieves[xx] = Main.createSieveInstance(sieveNames[xx]);
+      runner = new SieveRunner(sieveNames, sieves,
+          (useClosure ? closure : null), debug);
+    }
+
+    void markupEventsAndTimexes(SieveDocument doc) {
+      SieveDocuments docs = new SieveDocuments();
+      docs.addDocument(doc);
+      eventClassifier.extractEvents(docs);
+      timexClassifier.markupTimex3(docs);
+      if (dctHeuristic.equals("setFirstDateAsDCT"))
+        DCTHeursitics.setFirstDateAsDCT(doc);
+    }
+  }
+}
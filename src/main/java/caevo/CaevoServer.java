@@ -0,0 +1,181 @@
+package caevo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A long-running local HTTP server around Main. The parser grammar, WordNet,
+ * the SUTime pipeline, closure rules and all sieve models are loaded once at
+ * startup, so each request only pays for processing its document.
+ *
+ * Every request is a POST whose body is the document, and every response is
+ * the marked up info XML.
+ *
+ * POST /raw?name=doc.txt -- raw text: parse, then events, times, and tlinks.
+ *
+ * POST /rawxml?name=doc.tml -- raw TimeML XML with TEXT and DCT elements, same
+ * as "rawxml" mode in Main.
+ *
+ * POST /parsed -- info XML with parses: events, times, and tlinks.
+ *
+ * POST /sieves -- info XML with events and times: tlinks only.
+ *
+ * The server binds to localhost only. Main is not thread-safe, so requests are
+ * handled one at a time.
+ */
+public class CaevoServer {
+  public static final int DEFAULT_PORT = 8080;
+
+  private final Main main;
+  private final HttpServer server;
+
+  public CaevoServer(Main main, int port) throws IOException {
+    this.main = main;
+    server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    server.createContext("/raw", new MarkupHandler(Mode.RAW));
+    server.createContext("/rawxml", new MarkupHandler(Mode.RAWXML));
+    server.createContext("/parsed", new MarkupHandler(Mode.PARSED));
+    server.createContext("/sieves", new MarkupHandler(Mode.SIEVES));
+    server.setExecutor(Executors.newSingleThreadExecutor());
+  }
+
+  /**
+   * Load all models, then start accepting requests.
+   */
+  public void start() {
+    long startTime = System.currentTimeMillis();
+    main.loadAll();
+    System.out.println("Loaded everything in "
+        + (System.currentTimeMillis() - startTime) + "ms.");
+    server.start();
+    System.out.println("CAEVO server listening on "
+        + server.getAddress().getHostName() + ":"
+        + server.getAddress().getPort());
+  }
+
+  public void stop() {
+    server.stop(0);
+    main.close();
+  }
+
+  private enum Mode {
+    RAW, RAWXML, PARSED, SIEVES
+  };
+
+  private class MarkupHandler implements HttpHandler {
+    private final Mode mode;
+
+    MarkupHandler(Mode mode) {
+      this.mode = mode;
+    }
+
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+          respond(exchange, 405, "POST a document to this URL.\n");
+          return;
+        }
+
+        String docname = getQueryParams(exchange).get("name");
+        if (docname == null)
+          docname = "request";
+        byte[] body = readFully(exchange.getRequestBody());
+
+        long startTime = System.currentTimeMillis();
+        SieveDocuments docs = markup(docname, body);
+        if (docs == null) {
+          respond(exchange, 400, "Could not read or parse the document.\n");
+          return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        docs.writeToXML(out);
+        System.out.println("Served " + mode + " " + docname + " in "
+            + (System.currentTimeMillis() - startTime) + "ms.");
+
+        exchange.getResponseHeaders().set("Content-Type",
+            "application/xml; charset=UTF-8");
+        exchange.sendResponseHeaders(200, out.size());
+        OutputStream os = exchange.getResponseBody();
+        out.writeTo(os);
+        os.close();
+      } catch (Exception ex) {
+        System.out.println("ERROR while serving " + exchange.getRequestURI());
+        ex.printStackTrace();
+        respond(exchange, 500, "ERROR: " + ex + "\n");
+      } finally {
+        exchange.close();
+      }
+    }
+
+    /**
+     * @return The marked up documents, or null if the input was unusable.
+     */
+    private SieveDocuments markup(String docname, byte[] body)
+        throws IOException {
+      synchronized (main) {
+        if (mode == Mode.RAW)
+          return main.markupRawTextString(docname, new String(body, "UTF-8"));
+        else if (mode == Mode.RAWXML)
+          return main.markupRawXMLString(docname, new String(body, "UTF-8"));
+
+        SieveDocuments docs = new SieveDocuments();
+        docs.readFromXML(new ByteArrayInputStream(body));
+        if (docs.getDocuments().isEmpty())
+          return null;
+        if (mode == Mode.PARSED)
+          main.markupAllNoOutput(docs);
+        else
+          main.runSievesNoOutput(docs);
+        return docs;
+      }
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int code, String message)
+      throws IOException {
+    byte[] bytes = message.getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type",
+        "text/plain; charset=UTF-8");
+    exchange.sendResponseHeaders(code, bytes.length);
+    OutputStream os = exchange.getResponseBody();
+    os.write(bytes);
+    os.close();
+  }
+
+  private static Map<String, String> getQueryParams(HttpExchange exchange)
+      throws IOException {
+    Map<String, String> params = new HashMap<String, String>();
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query != null) {
+      for (String pair : query.split("&")) {
+        int eq = pair.indexOf('=');
+        if (eq > 0)
+          params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+              URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+      }
+    }
+    return params;
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    int read;
+    while ((read = in.read(buf)) != -1)
+      out.write(buf, 0, read);
+    in.close();
+    return out.toByteArray();
+  }
+}
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -24,7 +25,6 @@ import caevo.tlink.TimeTimeLink;
  * @author Nate Chambers
  */
 public class Closure {
-  static boolean report = true;
   static String rulePath = "/closure-sieve.dat";
   HashMap<String, TLink.Type> rules[];
 
@@ -114,12 +114,13 @@ public class Closure {
    */
   public boolean isConsistent(Collection<TLink> relations, TLink link) {
     // Hash what we've seen already
-    HashMap<String, TLink.Type> seen = new HashMap<String, TLink.Type>();
+    Entities entities = new Entities(relations, link);
+    PairMap seen = new PairMap(relations.size());
     for (TLink tlink : relations)
-      seen.put(tlink.getId1() + tlink.getId2(), tlink.getRelation());
+      seen.put(entities.id1(tlink), entities.id2(tlink), tlink.getRelation());
 
-    int status = newLinkStatus(seen, link.getId1(), link.getId2(),
-        link.getRelation());
+    int status = newLinkStatus(seen, entities, entities.id1(link),
+        entities.id2(link), link.getRelation(), false);
 
     if (status == 2)
       return false;
@@ -141,25 +142,33 @@ public class Closure {
       boolean prints) {
     boolean noneAdded = false;
     TLink tlink1 = null, tlink2 = null;
-    String eid1, eid2, B, C;
+    int eid1, eid2, B, C;
     int matchCase = 0;
     int size = 0, oldsize;
     int start;
     boolean conflict = false;
 
-    if (prints)
-      report = true;
-    else
-      report = false;
+    // Local, not static: closure can run on several threads at once.
+    boolean report = prints;
 
     if (report)
       System.out
           .println("Computing Closure (" + relations.size() + " relations)");
 
+    // Number the ids once, so the loops below compare ints. Closure never
+    // adds an id, so ids1/ids2 only grow with the relations.
+    Entities entities = new Entities(relations, null);
+    int[] ids1 = new int[Math.max(16, 2 * relations.size())];
+    int[] ids2 = new int[ids1.length];
+
     // Save what we've seen already
-    HashMap<String, TLink.Type> seen = new HashMap<String, TLink.Type>();
-    for (TLink tlink : relations)
-      seen.put(tlink.getId1() + tlink.getId2(), tlink.getRelation());
+    PairMap seen = new PairMap(relations.size());
+    for (int i = 0; i < relations.size(); i++) {
+      TLink tlink = relations.get(i);
+      ids1[i] = entities.id1(tlink);
+      ids2[i] = entities.id2(tlink);
+      seen.put(ids1[i], ids2[i], tlink.getRelation());
+    }
 
     while (!noneAdded) {
       // System.out.println("iter = " + iter);
@@ -172,16 +181,18 @@ public class Closure {
           start = oldsize;
         tlink1 = relations.get(i);
         TLink.Type rel1 = tlink1.getRelation();
-        eid1 = tlink1.getId1();
-        eid2 = tlink1.getId2();
+        eid1 = ids1[i];
+        eid2 = ids2[i];
         if (report)
           System.out.println("Starting with tlink1 = " + tlink1);
 
         for (int j = start; j < size; j++) {
           tlink2 = relations.get(j);
           TLink.Type rel2 = tlink2.getRelation();
-          B = null;
-          C = null;
+          int id1 = ids1[j];
+          int id2 = ids2[j];
+          B = -1;
+          C = -1;
           matchCase = -1;
           if (report)
             System.out.println("\ttlink2 = " + tlink2);
@@ -189,47 +200,43 @@ public class Closure {
           // Find which out of 4 transitive patterns to use
 
           // A-B-Rel, A-C-Rel
-          if (eid1.equals(tlink2.getId1()) && !eid2.equals(tlink2.getId2())) {
+          if (eid1 == id1 && eid2 != id2) {
             matchCase = 0;
             B = eid2;
-            C = tlink2.getId2();
+            C = id2;
           }
           // A-B-Rel, C-A-Rel
-          else if (eid1.equals(tlink2.getId2())
-              && !eid2.equals(tlink2.getId1())) {
+          else if (eid1 == id2 && eid2 != id1) {
             matchCase = 1;
             B = eid2;
-            C = tlink2.getId1();
+            C = id1;
           }
           // B-A-Rel, A-C-Rel
-          else if (eid2.equals(tlink2.getId1())
-              && !eid1.equals(tlink2.getId2())) {
+          else if (eid2 == id1 && eid1 != id2) {
             matchCase = 2;
             B = eid1;
-            C = tlink2.getId2();
+            C = id2;
           }
           // B-A-Rel, C-A-Rel
-          else if (eid2.equals(tlink2.getId2())
-              && !eid1.equals(tlink2.getId1())) {
+          else if (eid2 == id2 && eid1 != id1) {
             matchCase = 3;
             B = eid1;
-            C = tlink2.getId1();
+            C = id1;
           }
 
           // System.out.println("\tB = " + B + " C = " + C + " matchCase = " +
           // matchCase);
 
           // Ignore closing trivial relations such as A-A-INCL, A-A-SIMUL
-          if (eid1.equals(eid2) && (rel1 == TLink.Type.SIMULTANEOUS
+          if (eid1 == eid2 && (rel1 == TLink.Type.SIMULTANEOUS
               || rel1 == TLink.Type.INCLUDES)) {
             matchCase = -1;
-          } else if (tlink2.getId2().equals(tlink2.getId1())
-              && (rel2 == TLink.Type.SIMULTANEOUS
-                  || rel2 == TLink.Type.INCLUDES)) {
+          } else if (id2 == id1 && (rel2 == TLink.Type.SIMULTANEOUS
+              || rel2 == TLink.Type.INCLUDES)) {
             matchCase = -1;
           }
 
-          if (B != null && C != null && matchCase != -1) {
+          if (B != -1 && C != -1 && matchCase != -1) {
             // System.out.println("Checking B=" + B + " C=" + C + " case=" +
             // matchCase);
             // Find the relation to close it
@@ -237,14 +244,24 @@ public class Closure {
             // System.out.println(rel1 + " " + rel2 + " newrel=" + newrel);
             if (newrel != null) {
               if (report)
-                System.out.println("New link! " + newrel + "(from B=" + B
-                    + " C=" + C + " matchCase=" + matchCase + ")");
-              TLink newLink = addlink(seen, relations, B, C, newrel);
+                System.out.println("New link! " + newrel + "(from B="
+                    + entities.name(B) + " C=" + entities.name(C)
+                    + " matchCase=" + matchCase + ")");
+              TLink newLink = addlink(seen, entities, relations, B, C, newrel,
+                  report);
               // If this new link conflicts, remember that
               if (newLink == null)
                 conflict = true;
-              else
+              else {
                 newRelations.add(newLink);
+                int last = relations.size() - 1;
+                if (last == ids1.length) {
+                  ids1 = Arrays.copyOf(ids1, 2 * last);
+                  ids2 = Arrays.copyOf(ids2, 2 * last);
+                }
+                ids1[last] = B;
+                ids2[last] = C;
+              }
             }
           }
         }
@@ -292,8 +309,8 @@ public class Closure {
   }
 
   /**
-   * Creates the appropriate type of TLink, based on the string from of A and B.
-   * If it is e30 or ei12 then it is an event, whereas t14 is a time.
+   * Creates the appropriate type of TLink, based on whether A and B are events
+   * or times.
    * 
    * @param relations
    *          A vector of TLinks to which to add a new link
@@ -306,31 +323,32 @@ public class Closure {
    * @return The new link that was added to the relations list. null if the link
    *         was duplicate, or conflicted.
    */
-  private TLink addlink(HashMap<String, TLink.Type> seen, List<TLink> relations,
-      String A, String B, TLink.Type rel) {
-    int status = newLinkStatus(seen, A, B, rel);
+  private TLink addlink(PairMap seen, Entities entities,
+      List<TLink> relations, int A, int B, TLink.Type rel, boolean report) {
+    int status = newLinkStatus(seen, entities, A, B, rel, report);
 
     if (status == 0) {
       TLink link;
       int times = 0;
 
       // See what type of relation we are adding (e.g. event-time)
-      // YES, this depends on making sure all time variables start with 't'
-      if (A.charAt(0) == 't')
+      if (entities.isTime(A))
         times++;
-      if (B.charAt(0) == 't')
+      if (entities.isTime(B))
         times++;
 
       // Create the appropriate TLink
+      String nameA = entities.name(A);
+      String nameB = entities.name(B);
       if (times == 2)
-        link = new TimeTimeLink(A, B, rel, true);
+        link = new TimeTimeLink(nameA, nameB, rel, true);
       else if (times == 1)
-        link = new EventTimeLink(A, B, rel, true);
+        link = new EventTimeLink(nameA, nameB, rel, true);
       else
-        link = new EventEventLink(A, B, rel, true);
+        link = new EventEventLink(nameA, nameB, rel, true);
 
       relations.add(link);
-      seen.put(A + B, rel);
+      seen.put(A, B, rel);
 
       // System.out.println("Added link " + A + " " + relation + " " + B);
       return link;
@@ -343,11 +361,13 @@ public class Closure {
    * doesn't exist. 1: already exists, or is consistent with existing relation
    * A-B 2: conflicts with existing relation between A-B
    */
-  private int newLinkStatus(HashMap<String, TLink.Type> seen, String A,
-      String B, TLink.Type rel) {
+  private int newLinkStatus(PairMap seen, Entities entities, int A, int B,
+      TLink.Type rel, boolean report) {
+    TLink.Type current = seen.get(A, B);
+    TLink.Type reverse = (current == null ? seen.get(B, A) : null);
+
     // Make sure we don't already have a relation
-    if (seen.containsKey(A + B)) {
-      TLink.Type current = seen.get(A + B);
+    if (current != null) {
       if (current != rel) {
 
         // some relation clashes are ok
@@ -356,17 +376,17 @@ public class Closure {
           return 1;
 
         if (report) {
-          System.err.println("Closure conflict: " + A + " " + B);
-          System.err.println("...old relation " + A + " " + seen.get(A + B)
-              + " " + B + " adding new relation " + A + " " + rel + " " + B);
+          String a = entities.name(A), b = entities.name(B);
+          System.err.println("Closure conflict: " + a + " " + b);
+          System.err.println("...old relation " + a + " " + current + " " + b
+              + " adding new relation " + a + " " + rel + " " + b);
         }
         return 2;
       } else
         return 1; // exact same relation already exists
     }
     // Make sure the inverse relation doesn't exist
-    else if (seen.containsKey(B + A)) {
-      TLink.Type reverse = seen.get(B + A);
+    else if (reverse != null) {
       TLink.Type relReversed = TLink.invertRelation(rel);
       // inverse simultaneous relations are harmless, just ignore
       if (reverse == relReversed ||
@@ -380,9 +400,10 @@ public class Closure {
         return 1;
 
       if (report) {
-        System.err.println("Closure conflict: " + A + " " + B);
-        System.err.println("...old relation " + B + " " + seen.get(B + A) + " "
-            + A + " adding new relation " + A + " " + rel + " " + B);
+        String a = entities.name(A), b = entities.name(B);
+        System.err.println("Closure conflict: " + a + " " + b);
+        System.err.println("...old relation " + b + " " + reverse + " " + a
+            + " adding new relation " + a + " " + rel + " " + b);
       }
       return 2;
     }
@@ -391,6 +412,164 @@ public class Closure {
       return 0;
   }
 
+  /**
+   * The relation of each ordered pair of ids seen so far, keyed by the pair as
+   * one long without boxing it: open addressing with linear probing, and a
+   * null relation marks an empty slot.
+   */
+  private static class PairMap {
+    private long[] keys;
+    private TLink.Type[] values;
+    private int size = 0;
+
+    PairMap(int expected) {
+      int capacity = 64;
+      while (capacity < 4 * expected)
+        capacity *= 2;
+      keys = new long[capacity];
+      values = new TLink.Type[capacity];
+    }
+
+    TLink.Type get(int A, int B) {
+      long key = pair(A, B);
+      int mask = keys.length - 1;
+      for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask)
+        if (keys[i] == key)
+          return values[i];
+      return null;
+    }
+
+    void put(int A, int B, TLink.Type rel) {
+      if (2 * (size + 1) > keys.length)
+        grow();
+      insert(pair(A, B), rel);
+    }
+
+    private void insert(long key, TLink.Type rel) {
+      int mask = keys.length - 1;
+      int i = slot(key, mask);
+      while (values[i] != null && keys[i] != key)
+        i = (i + 1) & mask;
+      if (values[i] == null)
+        size++;
+      keys[i] = key;
+      values[i] = rel;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      TLink.Type[] oldValues = values;
+      keys = new long[2 * oldKeys.length];
+      values = new TLink.Type[2 * oldKeys.length];
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++)
+        if (oldValues[i] != null)
+          insert(oldKeys[i], oldValues[i]);
+    }
+
+    private static long pair(int A, int B) {
+      return ((long) A << 32) | (B & 0xffffffffL);
+    }
+
+    private static int slot(long key, int mask) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h >>> 32) & mask;
+    }
+  }
+
+  /**
+   * The ids in one closure computation, and whether each is a time. When every
+   * link is in the same document and the document knows all their ids, these
+   * are the document's own int ids and it says which are times. Otherwise the
+   * ids are numbered here from 0 as they are first seen, and the links tell us
+   * which are times: a link in a document asks the document, and otherwise
+   * goes by the id's name, as timex ids start with 't'.
+   */
+  private static class Entities {
+    private static final byte EVENT = 1, TIME = 2;
+
+    // The document whose ids we use, or null if we number them here.
+    private final SieveDocument doc;
+    private HashMap<String, Integer> ids;
+    private List<String> names;
+    private byte[] kinds;
+
+    /**
+     * @param extra
+     *          A link that isn't in the collection but will be asked about, or
+     *          null.
+     */
+    Entities(Collection<TLink> links, TLink extra) {
+      doc = commonDocument(links, extra);
+      if (doc != null)
+        return;
+      ids = new HashMap<String, Integer>();
+      names = new ArrayList<String>();
+      kinds = new byte[64];
+      for (TLink link : links)
+        add(link);
+    }
+
+    /**
+     * @return The one document of all the links if it knows all their ids,
+     *         null otherwise.
+     */
+    private static SieveDocument commonDocument(Collection<TLink> links,
+        TLink extra) {
+      SieveDocument doc = (extra == null ? null : extra.getDocument());
+      if (extra != null && (doc == null || !knows(doc, extra)))
+        return null;
+      for (TLink link : links) {
+        if (doc == null)
+          doc = link.getDocument();
+        if (doc == null || !knows(doc, link))
+          return null;
+      }
+      return doc;
+    }
+
+    private static boolean knows(SieveDocument doc, TLink link) {
+      return link.getDocument() == doc && link.getIntId1() >= 0
+          && link.getIntId2() >= 0;
+    }
+
+    int id1(TLink link) {
+      return (doc != null ? link.getIntId1() : id(link.getId1()));
+    }
+
+    int id2(TLink link) {
+      return (doc != null ? link.getIntId2() : id(link.getId2()));
+    }
+
+    /**
+     * Number the link's ids, and note which are times.
+     */
+    void add(TLink link) {
+      kinds[id1(link)] = (link.isTimex1() ? TIME : EVENT);
+      kinds[id2(link)] = (link.isTimex2() ? TIME : EVENT);
+    }
+
+    private int id(String name) {
+      Integer id = ids.get(name);
+      if (id == null) {
+        id = names.size();
+        ids.put(name, id);
+        names.add(name);
+        if (id == kinds.length)
+          kinds = Arrays.copyOf(kinds, 2 * id);
+      }
+      return id;
+    }
+
+    String name(int id) {
+      return (doc != null ? doc.getEntityName(id) : names.get(id));
+    }
+
+    boolean isTime(int id) {
+      return (doc != null ? doc.isTimexId(id) : kinds[id] == TIME);
+    }
+  }
+
   /**
    * Generates a complete set of NONE tlinks between all pairs of events that
    * are not already tlinks. One pair A-B or B-A, not both A-B and B-A.
@@ -1,7 +1,9 @@
 package caevo;
 
+import java.io.File;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -12,6 +14,7 @@ import caevo.tlink.EventEventLink;
 import caevo.tlink.EventTimeLink;
 import caevo.tlink.TLink;
 import caevo.tlink.TimeTimeLink;
+import caevo.util.ModelRegistry;
 import caevo.util.SieveStats;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
@@ -61,31 +64,40 @@ public class Evaluate {
     return false;
   }
 
+  // These select by name before getting each document, so lazily loaded
+  // SieveDocuments only build the documents in the set.
   public static SieveDocuments getTrainSet(SieveDocuments docs) {
     SieveDocuments newdocs = new SieveDocuments();
-    for (SieveDocument doc : docs.getDocuments())
-      if (!exists(doc.getDocname(), devDocs)
-          && !exists(doc.getDocname(), testDocs))
-        newdocs.addDocument(doc);
+    for (String docname : docs.getDocnames())
+      if (!exists(docname, devDocs) && !exists(docname, testDocs))
+        newdocs.addDocument(docs.getDocument(docname));
     return newdocs;
   }
 
   public static SieveDocuments getDevSet(SieveDocuments docs) {
     SieveDocuments newdocs = new SieveDocuments();
-    for (SieveDocument doc : docs.getDocuments())
-      if (exists(doc.getDocname(), devDocs))
-        newdocs.addDocument(doc);
+    for (String docname : docs.getDocnames())
+      if (exists(docname, devDocs))
+        newdocs.addDocument(docs.getDocument(docname));
     return newdocs;
   }
 
   public static SieveDocuments getTestSet(SieveDocuments docs) {
     SieveDocuments newdocs = new SieveDocuments();
-    for (SieveDocument doc : docs.getDocuments())
-      if (exists(doc.getDocname(), testDocs))
-        newdocs.addDocument(doc);
+    for (String docname : docs.getDocnames())
+      if (exists(docname, testDocs))
+        newdocs.addDocument(docs.getDocument(docname));
     return newdocs;
   }
 
+  public static boolean isDevDoc(String docname) {
+    return exists(docname, devDocs);
+  }
+
+  public static boolean isTestDoc(String docname) {
+    return exists(docname, testDocs);
+  }
+
   private static boolean exists(String name, String[] names) {
     for (String nn : names)
       if (name.equals(nn))
@@ -169,7 +181,7 @@ public class Evaluate {
           boolean flip = false;
 
           // event - time
-          if (link.getId1().startsWith("e")) {
+          if (!link.isTimex1()) {
             event = doc.getEventByEiid(link.getId1());
             time = doc.getTimexByTid(link.getId2());
 
@@ -225,18 +237,18 @@ public class Evaluate {
   }
 
   private static String determineLinkType(TLink link) {
-    if (link.getId1().startsWith("e") && link.getId2().startsWith("e"))
+    // Ask the document which ids are times, and read it from their names
+    // only when it doesn't know them.
+    if (link.getIntId1() < 0 || link.getIntId2() < 0)
+      return determineLinkTypeByName(link);
+    boolean time1 = link.isTimex1(), time2 = link.isTimex2();
+    if (!time1 && !time2)
       return "EELink";
-    if ((link.getId1().startsWith("e") && link.getId2().equals("t0"))
-        || (link.getId1().equals("t0") && link.getId2().startsWith("e")))
-      return "EDCTLink";
-    if ((link.getId1().startsWith("e") && link.getId2().startsWith("t"))
-        || (link.getId1().startsWith("t") && link.getId2().startsWith("e")))
-      return "ETLink";
-    if (link.getId1().startsWith("t") && link.getId2().startsWith("t"))
+    if (time1 && time2)
       return "TTLink";
-
-    return "GeneralTLink";
+    // The DCT is t0.
+    String time = (time1 ? link.getId1() : link.getId2());
+    return (time.equals("t0") ? "EDCTLink" : "ETLink");
 
     /*
      * if( link.getId1().startsWith("e") && link.getId2().startsWith("e") ) {
@@ -251,6 +263,25 @@ public class Evaluate {
      */
   }
 
+  /**
+   * The link's type from its ids' names: events start with 'e', times with
+   * 't', and the DCT is t0.
+   */
+  private static String determineLinkTypeByName(TLink link) {
+    if (link.getId1().startsWith("e") && link.getId2().startsWith("e"))
+      return "EELink";
+    if ((link.getId1().startsWith("e") && link.getId2().equals("t0"))
+        || (link.getId1().equals("t0") && link.getId2().startsWith("e")))
+      return "EDCTLink";
+    if ((link.getId1().startsWith("e") && link.getId2().startsWith("t"))
+        || (link.getId1().startsWith("t") && link.getId2().startsWith("e")))
+      return "ETLink";
+    if (link.getId1().startsWith("t") && link.getId2().startsWith("t"))
+      return "TTLink";
+
+    return "GeneralTLink";
+  }
+
   /**
    * Full evaluation of guesses to gold links. This penalizes guesses for not
    * labeling everything. The goldDocs and guessedDocs should cover the same
@@ -265,8 +296,9 @@ public class Evaluate {
    *          document.
    * @param sieveStats
    *          A map from sieve names to their SieveStats objects.
+   * @return Precision, recall and F1, or null if there are no gold docs.
    */
-  public static void evaluate(SieveDocuments goldDocs,
+  public static double[] evaluate(SieveDocuments goldDocs,
       SieveDocuments guessedDocs, String[] sieveNames,
       Map<String, SieveStats> sieveStats) {
     Counter<String> guessCounts = new ClassicCounter<String>();
@@ -281,7 +313,7 @@ public class Evaluate {
     int numMissedNonVague = 0;
 
     if (goldDocs == null)
-      return;
+      return null;
 
     // Make sure all TLinks follow text order and invert relations that don't.
     // normalizeAllTlinksByTextOrder(goldDocs);
@@ -455,6 +487,7 @@ public class Evaluate {
     printPerRelationPRF(guessCounts, goldLabelCounts);
     System.out.println(
         "*********************************************************************\n");
+    return new double[] { precision, recall, f1 };
   }
 
   /**
@@ -580,9 +613,58 @@ public class Evaluate {
   }
 
   /**
-   * @param args
+   * Report how the pipeline's results change when the models are read from
+   * their FlatClassifier copies, such as pruned or quantized ones, instead of
+   * the serialized classifiers. Takes Main's arguments, and runs Main on the
+   * dev set unless -set says otherwise:
+   * 
+   * java caevo.Evaluate -info <file-with-gold-tlinks> [-set dev]
+   * 
+   * Each run writes its own output, with "serialized" or "flat" before the
+   * extension of Main's output path, e.g. sieve-output.flat.xml.
    */
   public static void main(String[] args) {
+    List<String> mainArgs = new ArrayList<String>(Arrays.asList(args));
+    if (!mainArgs.contains("-set")) {
+      mainArgs.add("-set");
+      mainArgs.add("dev");
+    }
+
+    String[] names = { "serialized models", "flat models" };
+    String[] tags = { "serialized", "flat" };
+    double[][] results = new double[names.length][];
+    for (int run = 0; run < names.length; run++) {
+      System.out.println("Evaluating with the " + names[run]);
+      System.setProperty("ModelRegistry.flat", String.valueOf(run == 1));
+      ModelRegistry.clear();
+      Main main = new Main(mainArgs.toArray(new String[mainArgs.size()]));
+      // Keep both runs' output, rather than the second overwriting the first.
+      main.outpath = taggedPath(main.outpath, tags[run]);
+      results[run] = main.runSieves();
+      if (results[run] == null) {
+        System.out.println("ERROR: no gold tlinks to evaluate against.");
+        System.exit(1);
+      }
+    }
+
+    System.out.println("Flat model accuracy change");
+    for (int run = 0; run < names.length; run++)
+      System.out.printf("%-18s\tP=%.4f\tR=%.4f\tF1=%.4f\n", names[run],
+          results[run][0], results[run][1], results[run][2]);
+    System.out.printf("%-18s\tP=%+.4f\tR=%+.4f\tF1=%+.4f\n", "change",
+        results[1][0] - results[0][0], results[1][1] - results[0][1],
+        results[1][2] - results[0][2]);
+  }
+
+  /**
+   * @return The path with the tag before its extension, or after it if it
+   *         has none.
+   */
+  private static String taggedPath(String path, String tag) {
+    int dot = path.lastIndexOf('.');
+    if (dot <= path.lastIndexOf(File.separatorChar))
+      return path + "." + tag;
+    return path.substring(0, dot) + "." + tag + path.substring(dot);
   }
 
 }
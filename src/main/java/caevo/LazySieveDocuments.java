@@ -0,0 +1,156 @@
+package caevo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SieveDocuments over an info file that builds each document only when it is
+ * asked for by name, using a SieveDocumentsIndex to find it in the file. At
+ * most cacheSize built documents are kept, least recently used first out, so
+ * looking up a dev or test set, or gold documents for evaluation, never holds
+ * the whole corpus.
+ *
+ * An evicted document is rebuilt from the file the next time it is asked for,
+ * so changes made to it are lost. Hold on to the documents you change (e.g.,
+ * through Evaluate.getDevSet()), or call getDocuments(), which builds every
+ * document and keeps them all. removeAllTLinks() applies to documents built
+ * later too.
+ */
+public class LazySieveDocuments extends SieveDocuments {
+  public static final int DEFAULT_CACHE_SIZE = 64;
+
+  private final SieveDocumentsIndex index;
+  private final LinkedHashMap<String, SieveDocument> cache;
+  // Documents that are never evicted: added ones, or all of them once
+  // getDocuments() has been called.
+  private final Map<String, SieveDocument> pinned =
+      new HashMap<String, SieveDocument>();
+  private final List<String> addedNames = new ArrayList<String>();
+  private List<SieveDocument> allDocuments = null;
+  private boolean removeTLinks = false;
+  private int numHits = 0;
+  private int numMisses = 0;
+
+  public LazySieveDocuments(String infopath) throws IOException {
+    this(infopath, DEFAULT_CACHE_SIZE);
+  }
+
+  public LazySieveDocuments(String infopath, final int cacheSize)
+      throws IOException {
+    index = new SieveDocumentsIndex(infopath);
+    cache = new LinkedHashMap<String, SieveDocument>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      protected boolean removeEldestEntry(
+          Map.Entry<String, SieveDocument> eldest) {
+        return size() > Math.max(1, cacheSize);
+      }
+    };
+  }
+
+  @Override
+  public synchronized Set<String> getFileNames() {
+    return new LinkedHashSet<String>(getDocnames());
+  }
+
+  @Override
+  public synchronized List<String> getDocnames() {
+    List<String> names = new ArrayList<String>(index.getDocnames());
+    names.addAll(addedNames);
+    return names;
+  }
+
+  /**
+   * Build every document and keep them all from now on.
+   */
+  @Override
+  public synchronized List<SieveDocument> getDocuments() {
+    if (allDocuments == null) {
+      List<SieveDocument> docs = new ArrayList<SieveDocument>();
+      for (String docname : getDocnames()) {
+        SieveDocument doc = getDocument(docname);
+        if (doc != null) {
+          docs.add(doc);
+          pinned.put(docname, doc);
+        }
+      }
+      cache.clear();
+      allDocuments = docs;
+    }
+    return allDocuments;
+  }
+
+  @Override
+  public synchronized SieveDocument getDocument(String docname) {
+    SieveDocument doc = pinned.get(docname);
+    if (doc == null)
+      doc = cache.get(docname);
+    if (doc != null) {
+      numHits++;
+      return doc;
+    }
+    if (!index.contains(docname))
+      return null;
+
+    numMisses++;
+    try {
+      doc = index.readDocument(docname);
+    } catch (IOException ex) {
+      System.out.println("ERROR reading document " + docname);
+      ex.printStackTrace();
+      return null;
+    }
+    if (removeTLinks)
+      doc.removeTlinks();
+    cache.put(docname, doc);
+    return doc;
+  }
+
+  @Override
+  public synchronized void addDocument(SieveDocument doc) {
+    String docname = doc.getDocname();
+    boolean isNew = !index.contains(docname) && !pinned.containsKey(docname);
+    if (isNew)
+      addedNames.add(docname);
+    pinned.put(docname, doc);
+    cache.remove(docname);
+    if (allDocuments != null) {
+      // Replace the old document in the list, if it has one.
+      for (int i = 0; i < allDocuments.size(); i++) {
+        if (allDocuments.get(i).getDocname().equals(docname)) {
+          allDocuments.set(i, doc);
+          return;
+        }
+      }
+      allDocuments.add(doc);
+    }
+  }
+
+  @Override
+  public synchronized void removeAllTLinks() {
+    removeTLinks = true;
+    for (SieveDocument doc : pinned.values())
+      doc.removeTlinks();
+    for (SieveDocument doc : cache.values())
+      doc.removeTlinks();
+  }
+
+  public synchronized int size() {
+    return index.size() + addedNames.size();
+  }
+
+  /**
+   * @return Lookups served from memory, and lookups that read the file.
+   */
+  public synchronized String statsString() {
+    return "Lazy documents: " + numHits + " hits, " + numMisses
+        + " reads, " + (cache.size() + pinned.size()) + " in memory of "
+        + size();
+  }
+}
@@ -7,11 +7,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 
 import caevo.sieves.Sieve;
 import caevo.tlink.TLink;
@@ -19,8 +17,10 @@ import caevo.tlink.TimeTimeLink;
 import caevo.util.DCTHeursitics;
 import caevo.util.Directory;
 import caevo.util.Ling;
+import caevo.util.ParseCache;
 import caevo.util.SieveStats;
 import caevo.util.CaevoProperties;
+import caevo.util.TimebankUtil;
 import caevo.util.Util;
 import caevo.util.WordNet;
 import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
@@ -53,6 +53,19 @@ import edu.stanford.nlp.util.StringUtils;
  * java Main <file-or-dir> raw - Takes a text file and runs the NLP pipeline,
  * then our event/timex/tlink extraction.
  *
+ * java Main [-port <port>] server - Loads everything once, then marks up
+ * documents sent over local HTTP. See CaevoServer.
+ *
+ * With Main.stream=true, the "parsed" and tlink-only modes read the infofile
+ * one document at a time and write each to sieve-output.xml as it finishes,
+ * for corpora too large to hold in memory. See runSievesStreaming(). Other
+ * modes refuse to run with it.
+ *
+ * With Main.lazyDocs=true, the infofile is indexed (infofile.idx) and only the
+ * documents in the chosen -set are built, plus gold documents as they are
+ * evaluated. At most Main.lazyCacheSize unused documents stay in memory. See
+ * LazySieveDocuments.
+ *
  * @author chambers
  */
 public class Main {
@@ -60,8 +73,10 @@ public class Main {
 
   private TextEventClassifier eventClassifier;
   private TimexClassifier timexClassifier;
+  private ParallelParser rawParser;
   public static WordNet wordnet;
 
+  String infopath = null;
   SieveDocuments thedocs = null;
   SieveDocuments thedocsUnchanged = null; // for evaluating if TLinks are in the input
   Closure closure;
@@ -70,6 +85,13 @@ public class Main {
   boolean useClosure = true;
   boolean force24hrDCT = true;
   String dctHeuristic = "none";
+  int parseThreads = Runtime.getRuntime().availableProcessors();
+  String parseCacheDir = null;
+  int maxSentenceLength = 0;
+  long parseTimeLimit = 0;
+  boolean stream = false;
+  boolean lazyDocs = false;
+  int lazyCacheSize = LazySieveDocuments.DEFAULT_CACHE_SIZE;
 
   // Which dataset do we load?
   public static enum DatasetType {
@@ -80,13 +102,14 @@ public class Main {
 
   // List the sieve class names in your desired order.
   private String[] sieveClasses;
+  private Sieve[] pipelineSieves;
+  private SieveRunner sieveRunner;
 
   /**
    * Constructor: give it the command-line arguments.
    */
   public Main(String[] args) {
     Properties cmdlineProps = StringUtils.argsToProperties(args);
-    String infopath = null;
 
     // Read the properties from disk at the location specified by -Dprops=XXXXX
     try {
@@ -102,21 +125,48 @@ public class Main {
           force24hrDCT);
       dctHeuristic = CaevoProperties.getString("Main.dctHeuristic",
           dctHeuristic);
+      parseThreads = CaevoProperties.getInt("Main.parseThreads", parseThreads);
+      parseCacheDir = CaevoProperties.getString("Main.parseCache",
+          parseCacheDir);
+      maxSentenceLength = CaevoProperties.getInt("Main.maxSentenceLength",
+          maxSentenceLength);
+      parseTimeLimit = CaevoProperties.getLong("Main.parseTimeLimit",
+          parseTimeLimit);
+      stream = CaevoProperties.getBoolean("Main.stream", stream);
+      lazyDocs = CaevoProperties.getBoolean("Main.lazyDocs", lazyDocs);
+      lazyCacheSize = CaevoProperties.getInt("Main.lazyCacheSize",
+          lazyCacheSize);
+      SieveDocuments.setLoadThreads(CaevoProperties.getInt("Main.loadThreads",
+          SieveDocuments.getLoadThreads()));
+      TreeCache.setBudget(1024L * 1024 * CaevoProperties.getLong(
+          "Main.treeCacheMB", TreeCache.getBudget() / (1024 * 1024)));
     } catch (IOException e) {
       e.printStackTrace();
     }
 
+    // Streaming only stands in for runSieves() and markupAll(); other modes
+    // would run with no documents loaded.
+    if (stream && !canStream(args)) {
+      System.out.println("ERROR: Main.stream=true only works in the parsed "
+          + "and tlink-only modes, not " + args[args.length - 1] + ".");
+      System.exit(1);
+    }
+
     // -info on the command line?
     if (cmdlineProps.containsKey("info"))
       infopath = cmdlineProps.getProperty("info");
 
-    if (infopath != null) {
+    // Streaming reads the documents as it goes, not now.
+    if (infopath != null && !stream) {
       System.out.println("Checking for infofile at " + infopath);
-      thedocs = new SieveDocuments(infopath);
+      boolean parsed = args.length > 0
+          && args[args.length - 1].equalsIgnoreCase("parsed");
+      // "parsed" writes out every document it marks up, so it can't be lazy.
+      thedocs = readDocuments(infopath, lazyDocs && !parsed);
 
       // For evaluation, contains gold tlinks.  
-      if( args.length > 0 && !args[args.length-1].equalsIgnoreCase("parsed") )
-        thedocsUnchanged = new SieveDocuments(infopath);  
+      if (!parsed)
+        thedocsUnchanged = readDocuments(infopath, lazyDocs);
     }
 
     // -set on the command line?
@@ -132,6 +182,36 @@ public class Main {
     System.out.println("Debug:\t\t" + debug);
   }
 
+  /**
+   * @return True if the mode in the last argument can stream: "parsed", or
+   *         the tlink-only mode that runs when no other mode is named.
+   */
+  private static boolean canStream(String[] args) {
+    if (args.length == 0)
+      return true;
+    String mode = args[args.length - 1];
+    for (String other : new String[] { "gauntlet", "raw", "rawxml", "server",
+        "trainall", "labelevents" })
+      if (mode.equalsIgnoreCase(other))
+        return false;
+    return true;
+  }
+
+  /**
+   * Read an info file, lazily if asked and the file can be indexed.
+   */
+  private SieveDocuments readDocuments(String path, boolean lazy) {
+    if (lazy && !path.endsWith(".gz")) {
+      try {
+        return new LazySieveDocuments(path, lazyCacheSize);
+      } catch (IOException ex) {
+        System.out.println("ERROR indexing " + path + ", reading it all.");
+        ex.printStackTrace();
+      }
+    }
+    return new SieveDocuments(path);
+  }
+
   /**
    * Empty Constructor.
    */
@@ -163,26 +243,34 @@ public class Main {
 
     System.out.println("Reading sieve list from: " + filename);
 
-    List<String> sieveNames = new ArrayList<String>();
     try {
-      BufferedReader reader = new BufferedReader(
-          new FileReader(new File(filename)));
-      String line;
-      while ((line = reader.readLine()) != null) {
-        if (!line.matches("^\\s*$") && !line.matches("^\\s*//.*$")) {
-          // Remove trailing comments if they exist.
-          if (line.indexOf("//") > -1)
-            line = line.substring(0, line.indexOf("//"));
-          String name = line.trim();
-          sieveNames.add(name);
-        }
-      }
-      reader.close();
+      return readSieveList(filename);
     } catch (Exception ex) {
       System.out.println("ERROR: no sieve list found");
       ex.printStackTrace();
       System.exit(1);
     }
+    return null;
+  }
+
+  /**
+   * Reads sieve class names, one per line, skipping blank lines and // comments.
+   */
+  public static String[] readSieveList(String filename) throws IOException {
+    List<String> sieveNames = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(
+        new FileReader(new File(filename)));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (!line.matches("^\\s*$") && !line.matches("^\\s*//.*$")) {
+        // Remove trailing comments if they exist.
+        if (line.indexOf("//") > -1)
+          line = line.substring(0, line.indexOf("//"));
+        String name = line.trim();
+        sieveNames.add(name);
+      }
+    }
+    reader.close();
 
     String[] arr = new String[sieveNames.size()];
     return sieveNames.toArray(arr);
@@ -194,7 +282,7 @@ public class Main {
    * @param sieveClass
    * @return
    */
-  private Sieve createSieveInstance(String sieveClass) {
+  public static Sieve createSieveInstance(String sieveClass) {
     try {
       Class<?> c = Class.forName("caevo.sieves." + sieveClass);
       Sieve sieve = (Sieve) c.newInstance();
@@ -215,6 +303,23 @@ public class Main {
     return null;
   }
 
+  /**
+   * @return The sieves for the TLink pipeline, created the first time they are
+   *         needed and then reused.
+   */
+  private Sieve[] getSieves() {
+    if (pipelineSieves == null)
+      pipelineSieves = createAllSieves(sieveClasses);
+    return pipelineSieves;
+  }
+
+  private SieveRunner getSieveRunner() {
+    if (sieveRunner == null)
+      sieveRunner = new SieveRunner(sieveClasses, getSieves(),
+          (useClosure ? closure : null), debug);
+    return sieveRunner;
+  }
+
   private Sieve[] createAllSieves(String[] stringClasses) {
     Sieve sieves[] = new Sieve[stringClasses.length];
     for (int xx = 0; xx < stringClasses.length; xx++) {
@@ -227,24 +332,25 @@ public class Main {
   /**
    * Assumes the global SieveDocuments is initialized and loaded. Run all
    * sieves!! On all documents!!
+   * 
+   * @return Evaluate.evaluate()'s precision, recall and F1, or null.
    */
-  public void runSieves() {
-    runSieves(thedocs);
+  public double[] runSieves() {
+    return runSieves(thedocs);
   }
 
   /**
    * Run the sieve pipeline on the given documents.
+   * 
+   * @return Evaluate.evaluate()'s precision, recall and F1, or null if there
+   *         was nothing to evaluate against.
    */
-  public void runSieves(SieveDocuments thedocs) {
+  public double[] runSieves(SieveDocuments thedocs) {
     // Remove all TLinks because we will add our own.
     thedocs.removeAllTLinks();
 
-    // Start with zero links.
-    List<TLink> currentTLinks = new ArrayList<TLink>();
-    Map<String, TLink> currentTLinksHash = new HashMap<String, TLink>();
-
     // Create all the sieves first.
-    Sieve sieves[] = createAllSieves(sieveClasses);
+    SieveRunner runner = getSieveRunner();
 
     // Statistics collection.
     SieveStats stats[] = new SieveStats[sieveClasses.length];
@@ -258,66 +364,121 @@ public class Main {
     SieveDocuments docs = getDataset(dataset, thedocs);
 
     // Do each file independently.
-    for (SieveDocument doc : docs.getDocuments()) {
-      System.out.println("Processing " + doc.getDocname() + "...");
-      // System.out.println("Number of gold links: " +
-      // thedocsUnchanged.getDocument(doc.getDocname()).getTlinks().size());
-
-      // Loop over the sieves in order.
-      for (int xx = 0; xx < sieves.length; xx++) {
-        Sieve sieve = sieves[xx];
-        if (sieve == null)
-          continue;
-        System.out.println("\tSieve " + sieve.getClass().toString());
-
-        // Run this sieve
-        List<TLink> newLinks = sieve.annotate(doc, currentTLinks);
-        if (debug)
-          System.out.println("\t\t" + newLinks.size() + " new links.");
-        // if( debug ) System.out.println("\t\t" + newLinks);
-        stats[xx].addProposedCount(newLinks.size());
-
-        // Verify the links as non-conflicting.
-        int numRemoved = removeConflicts(currentTLinksHash, newLinks);
-        if (debug)
-          System.out.println("\t\tRemoved " + numRemoved + " proposed links.");
-        // if( debug ) System.out.println("\t\t" + newLinks);
-        stats[xx].addRemovedCount(numRemoved);
-
-        if (newLinks.size() > 0) {
-          // Add the good links to our current list.
-          addProposedToCurrentList(sieveClasses[xx], newLinks, currentTLinks,
-              currentTLinksHash);// currentTLinks.addAll(newLinks);
-
-          // Run Closure
-          if (useClosure) {
-            List<TLink> closedLinks = closureExpand(sieveClasses[xx],
-                currentTLinks, currentTLinksHash);
-            if (debug)
-              System.out.println(
-                  "\t\tClosure produced " + closedLinks.size() + " links.");
-            // if( debug ) System.out.println("\t\tclosed=" + closedLinks);
-            stats[xx].addClosureCount(closedLinks.size());
-          }
-        }
-        if (debug)
-          System.out
-              .println("\t\tDoc now has " + currentTLinks.size() + " links.");
-      }
-
-      // Add links to InfoFile.
-      doc.addTlinks(currentTLinks);
-      // if( debug ) System.out.println("Adding links: " + currentTLinks);
-      currentTLinks.clear();
-      currentTLinksHash.clear();
-    }
+    for (SieveDocument doc : docs.getDocuments())
+      runner.run(doc, stats);
 
     System.out.println("Writing output: " + outpath);
     docs.writeToXML(new File(outpath));
 
     // Evaluate it if the input file had tlinks in it.
+    double[] results = null;
     if (thedocsUnchanged != null )
-      Evaluate.evaluate(thedocsUnchanged, docs, sieveClasses, sieveNameToStats);
+      results = Evaluate.evaluate(thedocsUnchanged, docs, sieveClasses,
+          sieveNameToStats);
+    if (debug) {
+      System.out.println(TreeCache.statsString());
+      System.out.println(wordnet.cacheStats());
+    }
+    return results;
+  }
+
+  /**
+   * Run the sieve pipeline on all of the given documents, without writing
+   * output or evaluating.
+   */
+  public void runSievesNoOutput(SieveDocuments docs) {
+    docs.removeAllTLinks();
+    if (force24hrDCT)
+      force24hrDCTs(docs);
+
+    SieveRunner runner = getSieveRunner();
+    SieveStats stats[] = runner.newStats();
+    for (SieveDocument doc : docs.getDocuments())
+      runner.run(doc, stats);
+  }
+
+  /**
+   * Run the sieve pipeline one document at a time: each document is read from
+   * the info file only when it is needed, and written out as soon as its links
+   * are done, so the corpus never has to fit in memory. Main uses this in
+   * place of runSieves() and markupAll() when Main.stream is true. Nothing is
+   * evaluated, since that needs every document at once.
+   * 
+   * @param markup
+   *          Mark up events and times first (the info file has only parses).
+   */
+  public void runSievesStreaming(boolean markup) {
+    if (infopath == null) {
+      System.out.println("ERROR: streaming needs an -info file.");
+      return;
+    }
+    SieveRunner runner = getSieveRunner();
+
+    System.out.println("Streaming " + infopath + " to " + outpath);
+    int numDocs = 0;
+    SieveDocumentsReader reader = null;
+    SieveDocumentsWriter writer = null;
+    try {
+      reader = new SieveDocumentsReader(infopath);
+      writer = new SieveDocumentsWriter(outpath);
+      for (SieveDocument doc : reader) {
+        if (!inDataset(doc.getDocname()))
+          continue;
+        try {
+          SieveDocuments single = new SieveDocuments();
+          single.addDocument(doc);
+          if (markup)
+            markupEventsAndTimexes(single);
+          single.removeAllTLinks();
+          if (force24hrDCT)
+            force24hrDCTs(single);
+          runner.run(doc, null);
+        } catch (RuntimeException ex) {
+          // One bad document shouldn't cost the rest of the run.
+          System.out.println("ERROR: skipping " + doc.getDocname());
+          ex.printStackTrace();
+          continue;
+        }
+        writer.write(doc);
+        // So an interrupted run keeps every document finished so far (less a
+        // few at the end when the output is gzipped).
+        writer.flush();
+        numDocs++;
+      }
+    } catch (IOException ex) {
+      System.out.println("ERROR while streaming " + infopath);
+      ex.printStackTrace();
+    } finally {
+      if (reader != null)
+        reader.close();
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException ex) {
+          System.out.println("ERROR: couldn't finish writing " + outpath);
+          ex.printStackTrace();
+        }
+      }
+    }
+    System.out.println("Wrote " + numDocs + " documents.");
+    if (debug) {
+      System.out.println(TreeCache.statsString());
+      System.out.println(wordnet.cacheStats());
+    }
+  }
+
+  /**
+   * @return True if the document is in the dataset (train, dev, test or all)
+   *         that Main is running on.
+   */
+  private boolean inDataset(String docname) {
+    if (dataset == DatasetType.TRAIN)
+      return !Evaluate.isDevDoc(docname) && !Evaluate.isTestDoc(docname);
+    else if (dataset == DatasetType.DEV)
+      return Evaluate.isDevDoc(docname);
+    else if (dataset == DatasetType.TEST)
+      return Evaluate.isTestDoc(docname);
+    return true;
   }
 
   /**
@@ -383,7 +544,7 @@ public class Main {
           if (debug)
             System.out.println(
                 sieveName + " proposed " + proposed.size() + ": " + proposed);
-          removeDuplicatesAndInvalids(proposed);
+          SieveRunner.removeDuplicatesAndInvalids(proposed);
 
           // Check proposed links.
           if (proposed != null) {
@@ -550,116 +711,6 @@ public class Main {
     return builder.toString();
   }
 
-  private void addProposedToCurrentList(String sieveName, List<TLink> proposed,
-      List<TLink> current, Map<String, TLink> currentHash) {
-    for (TLink newlink : proposed) {
-      if (currentHash.containsKey(newlink.getId1() + newlink.getId2())) {
-        System.out.println("MAIN WARNING: overwriting "
-            + currentHash.get(newlink.getId1() + newlink.getId2()) + " with "
-            + newlink);
-      }
-      current.add(newlink);
-      currentHash.put(newlink.getId1() + newlink.getId2(), newlink);
-      currentHash.put(newlink.getId2() + newlink.getId1(), newlink);
-      newlink.setOrigin(sieveName);
-    }
-  }
-
-  /**
-   * DESTRUCTIVE FUNCTION (proposedLinks will be modified) Remove a link from
-   * the given list if another link already exists in the list and covers the
-   * same event or time pair.
-   * 
-   * @param proposedLinks
-   *          A list of TLinks to check for duplicates.
-   * @return The number of duplicates found.
-   */
-  private int removeDuplicatesAndInvalids(List<TLink> proposedLinks) {
-    if (proposedLinks == null || proposedLinks.size() < 2)
-      return 0;
-
-    List<TLink> removals = new ArrayList<TLink>();
-    Set<String> seenNew = new HashSet<String>();
-
-    for (TLink proposed : proposedLinks) {
-      // Make sure we have a valid link with 2 events!
-      if (proposed.getId1() == null || proposed.getId2() == null
-          || proposed.getId1().length() == 0
-          || proposed.getId2().length() == 0) {
-        removals.add(proposed);
-        System.out.println("WARNING (proposed an invalid link): " + proposed);
-      }
-      // Remove any proposed links that are duplicates of already proposed
-      // links.
-      else if (seenNew.contains(proposed.getId1() + proposed.getId2())) {
-        removals.add(proposed);
-        System.out
-            .println("WARNING (proposed the same link twice): " + proposed);
-      }
-      // Normal link. Keep it.
-      else {
-        seenNew.add(proposed.getId1() + proposed.getId2());
-        seenNew.add(proposed.getId2() + proposed.getId1());
-      }
-    }
-
-    for (TLink remove : removals)
-      proposedLinks.remove(remove);
-
-    return removals.size();
-  }
-
-  /**
-   * DESTRUCTIVE FUNCTION (proposedLinks will be modified) Removes any links
-   * from the proposed list that already have links between the same pairs in
-   * currentLinks.
-   * 
-   * @param currentLinks
-   *          The list of current "good" links.
-   * @param proposedLinks
-   *          The list of proposed new links.
-   * @return The number of links removed.
-   */
-  private int removeConflicts(Map<String, TLink> currentLinksHash,
-      List<TLink> proposedLinks) {
-    List<TLink> removals = new ArrayList<TLink>();
-
-    // Remove duplicates.
-    int duplicates = removeDuplicatesAndInvalids(proposedLinks);
-    if (debug && duplicates > 0)
-      System.out
-          .println("\t\tRemoved " + duplicates + " duplicate proposed links.");
-
-    for (TLink proposed : proposedLinks) {
-      // Look for a current link that conflicts with this proposed link.
-      TLink current = currentLinksHash
-          .get(proposed.getId1() + proposed.getId2());
-      if (current != null && current.coversSamePair(proposed))
-        removals.add(proposed);
-    }
-
-    for (TLink remove : removals)
-      proposedLinks.remove(remove);
-
-    return removals.size() + duplicates;
-  }
-
-  /**
-   * DESTRUCTIVE FUNCTION (links may have new TLink objects appended to it) Run
-   * transitive closure and add any inferred links.
-   * 
-   * @param links
-   *          The list of TLinks to expand with transitive closure.
-   * @return The list of new links from closure (these are already added to the
-   *         given lists)
-   */
-  private List<TLink> closureExpand(String sieveName, List<TLink> links,
-      Map<String, TLink> linksHash) {
-    List<TLink> newlinks = closure.computeClosure(links, false);
-    addProposedToCurrentList(sieveName, newlinks, links, linksHash);
-    return newlinks;
-  }
-
   /**
    * Given a path to a file or directory, assumes file(s) have proper XML markup
    * with only the TEXT and DCT elements present. It is assumed the text in TEXT
@@ -674,38 +725,36 @@ public class Main {
   public void markupRawXML(String path) {
     SieveDocuments docs = new SieveDocuments();
 
-    // Initialize the parser.
-    LexicalizedParser parser = Ling.createParser(serializedGrammar);
-    if (parser == null) {
-      System.out.println("Failed to create parser from " + serializedGrammar);
-      System.exit(1);
-    }
-    TreebankLanguagePack tlp = new PennTreebankLanguagePack();
-    GrammaticalStructureFactory gsf = tlp.grammaticalStructureFactory();
-
-    // If a directory: parse a directory of XML files.
-    if (Directory.isDirectory(path)) {
-      for (String file : Directory.getFilesSorted(path)) {
-        String subpath = path + File.separator + file;
-        try {
-          SieveDocument doc = Tempeval3Parser.rawXMLtoSieveDocument(subpath,
-              parser, gsf);
-          docs.addDocument(doc);
-        } catch (Exception ex) {
-          System.out.println("ERROR while processing " + subpath);
-          ex.printStackTrace();
+    // Read the TEXT of each XML file.
+    List<String> docnames = new ArrayList<String>();
+    List<String> texts = new ArrayList<String>();
+    List<org.w3c.dom.Document> xmlDocs = new ArrayList<org.w3c.dom.Document>();
+    for (String subpath : getRawPaths(path)) {
+      try {
+        org.w3c.dom.Document xmlDoc = TimebankUtil.getXMLDoc(subpath);
+        String text = Tempeval3Parser.getRawXMLText(xmlDoc);
+        if (text == null)
+          System.out.println("ERROR: no TEXT element in " + subpath);
+        else {
+          texts.add(text);
+          docnames.add(subpath);
+          xmlDocs.add(xmlDoc);
         }
+      } catch (Exception ex) {
+        System.out.println("ERROR while processing " + subpath);
+        ex.printStackTrace();
       }
     }
-    // If a single file: parse it.
-    else {
-      try {
-        SieveDocument doc = Tempeval3Parser.rawXMLtoSieveDocument(path, parser,
-            gsf);
+
+    // Parse all the files at once, then add their creation times.
+    List<SieveDocument> parsed = parseRaw(docnames, texts);
+    for (int xx = 0; xx < parsed.size(); xx++) {
+      SieveDocument doc = parsed.get(xx);
+      if (doc == null)
+        System.out.println("ERROR while processing " + docnames.get(xx));
+      else {
+        Tempeval3Parser.addRawXMLCreationTimes(xmlDocs.get(xx), doc);
         docs.addDocument(doc);
-      } catch (Exception ex) {
-        System.out.println("ERROR while processing " + path);
-        ex.printStackTrace();
       }
     }
 
@@ -732,29 +781,19 @@ public class Main {
   public SieveDocuments markupRawText(String path) {
     SieveDocuments docs = new SieveDocuments();
 
-    // Initialize the parser.
-    LexicalizedParser parser = Ling.createParser(serializedGrammar);
-    if (parser == null) {
-      System.out.println("Failed to create parser from " + serializedGrammar);
-      System.exit(1);
-    }
-    TreebankLanguagePack tlp = new PennTreebankLanguagePack();
-    GrammaticalStructureFactory gsf = tlp.grammaticalStructureFactory();
-
-    // If a directory: parse a directory of XML files.
-    if (Directory.isDirectory(path)) {
-      for (String file : Directory.getFilesSorted(path)) {
-        String subpath = path + File.separator + file;
-        SieveDocument doc = Tempeval3Parser.rawTextFileToParsed(subpath, parser,
-            gsf);
-        docs.addDocument(doc);
-      }
-    }
-    // If a single file: parse it.
-    else {
-      SieveDocument doc = Tempeval3Parser.rawTextFileToParsed(path, parser,
-          gsf);
-      docs.addDocument(doc);
+    // Read all of the text files.
+    List<String> docnames = getRawPaths(path);
+    List<String> texts = new ArrayList<String>();
+    for (String subpath : docnames)
+      texts.add(Tempeval3Parser.readRawTextFile(subpath));
+
+    // Parse all the files at once.
+    List<SieveDocument> parsed = parseRaw(docnames, texts);
+    for (int xx = 0; xx < parsed.size(); xx++) {
+      if (parsed.get(xx) == null)
+        System.out.println("ERROR while processing " + docnames.get(xx));
+      else
+        docs.addDocument(parsed.get(xx));
     }
 
     // Markup events, times, and tlinks.
@@ -770,6 +809,90 @@ public class Main {
     return docs;
   }
 
+  /**
+   * @return The path itself if it is a file, or the paths of all files in the
+   *         directory if it is a directory.
+   */
+  private List<String> getRawPaths(String path) {
+    List<String> paths = new ArrayList<String>();
+    if (Directory.isDirectory(path)) {
+      for (String file : Directory.getFilesSorted(path))
+        paths.add(path + File.separator + file);
+    } else
+      paths.add(path);
+    return paths;
+  }
+
+  /**
+   * Loads the parser grammar the first time it is needed, and keeps it for any
+   * later raw text.
+   */
+  private ParallelParser getRawParser() {
+    if (rawParser == null) {
+      LexicalizedParser parser = Ling.createParser(serializedGrammar);
+      if (parser == null) {
+        System.out.println("Failed to create parser from " + serializedGrammar);
+        System.exit(1);
+      }
+      TreebankLanguagePack tlp = new PennTreebankLanguagePack();
+      GrammaticalStructureFactory gsf = tlp.grammaticalStructureFactory();
+      rawParser = new ParallelParser(parser, gsf, parseThreads);
+      rawParser.setMaxSentenceLength(maxSentenceLength);
+      rawParser.setTimeLimit(parseTimeLimit);
+      System.out.println("Parsing with " + rawParser.getNumThreads()
+          + " threads.");
+
+      // Reuse parses from earlier runs if there is a parse cache.
+      if (parseCacheDir != null) {
+        try {
+          rawParser.setCache(new ParseCache(parseCacheDir, serializedGrammar));
+        } catch (IOException ex) {
+          System.out.println("ERROR: couldn't open parse cache " + parseCacheDir
+              + ", parsing everything.");
+          ex.printStackTrace();
+        }
+      }
+    }
+    return rawParser;
+  }
+
+  /**
+   * Stop the parsing threads and close the parse cache, if raw text was
+   * parsed, so the cache's index is flushed to disk.
+   */
+  public void close() {
+    if (rawParser != null) {
+      rawParser.close();
+      closeCache(rawParser);
+    }
+  }
+
+  static void closeCache(ParallelParser parser) {
+    ParseCache cache = parser.getCache();
+    if (cache == null)
+      return;
+    parser.setCache(null);
+    try {
+      cache.close();
+    } catch (IOException ex) {
+      System.out.println("ERROR: couldn't close parse cache");
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Parse a batch of raw texts, and report fallback parses and the parse cache
+   * if there is one.
+   */
+  private List<SieveDocument> parseRaw(List<String> docnames,
+      List<String> texts) {
+    List<SieveDocument> parsed = getRawParser().parse(docnames, texts);
+    System.out.println(rawParser.statsString());
+    if (rawParser.getCache() != null)
+      System.out.println(rawParser.getCache().statsString());
+    return parsed;
+  }
+
   /**
    * Assumes the InfoFile has its text parsed.
    */
@@ -778,6 +901,20 @@ public class Main {
   }
 
   public void markupAll(SieveDocuments docs) {
+    markupEventsAndTimexes(docs);
+    runSieves(docs);
+  }
+
+  /**
+   * Marks up events and times, and then the TLink sieves, without writing
+   * output or evaluating. Assumes the SieveDocuments has its text parsed.
+   */
+  public void markupAllNoOutput(SieveDocuments docs) {
+    markupEventsAndTimexes(docs);
+    runSievesNoOutput(docs);
+  }
+
+  private void markupEventsAndTimexes(SieveDocuments docs) {
     markupEvents(docs);
     markupTimexes(docs);
     // Try to determine DCT based on relevant property settings
@@ -789,18 +926,13 @@ public class Main {
         ; // only if there isn't already a DCT specified!
       }
     }
-    runSieves(docs);
   }
 
   /**
    * Assumes the SieveDocuments has its text parsed.
    */
   public void markupEvents(SieveDocuments info) {
-    if (eventClassifier == null) {
-      eventClassifier = new TextEventClassifier(info, wordnet);
-      eventClassifier.loadClassifiers();
-    }
-    eventClassifier.extractEvents();
+    getEventClassifier(info).extractEvents(info);
   }
 
   /**
@@ -809,14 +941,18 @@ public class Main {
    */
   public void markupExistingEvents(String xmlPath) {
     SieveDocuments info = new SieveDocuments(xmlPath);
+    getEventClassifier(info).labelEventAttributes(info, null);
+
+    System.out.println("Writing output: " + outpath);
+    info.writeToXML(new File(outpath));
+  }
+
+  private TextEventClassifier getEventClassifier(SieveDocuments info) {
     if (eventClassifier == null) {
       eventClassifier = new TextEventClassifier(info, wordnet);
       eventClassifier.loadClassifiers();
     }
-    eventClassifier.labelEventAttributes();
-
-    System.out.println("Writing output: " + outpath);
-    info.writeToXML(new File(outpath));
+    return eventClassifier;
   }
 
   /**
@@ -825,7 +961,62 @@ public class Main {
   public void markupTimexes(SieveDocuments info) {
     if (timexClassifier == null)
       timexClassifier = new TimexClassifier(info);
-    timexClassifier.markupTimex3();
+    timexClassifier.markupTimex3(info);
+  }
+
+  /**
+   * Load everything the full pipeline needs up front: the parser grammar, the
+   * event classifiers, the SUTime pipeline, and every sieve. Closure rules and
+   * WordNet are already loaded by the constructor.
+   */
+  public void loadAll() {
+    getRawParser();
+    getEventClassifier(null);
+    if (timexClassifier == null)
+      timexClassifier = new TimexClassifier(null);
+    timexClassifier.loadPipeline();
+    getSieveRunner();
+  }
+
+  /**
+   * Parse raw text and mark it up for events, times, and tlinks. Nothing is
+   * written to disk.
+   * 
+   * @return The marked up document, or null if it could not be parsed.
+   */
+  public SieveDocuments markupRawTextString(String docname, String text) {
+    SieveDocuments docs = new SieveDocuments();
+    SieveDocument doc = getRawParser().parse(docname, text);
+    if (doc == null)
+      return null;
+    docs.addDocument(doc);
+    markupAllNoOutput(docs);
+    return docs;
+  }
+
+  /**
+   * Parse the TEXT of a raw TimeML XML string, take its creation time from the
+   * DCT, and mark it up for events, times, and tlinks. Nothing is written to
+   * disk.
+   * 
+   * @return The marked up document, or null if it could not be read or parsed.
+   */
+  public SieveDocuments markupRawXMLString(String docname, String xml) {
+    org.w3c.dom.Document xmlDoc = TimebankUtil.getXMLDocFromString(xml);
+    if (xmlDoc == null)
+      return null;
+    String text = Tempeval3Parser.getRawXMLText(xmlDoc);
+    if (text == null)
+      return null;
+
+    SieveDocuments docs = new SieveDocuments();
+    SieveDocument doc = getRawParser().parse(docname, text);
+    if (doc == null)
+      return null;
+    Tempeval3Parser.addRawXMLCreationTimes(xmlDoc, doc);
+    docs.addDocument(doc);
+    markupAllNoOutput(docs);
+    return docs;
   }
 
   public SieveDocuments getDataset(DatasetType type, SieveDocuments docs) {
@@ -839,9 +1030,10 @@ public class Main {
     else // ALL
       dataset = docs;
 
-    // Fix DCTs that aren't 24-hour days.
+    // Fix DCTs that aren't 24-hour days. Only the chosen set, so lazily
+    // loaded documents outside it are never built.
     if (force24hrDCT)
-      force24hrDCTs(docs);
+      force24hrDCTs(dataset);
 
     return dataset;
   }
@@ -864,7 +1056,14 @@ public class Main {
   public static void main(String[] args) {
     System.out.println("MAIN ARGS: " + args[args.length - 1]);
     // Properties props = StringUtils.argsToProperties(args);
-    Main main = new Main(args);
+    final Main main = new Main(args);
+
+    // Close the parse cache however the run ends, a killed server included.
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      public void run() {
+        main.close();
+      }
+    });
 
     // Test each sieve's precision independently.
     // Runs each sieve and evaluates its proposed links against the input -info
@@ -877,10 +1076,14 @@ public class Main {
     // events/times first.
     else if (args.length > 0 && args[args.length - 1].equalsIgnoreCase("parsed")) {
       System.out.println("Marking up time!");
-      main.markupAll();
-      String outfile = args[args.length-2] + ".withtime";
-      System.out.println("Writing output: " + outfile);
-      main.thedocs.writeToXML(new File(outfile));
+      if (main.stream)
+        main.runSievesStreaming(true);
+      else {
+        main.markupAll();
+        String outfile = args[args.length-2] + ".withtime";
+        System.out.println("Writing output: " + outfile);
+        main.thedocs.writeToXML(new File(outfile));
+      }
     }
 
     // Give a text file or a directory of text files. Parses and marks it up.
@@ -896,6 +1099,23 @@ public class Main {
       main.markupRawXML(args[args.length - 2]);
     }
 
+    // Load everything once and serve requests until killed.
+    else if (args.length > 0
+        && args[args.length - 1].equalsIgnoreCase("server")) {
+      main.dataset = DatasetType.ALL;
+      Properties props = StringUtils.argsToProperties(args);
+      int port = CaevoServer.DEFAULT_PORT;
+      if (props.containsKey("port"))
+        port = Integer.parseInt(props.getProperty("port"));
+      try {
+        new CaevoServer(main, port).start();
+      } catch (IOException ex) {
+        System.out.println("ERROR: couldn't start server on port " + port);
+        ex.printStackTrace();
+        System.exit(1);
+      }
+    }
+
     // The given SieveDocuments only has text and parses, so extract
     // events/times first.
     else if (args.length > 0
@@ -914,7 +1134,10 @@ public class Main {
     // SieveDocuments.
     else {
       System.out.println("else!");
-      main.runSieves();
+      if (main.stream)
+        main.runSievesStreaming(false);
+      else
+        main.runSieves();
     }
   }
 }
@@ -0,0 +1,454 @@
+package caevo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import caevo.util.Ling;
+import caevo.util.Pair;
+import caevo.util.ParseCache;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParserQuery;
+import edu.stanford.nlp.tagger.maxent.MaxentTagger;
+import edu.stanford.nlp.trees.GrammaticalStructureFactory;
+import edu.stanford.nlp.trees.LabeledScoredTreeFactory;
+import edu.stanford.nlp.trees.PennTreebankLanguagePack;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeFactory;
+
+/**
+ * Parses the sentences of a batch of raw text documents across a pool of
+ * threads. All threads share one loaded grammar, and each thread parses with
+ * its own parser query. Sentences from all documents are scheduled
+ * longest-first, so the slowest parses don't end up alone at the end of the
+ * batch. The SieveDocuments are reassembled in their original order.
+ *
+ * If given a ParseCache, sentences already in the cache skip the parser, and
+ * new parses are added to it.
+ *
+ * The parsing threads, and so their parser queries, live as long as the
+ * ParallelParser and are reused for every batch. Call close() when done with
+ * it to stop them.
+ *
+ * Sentences longer than maxSentenceLength, sentences the parser can't finish
+ * within the per-sentence time limit, and sentences that fail to parse all get
+ * a fallback analysis instead: a flat tree over POS tags from a tagger, and
+ * whatever dependencies can be read off of that tree. Fallback parses are
+ * counted (see statsString()) and never cached. The parser can't be stopped
+ * mid-sentence, so a timed-out parse keeps running on its own thread until it
+ * finishes, but nobody waits for it. There are only as many of those threads
+ * as parsing threads; while all of them are stuck, other timed parses wait out
+ * their limit and fall back.
+ */
+public class ParallelParser {
+  private final LexicalizedParser parser;
+  private final GrammaticalStructureFactory gsf;
+  private final int numThreads;
+  private ParseCache cache = null;
+
+  // Zero means no limit.
+  private int maxSentenceLength = 0;
+  private volatile long timeLimitMillis = 0;
+
+  // Fallback counts.
+  private final AtomicInteger numTooLong = new AtomicInteger();
+  private final AtomicInteger numTimedOut = new AtomicInteger();
+  private final AtomicInteger numFailed = new AtomicInteger();
+
+  // Parses batches of sentences, created on first use.
+  private ExecutorService pool = null;
+
+  // Runs parses that have a time limit, so the caller can stop waiting. It has
+  // as many threads as the pool, so runaway parses can't pile up threads.
+  private ExecutorService timedRunner = null;
+
+  // Tags sentences for fallback trees, loaded the first time it is needed.
+  public static final String posTaggerModel = "edu/stanford/nlp/models/pos-tagger/english-left3words/english-left3words-distsim.tagger";
+  private MaxentTagger tagger = null;
+  private boolean taggerFailed = false;
+
+  // A parser query holds the charts for one parse at a time, so every thread
+  // needs its own. The grammar behind them is shared.
+  private final ThreadLocal<LexicalizedParserQuery> queries = new ThreadLocal<LexicalizedParserQuery>() {
+    @Override
+    protected LexicalizedParserQuery initialValue() {
+      return parser.parserQuery();
+    }
+  };
+
+  /**
+   * Loads the grammar at the given path.
+   */
+  public ParallelParser(String grammarPath, int numThreads) {
+    this(Ling.createParser(grammarPath),
+        new PennTreebankLanguagePack().grammaticalStructureFactory(),
+        numThreads);
+  }
+
+  public ParallelParser(LexicalizedParser parser,
+      GrammaticalStructureFactory gsf, int numThreads) {
+    this.parser = parser;
+    this.gsf = gsf;
+    this.numThreads = Math.max(1, numThreads);
+  }
+
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  public void setCache(ParseCache cache) {
+    this.cache = cache;
+  }
+
+  public ParseCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Sentences with more tokens than this are not given to the parser.
+   * 
+   * @param max
+   *          Maximum number of tokens, or zero for no limit.
+   */
+  public void setMaxSentenceLength(int max) {
+    maxSentenceLength = Math.max(0, max);
+  }
+
+  /**
+   * Stop waiting for the parser after this long on one sentence.
+   * 
+   * @param millis
+   *          Time limit per sentence, or zero for no limit.
+   */
+  public synchronized void setTimeLimit(long millis) {
+    timeLimitMillis = Math.max(0, millis);
+  }
+
+  /**
+   * Stop the parsing threads. A parse still running past its time limit is
+   * interrupted, and finishes on its own if the parser ignores that. Parsing
+   * again starts new threads.
+   */
+  public synchronized void close() {
+    if (pool != null)
+      pool.shutdownNow();
+    if (timedRunner != null)
+      timedRunner.shutdownNow();
+    pool = null;
+    timedRunner = null;
+  }
+
+  private synchronized ExecutorService getPool() {
+    if (pool == null)
+      pool = Executors.newFixedThreadPool(numThreads, daemonThreads("parse"));
+    return pool;
+  }
+
+  private synchronized ExecutorService getTimedRunner() {
+    if (timedRunner == null)
+      timedRunner = Executors.newFixedThreadPool(numThreads,
+          daemonThreads("timed-parse"));
+    return timedRunner;
+  }
+
+  /**
+   * Daemon threads, so a runaway parse or a parser nobody closed can't keep
+   * the JVM alive.
+   */
+  private static ThreadFactory daemonThreads(final String name) {
+    return new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  public int getNumTooLong() {
+    return numTooLong.get();
+  }
+
+  public int getNumTimedOut() {
+    return numTimedOut.get();
+  }
+
+  public int getNumFailed() {
+    return numFailed.get();
+  }
+
+  /**
+   * @return Counts of sentences that got a fallback parse, and why.
+   */
+  public String statsString() {
+    return "Fallback parses: " + numTooLong + " too long (max "
+        + maxSentenceLength + "), " + numTimedOut + " timed out (limit "
+        + timeLimitMillis + "ms), " + numFailed + " failed.";
+  }
+
+  /**
+   * Tokenize and parse a single document of raw text.
+   *
+   * @return The parsed document, or null if parsing failed.
+   */
+  public SieveDocument parse(String docname, String text) {
+    return parse(Collections.singletonList(docname),
+        Collections.singletonList(text)).get(0);
+  }
+
+  /**
+   * Tokenize and parse a batch of raw text documents.
+   *
+   * @param docnames
+   *          The name of each document.
+   * @param texts
+   *          The raw text of each document, same order as the names.
+   * @return One SieveDocument per input, in input order. A document is null if
+   *         any of its sentences failed to parse.
+   */
+  public List<SieveDocument> parse(List<String> docnames, List<String> texts) {
+    List<List<List<HasWord>>> docSentences = new ArrayList<List<List<HasWord>>>();
+    List<List<Pair<String, String>>> docParses = new ArrayList<List<Pair<String, String>>>();
+    List<ParseJob> jobs = new ArrayList<ParseJob>();
+
+    // Tokenize everything up front so sentences can be scheduled by length.
+    for (int doci = 0; doci < texts.size(); doci++) {
+      List<List<HasWord>> sentences = Tempeval3Parser
+          .rawTextToSentences(texts.get(doci));
+      List<Pair<String, String>> parses = new ArrayList<Pair<String, String>>();
+      for (int sid = 0; sid < sentences.size(); sid++) {
+        parses.add(null);
+        jobs.add(new ParseJob(doci, sid, sentences.get(sid)));
+      }
+      docSentences.add(sentences);
+      docParses.add(parses);
+    }
+    Collections.sort(jobs);
+
+    boolean[] failed = new boolean[texts.size()];
+    if (numThreads == 1 || jobs.size() < 2) {
+      for (ParseJob job : jobs) {
+        try {
+          docParses.get(job.doci).set(job.sid, parseDep(job.sentence));
+        } catch (RuntimeException ex) {
+          failParse(docnames.get(job.doci), job, ex, failed);
+        }
+      }
+    } else
+      parseInPool(jobs, docnames, docParses, failed);
+
+    // Reassemble the documents in order.
+    List<SieveDocument> docs = new ArrayList<SieveDocument>();
+    for (int doci = 0; doci < texts.size(); doci++) {
+      if (failed[doci])
+        docs.add(null);
+      else
+        docs.add(Tempeval3Parser.sentencesToSieveDocument(docnames.get(doci),
+            docSentences.get(doci), docParses.get(doci)));
+    }
+    return docs;
+  }
+
+  private void parseInPool(List<ParseJob> jobs, List<String> docnames,
+      List<List<Pair<String, String>>> docParses, boolean[] failed) {
+    ExecutorService pool = getPool();
+    List<Future<Pair<String, String>>> futures = new ArrayList<Future<Pair<String, String>>>();
+    try {
+      // Jobs are sorted longest first, and the pool takes them in that order.
+      for (final ParseJob job : jobs) {
+        futures.add(pool.submit(new Callable<Pair<String, String>>() {
+          public Pair<String, String> call() {
+            return parseDep(job.sentence);
+          }
+        }));
+      }
+
+      for (int xx = 0; xx < jobs.size(); xx++) {
+        ParseJob job = jobs.get(xx);
+        try {
+          docParses.get(job.doci).set(job.sid, futures.get(xx).get());
+        } catch (ExecutionException ex) {
+          failParse(docnames.get(job.doci), job, ex.getCause(), failed);
+        }
+      }
+    } catch (InterruptedException ex) {
+      for (Future<Pair<String, String>> future : futures)
+        future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while parsing", ex);
+    }
+  }
+
+  private void failParse(String docname, ParseJob job, Throwable ex,
+      boolean[] failed) {
+    System.out.println("ERROR while parsing sentence " + job.sid + " of "
+        + docname);
+    ex.printStackTrace();
+    failed[job.doci] = true;
+  }
+
+  /**
+   * Parse one sentence with this thread's parser query, or fetch its parse from
+   * the cache. Falls back to a cheap analysis if the sentence is too long, takes
+   * too long, or fails to parse.
+   */
+  private Pair<String, String> parseDep(List<HasWord> sentence) {
+    if (cache != null) {
+      Pair<String, String> cached = cache.get(sentence);
+      if (cached != null)
+        return cached;
+    }
+
+    if (maxSentenceLength > 0 && sentence.size() > maxSentenceLength) {
+      numTooLong.incrementAndGet();
+      System.out.println("Sentence too long to parse (" + sentence.size()
+          + " tokens), using fallback.");
+      return fallbackParseDep(sentence);
+    }
+
+    Pair<String, String> parseDep;
+    try {
+      if (timeLimitMillis > 0)
+        parseDep = parseDepTimed(sentence);
+      else
+        parseDep = Tempeval3Parser.parseDep(sentence, queries.get(), gsf);
+    } catch (TimeoutException ex) {
+      numTimedOut.incrementAndGet();
+      System.out.println("Sentence parse timed out after " + timeLimitMillis
+          + "ms (" + sentence.size() + " tokens), using fallback.");
+      return fallbackParseDep(sentence);
+    } catch (RuntimeException ex) {
+      numFailed.incrementAndGet();
+      System.out.println("ERROR: " + ex.getMessage() + ", using fallback.");
+      return fallbackParseDep(sentence);
+    }
+
+    if (cache != null)
+      cache.put(sentence, parseDep);
+    return parseDep;
+  }
+
+  /**
+   * Parse on a runner thread, and give up waiting after the time limit. Each
+   * runner thread keeps its own parser query, like the parsing threads.
+   */
+  private Pair<String, String> parseDepTimed(final List<HasWord> sentence)
+      throws TimeoutException {
+    Future<Pair<String, String>> future = getTimedRunner().submit(
+        new Callable<Pair<String, String>>() {
+          public Pair<String, String> call() {
+            return Tempeval3Parser.parseDep(sentence, queries.get(), gsf);
+          }
+        });
+    try {
+      return future.get(timeLimitMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException ex) {
+      future.cancel(true);
+      throw ex;
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException)
+        throw (RuntimeException) ex.getCause();
+      throw new RuntimeException(ex.getCause());
+    } catch (InterruptedException ex) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while parsing", ex);
+    }
+  }
+
+  /**
+   * A cheap stand-in for a full parse: a flat (ROOT (S ...)) tree over the
+   * sentence's POS tags, with dependencies read off of that tree. Each token
+   * stays a leaf, so token indices still line up with the sentence.
+   */
+  public Pair<String, String> fallbackParseDep(List<HasWord> sentence) {
+    TreeFactory tf = new LabeledScoredTreeFactory();
+    List<String> tags = tag(sentence);
+    List<Tree> preterminals = new ArrayList<Tree>();
+    for (int ii = 0; ii < sentence.size(); ii++) {
+      Tree leaf = tf.newLeaf(sentence.get(ii).word());
+      preterminals.add(tf.newTreeNode(tags.get(ii),
+          Collections.singletonList(leaf)));
+    }
+    Tree root = tf.newTreeNode("ROOT",
+        Collections.singletonList(tf.newTreeNode("S", preterminals)));
+    String parseString = root.toString();
+
+    String depString = "";
+    try {
+      depString = Tempeval3Parser.lexParseToDeps(root, gsf);
+    } catch (RuntimeException ex) {
+      System.out.println("ERROR: no dependencies for fallback tree.");
+    }
+    return new Pair<String, String>(parseString, depString);
+  }
+
+  /**
+   * @return One POS tag per token, all NN if the tagger can't be loaded.
+   */
+  private List<String> tag(List<HasWord> sentence) {
+    List<String> tags = new ArrayList<String>();
+    MaxentTagger localTagger = getTagger();
+    if (localTagger != null) {
+      List<TaggedWord> tagged;
+      // Fallbacks are rare, so don't bother with a tagger per thread.
+      synchronized (localTagger) {
+        tagged = localTagger.tagSentence(sentence);
+      }
+      if (tagged.size() == sentence.size()) {
+        for (TaggedWord word : tagged)
+          tags.add(word.tag());
+        return tags;
+      }
+    }
+    for (int ii = 0; ii < sentence.size(); ii++)
+      tags.add("NN");
+    return tags;
+  }
+
+  private synchronized MaxentTagger getTagger() {
+    if (tagger == null && !taggerFailed) {
+      try {
+        tagger = new MaxentTagger(posTaggerModel);
+      } catch (Exception ex) {
+        System.out.println("ERROR: couldn't load POS tagger " + posTaggerModel);
+        ex.printStackTrace();
+        taggerFailed = true;
+      }
+    }
+    return tagger;
+  }
+
+  /**
+   * One sentence to parse, and where its parse goes.
+   */
+  private static class ParseJob implements Comparable<ParseJob> {
+    final int doci;
+    final int sid;
+    final List<HasWord> sentence;
+
+    ParseJob(int doci, int sid, List<HasWord> sentence) {
+      this.doci = doci;
+      this.sid = sid;
+      this.sentence = sentence;
+    }
+
+    /**
+     * Longest sentences sort first.
+     */
+    public int compareTo(ParseJob other) {
+      return other.sentence.size() - sentence.size();
+    }
+  }
+}
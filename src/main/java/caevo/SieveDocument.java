@@ -4,7 +4,9 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.PrintWriter;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -20,7 +22,7 @@ import caevo.tlink.EventEventLink;
 import caevo.tlink.EventTimeLink;
 import caevo.tlink.TLink;
 import caevo.tlink.TimeTimeLink;
-import edu.stanford.nlp.ling.CoreAnnotations;
+import caevo.util.LabelTable;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.TypedDependency;
@@ -38,15 +40,31 @@ public class SieveDocument {
   private List<Timex> dcts;
   private List<TLink> tlinks;
 
-  private HashMap<String, TextEvent> eiidToEvent;
-  private HashMap<String, Timex> tidToTimex;
+  // Every eiid and tid, the DCTs' included, gets a dense int id as it is
+  // added. The lists are indexed by that id.
+  private HashMap<String, Integer> entityIds;
+  private List<String> entityNames;
+  private List<Object> entities;
 
   private List<List<TextEvent>> eventCorefSets;
 
+  // Strings of this document's encoded parses, created on first use.
+  private LabelTable labelTable;
+
+  // Unmodifiable lists handed out by the getters below, built on first use
+  // and dropped when sentences, events or timexes are added.
+  private List<TextEvent> eventsView;
+  private List<Timex> timexesView;
+  private List<List<TextEvent>> eventsBySentenceView;
+  private List<List<Timex>> timexesBySentenceView;
+  private List<Tree> treesView;
+  private List<List<TypedDependency>> depsView;
+
   public SieveDocument(String name) {
     docname = name;
-    eiidToEvent = new HashMap<String, TextEvent>();
-    tidToTimex = new HashMap<String, Timex>();
+    entityIds = new HashMap<String, Integer>();
+    entityNames = new ArrayList<String>();
+    entities = new ArrayList<Object>();
 
     eventCorefSets = new ArrayList<List<TextEvent>>();
   }
@@ -78,6 +96,7 @@ public class SieveDocument {
     sentences.add(sent);
     addTimexesToTidMap(timexes);
     addEventsToEiidMap(events);
+    clearViews();
   }
 
   public void addSentence(SieveSentence sent) {
@@ -86,6 +105,7 @@ public class SieveDocument {
     sentences.add(sent);
     addTimexesToTidMap(sent.timexes());
     addEventsToEiidMap(sent.events());
+    clearViews();
   }
 
   /**
@@ -96,6 +116,7 @@ public class SieveDocument {
       sentences = new ArrayList<SieveSentence>();
     sentences.get(sid).addEvents(events);
     addEventsToEiidMap(events);
+    clearViews();
   }
 
   /**
@@ -116,6 +137,19 @@ public class SieveDocument {
       sentences = new ArrayList<SieveSentence>();
     sentences.get(sid).addTimexes(timexes);
     addTimexesToTidMap(timexes);
+    clearViews();
+  }
+
+  /**
+   * Drop the cached lists. They are rebuilt on the next get.
+   */
+  private void clearViews() {
+    eventsView = null;
+    timexesView = null;
+    eventsBySentenceView = null;
+    timexesBySentenceView = null;
+    treesView = null;
+    depsView = null;
   }
 
   private void addEventsToEiidMap(List<TextEvent> events) {
@@ -123,7 +157,7 @@ public class SieveDocument {
       for (TextEvent event : events) {
         List<String> eiids = event.getAllEiids();
         for (String eiid : eiids)
-          eiidToEvent.put(eiid, event);
+          addEntity(eiid, event);
       }
     }
   }
@@ -131,14 +165,73 @@ public class SieveDocument {
   private void addTimexesToTidMap(List<Timex> timexes) {
     if (timexes != null) {
       for (Timex timex : timexes) {
-        tidToTimex.put(timex.getTid(), timex);
+        addEntity(timex.getTid(), timex);
       }
     }
   }
 
   private void addTimexToTidMap(Timex timex) {
     if (timex != null)
-      tidToTimex.put(timex.getTid(), timex);
+      addEntity(timex.getTid(), timex);
+  }
+
+  /**
+   * Give the eiid or tid the next int id, or point its existing id at the new
+   * object.
+   */
+  private void addEntity(String name, Object entity) {
+    if (name == null)
+      return;
+    Integer id = entityIds.get(name);
+    if (id == null) {
+      entityIds.put(name, entities.size());
+      entityNames.add(name);
+      entities.add(entity);
+    } else
+      entities.set(id, entity);
+  }
+
+  /**
+   * @return The int id of an eiid or tid, or -1 if the document has no such
+   *         event or timex. Ids run from 0 to numEntityIds()-1.
+   */
+  public int getEntityId(String name) {
+    Integer id = entityIds.get(name);
+    return (id == null ? -1 : id);
+  }
+
+  /**
+   * @return The eiid or tid with this int id.
+   */
+  public String getEntityName(int id) {
+    return entityNames.get(id);
+  }
+
+  public int numEntityIds() {
+    return entities.size();
+  }
+
+  public boolean isEventId(int id) {
+    return id >= 0 && id < entities.size()
+        && entities.get(id) instanceof TextEvent;
+  }
+
+  public boolean isTimexId(int id) {
+    return id >= 0 && id < entities.size() && entities.get(id) instanceof Timex;
+  }
+
+  /**
+   * @return The event with this int id, or null if it is not an event.
+   */
+  public TextEvent getEventById(int id) {
+    return (isEventId(id) ? (TextEvent) entities.get(id) : null);
+  }
+
+  /**
+   * @return The timex with this int id, or null if it is not a timex.
+   */
+  public Timex getTimexById(int id) {
+    return (isTimexId(id) ? (Timex) entities.get(id) : null);
   }
 
   /**
@@ -219,20 +312,21 @@ public class SieveDocument {
 
   /**
    * @return A List of Lists of all Timex objects. This does not return the
-   *         document creation time!
+   *         document creation time! The lists are unmodifiable and shared by
+   *         all callers.
    * 
    */
   public List<List<Timex>> getTimexesBySentence() {
-    if (sentences == null)
-      sentences = new ArrayList<SieveSentence>();
+    if (timexesBySentenceView == null) {
+      List<List<Timex>> timexes = new ArrayList<List<Timex>>();
 
-    List<List<Timex>> timexes = new ArrayList<List<Timex>>();
+      // Timexes in each sentence.
+      for (SieveSentence sent : getSentences())
+        timexes.add(Collections.unmodifiableList(sent.timexes()));
 
-    // Timexes in each sentence.
-    for (SieveSentence sent : sentences)
-      timexes.add(sent.timexes());
-
-    return timexes;
+      timexesBySentenceView = Collections.unmodifiableList(timexes);
+    }
+    return timexesBySentenceView;
   }
 
   /**
@@ -249,55 +343,55 @@ public class SieveDocument {
 
   /**
    * @return A List of all Timex objects, including the document creation time.
+   *         The list is unmodifiable and shared by all callers.
    */
   public List<Timex> getTimexes() {
-    if (sentences == null)
-      sentences = new ArrayList<SieveSentence>();
+    if (timexesView == null) {
+      List<Timex> timexes = new ArrayList<Timex>();
 
-    List<Timex> timexes = new ArrayList<Timex>();
+      // Timexes in each sentence.
+      for (SieveSentence sent : getSentences())
+        timexes.addAll(sent.timexes());
 
-    // Timexes in each sentence.
-    for (SieveSentence sent : sentences)
-      timexes.addAll(sent.timexes());
+      // Document time stamps.
+      if (dcts != null)
+        timexes.addAll(dcts);
 
-    // Document time stamps.
-    if (dcts != null)
-      timexes.addAll(dcts);
-
-    return timexes;
+      timexesView = Collections.unmodifiableList(timexes);
+    }
+    return timexesView;
   }
 
   public Timex getTimexByTid(String tid) {
-    if (tidToTimex.containsKey(tid))
-      return tidToTimex.get(tid);
-    else
-      return null;
+    return getTimexById(getEntityId(tid));
   }
 
   /**
-   * @return A List of all Event objects in one document (file parameter)
+   * @return A List of all Event objects in one document (file parameter). The
+   *         lists are unmodifiable and shared by all callers.
    */
   public List<List<TextEvent>> getEventsBySentence() {
-    if (sentences == null)
-      sentences = new ArrayList<SieveSentence>();
-
-    List<List<TextEvent>> allEvents = new ArrayList<List<TextEvent>>();
-    for (SieveSentence sent : sentences)
-      allEvents.add(sent.events());
-    return allEvents;
+    if (eventsBySentenceView == null) {
+      List<List<TextEvent>> allEvents = new ArrayList<List<TextEvent>>();
+      for (SieveSentence sent : getSentences())
+        allEvents.add(Collections.unmodifiableList(sent.events()));
+      eventsBySentenceView = Collections.unmodifiableList(allEvents);
+    }
+    return eventsBySentenceView;
   }
 
   /**
-   * @return A List of all Event objects in one document (file parameter)
+   * @return A List of all Event objects in one document (file parameter). The
+   *         list is unmodifiable and shared by all callers.
    */
   public List<TextEvent> getEvents() {
-    if (sentences == null)
-      sentences = new ArrayList<SieveSentence>();
-
-    List<TextEvent> events = new ArrayList<TextEvent>();
-    for (SieveSentence sent : sentences)
-      events.addAll(sent.events());
-    return events;
+    if (eventsView == null) {
+      List<TextEvent> events = new ArrayList<TextEvent>();
+      for (SieveSentence sent : getSentences())
+        events.addAll(sent.events());
+      eventsView = Collections.unmodifiableList(events);
+    }
+    return eventsView;
   }
 
   public List<List<TextEvent>> getEventCorefSets() {
@@ -305,10 +399,7 @@ public class SieveDocument {
   }
 
   public TextEvent getEventByEiid(String eiid) {
-    if (eiidToEvent.containsKey(eiid))
-      return eiidToEvent.get(eiid);
-    else
-      return null;
+    return getEventById(getEntityId(eiid));
   }
 
   /**
@@ -330,6 +421,7 @@ public class SieveDocument {
       dcts = new ArrayList<Timex>();
     dcts.add(timex);
     addTimexToTidMap(timex);
+    timexesView = null;
   }
 
   /**
@@ -347,30 +439,56 @@ public class SieveDocument {
   }
 
   /**
-   * @return A List of Strings that are parse trees
+   * @return The table that this document's encoded parses and dependencies
+   *         take their label ids from.
+   */
+  public synchronized LabelTable getLabelTable() {
+    if (labelTable == null)
+      labelTable = new LabelTable();
+    return labelTable;
+  }
+
+  /**
+   * @return The parse trees, one per sentence, as an unmodifiable list shared
+   *         by all callers. Its get() asks the sentence each time, so the trees
+   *         stay in the TreeCache's budget rather than held here; hold on to
+   *         the returned tree if you compare its nodes by identity.
    */
   public List<Tree> getAllParseTrees() {
-    if (sentences == null)
-      sentences = new ArrayList<SieveSentence>();
+    if (treesView == null) {
+      final List<SieveSentence> sents = getSentences();
+      treesView = new AbstractList<Tree>() {
+        public Tree get(int index) {
+          return sents.get(index).getParseTree();
+        }
 
-    List<Tree> trees = new ArrayList<Tree>();
-    for (SieveSentence sent : sentences)
-      trees.add(sent.getParseTree());
-    return trees;
+        public int size() {
+          return sents.size();
+        }
+      };
+    }
+    return treesView;
   }
 
   /**
-   * @return A List of Strings, one string per sentence, representing
-   *         dependencies.
+   * @return The typed dependencies, one list per sentence, as an unmodifiable
+   *         list shared by all callers. Like getAllParseTrees(), its get() asks
+   *         the sentence each time.
    */
   public List<List<TypedDependency>> getAllDependencies() {
-    if (sentences == null)
-      sentences = new ArrayList<SieveSentence>();
+    if (depsView == null) {
+      final List<SieveSentence> sents = getSentences();
+      depsView = new AbstractList<List<TypedDependency>>() {
+        public List<TypedDependency> get(int index) {
+          return sents.get(index).getDeps();
+        }
 
-    List<List<TypedDependency>> alldeps = new ArrayList<List<TypedDependency>>();
-    for (SieveSentence sent : sentences)
-      alldeps.add(sent.getDeps());
-    return alldeps;
+        public int size() {
+          return sents.size();
+        }
+      };
+    }
+    return depsView;
   }
 
   public String markupOriginalText() {
@@ -400,7 +518,7 @@ public class SieveDocument {
     System.out.println("markup " + docname + " containing " + sentences.size()
         + " sentences.");
     for (SieveSentence sent : sentences) {
-      List<CoreLabel> tokens = sent.tokens();
+      SieveTokens tokens = sent.tokens();
       // Grab the events.
       Map<Integer, TextEvent> indexToEvents = new HashMap<Integer, TextEvent>();
       if (sent.events() != null)
@@ -414,9 +532,9 @@ public class SieveDocument {
       Set<Integer> endTimexes = new HashSet<Integer>();
 
       int ii = 1;
-      for (CoreLabel token : tokens) {
+      for (int ti = 0; ti < tokens.size(); ti++) {
         if (firstToken) {
-          buf.append(token.getString(CoreAnnotations.BeforeAnnotation.class));
+          buf.append(tokens.before(ti));
           firstToken = false;
         }
         boolean endevent = false;
@@ -448,8 +566,7 @@ public class SieveDocument {
         }
 
         // Print the token.
-        String str = token
-            .getString(CoreAnnotations.OriginalTextAnnotation.class);
+        String str = tokens.text(ti);
         // System.out.println("token=" + str + " len=" + str.length());
         str = str.replaceAll("&", "&amp;");
         // System.out.println("\tnow=" + str);
@@ -460,14 +577,14 @@ public class SieveDocument {
         if (endTimexes.contains(ii))
           buf.append("</TIMEX3>");
 
-        buf.append(token.getString(CoreAnnotations.AfterAnnotation.class));
+        buf.append(tokens.after(ti));
         ii++;
       }
     }
     return buf.toString();
   }
 
-  private static TLink tlinkFromElement(Element el) {
+  static TLink tlinkFromElement(Element el) {
     if (el.getAttributeValue(TLink.TLINK_TYPE_ATT)
         .equals(TLink.EVENT_EVENT_TYPE_VALUE))
       return new EventEventLink(el);
@@ -554,14 +671,14 @@ public class SieveDocument {
           + link.getRelation().toString() + "\" ";
 
       if (link instanceof EventEventLink
-          || (link instanceof EventTimeLink && link.getId1().startsWith("e")))
+          || (link instanceof EventTimeLink && !link.isTimex1()))
         str += "eventInstanceID=\"";
       else
         str += "timeID=\"";
       str += link.getId1() + "\" ";
 
       if (link instanceof EventEventLink
-          || (link instanceof EventTimeLink && link.getId2().startsWith("e")))
+          || (link instanceof EventTimeLink && !link.isTimex2()))
         str += "relatedToEventInstance=\"";
       else
         str += "relatedToTime=\"";
@@ -1,8 +1,9 @@
 package caevo;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -12,7 +13,6 @@ import java.util.Set;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.Namespace;
-import org.jdom.input.SAXBuilder;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 
@@ -41,6 +41,10 @@ public class SieveDocuments {
   public static String FILE_ELEM = "file";
   public static String FILENAME_ELEM = "name";
 
+  // Threads that build documents while an info file is read.
+  private static volatile int loadThreads = Math.min(4, Runtime.getRuntime()
+      .availableProcessors());
+
   public SieveDocuments() {
   }
 
@@ -48,6 +52,18 @@ public class SieveDocuments {
     readFromXML(filepath);
   }
 
+  /**
+   * Set how many threads build documents while an info file is read. 1 builds
+   * them one after another as they are read.
+   */
+  public static void setLoadThreads(int numThreads) {
+    loadThreads = Math.max(1, numThreads);
+  }
+
+  public static int getLoadThreads() {
+    return loadThreads;
+  }
+
   /**
    * @return A Vector of String file names
    */
@@ -58,6 +74,17 @@ public class SieveDocuments {
       return null;
   }
 
+  /**
+   * @return The document names, in the order the documents were added.
+   */
+  public List<String> getDocnames() {
+    List<String> names = new ArrayList<String>();
+    if (documents != null)
+      for (SieveDocument doc : documents)
+        names.add(doc.getDocname());
+    return names;
+  }
+
   public List<SieveDocument> getDocuments() {
     return documents;
   }
@@ -82,8 +109,41 @@ public class SieveDocuments {
     readFromXML(new File(path));
   }
 
+  /**
+   * Read an info XML file, or a binary one written by BinarySieveDocuments.
+   */
   public void readFromXML(File file) {
-    // Reset the documents list.
+    clearDocuments();
+
+    try {
+      if (BinarySieveDocuments.isBinary(file.getPath()))
+        readFromBinary(new BinarySieveDocuments(file.getPath()));
+      else
+        readFromXML(new SieveDocumentsReader(file.getPath(), loadThreads));
+    } catch (Exception e) {
+      // Like a file that doesn't parse at all, rather than a short corpus.
+      clearDocuments();
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Read the documents from an XML stream, such as a server request.
+   */
+  public void readFromXML(InputStream in) {
+    clearDocuments();
+    try {
+      readFromXML(new SieveDocumentsReader(in, loadThreads));
+    } catch (Exception e) {
+      clearDocuments();
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Reset the documents list.
+   */
+  private void clearDocuments() {
     if (documents == null)
       documents = new ArrayList<SieveDocument>();
     else
@@ -92,24 +152,35 @@ public class SieveDocuments {
       nameToDocument = new HashMap<String, SieveDocument>();
     else
       nameToDocument.clear();
+  }
 
-    // Read the XML file.
-    SAXBuilder builder = new SAXBuilder();
+  /**
+   * Builds the documents one <file> element at a time, rather than building
+   * the whole XML tree first and holding it alongside the documents. The
+   * reader builds several at once, but hands them back in file order.
+   */
+  private void readFromXML(SieveDocumentsReader reader) {
     try {
-      Namespace ns = Namespace.getNamespace(INFO_NS);
-      Document jdomDoc = builder.build(file);
-
-      Element root = jdomDoc.getRootElement();
-      List children = root.getChildren(FILE_ELEM, ns);
-      System.out.println("Got " + children.size() + " file elements.");
-      for (Object obj : children) {
-        SieveDocument doc = SieveDocument.fromXML((Element) obj);
+      for (SieveDocument doc : reader) {
         documents.add(doc);
         nameToDocument.put(doc.getDocname(), doc);
       }
-    } catch (Exception e) {
-      e.printStackTrace();
+    } finally {
+      reader.close();
     }
+    System.out.println("Got " + documents.size() + " file elements.");
+  }
+
+  private void readFromBinary(BinarySieveDocuments binary) throws IOException {
+    try {
+      for (SieveDocument doc : binary) {
+        documents.add(doc);
+        nameToDocument.put(doc.getDocname(), doc);
+      }
+    } finally {
+      binary.close();
+    }
+    System.out.println("Got " + documents.size() + " binary documents.");
   }
 
   /**
@@ -132,8 +203,8 @@ public class SieveDocuments {
     Element root = new Element("root", ns);
     jdomDoc.setRootElement(root);
 
-    for (SieveDocument doc : documents)
-      root.addContent(doc.toXML());
+    for (String docname : getDocnames())
+      root.addContent(getDocument(docname).toXML());
 
     return jdomDoc;
   }
@@ -142,19 +213,31 @@ public class SieveDocuments {
     writeToXML(new File(path));
   }
 
+  /**
+   * Write the documents to a file one at a time, without building the whole
+   * XML tree first. Gzipped if the file name ends with .gz.
+   */
   public void writeToXML(File file) {
     try {
-      FileOutputStream out = new FileOutputStream(file);
-      XMLOutputter op = new XMLOutputter(Format.getPrettyFormat());
-      Document jdomDoc = toXML();
-      op.output(jdomDoc, out);
-      out.flush();
-      out.close();
+      SieveDocumentsWriter writer = new SieveDocumentsWriter(file.getPath());
+      for (String docname : getDocnames())
+        writer.write(getDocument(docname));
+      writer.close();
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
+  /**
+   * Write the documents as XML to a stream. Does not close the stream.
+   */
+  public void writeToXML(OutputStream out) throws IOException {
+    XMLOutputter op = new XMLOutputter(Format.getPrettyFormat());
+    Document jdomDoc = toXML();
+    op.output(jdomDoc, out);
+    out.flush();
+  }
+
   public void outputMarkedUp(String dirpath) {
     // Create the directory.
     try {
@@ -165,9 +248,9 @@ public class SieveDocuments {
       ex.printStackTrace();
     }
 
-    if (documents != null)
-      for (SieveDocument doc : documents)
-        doc.outputMarkedUp(dirpath);
+    // By name, so lazily loaded documents can be dropped as we go.
+    for (String docname : getDocnames())
+      getDocument(docname).outputMarkedUp(dirpath);
   }
 
   /**
@@ -185,8 +268,8 @@ public class SieveDocuments {
     int total2 = 0;
     int total3 = 0;
     int docs = 0;
-    for (String docname : getFileNames()) {
-      SieveDocument doc = nameToDocument.get(docname);
+    for (String docname : getDocnames()) {
+      SieveDocument doc = getDocument(docname);
       List<SieveSentence> sentences = doc.getSentences();
       for (int sid = 0; sid < sentences.size() - 1; sid++) {
         SieveSentence sent = sentences.get(sid);
@@ -215,24 +298,45 @@ public class SieveDocuments {
     }
 
     else if (args[args.length - 1].equals("markup")) {
-      SieveDocuments docs = new SieveDocuments();
-      docs.readFromXML(args[0]);
+      SieveDocuments docs = open(args[0]);
       docs.outputMarkedUp(args[1]);
     }
 
+    // One document at a time, so any size of file can be copied.
     else if (args[args.length - 1].equals("inout")) {
-      SieveDocuments docs = new SieveDocuments();
-      docs.readFromXML(args[0]);
-      docs.writeToXML(args[1]);
+      try {
+        SieveDocumentsReader reader = new SieveDocumentsReader(args[0]);
+        SieveDocumentsWriter writer = new SieveDocumentsWriter(args[1]);
+        for (SieveDocument doc : reader)
+          writer.write(doc);
+        writer.close();
+        reader.close();
+      } catch (IOException ex) {
+        ex.printStackTrace();
+      }
     }
 
     // InfoFile <info> count
     else if (args[args.length - 1].equals("count")) {
-      SieveDocuments docs = new SieveDocuments();
-      docs.readFromXML(args[0]);
+      SieveDocuments docs = open(args[0]);
       // info.countEventDCTLinks();
       docs.countEventPairLinks();
     }
   }
 
+  /**
+   * Open an info file lazily if it can be indexed, or else read it all.
+   */
+  private static SieveDocuments open(String path) {
+    if (!path.endsWith(".gz")) {
+      try {
+        return new LazySieveDocuments(path);
+      } catch (IOException ex) {
+        System.out.println("WARNING: couldn't index " + path
+            + ", reading it all.");
+      }
+    }
+    return new SieveDocuments(path);
+  }
+
 }
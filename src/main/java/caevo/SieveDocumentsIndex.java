@@ -0,0 +1,338 @@
+package caevo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps each document in an info XML file to the byte offset and length of its
+ * <file> element, so one document can be read without reading the rest.
+ *
+ * The index lives next to the info file as a sidecar (info.xml.idx). It is
+ * built by a single byte scan the first time it is needed, and rebuilt when
+ * the info file's size or modification time no longer match. If the sidecar
+ * cannot be written, the index is kept in memory only.
+ *
+ * Assumes the info file is UTF-8 and its <file> elements use the default
+ * namespace, as SieveDocuments and SieveDocumentsWriter write them. Gzipped
+ * files cannot be indexed.
+ */
+public class SieveDocumentsIndex {
+  public static final String SUFFIX = ".idx";
+  private static final String HEADER = "# caevo info index v1";
+
+  private final String infopath;
+  private final List<String> docnames = new ArrayList<String>();
+  private final Map<String, long[]> nameToExtent =
+      new HashMap<String, long[]>();
+
+  /**
+   * Load the sidecar index for the given info file, building (and saving) it
+   * first if it is missing or out of date.
+   */
+  public SieveDocumentsIndex(String infopath) throws IOException {
+    this.infopath = infopath;
+    if (infopath.endsWith(".gz"))
+      throw new IOException("Can't index a gzipped info file: " + infopath);
+
+    File info = new File(infopath);
+    File sidecar = new File(infopath + SUFFIX);
+    if (!load(info, sidecar)) {
+      long startTime = System.currentTimeMillis();
+      build(info);
+      System.out.println("Indexed " + docnames.size() + " documents in "
+          + infopath + " (" + (System.currentTimeMillis() - startTime)
+          + "ms).");
+      save(info, sidecar);
+    }
+  }
+
+  public int size() {
+    return docnames.size();
+  }
+
+  /**
+   * @return The document names, in file order.
+   */
+  public List<String> getDocnames() {
+    return Collections.unmodifiableList(docnames);
+  }
+
+  public boolean contains(String docname) {
+    return nameToExtent.containsKey(docname);
+  }
+
+  /**
+   * Read and build one document.
+   *
+   * @return The document, or null if it is not in the index.
+   */
+  public SieveDocument readDocument(String docname) throws IOException {
+    long[] extent = nameToExtent.get(docname);
+    if (extent == null)
+      return null;
+
+    byte[] element = new byte[(int) extent[1]];
+    RandomAccessFile file = new RandomAccessFile(infopath, "r");
+    try {
+      file.seek(extent[0]);
+      file.readFully(element);
+    } finally {
+      file.close();
+    }
+
+    // Wrap the element in a root that declares the info namespace.
+    ByteArrayOutputStream xml =
+        new ByteArrayOutputStream(element.length + 128);
+    xml.write(("<root xmlns=\"" + SieveDocuments.INFO_NS + "\">")
+        .getBytes("UTF-8"));
+    xml.write(element);
+    xml.write("</root>".getBytes("UTF-8"));
+
+    SieveDocumentsReader reader = new SieveDocumentsReader(
+        new ByteArrayInputStream(xml.toByteArray()));
+    SieveDocument doc;
+    try {
+      doc = (reader.hasNext() ? reader.next() : null);
+    } catch (SieveDocumentsReader.ReadException ex) {
+      throw new IOException("Stale index entry for " + docname + " in "
+          + infopath, ex);
+    } finally {
+      reader.close();
+    }
+    if (doc == null)
+      throw new IOException("Stale index entry for " + docname + " in "
+          + infopath);
+    return doc;
+  }
+
+  private void add(String docname, long offset, long length) {
+    if (nameToExtent.containsKey(docname))
+      System.out.println("WARNING: duplicate document " + docname + " in "
+          + infopath + ", indexing the first");
+    else {
+      docnames.add(docname);
+      nameToExtent.put(docname, new long[] { offset, length });
+    }
+  }
+
+  /**
+   * @return True if the sidecar exists and matches the info file.
+   */
+  private boolean load(File info, File sidecar) {
+    if (!sidecar.exists())
+      return false;
+    try {
+      BufferedReader in = new BufferedReader(new InputStreamReader(
+          new FileInputStream(sidecar), "UTF-8"));
+      try {
+        if (!HEADER.equals(in.readLine())
+            || !stamp(info).equals(in.readLine()))
+          return false;
+        String line;
+        while ((line = in.readLine()) != null) {
+          String[] parts = line.split("\t", 3);
+          add(parts[2], Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+        }
+        return true;
+      } finally {
+        in.close();
+      }
+    } catch (Exception ex) {
+      System.out.println("WARNING: rebuilding unreadable index " + sidecar);
+      docnames.clear();
+      nameToExtent.clear();
+      return false;
+    }
+  }
+
+  private void save(File info, File sidecar) {
+    try {
+      PrintWriter out = new PrintWriter(new OutputStreamWriter(
+          new FileOutputStream(sidecar), "UTF-8"));
+      out.println(HEADER);
+      out.println(stamp(info));
+      for (String docname : docnames) {
+        long[] extent = nameToExtent.get(docname);
+        out.println(extent[0] + "\t" + extent[1] + "\t" + docname);
+      }
+      out.close();
+    } catch (IOException ex) {
+      System.out.println("WARNING: couldn't save index " + sidecar
+          + ", keeping it in memory.");
+    }
+  }
+
+  private static String stamp(File info) {
+    return info.length() + " " + info.lastModified();
+  }
+
+  /**
+   * Scan the file's bytes for <file ...> start tags and their </file> end
+   * tags. Comments and CDATA sections are skipped.
+   */
+  private void build(File info) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(info), 65536);
+    try {
+      ByteScanner scan = new ByteScanner(in);
+      int c;
+      while ((c = scan.read()) != -1) {
+        if (c != '<')
+          continue;
+        long start = scan.position() - 1;
+        if (scan.matches("!--"))
+          scan.skipPast("-->");
+        else if (scan.matches("![CDATA["))
+          scan.skipPast("]]>");
+        else if (scan.matches("file") && scan.isTagNameEnd(scan.peek())) {
+          String startTag = scan.readTag();
+          String docname = nameAttribute(startTag);
+          if (!startTag.endsWith("/"))
+            scan.skipPast("</file>");
+          if (docname != null)
+            add(docname, start, scan.position() - start);
+        }
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @return The unescaped value of the name attribute in a start tag.
+   */
+  private static String nameAttribute(String tag) {
+    String att = SieveDocuments.FILENAME_ELEM;
+    int i = 0;
+    while ((i = tag.indexOf(att, i)) >= 0) {
+      int j = i + att.length();
+      boolean startsWord = (i == 0
+          || Character.isWhitespace(tag.charAt(i - 1)));
+      while (j < tag.length() && Character.isWhitespace(tag.charAt(j)))
+        j++;
+      if (startsWord && j < tag.length() && tag.charAt(j) == '=') {
+        j++;
+        while (j < tag.length() && Character.isWhitespace(tag.charAt(j)))
+          j++;
+        if (j >= tag.length())
+          return null;
+        char quote = tag.charAt(j);
+        int end = tag.indexOf(quote, j + 1);
+        if (end < 0)
+          return null;
+        return unescape(tag.substring(j + 1, end));
+      }
+      i = j;
+    }
+    return null;
+  }
+
+  private static String unescape(String str) {
+    if (str.indexOf('&') < 0)
+      return str;
+    return str.replace("&lt;", "<").replace("&gt;", ">")
+        .replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+  }
+
+  /**
+   * Reads bytes one at a time, tracking the offset, with one byte of lookahead.
+   */
+  private static class ByteScanner {
+    private final InputStream in;
+    private long position = 0;
+    private int peeked = -2;
+
+    ByteScanner(InputStream in) {
+      this.in = in;
+    }
+
+    long position() {
+      return position;
+    }
+
+    int peek() throws IOException {
+      if (peeked == -2)
+        peeked = in.read();
+      return peeked;
+    }
+
+    int read() throws IOException {
+      int c = peek();
+      peeked = -2;
+      if (c != -1)
+        position++;
+      return c;
+    }
+
+    /**
+     * Consume the given ASCII string if it comes next. Only consumes on a full
+     * match, except that a partial match consumes the matched prefix, which is
+     * harmless here since no prefix of what we look for starts a new tag.
+     */
+    boolean matches(String str) throws IOException {
+      for (int i = 0; i < str.length(); i++) {
+        if (peek() != str.charAt(i))
+          return false;
+        read();
+      }
+      return true;
+    }
+
+    boolean isTagNameEnd(int c) {
+      return c == '>' || c == '/' || c == ' ' || c == '\t' || c == '\n'
+          || c == '\r';
+    }
+
+    /**
+     * Read the rest of a start tag through its closing '>', respecting quoted
+     * attribute values.
+     *
+     * @return The tag's contents after the name, without the '>' (so it ends
+     *         with '/' if the element is empty).
+     */
+    String readTag() throws IOException {
+      ByteArrayOutputStream tag = new ByteArrayOutputStream();
+      int quote = -1;
+      int c;
+      while ((c = read()) != -1) {
+        if (quote == -1 && c == '>')
+          break;
+        if (quote == -1 && (c == '"' || c == '\''))
+          quote = c;
+        else if (c == quote)
+          quote = -1;
+        tag.write(c);
+      }
+      return tag.toString("UTF-8").trim();
+    }
+
+    /**
+     * Consume bytes through the next occurrence of the given ASCII string.
+     */
+    void skipPast(String str) throws IOException {
+      int matched = 0;
+      int c;
+      while (matched < str.length() && (c = read()) != -1) {
+        if (c == str.charAt(matched))
+          matched++;
+        else
+          matched = (c == str.charAt(0) ? 1 : 0);
+      }
+    }
+  }
+}
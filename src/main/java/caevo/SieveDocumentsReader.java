@@ -0,0 +1,310 @@
+package caevo;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jdom.Element;
+import org.jdom.Namespace;
+
+/**
+ * Reads an info XML file one <file> element at a time, so a corpus never has
+ * to fit in memory. Only the document currently being built is held as JDOM;
+ * it is handed to SieveDocument.fromXML() exactly as SieveDocuments does.
+ *
+ * Iterate over it directly:
+ *
+ * <pre>
+ * SieveDocumentsReader reader = new SieveDocumentsReader(path);
+ * for (SieveDocument doc : reader)
+ *   ...
+ * reader.close();
+ * </pre>
+ *
+ * Paths ending in .gz are read through gunzip. The underlying stream is
+ * closed when the last document has been read, or by close().
+ *
+ * If the XML is malformed or cut off, the documents before the error are
+ * still returned, and then next() throws a ReadException, which says how
+ * many documents were read, instead of the corpus just ending early.
+ *
+ * Given more than one thread, the XML is still read in order on the calling
+ * thread, but the documents (sentences, tokens, events, times and tlinks) are
+ * built from their elements on a pool, a few documents ahead of the caller.
+ * Documents are still returned in file order.
+ */
+public class SieveDocumentsReader implements Iterator<SieveDocument>,
+    Iterable<SieveDocument> {
+  private final InputStream in;
+  private final XMLStreamReader reader;
+  // Documents being built, in file order. Finished ones stay until next().
+  private final LinkedList<FutureTask<SieveDocument>> pending =
+      new LinkedList<FutureTask<SieveDocument>>();
+  private final ExecutorService pool;
+  private final int maxPending;
+  private int numRead = 0;
+  private boolean closed = false;
+  private boolean endOfInput = false;
+  private boolean inputClosed = false;
+  // Thrown by next() once the documents read before it are used up.
+  private ReadException failure = null;
+
+  public SieveDocumentsReader(String path) throws IOException {
+    this(openStream(path), 1);
+  }
+
+  public SieveDocumentsReader(InputStream in) throws IOException {
+    this(in, 1);
+  }
+
+  /**
+   * @param numThreads
+   *          How many threads build documents. 1 builds each on the calling
+   *          thread as it is read.
+   */
+  public SieveDocumentsReader(String path, int numThreads) throws IOException {
+    this(openStream(path), numThreads);
+  }
+
+  public SieveDocumentsReader(InputStream in, int numThreads)
+      throws IOException {
+    this.in = in;
+    if (numThreads > 1) {
+      pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "info-reader");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      maxPending = 2 * numThreads;
+    } else {
+      pool = null;
+      maxPending = 1;
+    }
+    try {
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+      reader = factory.createXMLStreamReader(in);
+    } catch (XMLStreamException ex) {
+      in.close();
+      throw new IOException("Could not start reading info XML", ex);
+    }
+    fill();
+  }
+
+  /**
+   * Opens a file for reading, through gunzip if its name ends with .gz.
+   */
+  public static InputStream openStream(String path) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(path), 65536);
+    if (path.endsWith(".gz"))
+      in = new GZIPInputStream(in, 65536);
+    return in;
+  }
+
+  public boolean hasNext() {
+    return !pending.isEmpty() || failure != null;
+  }
+
+  /**
+   * @throws ReadException
+   *           If the XML after the last document couldn't be read. It is
+   *           thrown once, after which there is no next document.
+   */
+  public SieveDocument next() {
+    if (pending.isEmpty()) {
+      if (failure != null) {
+        ReadException ex = failure;
+        failure = null;
+        throw ex;
+      }
+      throw new NoSuchElementException();
+    }
+    FutureTask<SieveDocument> task = pending.removeFirst();
+    fill();
+    try {
+      return task.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while reading info XML", ex);
+    } catch (ExecutionException ex) {
+      throw new RuntimeException("Could not build a document", ex.getCause());
+    }
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  public Iterator<SieveDocument> iterator() {
+    return this;
+  }
+
+  /**
+   * @return The number of documents read so far.
+   */
+  public int getNumRead() {
+    return numRead;
+  }
+
+  public void close() {
+    if (closed)
+      return;
+    closed = true;
+    if (pool != null) {
+      for (FutureTask<SieveDocument> task : pending)
+        task.cancel(true);
+      pool.shutdownNow();
+    }
+    pending.clear();
+    closeInput();
+  }
+
+  /**
+   * Close the stream once every element has been read. Documents still being
+   * built are finished.
+   */
+  private void closeInput() {
+    if (inputClosed)
+      return;
+    inputClosed = true;
+    if (pool != null)
+      pool.shutdown();
+    try {
+      reader.close();
+      in.close();
+    } catch (Exception ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Read <file> elements until maxPending documents are pending or the input
+   * ends, and start building each one.
+   */
+  private void fill() {
+    while (!closed && !endOfInput && pending.size() < maxPending) {
+      final Element el = readNextElement();
+      if (el == null) {
+        endOfInput = true;
+        break;
+      }
+      FutureTask<SieveDocument> task = new FutureTask<SieveDocument>(
+          new Callable<SieveDocument>() {
+            public SieveDocument call() {
+              return SieveDocument.fromXML(el);
+            }
+          });
+      if (pool == null)
+        task.run();
+      else
+        pool.execute(task);
+      pending.add(task);
+    }
+    if (endOfInput)
+      closeInput();
+  }
+
+  /**
+   * Advance to the next <file> element and read it in.
+   *
+   * @return The element, or null at the end of the input or if it couldn't be
+   *         read, which sets failure.
+   */
+  private Element readNextElement() {
+    try {
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT
+            && reader.getLocalName().equals(SieveDocuments.FILE_ELEM)
+            && SieveDocuments.INFO_NS.equals(reader.getNamespaceURI())) {
+          Element el = buildElement();
+          numRead++;
+          return el;
+        }
+      }
+    } catch (XMLStreamException ex) {
+      failure = new ReadException(numRead, ex);
+    }
+    return null;
+  }
+
+  /**
+   * Build a JDOM element from the start tag the reader is on, through its
+   * matching end tag.
+   */
+  private Element buildElement() throws XMLStreamException {
+    Element el = new Element(reader.getLocalName(),
+        namespace(reader.getPrefix(), reader.getNamespaceURI()));
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String uri = reader.getAttributeNamespace(i);
+      if (uri == null || uri.length() == 0)
+        el.setAttribute(reader.getAttributeLocalName(i),
+            reader.getAttributeValue(i));
+      else
+        el.setAttribute(reader.getAttributeLocalName(i),
+            reader.getAttributeValue(i),
+            namespace(reader.getAttributePrefix(i), uri));
+    }
+
+    while (true) {
+      switch (reader.next()) {
+      case XMLStreamConstants.START_ELEMENT:
+        el.addContent(buildElement());
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+        el.addContent(reader.getText());
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        return el;
+      default:
+        break;
+      }
+    }
+  }
+
+  private static Namespace namespace(String prefix, String uri) {
+    if (uri == null || uri.length() == 0)
+      return Namespace.NO_NAMESPACE;
+    return Namespace.getNamespace(prefix == null ? "" : prefix, uri);
+  }
+
+  /**
+   * The info XML couldn't be read past some number of documents.
+   */
+  public static class ReadException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final int numRead;
+
+    public ReadException(int numRead, Throwable cause) {
+      super("Could not read info XML after " + numRead + " documents", cause);
+      this.numRead = numRead;
+    }
+
+    /**
+     * @return The number of documents read before the error.
+     */
+    public int getNumRead() {
+      return numRead;
+    }
+  }
+}
@@ -0,0 +1,194 @@
+package caevo;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.jdom.Attribute;
+import org.jdom.Comment;
+import org.jdom.Element;
+import org.jdom.Text;
+
+/**
+ * Writes info XML one document at a time, so documents can be written as soon
+ * as they are finished and then dropped. The output has the same schema as
+ * SieveDocuments.writeToXML(), and reads back with SieveDocuments or
+ * SieveDocumentsReader.
+ *
+ * <pre>
+ * SieveDocumentsWriter writer = new SieveDocumentsWriter(path);
+ * for (...)
+ *   writer.write(doc);
+ * writer.close();
+ * </pre>
+ *
+ * Paths ending in .gz are gzipped. The root element is only closed by close(),
+ * so an interrupted run leaves a file that is cut off after the last document
+ * flushed (or, for .gz output, somewhere before it).
+ */
+public class SieveDocumentsWriter {
+  private static final String INDENT = "  ";
+
+  private final OutputStream out;
+  private final XMLStreamWriter xml;
+  private int numWritten = 0;
+  private boolean closed = false;
+
+  public SieveDocumentsWriter(String path) throws IOException {
+    this(openStream(path));
+  }
+
+  /**
+   * Writes to the given stream, and closes it when this writer is closed.
+   */
+  public SieveDocumentsWriter(OutputStream out) throws IOException {
+    this.out = out;
+    try {
+      xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+      xml.writeStartDocument("UTF-8", "1.0");
+      xml.writeCharacters("\n");
+      xml.setDefaultNamespace(SieveDocuments.INFO_NS);
+      xml.writeStartElement("", "root", SieveDocuments.INFO_NS);
+      xml.writeDefaultNamespace(SieveDocuments.INFO_NS);
+    } catch (XMLStreamException ex) {
+      out.close();
+      throw new IOException("Could not start writing info XML", ex);
+    }
+  }
+
+  /**
+   * Opens a file for writing, through gzip if its name ends with .gz.
+   */
+  public static OutputStream openStream(String path) throws IOException {
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(path),
+        65536);
+    if (path.endsWith(".gz"))
+      out = new GZIPOutputStream(out, 65536);
+    return out;
+  }
+
+  /**
+   * Append one document.
+   */
+  public synchronized void write(SieveDocument doc) throws IOException {
+    if (closed)
+      throw new IOException("SieveDocumentsWriter is closed");
+    try {
+      writeElement(doc.toXML(), SieveDocuments.INFO_NS, 1);
+    } catch (XMLStreamException ex) {
+      throw new IOException("Could not write " + doc.getDocname(), ex);
+    }
+    numWritten++;
+  }
+
+  /**
+   * @return The number of documents written so far.
+   */
+  public synchronized int getNumWritten() {
+    return numWritten;
+  }
+
+  /**
+   * Push everything written so far to the file. This is best-effort for .gz
+   * output: Java 6's GZIPOutputStream can't sync-flush, so up to the last few
+   * documents may stay in the compressor until close().
+   */
+  public synchronized void flush() throws IOException {
+    try {
+      xml.flush();
+    } catch (XMLStreamException ex) {
+      throw new IOException("Could not flush info XML", ex);
+    }
+    out.flush();
+  }
+
+  /**
+   * Close the root element and the underlying stream.
+   */
+  public synchronized void close() throws IOException {
+    if (closed)
+      return;
+    closed = true;
+    try {
+      xml.writeCharacters("\n");
+      xml.writeEndElement();
+      xml.writeCharacters("\n");
+      xml.writeEndDocument();
+      xml.close();
+    } catch (XMLStreamException ex) {
+      throw new IOException("Could not finish info XML", ex);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Write a JDOM element and everything under it. Elements that only hold
+   * other elements are indented; text is written exactly as it is.
+   *
+   * @param defaultUri
+   *          The default namespace in scope at this element.
+   */
+  private void writeElement(Element el, String defaultUri, int depth)
+      throws XMLStreamException {
+    String uri = el.getNamespaceURI();
+    String prefix = el.getNamespacePrefix();
+    List<?> content = el.getContent();
+    List<?> children = el.getChildren();
+
+    indent(depth);
+    if (content.isEmpty())
+      xml.writeEmptyElement(prefix, el.getName(), uri);
+    else
+      xml.writeStartElement(prefix, el.getName(), uri);
+
+    if (prefix.length() > 0)
+      xml.writeNamespace(prefix, uri);
+    else if (!uri.equals(defaultUri)) {
+      xml.writeDefaultNamespace(uri);
+      defaultUri = uri;
+    }
+
+    for (Object obj : el.getAttributes()) {
+      Attribute att = (Attribute) obj;
+      if (att.getNamespaceURI().length() == 0)
+        xml.writeAttribute(att.getName(), att.getValue());
+      else
+        xml.writeAttribute(att.getNamespacePrefix(), att.getNamespaceURI(),
+            att.getName(), att.getValue());
+    }
+
+    if (content.isEmpty())
+      return;
+
+    for (Object obj : content) {
+      if (obj instanceof Element)
+        writeElement((Element) obj, defaultUri, depth + 1);
+      else if (obj instanceof Text) {
+        String text = ((Text) obj).getText();
+        // Drop whitespace between child elements; we indent those ourselves.
+        if (children.isEmpty() || text.trim().length() > 0)
+          xml.writeCharacters(text);
+      } else if (obj instanceof Comment)
+        xml.writeComment(((Comment) obj).getText());
+    }
+
+    if (!children.isEmpty())
+      indent(depth);
+    xml.writeEndElement();
+  }
+
+  private void indent(int depth) throws XMLStreamException {
+    StringBuffer buf = new StringBuffer("\n");
+    for (int i = 0; i < depth; i++)
+      buf.append(INDENT);
+    xml.writeCharacters(buf.toString());
+  }
+}
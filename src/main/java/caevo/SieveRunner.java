@@ -0,0 +1,259 @@
+package caevo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import caevo.sieves.Sieve;
+import caevo.tlink.TLink;
+import caevo.util.SieveStats;
+
+/**
+ * Runs an ordered list of sieves over one document: each sieve proposes links,
+ * conflicting and duplicate proposals are dropped, the rest are added, and
+ * transitive closure extends them before the next sieve runs.
+ *
+ * This is the per-document loop that Main used to hold. It keeps no state
+ * between documents, so one runner can be reused for any number of documents,
+ * though not from two threads at once (the sieves themselves are not
+ * thread-safe). CaevoPipeline gives each worker thread its own runner.
+ */
+public class SieveRunner {
+  private final String[] sieveNames;
+  private final Sieve[] sieves;
+  private final Closure closure;
+  private final boolean useClosure;
+  private final boolean debug;
+
+  /**
+   * @param sieveNames
+   *          Sieve names, parallel to the sieves array.
+   * @param sieves
+   *          The sieves in order. Null entries (sieves that failed to load) are
+   *          skipped.
+   * @param closure
+   *          Closure rules, or null to skip closure.
+   * @param debug
+   *          Print progress and counts for every sieve.
+   */
+  public SieveRunner(String[] sieveNames, Sieve[] sieves, Closure closure,
+      boolean debug) {
+    this.sieveNames = sieveNames;
+    this.sieves = sieves;
+    this.closure = closure;
+    this.useClosure = (closure != null);
+    this.debug = debug;
+  }
+
+  public String[] getSieveNames() {
+    return sieveNames;
+  }
+
+  public Sieve[] getSieves() {
+    return sieves;
+  }
+
+  /**
+   * @return New, empty statistics, one per sieve.
+   */
+  public SieveStats[] newStats() {
+    SieveStats stats[] = new SieveStats[sieveNames.length];
+    for (int i = 0; i < sieveNames.length; i++)
+      stats[i] = new SieveStats(sieveNames[i]);
+    return stats;
+  }
+
+  /**
+   * Run the sieves in order on one document, and add the resulting links to
+   * it.
+   *
+   * @param stats
+   *          Per-sieve statistics to update, or null.
+   */
+  public void run(SieveDocument doc, SieveStats[] stats) {
+    // Start with zero links.
+    List<TLink> currentTLinks = new ArrayList<TLink>();
+    Map<Object, TLink> currentTLinksHash = new HashMap<Object, TLink>();
+
+    if (debug)
+      System.out.println("Processing " + doc.getDocname() + "...");
+
+    // Loop over the sieves in order.
+    for (int xx = 0; xx < sieves.length; xx++) {
+      Sieve sieve = sieves[xx];
+      if (sieve == null)
+        continue;
+      if (debug)
+        System.out.println("\tSieve " + sieve.getClass().toString());
+
+      // Run this sieve
+      List<TLink> newLinks = sieve.annotate(doc, currentTLinks);
+      // The ML sieves return null if their model couldn't be read.
+      if (newLinks == null)
+        newLinks = new ArrayList<TLink>();
+      if (debug)
+        System.out.println("\t\t" + newLinks.size() + " new links.");
+      if (stats != null)
+        stats[xx].addProposedCount(newLinks.size());
+
+      // Verify the links as non-conflicting.
+      int numRemoved = removeConflicts(doc, currentTLinksHash, newLinks);
+      if (debug)
+        System.out.println("\t\tRemoved " + numRemoved + " proposed links.");
+      if (stats != null)
+        stats[xx].addRemovedCount(numRemoved);
+
+      if (newLinks.size() > 0) {
+        // Add the good links to our current list.
+        addProposedToCurrentList(doc, sieveNames[xx], newLinks,
+            currentTLinks, currentTLinksHash);
+
+        // Run Closure
+        if (useClosure) {
+          List<TLink> closedLinks = closureExpand(doc, sieveNames[xx],
+              currentTLinks, currentTLinksHash);
+          if (debug)
+            System.out.println(
+                "\t\tClosure produced " + closedLinks.size() + " links.");
+          if (stats != null)
+            stats[xx].addClosureCount(closedLinks.size());
+        }
+      }
+      if (debug)
+        System.out
+            .println("\t\tDoc now has " + currentTLinks.size() + " links.");
+    }
+
+    // Add links to InfoFile.
+    doc.addTlinks(currentTLinks);
+  }
+
+  private void addProposedToCurrentList(SieveDocument doc, String sieveName,
+      List<TLink> proposed, List<TLink> current,
+      Map<Object, TLink> currentHash) {
+    for (TLink newlink : proposed) {
+      // So closure can look up which ids are events and which are times.
+      newlink.setDocument(doc);
+      Object key = pair(doc, newlink.getId1(), newlink.getId2());
+      if (debug && currentHash.containsKey(key)) {
+        System.out.println("MAIN WARNING: overwriting " + currentHash.get(key)
+            + " with " + newlink);
+      }
+      current.add(newlink);
+      currentHash.put(key, newlink);
+      currentHash.put(pair(doc, newlink.getId2(), newlink.getId1()), newlink);
+      newlink.setOrigin(sieveName);
+    }
+  }
+
+  /**
+   * The key for an ordered pair of ids in the current links map: the pair of
+   * the document's int ids, or the ids' names joined if the document doesn't
+   * know one of them.
+   */
+  private static Object pair(SieveDocument doc, String name1, String name2) {
+    int id1 = doc.getEntityId(name1);
+    int id2 = doc.getEntityId(name2);
+    if (id1 < 0 || id2 < 0)
+      return name1 + name2;
+    return Long.valueOf(((long) id1 << 32) | (id2 & 0xffffffffL));
+  }
+
+  /**
+   * DESTRUCTIVE FUNCTION (proposedLinks will be modified) Remove a link from
+   * the given list if another link already exists in the list and covers the
+   * same event or time pair.
+   *
+   * @param proposedLinks
+   *          A list of TLinks to check for duplicates.
+   * @return The number of duplicates found.
+   */
+  public static int removeDuplicatesAndInvalids(List<TLink> proposedLinks) {
+    if (proposedLinks == null || proposedLinks.size() < 2)
+      return 0;
+
+    List<TLink> removals = new ArrayList<TLink>();
+    Set<String> seenNew = new HashSet<String>();
+
+    for (TLink proposed : proposedLinks) {
+      // Make sure we have a valid link with 2 events!
+      if (proposed.getId1() == null || proposed.getId2() == null
+          || proposed.getId1().length() == 0
+          || proposed.getId2().length() == 0) {
+        removals.add(proposed);
+        System.out.println("WARNING (proposed an invalid link): " + proposed);
+      }
+      // Remove any proposed links that are duplicates of already proposed
+      // links.
+      else if (seenNew.contains(proposed.getId1() + proposed.getId2())) {
+        removals.add(proposed);
+        System.out
+            .println("WARNING (proposed the same link twice): " + proposed);
+      }
+      // Normal link. Keep it.
+      else {
+        seenNew.add(proposed.getId1() + proposed.getId2());
+        seenNew.add(proposed.getId2() + proposed.getId1());
+      }
+    }
+
+    for (TLink remove : removals)
+      proposedLinks.remove(remove);
+
+    return removals.size();
+  }
+
+  /**
+   * DESTRUCTIVE FUNCTION (proposedLinks will be modified) Removes any links
+   * from the proposed list that already have links between the same pairs in
+   * currentLinks.
+   *
+   * @param currentLinks
+   *          The list of current "good" links.
+   * @param proposedLinks
+   *          The list of proposed new links.
+   * @return The number of links removed.
+   */
+  private int removeConflicts(SieveDocument doc,
+      Map<Object, TLink> currentLinksHash, List<TLink> proposedLinks) {
+    List<TLink> removals = new ArrayList<TLink>();
+
+    // Remove duplicates.
+    int duplicates = removeDuplicatesAndInvalids(proposedLinks);
+    if (debug && duplicates > 0)
+      System.out
+          .println("\t\tRemoved " + duplicates + " duplicate proposed links.");
+
+    for (TLink proposed : proposedLinks) {
+      // Look for a current link that conflicts with this proposed link.
+      TLink current = currentLinksHash.get(pair(doc, proposed.getId1(),
+          proposed.getId2()));
+      if (current != null && current.coversSamePair(proposed))
+        removals.add(proposed);
+    }
+
+    for (TLink remove : removals)
+      proposedLinks.remove(remove);
+
+    return removals.size() + duplicates;
+  }
+
+  /**
+   * DESTRUCTIVE FUNCTION (links may have new TLink objects appended to it) Run
+   * transitive closure and add any inferred links.
+   *
+   * @param links
+   *          The list of TLinks to expand with transitive closure.
+   * @return The list of new links from closure (these are already added to the
+   *         given lists)
+   */
+  private List<TLink> closureExpand(SieveDocument doc, String sieveName,
+      List<TLink> links, Map<Object, TLink> linksHash) {
+    List<TLink> newlinks = closure.computeClosure(links, false);
+    addProposedToCurrentList(doc, sieveName, newlinks, links, linksHash);
+    return newlinks;
+  }
+}
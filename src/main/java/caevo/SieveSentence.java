@@ -6,6 +6,9 @@ import java.util.List;
 import org.jdom.Element;
 import org.jdom.Namespace;
 
+import caevo.util.EncodedDependencies;
+import caevo.util.EncodedTree;
+import caevo.util.LabelTable;
 import caevo.util.TreeOperator;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
@@ -24,13 +27,16 @@ public class SieveSentence {
   private SieveDocument parent;
   private int sid;
   private String sentence;
+  // Dropped once they are encoded; the encodings give back equivalent
+  // strings.
   private String parseStr;
-  private Tree parseTree;
   private String depsStr;
-  private List<TypedDependency> deps;
-  private List<CoreLabel> tokens;
+  private EncodedTree encodedParse;
+  private EncodedDependencies encodedDeps;
+  private SieveTokens tokens;
   private List<TextEvent> events; // of TextEvent objects
   private List<Timex> timexes; // of Timex objects
+  private volatile TokenAnnotations annotations;
 
   public SieveSentence(SieveDocument doc, int sid, String sentence,
       String strParse, String strDeps, List<CoreLabel> tokens,
@@ -40,7 +46,7 @@ public class SieveSentence {
     this.sentence = sentence;
     this.parseStr = strParse;
     this.depsStr = strDeps;
-    this.tokens = tokens;
+    this.tokens = (tokens == null ? null : SieveTokens.fromCoreLabels(tokens));
     this.events = events;
     this.timexes = timexes;
 
@@ -63,11 +69,12 @@ public class SieveSentence {
       tokens = null;
 
       if (el.getChild(InfoFile.TOKENS_ELEM, ns) != null) {
-        tokens = new ArrayList<CoreLabel>();
         Element alltokens = el.getChild(InfoFile.TOKENS_ELEM, ns);
         List<Element> children = alltokens.getChildren(InfoFile.TOKEN_ELEM, ns);
+        SieveTokens.Builder builder = new SieveTokens.Builder(children.size());
         for (Element child : children)
-          tokens.add(stringToCoreLabel(child.getText()));
+          builder.addInfoString(child.getText());
+        tokens = builder.build();
       }
 
       Element evel = el.getChild("events", ns);
@@ -94,6 +101,7 @@ public class SieveSentence {
       if (events == null)
         events = new ArrayList<TextEvent>();
       events.addAll(newEvents);
+      annotations = null;
     }
   }
 
@@ -123,15 +131,15 @@ public class SieveSentence {
     sentElem.addContent(sentence);
     Element tokensElem = new Element(SieveDocuments.TOKENS_ELEM, ns);
     if (tokens != null) {
-      for (CoreLabel token : tokens) {
+      for (int i = 0; i < tokens.size(); i++) {
         Element tokenElem = new Element(SieveDocuments.TOKEN_ELEM, ns);
-        tokenElem.addContent(generateCoreLabelString(token));
+        tokenElem.addContent(tokens.toInfoString(i));
         tokensElem.addContent(tokenElem);
       }
       // tokensElem.addContent(tokens);
     }
     Element parseElem = new Element(SieveDocuments.PARSE_ELEM, ns);
-    parseElem.setText(parseStr);
+    parseElem.setText(parseString());
 
     // Add the events vector
     Element eventsElem = new Element(SieveDocuments.EVENTS_ELEM, ns);
@@ -147,7 +155,7 @@ public class SieveSentence {
 
     // Add the typed dependencies
     Element depsElem = new Element(SieveDocuments.DEPS_ELEM, ns);
-    depsElem.setText(depsStr);
+    depsElem.setText(depsString());
 
     entry.addContent(sentElem);
     entry.addContent(tokensElem);
@@ -191,32 +199,104 @@ public class SieveSentence {
     return localtokens;
   }
 
-  private String generateCoreLabelString(CoreLabel cl) {
-    StringBuffer buf = new StringBuffer();
-    buf.append('"');
-    buf.append(cl.getString(CoreAnnotations.BeforeAnnotation.class));
-    buf.append("\" \"");
-    buf.append(cl.getString(CoreAnnotations.OriginalTextAnnotation.class));
-    buf.append("\" \"");
-    buf.append(cl.getString(CoreAnnotations.AfterAnnotation.class));
-    buf.append("\"");
-    return buf.toString();
-  }
-
+  /**
+   * The tree is kept in the TreeCache, which may drop it to stay under its
+   * memory budget; it is then rebuilt from the parse string. Hold on to the
+   * returned tree if you compare its nodes by identity.
+   */
   public Tree getParseTree() {
+    Tree parseTree = TreeCache.getTree(this);
     if (parseTree == null) {
       TreeFactory tf = new LabeledScoredTreeFactory();
-      parseTree = TreeOperator.stringToTree(parseStr, tf);
+      EncodedTree encoded = getEncodedParse();
+      long bytes;
+      if (encoded != null) {
+        parseTree = encoded.toTree(tf);
+        bytes = (long) encoded.size() * TreeCache.BYTES_PER_TREE_NODE;
+      } else {
+        String str = parseString();
+        parseTree = TreeOperator.stringToTree(str, tf);
+        bytes = (str == null ? 0 : (long) str.length()
+            * TreeCache.BYTES_PER_TREE_NODE / 4);
+      }
+      TreeCache.putTree(this, parseTree, bytes);
     }
     return parseTree;
   }
 
+  /**
+   * Kept in the TreeCache, like getParseTree().
+   */
   public List<TypedDependency> getDeps() {
-    if (deps == null)
-      deps = TreeOperator.stringToDependencies(depsStr);
+    List<TypedDependency> deps = TreeCache.getDeps(this);
+    if (deps == null) {
+      EncodedDependencies encoded = getEncodedDeps();
+      if (encoded != null)
+        deps = encoded.toDependencies();
+      else
+        deps = TreeOperator.stringToDependencies(depsString());
+      TreeCache.putDeps(this, deps, (long) deps.size()
+          * TreeCache.BYTES_PER_DEPENDENCY);
+    }
     return deps;
   }
 
+  /**
+   * @return The parse as int arrays, for lookups that don't need a Tree, or
+   *         null if the parse string couldn't be read.
+   */
+  public synchronized EncodedTree getEncodedParse() {
+    if (encodedParse == null && parseStr != null) {
+      encodedParse = EncodedTree.fromString(parseStr, labelTable());
+      if (encodedParse != null)
+        parseStr = null;
+    }
+    return encodedParse;
+  }
+
+  /**
+   * @return The dependencies as int arrays, for lookups that don't need
+   *         TypedDependency objects, or null if they couldn't be read.
+   */
+  public synchronized EncodedDependencies getEncodedDeps() {
+    if (encodedDeps == null && depsStr != null) {
+      encodedDeps = EncodedDependencies.fromString(depsStr, labelTable());
+      if (encodedDeps != null)
+        depsStr = null;
+    }
+    return encodedDeps;
+  }
+
+  /**
+   * Use encodings read elsewhere, such as from a binary documents file, in
+   * place of the strings. Null leaves that one as it is.
+   */
+  synchronized void setEncoded(EncodedTree parse, EncodedDependencies deps) {
+    if (parse != null) {
+      encodedParse = parse;
+      parseStr = null;
+    }
+    if (deps != null) {
+      encodedDeps = deps;
+      depsStr = null;
+    }
+  }
+
+  private LabelTable labelTable() {
+    return (parent == null ? new LabelTable() : parent.getLabelTable());
+  }
+
+  /**
+   * @return The POS tags, lemmas, WordNet categories and events of this
+   *         sentence's tokens, each computed once and shared by every caller.
+   */
+  public TokenAnnotations annotations() {
+    TokenAnnotations result = annotations;
+    if (result == null)
+      annotations = result = new TokenAnnotations(this);
+    return result;
+  }
+
   public void setParent(SieveDocument doc) {
     parent = doc;
   }
@@ -229,10 +309,34 @@ public class SieveSentence {
     return sentence;
   }
 
-  public List<CoreLabel> tokens() {
+  /**
+   * @return The tokens, or null if the sentence has none. Its CoreLabels are
+   *         built on each get(), so read strings with its text(), before()
+   *         and after() where you can.
+   */
+  public SieveTokens tokens() {
     return tokens;
   }
 
+  /**
+   * @return The phrase structure parse as it is stored in the info file, or on
+   *         one line once it has been encoded, which reads back to the same
+   *         tree.
+   */
+  public synchronized String parseString() {
+    return (parseStr == null && encodedParse != null ? encodedParse.toString()
+        : parseStr);
+  }
+
+  /**
+   * @return The typed dependencies as they are stored in the info file, one
+   *         per line (trimmed, once they have been encoded).
+   */
+  public synchronized String depsString() {
+    return (depsStr == null && encodedDeps != null ? encodedDeps.toString()
+        : depsStr);
+  }
+
   public List<TextEvent> events() {
     return events;
   }
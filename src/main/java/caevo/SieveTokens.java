@@ -0,0 +1,180 @@
+package caevo;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * The tokens of one sentence, stored compactly: the before, original and after
+ * strings of every token are laid end to end in one char array, with an int
+ * array of where each string starts. A sentence of n tokens is two arrays
+ * rather than n map-backed CoreLabels and 3n Strings.
+ *
+ * It is also a read-only List<CoreLabel> for code that wants Stanford labels.
+ * Those are built by get() each time they are asked for, and changes to them
+ * are not kept. Use before(), text() and after() to read tokens without
+ * building labels.
+ */
+public class SieveTokens extends AbstractList<CoreLabel> implements
+    RandomAccess {
+  private static final String SEPARATOR = "\" \"";
+
+  private final char[] chars;
+  // Token i's before/text/after start at bounds[3i], bounds[3i+1] and
+  // bounds[3i+2]. The last entry is chars.length.
+  private final int[] bounds;
+
+  private SieveTokens(char[] chars, int[] bounds) {
+    this.chars = chars;
+    this.bounds = bounds;
+  }
+
+  /**
+   * Copy Stanford labels' BeforeAnnotation, OriginalTextAnnotation and
+   * AfterAnnotation. Missing values are stored as empty strings.
+   */
+  public static SieveTokens fromCoreLabels(List<CoreLabel> labels) {
+    if (labels instanceof SieveTokens)
+      return (SieveTokens) labels;
+    Builder builder = new Builder(labels.size());
+    for (CoreLabel label : labels)
+      builder.add(label.getString(CoreAnnotations.BeforeAnnotation.class),
+          label.getString(CoreAnnotations.OriginalTextAnnotation.class),
+          label.getString(CoreAnnotations.AfterAnnotation.class));
+    return builder.build();
+  }
+
+  /**
+   * @return The number of tokens.
+   */
+  public int size() {
+    return (bounds.length - 1) / 3;
+  }
+
+  /**
+   * @return A new CoreLabel holding the token's three strings.
+   */
+  public CoreLabel get(int index) {
+    CoreLabel label = new CoreLabel();
+    label.set(CoreAnnotations.BeforeAnnotation.class, before(index));
+    label.set(CoreAnnotations.OriginalTextAnnotation.class, text(index));
+    label.set(CoreAnnotations.AfterAnnotation.class, after(index));
+    return label;
+  }
+
+  /**
+   * @return The characters before the token (whitespace).
+   */
+  public String before(int index) {
+    return part(3 * index);
+  }
+
+  /**
+   * @return The token's original text.
+   */
+  public String text(int index) {
+    return part(3 * index + 1);
+  }
+
+  /**
+   * @return The characters after the token (whitespace).
+   */
+  public String after(int index) {
+    return part(3 * index + 2);
+  }
+
+  private String part(int i) {
+    if (i < 0 || i + 1 >= bounds.length)
+      throw new IndexOutOfBoundsException("Token " + (i / 3) + " of "
+          + size());
+    return new String(chars, bounds[i], bounds[i + 1] - bounds[i]);
+  }
+
+  /**
+   * @return The token in the info file format: "before" "text" "after"
+   */
+  public String toInfoString(int index) {
+    StringBuffer buf = new StringBuffer();
+    buf.append('"');
+    buf.append(chars, bounds[3 * index], bounds[3 * index + 1]
+        - bounds[3 * index]);
+    buf.append(SEPARATOR);
+    buf.append(chars, bounds[3 * index + 1], bounds[3 * index + 2]
+        - bounds[3 * index + 1]);
+    buf.append(SEPARATOR);
+    buf.append(chars, bounds[3 * index + 2], bounds[3 * index + 3]
+        - bounds[3 * index + 2]);
+    buf.append('"');
+    return buf.toString();
+  }
+
+  /**
+   * Collects tokens, then packs them into a SieveTokens.
+   */
+  public static class Builder {
+    private char[] chars;
+    private int[] bounds;
+    private int numChars = 0;
+    private int numParts = 0;
+
+    public Builder(int expectedTokens) {
+      chars = new char[Math.max(16, 8 * expectedTokens)];
+      bounds = new int[3 * Math.max(1, expectedTokens) + 1];
+    }
+
+    public Builder add(String before, String text, String after) {
+      addPart(before);
+      addPart(text);
+      addPart(after);
+      return this;
+    }
+
+    /**
+     * Add a token in the info file format: "before" "text" "after"
+     */
+    public Builder addInfoString(String str) {
+      // Same as splitting the unquoted string on " " and taking the first
+      // three pieces.
+      int start = (str.length() > 0 && str.charAt(0) == '"' ? 1 : 0);
+      int end = str.length();
+      if (end > start && str.charAt(end - 1) == '"')
+        end--;
+      int first = str.indexOf(SEPARATOR, start);
+      if (first < 0 || first >= end)
+        return add("", str.substring(start, end), "");
+      int second = str.indexOf(SEPARATOR, first + SEPARATOR.length());
+      if (second < 0 || second >= end)
+        return add(str.substring(start, first),
+            str.substring(first + SEPARATOR.length(), end), "");
+      int third = str.indexOf(SEPARATOR, second + SEPARATOR.length());
+      if (third < 0 || third >= end)
+        third = end;
+      return add(str.substring(start, first),
+          str.substring(first + SEPARATOR.length(), second),
+          str.substring(second + SEPARATOR.length(), third));
+    }
+
+    private void addPart(String part) {
+      if (part == null)
+        part = "";
+      if (numParts + 2 > bounds.length)
+        bounds = Arrays.copyOf(bounds, 2 * bounds.length + 1);
+      bounds[numParts++] = numChars;
+      if (numChars + part.length() > chars.length)
+        chars = Arrays.copyOf(chars,
+            Math.max(2 * chars.length, numChars + part.length()));
+      part.getChars(0, part.length(), chars, numChars);
+      numChars += part.length();
+    }
+
+    public SieveTokens build() {
+      int[] packedBounds = Arrays.copyOf(bounds, numParts + 1);
+      packedBounds[numParts] = numChars;
+      return new SieveTokens(Arrays.copyOf(chars, numChars), packedBounds);
+    }
+  }
+}
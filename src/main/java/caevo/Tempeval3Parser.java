@@ -33,6 +33,7 @@ import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.HasWord;
 import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParserQuery;
 import edu.stanford.nlp.pipeline.AnnotationPipeline;
 import edu.stanford.nlp.trees.GrammaticalStructure;
 import edu.stanford.nlp.trees.GrammaticalStructureFactory;
@@ -893,18 +894,35 @@ public class Tempeval3Parser {
     // PARSE the input XML document of events
     Document doc = getXMLDocFromPath(xmlFilePath);
 
+    // Parse the text.
+    SieveDocument sdoc = rawTextToParsed((new File(xmlFilePath)).getName(),
+        getRawXMLText(doc), parser, gsf);
+
+    addRawXMLCreationTimes(doc, sdoc);
+    return sdoc;
+  }
+
+  /**
+   * @return The text content of the <TEXT> element in a raw XML document, or
+   *         null if there is no such element.
+   */
+  public static String getRawXMLText(Document doc) {
     // Grab the TEXT element.
     Element textElement = null;
     String justtext = null;
-    if (doc.getElementsByTagName("TEXT") != null) {
+    if (doc.getElementsByTagName("TEXT") != null
+        && doc.getElementsByTagName("TEXT").getLength() > 0) {
       textElement = (Element) doc.getElementsByTagName("TEXT").item(0);
       justtext = textElement.getTextContent();
     }
+    return justtext;
+  }
 
-    // Parse the text.
-    SieveDocument sdoc = rawTextToParsed((new File(xmlFilePath)).getName(),
-        justtext, parser, gsf);
-
+  /**
+   * Adds the TIMEX elements under the <DCT> element of a raw XML document as the
+   * creation times of the given SieveDocument.
+   */
+  public static void addRawXMLCreationTimes(Document doc, SieveDocument sdoc) {
     // Grab the DCT element.
     Element dctElement = null;
     if( doc.getElementsByTagName("DCT") != null && doc.getElementsByTagName("DCT").getLength() > 0 ) {
@@ -922,8 +940,6 @@ public class Tempeval3Parser {
         }
       }
     }
-
-    return sdoc;
   }
 
   /**
@@ -1364,17 +1380,38 @@ public class Tempeval3Parser {
 
   public static SieveDocument rawTextFileToParsed(String filepath,
       LexicalizedParser parser, GrammaticalStructureFactory gsf) {
+    return rawTextToParsed(filepath, readRawTextFile(filepath), parser, gsf);
+  }
+
+  /**
+   * Reads a raw text file into a single string, lines joined by newlines.
+   */
+  public static String readRawTextFile(String filepath) {
     List<String> lines = Util.readLinesFromFile(filepath);
-    String bigone = lines.get(0);
+    StringBuffer bigone = new StringBuffer(lines.get(0));
     for (int xx = 1; xx < lines.size(); xx++)
-      bigone += "\n" + lines.get(xx);
+      bigone.append('\n').append(lines.get(xx));
     // System.out.println("bigone=" + bigone);
-
-    return rawTextToParsed(filepath, bigone, parser, gsf);
+    return bigone.toString();
   }
 
   private static SieveDocument rawTextToParsed(String filename, String text,
       LexicalizedParser parser, GrammaticalStructureFactory gsf) {
+    List<List<HasWord>> sentences = rawTextToSentences(text);
+    List<Pair<String, String>> parses = new ArrayList<Pair<String, String>>();
+    for (List<HasWord> sent : sentences) {
+      // System.out.println("* " + sent);
+      parses.add(parseDep(sent, parser, gsf));
+    }
+    return sentencesToSieveDocument(filename, sentences, parses);
+  }
+
+  /**
+   * Splits raw text into tokenized sentences, keeping the original whitespace
+   * around each token (including after the last token) so the text can be
+   * rebuilt exactly.
+   */
+  public static List<List<HasWord>> rawTextToSentences(String text) {
     List<List<HasWord>> sentencesNormInvertible = new ArrayList<List<HasWord>>();
     sentencesNormInvertible
         .addAll(Ling.getSentencesFromTextNormInvertible(text));
@@ -1387,13 +1424,23 @@ public class Tempeval3Parser {
       CoreLabel cl = (CoreLabel) sentence.get(sentence.size() - 1);
       cl.set(CoreAnnotations.AfterAnnotation.class, trailingWhite);
     }
+    return sentencesNormInvertible;
+  }
 
+  /**
+   * Builds a SieveDocument from tokenized sentences and their parses.
+   * 
+   * @param parses
+   *          One (phrase tree, dependencies) pair per sentence, in the same
+   *          order as the sentences.
+   */
+  public static SieveDocument sentencesToSieveDocument(String filename,
+      List<List<HasWord>> sentences, List<Pair<String, String>> parses) {
     SieveDocument sdoc = new SieveDocument((new File(filename)).getName());
 
     int sid = 0;
-    for (List<HasWord> sent : sentencesNormInvertible) {
-      // System.out.println("* " + sent);
-      Pair<String, String> parseDep = parseDep(sent, parser, gsf);
+    for (List<HasWord> sent : sentences) {
+      Pair<String, String> parseDep = parses.get(sid);
       List<CoreLabel> cls = new ArrayList<CoreLabel>();
       for (HasWord word : sent)
         cls.add((CoreLabel) word);
@@ -1418,13 +1465,29 @@ public class Tempeval3Parser {
    */
   public static Pair<String, String> parseDep(List<HasWord> sentence,
       LexicalizedParser parser, GrammaticalStructureFactory gsf) {
+    return parseDep(sentence, parser.parserQuery(), gsf);
+  }
+
+  /**
+   * Parse a given list of words, syntactic and dependency, with an existing
+   * parser query. A query is not thread-safe, but it can be reused for many
+   * sentences by the same thread.
+   * 
+   * @param sentence
+   *          The list of words.
+   * @return A pair: (1) phrase tree, (2) dependency graph.
+   * @throws RuntimeException
+   *           If the sentence fails to parse.
+   */
+  public static Pair<String, String> parseDep(List<HasWord> sentence,
+      LexicalizedParserQuery query, GrammaticalStructureFactory gsf) {
     // PARSE the sentence
     if (sentence != null) {
-      Tree ansTree = parser.parseTree(sentence);
-      if (ansTree == null) {
-        System.out.println("Sentence failed to parse: " + sentence);
-        System.exit(-1);
-      }
+      Tree ansTree = null;
+      if (query.parse(sentence))
+        ansTree = query.getBestParse();
+      if (ansTree == null)
+        throw new RuntimeException("Sentence failed to parse: " + sentence);
 
       String parseString = ansTree.toString();
 
@@ -1446,12 +1509,10 @@ public class Tempeval3Parser {
       }
 
       // If Stanford's parser changes the size of the original tokenized
-      // sentence, halt immediately with an error.
-      if (leaves.size() != sentence.size()) {
-        System.out.println("ERROR: number of leaves " + leaves.size()
+      // sentence, fail immediately with an error.
+      if (leaves.size() != sentence.size())
+        throw new RuntimeException("Number of leaves " + leaves.size()
             + " not the same as original sentence size " + sentence.size());
-        System.exit(1);
-      }
 
       // DEP PARSE the sentence - CAUTION: DESTRUCTIVE to parse tree
       String depString = lexParseToDeps(ansTree, gsf);
@@ -1466,7 +1527,7 @@ public class Tempeval3Parser {
   /**
    * DEP PARSE the sentence - CAUTION: DESTRUCTIVE to parse tree
    */
-  private static String lexParseToDeps(Tree lexTree,
+  public static String lexParseToDeps(Tree lexTree,
       GrammaticalStructureFactory gsf) {
     String depString = "";
     if (lexTree != null && lexTree.size() > 1) {
@@ -1480,9 +1541,7 @@ public class Tempeval3Parser {
               depString += dep + "\n";
         }
       } catch (Exception ex) {
-        System.out.println("ERROR: dependency tree creation failed...");
-        ex.printStackTrace();
-        System.exit(-1);
+        throw new RuntimeException("Dependency tree creation failed", ex);
       }
     }
     return depString;
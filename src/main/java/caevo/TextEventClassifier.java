@@ -4,6 +4,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.PrintWriter;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -15,8 +16,8 @@ import java.util.Set;
 import caevo.util.Directory;
 import caevo.util.HandleParameters;
 import caevo.util.Ling;
+import caevo.util.ModelRegistry;
 import caevo.util.TreeOperator;
-import caevo.util.Util;
 import caevo.util.WordNet;
 import edu.stanford.nlp.classify.Classifier;
 import edu.stanford.nlp.classify.LinearClassifierFactory;
@@ -210,21 +211,25 @@ public class TextEventClassifier {
     features.incrementCount("POST-" + tokenPost1 + "-" + tokenPost2);
 
     // POS n-grams. (1, 2, 3-gram)
-    String pos = TreeOperator.indexToPOSTag(tree, wordIndex);
+    TokenAnnotations annotations = sentence.annotations();
+    String pos = annotations.posTag(wordIndex);
     String posPre1 = "<s>";
     String posPre2 = "<s>";
     if (wordIndex > 1)
-      posPre1 = TreeOperator.indexToPOSTag(tree, wordIndex - 1);
+      posPre1 = annotations.posTag(wordIndex - 1);
     if (wordIndex > 2)
-      posPre2 = TreeOperator.indexToPOSTag(tree, wordIndex - 2);
+      posPre2 = annotations.posTag(wordIndex - 2);
     features.incrementCount(pos);
     features.incrementCount(posPre1 + "-" + pos);
     features.incrementCount(posPre2 + "-" + posPre1 + "-" + pos);
 
     // WordNet lookup
-    features.incrementCount("LEM-" + wordnet.lemmatizeTaggedWord(token, pos));
+    features.incrementCount("LEM-"
+        + annotations.lemma(wordIndex, token, wordnet));
     if (pos != null && pos.startsWith("NN"))
-      features.incrementCount("IS-WORDNET-EV-" + wordnet.isNounEvent(token));
+      features.incrementCount("IS-WORDNET-EV-"
+          + ((annotations.categories(wordIndex, token, wordnet)
+              & WordNet.NOUN_EVENT) != 0));
 
     // Parse path to Sentence node.
     String path = pathToSTag(tree, wordIndex);
@@ -370,7 +375,7 @@ public class TextEventClassifier {
   public boolean isEvent(Classifier<String, String> classifier,
       SieveSentence sentence, Tree tree, List<TypedDependency> deps,
       int wordi) {
-    String postag = TreeOperator.indexToPOSTag(tree, wordi);
+    String postag = sentence.annotations().posTag(wordi);
 
     // Only consider tokens with specific POS tags.
     if (postag.startsWith("NN") || postag.startsWith("VB")
@@ -644,28 +649,32 @@ public class TextEventClassifier {
    */
   public void loadClassifiers() {
     String base = "/models/" + baseModelName;
-    eventClassifier = Util
-        .readClassifierFromFile(this.getClass().getResource(base));
-    tenseClassifier = Util
-        .readClassifierFromFile(this.getClass().getResource(base + "-tense"));
-    aspectClassifier = Util
-        .readClassifierFromFile(this.getClass().getResource(base + "-aspect"));
-    classClassifier = Util
-        .readClassifierFromFile(this.getClass().getResource(base + "-class"));
+    URL[] urls = new URL[] { this.getClass().getResource(base),
+        this.getClass().getResource(base + "-tense"),
+        this.getClass().getResource(base + "-aspect"),
+        this.getClass().getResource(base + "-class") };
+    // Read all four at once.
+    for (URL url : urls)
+      ModelRegistry.prefetch(url);
+    eventClassifier = ModelRegistry.getRequired(urls[0]);
+    tenseClassifier = ModelRegistry.getRequired(urls[1]);
+    aspectClassifier = ModelRegistry.getRequired(urls[2]);
+    classClassifier = ModelRegistry.getRequired(urls[3]);
   }
 
   public void readClassifiersFromDirectory(String dir) {
     if (!(new File(dir)).isDirectory())
       System.out.println("Not a directory: " + dir);
     else {
-      eventClassifier = Util
-          .readClassifierFromFile(dir + File.separator + baseModelName);
-      tenseClassifier = Util.readClassifierFromFile(
-          dir + File.separator + baseModelName + "-tense");
-      aspectClassifier = Util.readClassifierFromFile(
-          dir + File.separator + baseModelName + "-aspect");
-      classClassifier = Util.readClassifierFromFile(
-          dir + File.separator + baseModelName + "-class");
+      String base = dir + File.separator + baseModelName;
+      String[] paths = new String[] { base, base + "-tense", base + "-aspect",
+          base + "-class" };
+      for (String path : paths)
+        ModelRegistry.prefetch(path);
+      eventClassifier = ModelRegistry.getRequired(paths[0]);
+      tenseClassifier = ModelRegistry.getRequired(paths[1]);
+      aspectClassifier = ModelRegistry.getRequired(paths[2]);
+      classClassifier = ModelRegistry.getRequired(paths[3]);
     }
   }
 
@@ -7,6 +7,7 @@ import java.util.regex.Pattern;
 import org.jdom.Namespace;
 
 import caevo.util.Pair;
+import caevo.util.TimeInterval;
 import caevo.util.TimeValueParser;
 
 /**
@@ -57,7 +58,9 @@ public class Timex {
   private DocumentFunction documentFunction;
   private boolean temporalFunction = false;
   private String preposition; // feature not in Timebank
-  private Pair<Calendar, Calendar> timeRange;
+  // Read from the value the first time they are asked for.
+  private TimeInterval interval;
+  private TimeInterval dateInterval;
 
   public Timex() {
 
@@ -197,7 +200,8 @@ public class Timex {
 
   public void setValue(String value) {
     this.value = value;
-    this.timeRange = null;
+    this.interval = null;
+    this.dateInterval = null;
   }
 
   public void setPrep(String prep) {
@@ -261,16 +265,41 @@ public class Timex {
   }
 
   public Pair<Calendar, Calendar> getRange(Timex documentCreation) {
-    if (this.type == Timex.Type.DURATION || this.type == Timex.Type.SET
-        || isPastReference() || isFutureReference())
+    TimeInterval interval = getInterval(documentCreation);
+    if (interval == null)
       return null;
+    return TimeValueParser.range(this.value);
+  }
 
-    if (this.timeRange == null) {
-      TimeValueParser timeParse = new TimeValueParser(this.value);
-      this.timeRange = timeParse.getRange();
-    }
+  public TimeInterval getInterval() {
+    return getInterval(null);
+  }
+
+  /**
+   * @return The span of time the value names, or null for durations, sets,
+   *         past and future references, and values that are missing or can't
+   *         be read.
+   */
+  public TimeInterval getInterval(Timex documentCreation) {
+    if (this.value == null || this.type == Timex.Type.DURATION
+        || this.type == Timex.Type.SET || isPastReference()
+        || isFutureReference())
+      return null;
+
+    if (this.interval == null)
+      this.interval = TimeValueParser.interval(this.value);
+
+    return this.interval;
+  }
 
-    return this.timeRange;
+  /**
+   * @return The value's leading YYYY-MM-DD as an interval, or null if it
+   *         doesn't start with a year.
+   */
+  private TimeInterval getDateInterval() {
+    if (this.dateInterval == null)
+      this.dateInterval = TimeInterval.ofDate(this.value);
+    return this.dateInterval;
   }
 
   public boolean isReference() {
@@ -322,49 +351,14 @@ public class Timex {
     // don't bother if we're not a date or time
     if ((this.type == Type.DATE || this.type == Type.TIME)
         && (other.getType() == Type.DATE || other.getType() == Type.TIME)) {
-      String ovalue = other.getValue();
-
-      // make sure there are values to compare
-      if (this.value != null && this.value.length() > 0
-          && this.value.matches("\\d.*") && ovalue != null
-          && ovalue.length() > 0 && ovalue.matches("\\d.*")) {
-
-        if (this.value.equalsIgnoreCase(ovalue))
-          return false;
-
-        try {
-          // System.out.println("Checking " + value + " and " + ovalue);
-          // check years
-          int year = Integer.valueOf(this.value.substring(0, 4));
-          int oyear = Integer.valueOf(ovalue.substring(0, 4));
-          if (year < oyear)
-            return true;
-          else if (oyear < year)
-            return false;
-
-          // check months
-          if (this.value.length() > 4 && ovalue.length() > 4) {
-            int month = Integer.valueOf(this.value.substring(5, 7));
-            int omonth = Integer.valueOf(ovalue.substring(5, 7));
-            if (month < omonth)
-              return true;
-            else if (omonth < month)
-              return false;
-          }
-
-          // check days - some timexes don't have days e.g. "1998-10"
-          if (this.value.length() > 7 && ovalue.length() > 7) {
-            int day = Integer.valueOf(this.value.substring(8, 10));
-            int oday = Integer.valueOf(ovalue.substring(8, 10));
-            if (day < oday)
-              return true;
-            else if (oday < day)
-              return false;
-          }
-          // Called when the date is bad, non-numeric ... "1998-WXX"
-        } catch (NumberFormatException ex) {
-        }
-      }
+      TimeInterval date = getDateInterval();
+      TimeInterval odate = other.getDateInterval();
+
+      // Both must start with a year. Fields are compared down to the finest
+      // one both give as numbers, e.g. only years for "1998-W12" and
+      // "1998-10", so the interval of one must end before the other starts.
+      if (date != null && odate != null)
+        return date.before(odate);
     }
     return false;
   }
@@ -383,52 +377,16 @@ public class Timex {
         || this.type == Type.DURATION)
         && (other.getType() == Type.DATE || other.getType() == Type.TIME
             || other.getType() == Type.DURATION)) {
-      String ovalue = other.getValue();
-
-      // make sure there are values to compare
-      if (this.value != null && this.value.length() > 0
-          && this.value.matches("\\d.*") && ovalue != null
-          && ovalue.length() > 0 && ovalue.matches("\\d.*")) {
-
-        // If the values are exactly the same, then they aren't INCLUDES.
-        if (this.value.equalsIgnoreCase(ovalue))
-          return false;
-
-        // If a timex in the document is "now", then it INCLUDES the document's
-        // creation time.
-        if (this.value.equalsIgnoreCase("PRESENT_REF")
-            && other.getDocumentFunction() == DocumentFunction.CREATION_TIME)
-          return true;
-
-        try {
-          // System.out.println("Checking " + value + " and " + ovalue);
-          // check years
-          int year = Integer.valueOf(this.value.substring(0, 4));
-          int oyear = Integer.valueOf(ovalue.substring(0, 4));
-          if (year != oyear)
-            return false;
-          else { // same year
-
-            // Then this time is a year, and the other is a month in the year.
-            // True!
-            if (this.value.length() == 4 && ovalue.length() > 4)
-              return true;
-
-            // Both have a month, so see if it is the same month.
-            else if (this.value.length() > 4 && ovalue.length() > 4) {
-              int month = Integer.valueOf(this.value.substring(5, 7));
-              int omonth = Integer.valueOf(ovalue.substring(5, 7));
-              if (month != omonth)
-                return false;
-              else if (this.value.length() == 7 && ovalue.length() > 7)
-                return true;
-            }
-          }
-
-          // Called when the date is bad, non-numeric ... "1998-WXX"
-        } catch (NumberFormatException ex) {
-        }
-      }
+      TimeInterval date = getDateInterval();
+      TimeInterval odate = other.getDateInterval();
+
+      // This must be a whole year, month or day that the other lies in, and
+      // the other must say more: a finer field, or one that can't be read
+      // like the week in "1998-W12". The same dates aren't INCLUDES.
+      if (date != null && odate != null && !date.isPartial()
+          && date.contains(odate))
+        return date.getGranularity().compareTo(odate.getGranularity()) < 0
+            || odate.isPartial();
     }
     return false;
   }
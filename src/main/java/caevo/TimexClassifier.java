@@ -90,7 +90,14 @@ public class TimexClassifier {
    * expressions.
    */
   public void markupTimex3() {
-    for (SieveDocument doc : thedocs.getDocuments()) {
+    markupTimex3(thedocs);
+  }
+
+  /**
+   * Destructively mark up the given documents for time expressions.
+   */
+  public void markupTimex3(SieveDocuments docs) {
+    for (SieveDocument doc : docs.getDocuments()) {
       if (debug)
         System.out.println("doc = " + doc.getDocname());
       List<SieveSentence> sentences = doc.getSentences();
@@ -112,8 +119,9 @@ public class TimexClassifier {
 
         // List<CoreLabel> theTokens = preprocessTokens(sent.tokens());
 
-        System.out
-            .println("TimexClassifier markupTimex3 tokens = " + sent.tokens());
+        if (debug)
+          System.out.println(
+              "TimexClassifier markupTimex3 tokens = " + sent.tokens());
         List<Timex> stanfordTimex = markupTimex3(sent.tokens(), tid, docDate);
         myRevisedTimex3(stanfordTimex, docDate);
         tid += stanfordTimex.size();
@@ -128,6 +136,14 @@ public class TimexClassifier {
     }
   }
 
+  /**
+   * Load the SUTime pipeline now rather than on the first sentence.
+   */
+  public void loadPipeline() {
+    if (timexPipeline == null)
+      timexPipeline = getPipeline(true);
+  }
+
   private void myRevisedTimex3(List<Timex> timexes, String docDate) {
     if (docDate != null) {
       docDate = docDate.replaceAll("-", "");
@@ -0,0 +1,157 @@
+package caevo;
+
+import java.util.Arrays;
+import java.util.List;
+
+import caevo.util.EncodedTree;
+import caevo.util.TreeOperator;
+import caevo.util.WordNet;
+
+/**
+ * Per-token facts about one sentence that the classifiers and sieves each
+ * want for the same tokens: POS tags, lemmas, WordNet categories, and the
+ * event (and whether it is a reporting event) at each token. Each is a column
+ * indexed by token, starting at 1 like TextEvent.getIndex(), and is filled the
+ * first time it is asked for, so later callers read the array instead of
+ * walking the parse tree or asking WordNet again.
+ *
+ * Get one with SieveSentence.annotations(). Lemmas and categories are of the
+ * string the caller passes in, since callers lemmatize event strings that may
+ * differ from the sentence's tokens; each index keeps the answer for the first
+ * string it was asked about, and other strings are looked up directly.
+ *
+ * Filling a column gives the same values whichever thread does it, so threads
+ * sharing a sentence may race to fill one without harm: columns are
+ * published whole through volatile fields, and lookups are immutable.
+ */
+public class TokenAnnotations {
+  private final SieveSentence sentence;
+  private volatile String[] posTags;
+  private volatile Lookup[] lemmas;
+  private volatile Lookup[] categories;
+  private volatile TextEvent[] events;
+
+  TokenAnnotations(SieveSentence sentence) {
+    this.sentence = sentence;
+  }
+
+  /**
+   * The same as TreeOperator.indexToPOSTag() on the sentence's parse tree.
+   *
+   * @param index
+   *          The token's index, starting at 1.
+   */
+  public String posTag(int index) {
+    // Hack fix for old parser error with indices from conjunctions.
+    if (index > 1000)
+      index -= 1000;
+    String[] tags = posTags();
+    if (tags == null)
+      return TreeOperator.indexToPOSTag(sentence.getParseTree(), index);
+    return (index >= 1 && index <= tags.length ? tags[index - 1] : null);
+  }
+
+  private String[] posTags() {
+    if (posTags == null) {
+      EncodedTree tree = sentence.getEncodedParse();
+      if (tree != null)
+        posTags = tree.posTags();
+    }
+    return posTags;
+  }
+
+  /**
+   * The same as wordnet.lemmatizeTaggedWord(token, posTag(index)).
+   *
+   * @param token
+   *          The string at the index, as the caller has it.
+   */
+  public String lemma(int index, String token, WordNet wordnet) {
+    Lookup[] column = lemmas;
+    if (column == null)
+      lemmas = column = new Lookup[numTokens() + 1];
+    if (index < 1 || index >= column.length || token == null)
+      return wordnet.lemmatizeTaggedWord(token, posTag(index));
+    Lookup lookup = column[index];
+    if (lookup != null && token.equals(lookup.token))
+      return (String) lookup.value;
+    String lemma = wordnet.lemmatizeTaggedWord(token, posTag(index));
+    if (lookup == null)
+      column[index] = new Lookup(token, lemma);
+    return lemma;
+  }
+
+  /**
+   * The same as wordnet.categories(token), e.g. test
+   * (categories(i, token, wordnet) &amp; WordNet.NOUN_EVENT) != 0.
+   *
+   * @param token
+   *          The string at the index, as the caller has it.
+   */
+  public int categories(int index, String token, WordNet wordnet) {
+    Lookup[] column = categories;
+    if (column == null)
+      categories = column = new Lookup[numTokens() + 1];
+    if (index < 1 || index >= column.length || token == null)
+      return wordnet.categories(token);
+    Lookup lookup = column[index];
+    if (lookup != null && token.equals(lookup.token))
+      return (Integer) lookup.value;
+    int cats = wordnet.categories(token);
+    if (lookup == null)
+      column[index] = new Lookup(token, cats);
+    return cats;
+  }
+
+  /**
+   * @return The sentence's event at the token, or null if there is none. If
+   *         two events claim the token, the last one listed.
+   */
+  public TextEvent event(int index) {
+    if (events == null) {
+      TextEvent[] column = new TextEvent[numTokens() + 1];
+      for (TextEvent event : sentence.events()) {
+        int i = event.getIndex();
+        if (i >= column.length)
+          column = Arrays.copyOf(column, i + 1);
+        if (i >= 1)
+          column[i] = event;
+      }
+      events = column;
+    }
+    return (index >= 1 && index < events.length ? events[index] : null);
+  }
+
+  /**
+   * @return True if the event at the token is of class REPORTING.
+   */
+  public boolean isReporting(int index) {
+    TextEvent event = event(index);
+    return event != null && event.getTheClass() == TextEvent.Class.REPORTING;
+  }
+
+  /**
+   * @return The number of tokens, from the tokens if the sentence has them,
+   *         else the parse tree.
+   */
+  private int numTokens() {
+    List<?> tokens = sentence.tokens();
+    if (tokens != null)
+      return tokens.size();
+    String[] tags = posTags();
+    return (tags == null ? 0 : tags.length);
+  }
+
+  /**
+   * What a token string was looked up as.
+   */
+  private static class Lookup {
+    final String token;
+    final Object value;
+
+    Lookup(String token, Object value) {
+      this.token = token;
+      this.value = value;
+    }
+  }
+}
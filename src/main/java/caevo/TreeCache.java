@@ -0,0 +1,286 @@
+package caevo;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TypedDependency;
+
+/**
+ * Process-wide cache of the Tree and TypedDependency objects that SieveSentence
+ * builds from its parses. It holds at most a budget of (estimated) bytes
+ * across all sentences of all documents, dropping the least recently used
+ * first. A dropped tree is rebuilt from its sentence the next time it is asked
+ * for, so a long run keeps a flat heap instead of every parse of every
+ * sentence it has seen. A budget of 0 or less turns the cache off.
+ *
+ * Like LookupCache, entries are spread over independently locked segments,
+ * each with its share of the budget, so threads working on different
+ * sentences rarely wait on each other. Sentences are held weakly and compared
+ * by identity: the cache never keeps a document alive, and the entries of a
+ * collected sentence are dropped on a later put.
+ *
+ * Rebuilt trees are new objects. Code that compares nodes of one sentence's
+ * tree by identity should ask for the tree once and hold on to it, as the
+ * sieves do with trees.get(sid) from SieveDocument.getAllParseTrees().
+ *
+ * Sizes are estimates from node and dependency counts, not measurements.
+ */
+public class TreeCache {
+  public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+  // Rough heap cost of one tree node (node, CoreLabel, child array) and of
+  // one dependency (two TreeGraphNodes with their labels).
+  static final int BYTES_PER_TREE_NODE = 200;
+  static final int BYTES_PER_DEPENDENCY = 450;
+
+  private static final int TREE = 0, DEPS = 1;
+  private static final int SEGMENTS = 16;
+
+  private static volatile long budget = DEFAULT_BUDGET;
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong misses = new AtomicLong();
+  private static final AtomicLong evictions = new AtomicLong();
+  private static final Segment[] segments = new Segment[SEGMENTS];
+  static {
+    for (int i = 0; i < SEGMENTS; i++)
+      segments[i] = new Segment();
+  }
+  // Keys whose sentences have been collected.
+  private static final ReferenceQueue<SieveSentence> collected =
+      new ReferenceQueue<SieveSentence>();
+
+  private TreeCache() {
+  }
+
+  /**
+   * @param bytes
+   *          The most (estimated) bytes to hold. 0 or less turns the cache off
+   *          and drops everything in it.
+   */
+  public static void setBudget(long bytes) {
+    budget = bytes;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.evict(null);
+      }
+    }
+  }
+
+  public static long getBudget() {
+    return budget;
+  }
+
+  static Tree getTree(SieveSentence sent) {
+    return (Tree) get(sent, TREE);
+  }
+
+  static void putTree(SieveSentence sent, Tree tree, long bytes) {
+    put(sent, TREE, tree, bytes);
+  }
+
+  @SuppressWarnings("unchecked")
+  static List<TypedDependency> getDeps(SieveSentence sent) {
+    return (List<TypedDependency>) get(sent, DEPS);
+  }
+
+  static void putDeps(SieveSentence sent, List<TypedDependency> deps,
+      long bytes) {
+    put(sent, DEPS, deps, bytes);
+  }
+
+  private static Segment segmentFor(Key key) {
+    return segments[(key.hash & 0x7fffffff) % SEGMENTS];
+  }
+
+  private static Object get(SieveSentence sent, int kind) {
+    if (budget <= 0)
+      return null;
+    Key key = new Key(sent, kind, null);
+    Segment segment = segmentFor(key);
+    Entry entry;
+    synchronized (segment) {
+      entry = segment.get(key);
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.value;
+  }
+
+  private static void put(SieveSentence sent, int kind, Object value,
+      long bytes) {
+    if (value == null || budget <= 0)
+      return;
+    purgeCollected();
+    Key key = new Key(sent, kind, collected);
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      segment.add(key, new Entry(value, bytes));
+    }
+  }
+
+  /**
+   * Drop the entries of sentences that have been collected.
+   */
+  private static void purgeCollected() {
+    Reference<? extends SieveSentence> ref;
+    while ((ref = collected.poll()) != null) {
+      Key key = (Key) ref;
+      Segment segment = segmentFor(key);
+      synchronized (segment) {
+        segment.discard(key);
+      }
+    }
+  }
+
+  /**
+   * Drop everything, and reset the counters.
+   */
+  public static void clear() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+        segment.used = 0;
+      }
+    }
+    hits.set(0);
+    misses.set(0);
+    evictions.set(0);
+  }
+
+  public static long getHits() {
+    return hits.get();
+  }
+
+  public static long getMisses() {
+    return misses.get();
+  }
+
+  public static long getEvictions() {
+    return evictions.get();
+  }
+
+  public static long getBytesUsed() {
+    long used = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        used += segment.used;
+      }
+    }
+    return used;
+  }
+
+  public static String statsString() {
+    long b = budget;
+    if (b <= 0)
+      return "Tree cache: off";
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return "Tree cache: " + hits.get() + " hits, " + misses.get()
+        + " misses, " + evictions.get() + " evictions, " + size + " held in ~"
+        + (getBytesUsed() / (1024 * 1024)) + "MB of " + (b / (1024 * 1024))
+        + "MB";
+  }
+
+  /**
+   * One lock's share of the entries, in least recently used order, and of the
+   * budget.
+   */
+  private static class Segment extends LinkedHashMap<Key, Entry> {
+    private static final long serialVersionUID = 1L;
+    long used = 0;
+
+    Segment() {
+      super(64, 0.75f, true);
+    }
+
+    void add(Key key, Entry entry) {
+      Entry old = put(key, entry);
+      if (old != null)
+        used -= old.bytes;
+      used += entry.bytes;
+      evict(key);
+    }
+
+    void discard(Key key) {
+      Entry old = remove(key);
+      if (old != null)
+        used -= old.bytes;
+    }
+
+    /**
+     * Drop least recently used entries until we are under our share of the
+     * budget, never the one just added.
+     */
+    void evict(Key keep) {
+      long b = budget;
+      if (b <= 0) {
+        clear();
+        used = 0;
+        return;
+      }
+      long share = Math.max(1, b / SEGMENTS);
+      Iterator<Map.Entry<Key, Entry>> iter = entrySet().iterator();
+      while (used > share && iter.hasNext()) {
+        Map.Entry<Key, Entry> eldest = iter.next();
+        if (eldest.getKey().equals(keep))
+          continue;
+        used -= eldest.getValue().bytes;
+        iter.remove();
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * A sentence, held weakly and compared by identity, and which of its
+   * objects. A key whose sentence is gone only equals itself, so it can still
+   * be removed.
+   */
+  private static class Key extends WeakReference<SieveSentence> {
+    final int kind;
+    final int hash;
+
+    Key(SieveSentence sent, int kind, ReferenceQueue<SieveSentence> queue) {
+      super(sent, queue);
+      this.kind = kind;
+      this.hash = 31 * System.identityHashCode(sent) + kind;
+    }
+
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      SieveSentence sent = get();
+      return sent != null && sent == other.get() && kind == other.kind;
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static class Entry {
+    final Object value;
+    final long bytes;
+
+    Entry(Object value, long bytes) {
+      this.value = value;
+      this.bytes = bytes;
+    }
+  }
+}
@@ -15,7 +15,6 @@ import caevo.tlink.EventTimeLink;
 import caevo.tlink.TLink;
 import caevo.util.CaevoProperties;
 import caevo.util.TreeOperator;
-import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.trees.GrammaticalRelation;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.TypedDependency;
@@ -498,9 +497,7 @@ public class AdjacentVerbTimex implements Sieve {
   // index is 1. sent.tokens() does not count this way, so we
   // need to subtract 1 from index when retrieving our core label.
   private String getTextAtIndex(int index, SieveSentence sent) {
-    CoreLabel cl = sent.tokens().get(index - 1);
-    String text = cl.originalText();
-    return text;
+    return sent.tokens().text(index - 1);
   }
 
   // public void checkTLink(TLink tlink, List<TLink> proposed) throws
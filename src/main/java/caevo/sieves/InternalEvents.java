@@ -1,9 +1,7 @@
 package caevo.sieves;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import caevo.SieveDocument;
 import caevo.SieveDocuments;
@@ -11,6 +9,7 @@ import caevo.SieveSentence;
 import caevo.TextEvent;
 import caevo.TextEvent.Aspect;
 import caevo.TextEvent.Tense;
+import caevo.TokenAnnotations;
 import caevo.tlink.EventEventLink;
 import caevo.tlink.TLink;
 import caevo.tlink.TLink.Type;
@@ -35,15 +34,8 @@ public class InternalEvents implements Sieve {
       List<TextEvent> events = sent.events();
       List<TypedDependency> deps = sent.getDeps();
 
-      Map<Integer, TextEvent> indexToEvent = new HashMap<Integer, TextEvent>();
+      TokenAnnotations tokens = sent.annotations();
       // System.out.println(sent.sentence());
-      for (TextEvent event : events) {
-        indexToEvent.put(event.getIndex(), event);
-
-        // System.out.println("event:\t" + event);
-        // System.out.println("\tdominates:\t" +
-        // Ling.getAllDominatedEvents(sent, event));
-      }
 
       for (TextEvent govEvent : events) {
         List<TextEvent> dominatedEvents = Ling.getAllDominatedEvents(sent,
@@ -74,8 +66,8 @@ public class InternalEvents implements Sieve {
       }
 
       for (TypedDependency dep : deps) {
-        TextEvent govEvent = indexToEvent.get(dep.gov().index());
-        TextEvent depEvent = indexToEvent.get(dep.dep().index());
+        TextEvent govEvent = tokens.event(dep.gov().index());
+        TextEvent depEvent = tokens.event(dep.dep().index());
         if (govEvent != null && depEvent != null) {
           if (govEvent.getTheClass().equals(TextEvent.Class.I_ACTION)) {
             Type relation = null;
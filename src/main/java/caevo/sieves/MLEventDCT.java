@@ -1,6 +1,7 @@
 package caevo.sieves;
 
 import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,7 +18,7 @@ import caevo.tlink.TLinkFeaturizer;
 import caevo.util.Pair;
 import caevo.util.CaevoProperties;
 import caevo.util.TimebankUtil;
-import caevo.util.Util;
+import caevo.util.ModelRegistry;
 import edu.stanford.nlp.classify.Classifier;
 import edu.stanford.nlp.io.IOUtils;
 
@@ -28,6 +29,7 @@ import edu.stanford.nlp.io.IOUtils;
  */
 public class MLEventDCT implements Sieve {
   Classifier<String, String> eDCTClassifier = null; // event-DCT links.
+  URL eDCTModel = null; // read into eDCTClassifier on first use.
   Classifier<String, String> eDCTExistsClassifier = null; // binary, is there a
                                                           // link or not?
   TLinkFeaturizer featurizer;
@@ -75,7 +77,7 @@ public class MLEventDCT implements Sieve {
    */
   public List<TLink> annotate(SieveDocument doc, List<TLink> currentTLinks) {
     // Classifier loading must have failed in init()
-    if (eDCTClassifier == null)
+    if (eDCTClassifier() == null)
       return null;
 
     List<TLink> labeled = extractEventDCTLinks(doc);
@@ -108,7 +110,7 @@ public class MLEventDCT implements Sieve {
             TLinkDatum datum = featurizer.createEventDocumentTimeDatum(doc,
                 event, dct, null);
             Pair<String, Double> labelProb = TLinkClassifier
-                .getLabelProb(eDCTClassifier, datum.createRVFDatum());
+                .getLabelProb(eDCTClassifier(), datum.createRVFDatum());
             TLink link = new EventTimeLink(event.getEiid(), dct.getTid(),
                 TLink.Type.valueOf(labelProb.first()));
             link.setRelationConfidence(labelProb.second());
@@ -125,8 +127,14 @@ public class MLEventDCT implements Sieve {
   private void readClassifiers() {
     String path = "/models/tlinks/" + eDCTName;
     System.out.println("Loading edct from " + path);
-    eDCTClassifier = Util
-        .readClassifierFromFile(this.getClass().getResource(path));
+    eDCTModel = this.getClass().getResource(path);
+    ModelRegistry.prefetch(eDCTModel);
+  }
+
+  private Classifier<String, String> eDCTClassifier() {
+    if (eDCTClassifier == null)
+      eDCTClassifier = ModelRegistry.get(eDCTModel);
+    return eDCTClassifier;
   }
 
   /**
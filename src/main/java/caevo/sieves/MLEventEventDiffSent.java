@@ -1,6 +1,7 @@
 package caevo.sieves;
 
 import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,7 +16,7 @@ import caevo.tlink.TLinkDatum;
 import caevo.tlink.TLinkFeaturizer;
 import caevo.util.Pair;
 import caevo.util.CaevoProperties;
-import caevo.util.Util;
+import caevo.util.ModelRegistry;
 import edu.stanford.nlp.classify.Classifier;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.ling.RVFDatum;
@@ -34,6 +35,7 @@ public class MLEventEventDiffSent implements Sieve {
   Classifier<String, String> eeDiffSentExistsClassifier = null; // binary, is
                                                                 // there a link
                                                                 // or not?
+  URL eeDiffSentModel = null; // read into eeDiffSentClassifier on first use.
   TLinkFeaturizer featurizer;
 
   String eeDiffSentName = "tlink.ee.diffsent.classifier";
@@ -75,7 +77,7 @@ public class MLEventEventDiffSent implements Sieve {
    */
   public List<TLink> annotate(SieveDocument doc, List<TLink> currentTLinks) {
     // Classifier loading must have failed in init()
-    if (eeDiffSentClassifier == null)
+    if (eeDiffSentClassifier() == null)
       return null;
 
     return extractDiffSentenceEventEventLinks(doc);
@@ -116,7 +118,7 @@ public class MLEventEventDiffSent implements Sieve {
   private EventEventLink createInterSentenceEELink(SieveDocument doc,
       TextEvent event1, TextEvent event2) {
     // Normal, 1 classifier for all event-event links.
-    Classifier<String, String> targetClassifier = eeDiffSentClassifier;
+    Classifier<String, String> targetClassifier = eeDiffSentClassifier();
 
     // Get the best label and its probability.
     TLinkDatum datum = featurizer.createEventEventDatum(doc, event1, event2,
@@ -135,8 +137,14 @@ public class MLEventEventDiffSent implements Sieve {
 
   private void readClassifiers() {
     String path = "/models/tlinks/" + eeDiffSentName;
-    eeDiffSentClassifier = Util
-        .readClassifierFromFile(this.getClass().getResource(path));
+    eeDiffSentModel = this.getClass().getResource(path);
+    ModelRegistry.prefetch(eeDiffSentModel);
+  }
+
+  private Classifier<String, String> eeDiffSentClassifier() {
+    if (eeDiffSentClassifier == null)
+      eeDiffSentClassifier = ModelRegistry.get(eeDiffSentModel);
+    return eeDiffSentClassifier;
   }
 
   /**
@@ -2,6 +2,7 @@ package caevo.sieves;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -18,8 +19,8 @@ import caevo.tlink.TLinkDatum;
 import caevo.tlink.TLinkFeaturizer;
 import caevo.util.Pair;
 import caevo.util.CaevoProperties;
+import caevo.util.ModelRegistry;
 import caevo.util.TimebankUtil;
-import caevo.util.Util;
 import edu.stanford.nlp.classify.Classifier;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.ling.RVFDatum;
@@ -42,6 +43,7 @@ public class MLEventEventDominates extends MLEventEventSameSent {
                                                                    // event-event
                                                                    // syntactically
                                                                    // dominates
+  URL eeSameSentDominatesModel = null; // read into the above on first use.
   String modelName = "tlink.ee.dominates.classifier";
 
   int featMinOccurrence = 2;
@@ -79,7 +81,7 @@ public class MLEventEventDominates extends MLEventEventSameSent {
    */
   public List<TLink> annotate(SieveDocument doc, List<TLink> currentTLinks) {
     // Classifier loading must have failed in init()
-    if (eeSameSentDominatesClassifier == null)
+    if (eeSameSentDominatesClassifier() == null)
       return null;
 
     List<TLink> labeled = extractEventEventDominatesLinks(doc);
@@ -145,7 +147,7 @@ public class MLEventEventDominates extends MLEventEventSameSent {
   private EventEventLink createIntraSentenceEELink(SieveDocument doc,
       TextEvent event1, TextEvent event2) {
     // Normal, 1 classifier for all event-event links.
-    Classifier<String, String> targetClassifier = eeSameSentDominatesClassifier;
+    Classifier<String, String> targetClassifier = eeSameSentDominatesClassifier();
 
     // Get the best label and its probability.
     TLinkDatum datum = featurizer.createEventEventDatum(doc, event1, event2,
@@ -169,14 +171,21 @@ public class MLEventEventDominates extends MLEventEventSameSent {
    */
   private void readClassifiers() {
     String path = modelDir + File.separator + modelName;
-    eeSameSentDominatesClassifier = Util
-        .readClassifierFromFile(this.getClass().getResource(path));
-    if (eeSameSentDominatesClassifier == null)
+    eeSameSentDominatesModel = this.getClass().getResource(path);
+    ModelRegistry.prefetch(eeSameSentDominatesModel);
+    if (eeSameSentDominatesModel == null)
       System.out.println(
           "ERROR: MLEventEventDominates could not read its classifier at: "
               + path);
   }
 
+  private Classifier<String, String> eeSameSentDominatesClassifier() {
+    if (eeSameSentDominatesClassifier == null)
+      eeSameSentDominatesClassifier = ModelRegistry
+          .get(eeSameSentDominatesModel);
+    return eeSameSentDominatesClassifier;
+  }
+
   private void writeClassifier(Classifier<String, String> classifier,
       String filename) {
     try {
@@ -2,6 +2,7 @@ package caevo.sieves;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -20,8 +21,8 @@ import caevo.tlink.TLinkDatum;
 import caevo.tlink.TLinkFeaturizer;
 import caevo.util.Pair;
 import caevo.util.CaevoProperties;
+import caevo.util.ModelRegistry;
 import caevo.util.TimebankUtil;
-import caevo.util.Util;
 import edu.stanford.nlp.classify.Classifier;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.ling.RVFDatum;
@@ -43,6 +44,7 @@ import edu.stanford.nlp.trees.Tree;
 public class MLEventEventSameSent implements Sieve {
   Classifier<String, String> eeSameSentClassifier = null; // intra-sentence
                                                           // event-event links.
+  URL eeSameSentModel = null; // read into eeSameSentClassifier on first use.
   Map<TLink.Type, Classifier<String, String>> binaryLabelClassifiers;
 
   Classifier<String, String> eeSameSentExistsClassifier = null; // binary, is
@@ -108,7 +110,7 @@ public class MLEventEventSameSent implements Sieve {
    */
   public List<TLink> annotate(SieveDocument doc, List<TLink> currentTLinks) {
     // Classifier loading must have failed in init()
-    if (eeSameSentClassifier == null)
+    if (eeSameSentClassifier() == null)
       return null;
 
     List<TLink> labeled = extractSameSentenceEventEventLinks(doc);
@@ -171,12 +173,12 @@ public class MLEventEventSameSent implements Sieve {
   private EventEventLink createIntraSentenceEELink(SieveDocument doc,
       TextEvent event1, TextEvent event2) {
     // Normal, 1 classifier for all event-event links.
-    Classifier<String, String> targetClassifier = eeSameSentClassifier;
+    Classifier<String, String> targetClassifier = eeSameSentClassifier();
 
     // We are doing a binary classification on one link type.
     if (doBinaryLabel != null)
-      targetClassifier = binaryLabelClassifiers
-          .get(TLink.Type.valueOf(doBinaryLabel));
+      targetClassifier = binaryLabelClassifier(
+          TLink.Type.valueOf(doBinaryLabel));
 
     // Use 2 classifiers for event-event links. One for syntactic dominance, the
     // other for general.
@@ -212,22 +214,35 @@ public class MLEventEventSameSent implements Sieve {
    */
   private void readClassifiers() {
     String path = modelDir + File.separator + eeSameSentName;
-    eeSameSentClassifier = Util
-        .readClassifierFromFile(this.getClass().getResource(path));
-    if (eeSameSentClassifier == null)
+    eeSameSentModel = this.getClass().getResource(path);
+    ModelRegistry.prefetch(eeSameSentModel);
+    if (eeSameSentModel == null)
       System.out.println(
           "ERROR: MLEventEventSameSent could not read its classifier at: "
               + path);
 
-    // Read the binary classifiers, one for each label type.
+    // The binary classifiers, one for each label type, are only needed with
+    // the binaryLabel option, so they are read when first asked for.
     binaryLabelClassifiers = new HashMap<TLink.Type, Classifier<String, String>>();
-    for (TLink.Type label : labels) {
+  }
+
+  private Classifier<String, String> eeSameSentClassifier() {
+    if (eeSameSentClassifier == null)
+      eeSameSentClassifier = ModelRegistry.get(eeSameSentModel);
+    return eeSameSentClassifier;
+  }
+
+  /**
+   * @return The binary classifier for the label, or null if there is none.
+   */
+  private Classifier<String, String> binaryLabelClassifier(TLink.Type label) {
+    if (!binaryLabelClassifiers.containsKey(label)) {
       String mpath = "/models/tlinks/tlink.ee.samesent." + label.toString()
           + ".classifier";
-      Classifier<String, String> classifier = Util
-          .readClassifierFromFile(this.getClass().getResource(mpath));
-      binaryLabelClassifiers.put(label, classifier);
+      binaryLabelClassifiers.put(label,
+          ModelRegistry.get(this.getClass().getResource(mpath)));
     }
+    return binaryLabelClassifiers.get(label);
   }
 
   private void writeClassifier(Classifier<String, String> classifier,
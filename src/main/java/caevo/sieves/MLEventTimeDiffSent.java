@@ -1,6 +1,7 @@
 package caevo.sieves;
 
 import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,7 +17,7 @@ import caevo.tlink.TLinkDatum;
 import caevo.tlink.TLinkFeaturizer;
 import caevo.util.Pair;
 import caevo.util.CaevoProperties;
-import caevo.util.Util;
+import caevo.util.ModelRegistry;
 import edu.stanford.nlp.classify.Classifier;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.ling.RVFDatum;
@@ -35,6 +36,7 @@ public class MLEventTimeDiffSent implements Sieve {
   Classifier<String, String> etDiffSentExistsClassifier = null; // binary, is
                                                                 // there a link
                                                                 // or not?
+  URL etDiffSentModel = null; // read into etDiffSentClassifier on first use.
   TLinkFeaturizer featurizer;
 
   String etDiffSentName = "tlink.et.diffsent.classifier";
@@ -76,7 +78,7 @@ public class MLEventTimeDiffSent implements Sieve {
    */
   public List<TLink> annotate(SieveDocument doc, List<TLink> currentTLinks) {
     // Classifier loading must have failed in init()
-    if (etDiffSentClassifier == null)
+    if (etDiffSentClassifier() == null)
       return null;
 
     return extractDiffSentenceEventTimeLinks(doc);
@@ -109,7 +111,7 @@ public class MLEventTimeDiffSent implements Sieve {
                 timex, null);
             RVFDatum<String, String> rvf = datum.createRVFDatum();
             Pair<String, Double> labelProb = TLinkClassifier
-                .getLabelProb(etDiffSentClassifier, rvf);
+                .getLabelProb(etDiffSentClassifier(), rvf);
             TLink link = new EventTimeLink(event.getEiid(), timex.getTid(),
                 TLink.Type.valueOf(labelProb.first()));
             link.setRelationConfidence(labelProb.second());
@@ -124,7 +126,7 @@ public class MLEventTimeDiffSent implements Sieve {
                 timex, null);
             RVFDatum<String, String> rvf = datum.createRVFDatum();
             Pair<String, Double> labelProb = TLinkClassifier
-                .getLabelProb(etDiffSentClassifier, rvf);
+                .getLabelProb(etDiffSentClassifier(), rvf);
             TLink link = new EventTimeLink(event.getEiid(), timex.getTid(),
                 TLink.Type.valueOf(labelProb.first()));
             link.setRelationConfidence(labelProb.second());
@@ -141,8 +143,14 @@ public class MLEventTimeDiffSent implements Sieve {
   private void readClassifiers() {
     String path = "/models/tlinks/" + etDiffSentName;
     System.out.println("Loading et diffsent from " + path);
-    etDiffSentClassifier = Util
-        .readClassifierFromFile(this.getClass().getResource(path));
+    etDiffSentModel = this.getClass().getResource(path);
+    ModelRegistry.prefetch(etDiffSentModel);
+  }
+
+  private Classifier<String, String> etDiffSentClassifier() {
+    if (etDiffSentClassifier == null)
+      etDiffSentClassifier = ModelRegistry.get(etDiffSentModel);
+    return etDiffSentClassifier;
   }
 
   /**
@@ -1,6 +1,7 @@
 package caevo.sieves;
 
 import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,7 +17,7 @@ import caevo.tlink.TLinkDatum;
 import caevo.tlink.TLinkFeaturizer;
 import caevo.util.Pair;
 import caevo.util.CaevoProperties;
-import caevo.util.Util;
+import caevo.util.ModelRegistry;
 import edu.stanford.nlp.classify.Classifier;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.ling.RVFDatum;
@@ -38,6 +39,7 @@ public class MLEventTimeSameSent implements Sieve {
   Classifier<String, String> etSameSentExistsClassifier = null; // binary, is
                                                                 // there a link
                                                                 // or not?
+  URL etSameSentModel = null; // read into etSameSentClassifier on first use.
   TLinkFeaturizer featurizer;
 
   String etSameSentName = "tlink.et.samesent.classifier";
@@ -78,7 +80,7 @@ public class MLEventTimeSameSent implements Sieve {
    */
   public List<TLink> annotate(SieveDocument doc, List<TLink> currentTLinks) {
     // Classifier loading must have failed in init()
-    if (etSameSentClassifier == null)
+    if (etSameSentClassifier() == null)
       return null;
 
     return extractSameSentenceEventTimeLinks(doc);
@@ -107,7 +109,7 @@ public class MLEventTimeSameSent implements Sieve {
                 timex, null);
             RVFDatum<String, String> rvf = datum.createRVFDatum();
             Pair<String, Double> labelProb = TLinkClassifier
-                .getLabelProb(etSameSentClassifier, rvf);
+                .getLabelProb(etSameSentClassifier(), rvf);
             TLink link = new EventTimeLink(event.getEiid(), timex.getTid(),
                 TLink.Type.valueOf(labelProb.first()));
             link.setRelationConfidence(labelProb.second());
@@ -124,8 +126,14 @@ public class MLEventTimeSameSent implements Sieve {
   private void readClassifiers() {
     String path = "/models/tlinks/" + etSameSentName;
     System.out.println("Loading et samesent from " + path);
-    etSameSentClassifier = Util
-        .readClassifierFromFile(this.getClass().getResource(path));
+    etSameSentModel = this.getClass().getResource(path);
+    ModelRegistry.prefetch(etSameSentModel);
+  }
+
+  private Classifier<String, String> etSameSentClassifier() {
+    if (etSameSentClassifier == null)
+      etSameSentClassifier = ModelRegistry.get(etSameSentModel);
+    return etSameSentClassifier;
   }
 
   /**
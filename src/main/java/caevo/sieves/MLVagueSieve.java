@@ -16,7 +16,7 @@ import caevo.tlink.TLinkClassifier;
 import caevo.tlink.TLinkDatum;
 import caevo.util.Pair;
 import caevo.util.CaevoProperties;
-import caevo.util.Util;
+import caevo.util.ModelRegistry;
 import edu.stanford.nlp.classify.Classifier;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.ling.RVFDatum;
@@ -92,6 +92,7 @@ public class MLVagueSieve implements Sieve {
   /* TLink types to classify (everything else is NONE) */
   private HashSet<TLink.Type> includeTypes = new HashSet<TLink.Type>();
   private Classifier<String, String> model;
+  private String modelReadPath = null; // read into model on first use.
 
   public MLVagueSieve() {
     try {
@@ -104,8 +105,10 @@ public class MLVagueSieve implements Sieve {
           .getDouble("MLVagueSieve.minConfidence", 0.7);
 
       File f = new File(this.modelSavePath);
-      if (f.exists())
-        this.model = Util.readClassifierFromFile(this.modelSavePath);
+      if (f.exists()) {
+        this.modelReadPath = this.modelSavePath;
+        ModelRegistry.prefetch(this.modelReadPath);
+      }
     } catch (IOException e) {
       // TODO Auto-generated catch block
       e.printStackTrace();
@@ -119,6 +122,12 @@ public class MLVagueSieve implements Sieve {
     // this.includeTypes.add(TLink.Type.SIMULTANEOUS);
   }
 
+  private Classifier<String, String> model() {
+    if (this.model == null && this.modelReadPath != null)
+      this.model = ModelRegistry.get(this.modelReadPath);
+    return this.model;
+  }
+
   public List<TLink> annotate(SieveDocument doc, List<TLink> currentTLinks) {
     List<TLink> proposed = new ArrayList<TLink>();
 
@@ -134,7 +143,7 @@ public class MLVagueSieve implements Sieve {
     List<List<TextEvent>> sentenceEvents = doc.getEventsBySentence();
     List<TLink> proposed = new ArrayList<TLink>();
 
-    if (this.model == null)
+    if (model() == null)
       return proposed;
 
     for (int s = 0; s < sentenceEvents.size(); s++) {
@@ -163,7 +172,7 @@ public class MLVagueSieve implements Sieve {
     TLinkDatum datum = textEventsToUnlabelledDatum(event1, event2);
     RVFDatum<String, String> rvf = datum.createRVFDatum();
 
-    Pair<String, Double> labelProb = TLinkClassifier.getLabelProb(this.model,
+    Pair<String, Double> labelProb = TLinkClassifier.getLabelProb(model(),
         rvf);
     TLink.Type linkType = TLink.Type.valueOf(labelProb.first());
 
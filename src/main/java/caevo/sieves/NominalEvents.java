@@ -14,8 +14,6 @@ import caevo.tlink.EventEventLink;
 import caevo.tlink.EventTimeLink;
 import caevo.tlink.TLink;
 import caevo.util.Pair;
-import caevo.util.TreeOperator;
-import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.TypedDependency;
 
 /**
@@ -43,13 +41,11 @@ public class NominalEvents implements Sieve {
     List<TLink> proposed = new ArrayList<TLink>();
     for (SieveSentence sent : doc.getSentences()) {
       List<TextEvent> events = sent.events();
-      List<Tree> trees = doc.getAllParseTrees();
       // List<TypedDependency> deps = sent.getDeps();
 
       for (int ii = 0; ii < events.size(); ii++) {
         TextEvent event = events.get(ii);
-        String pos = TreeOperator.indexToPOSTag(trees.get(event.getSid()),
-            event.getIndex());
+        String pos = sent.annotations().posTag(event.getIndex());
         // System.out.println("EVENT: " + event + " index: " +
         // (event.getIndex()) + " pos: " + pos);
 
@@ -13,7 +13,6 @@ import caevo.Timex;
 import caevo.tlink.EventTimeLink;
 import caevo.tlink.TLink;
 import caevo.util.TreeOperator;
-import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.trees.LabeledScoredTreeFactory;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.TreeFactory;
@@ -99,9 +98,7 @@ public class QuarterSieveReporting implements Sieve {
   }
 
   private String getTokenText(int index, SieveSentence sent) {
-    List<CoreLabel> tokens = sent.tokens();
-    CoreLabel token = tokens.get(index);
-    return token.originalText();
+    return sent.tokens().text(index);
   }
 
   // returns the label appropriate for the word between the verb and quarter
@@ -18,7 +18,6 @@ import caevo.util.Pair;
 import caevo.util.CaevoProperties;
 import caevo.util.TimebankUtil;
 import caevo.util.TreeOperator;
-import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.TypedDependency;
 
 /**
@@ -78,11 +77,8 @@ public class ReichenbachDG13 implements Sieve {
     // // get all events by sentence
     // List<List<TextEvent>> eventsBySent = doc.getEventsBySentence();
     // List<TextEvent> allEvents = doc.getEvents();
-    // // we need all trees in order to get pos tags
-    List<Tree> trees = doc.getAllParseTrees();
-    //
     // // we need the sentences and td's to pass to the "pseudoTense" util
-    // function
+    // function, and their annotations for pos tags
 
     List<SieveSentence> sents = doc.getSentences();
 
@@ -120,8 +116,7 @@ public class ReichenbachDG13 implements Sieve {
         TextEvent e2 = eventPair.second();
         SieveSentence sent1 = sents.get(e1.getSid());
         SieveSentence sent2 = sents.get(e2.getSid());
-        TLink.Type tlink = getLabel(e1, e2, sent1, sent2, trees,
-            eventToContext);
+        TLink.Type tlink = getLabel(e1, e2, sent1, sent2, eventToContext);
         addPair(e1, e2, tlink, proposed, doc);
       }
     }
@@ -416,11 +411,11 @@ public class ReichenbachDG13 implements Sieve {
   // pairs
   // from consideration.
   private TLink.Type getLabel(TextEvent e1, TextEvent e2, SieveSentence sent1,
-      SieveSentence sent2, List<Tree> trees,
+      SieveSentence sent2,
       HashMap<TextEvent, ArrayList<Timex>> eventToContext) {
     // get pos tags for e1 and e2
-    String e1Pos = posTagFromTree(trees.get(e1.getSid()), e1.getIndex());
-    String e2Pos = posTagFromTree(trees.get(e2.getSid()), e2.getIndex());
+    String e1Pos = sent1.annotations().posTag(e1.getIndex());
+    String e2Pos = sent2.annotations().posTag(e2.getIndex());
     // if e1 and e2 aren't both verbs, then label is null
     if (!e1Pos.startsWith("VB") || !e2Pos.startsWith("VB")) {
       return null;
@@ -759,19 +754,6 @@ public class ReichenbachDG13 implements Sieve {
       return null;
   }
 
-  /**
-   * given a tree, return the pos tag for the element with TextEvent index
-   * "index"
-   * 
-   * @param tree
-   * @param index
-   * @return
-   */
-  private String posTagFromTree(Tree tree, int index) {
-    String pos = TreeOperator.indexToPOSTag(tree, index);
-    return pos;
-  }
-
   /**
    * check if two events e1 and e2 share tense
    * 
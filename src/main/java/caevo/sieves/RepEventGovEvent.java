@@ -1,9 +1,7 @@
 package caevo.sieves;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import caevo.SieveDocument;
 import caevo.SieveDocuments;
@@ -11,6 +9,7 @@ import caevo.SieveSentence;
 import caevo.TextEvent;
 import caevo.TextEvent.Aspect;
 import caevo.TextEvent.Tense;
+import caevo.TokenAnnotations;
 import caevo.tlink.EventEventLink;
 import caevo.tlink.TLink;
 import caevo.tlink.TLink.Type;
@@ -33,19 +32,15 @@ public class RepEventGovEvent implements Sieve {
     for (SieveSentence sent : doc.getSentences()) {
       List<TextEvent> events = sent.events();
       List<TypedDependency> deps = sent.getDeps();
-
-      Map<Integer, TextEvent> indexToEvent = new HashMap<Integer, TextEvent>();
-      for (TextEvent event : events) {
-        indexToEvent.put(event.getIndex(), event);
-      }
+      TokenAnnotations tokens = sent.annotations();
 
       // Find all event-event pairs with a typed dependency where one is
       // governor of the other.
       for (TypedDependency dep : deps) {
-        TextEvent govEvent = indexToEvent.get(dep.gov().index());
-        TextEvent depEvent = indexToEvent.get(dep.dep().index());
+        TextEvent govEvent = tokens.event(dep.gov().index());
+        TextEvent depEvent = tokens.event(dep.dep().index());
         if (govEvent != null && depEvent != null) {
-          if (govEvent.getTheClass().equals(TextEvent.Class.REPORTING)) {
+          if (tokens.isReporting(dep.gov().index())) {
             Type relation = null;
             if (depEvent.getTheClass().equals(TextEvent.Class.REPORTING)) {
               // no clear pattern for relations between speech events;
@@ -1,7 +1,6 @@
 package caevo.sieves;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 
 import caevo.SieveDocument;
@@ -9,7 +8,7 @@ import caevo.SieveDocuments;
 import caevo.Timex;
 import caevo.tlink.TLink;
 import caevo.tlink.TimeTimeLink;
-import caevo.util.Pair;
+import caevo.util.TimeInterval;
 
 /**
  * TimeTimeSieve orders date and time expressions by their Timex normalized
@@ -156,42 +155,34 @@ public class TimeTimeSieve implements Sieve {
         return null;
     }
 
-    Pair<Calendar, Calendar> interval1 = null;
-    Pair<Calendar, Calendar> interval2 = null;
-
-    interval1 = t1.getRange(ct);
-    interval2 = t2.getRange(ct);
+    TimeInterval interval1 = t1.getInterval(ct);
+    TimeInterval interval2 = t2.getInterval(ct);
 
     // System.out.println("\tintervals: " + interval1 + "\t" + interval2);
 
     if (interval1 == null || interval2 == null)
       return null;
 
-    int startStart = interval1.first().compareTo(interval2.first());
-    int startEnd = interval1.first().compareTo(interval2.second());
-    int endStart = interval1.second().compareTo(interval2.first());
-    int endEnd = interval1.second().compareTo(interval2.second());
+    long start1 = interval1.getStart();
+    long end1 = interval1.getEnd();
+    long start2 = interval2.getStart();
+    long end2 = interval2.getEnd();
 
-    // System.out.println(startStart + " " + t1.getTid() + " " + t2.getTid() + "
-    // "+ interval1.first().getTime().toString() + " " +
-    // interval1.first().getTimeInMillis() + " " +
-    // interval2.first().getTime().toString() +
-    // interval2.first().getTimeInMillis());
     TLink.Type lType = TLink.Type.VAGUE;
 
-    if (startStart == 0 && endEnd == 0)
+    if (start1 == start2 && end1 == end2)
       lType = TLink.Type.SIMULTANEOUS;
-    else if (endStart <= 0)
+    else if (end1 <= start2)
       lType = TLink.Type.BEFORE;
-    else if (startEnd >= 0)
+    else if (start1 >= end2)
       lType = TLink.Type.AFTER;
-    else if (startStart < 0 && endEnd > 0)
+    else if (start1 < start2 && end1 > end2)
       lType = TLink.Type.INCLUDES;
-    else if (startStart > 0 && endEnd < 0)
+    else if (start1 > start2 && end1 < end2)
       lType = TLink.Type.IS_INCLUDED;
-    else if (startStart > 0 && startEnd < 0 && endEnd > 0)
+    else if (start1 > start2 && start1 < end2 && end1 > end2)
       lType = TLink.Type.VAGUE;
-    else if (startStart < 0 && endStart > 0 && endEnd < 0)
+    else if (start1 < start2 && end1 > start2 && end1 < end2)
       lType = TLink.Type.VAGUE;
     else
       return null;
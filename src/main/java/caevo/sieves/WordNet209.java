@@ -9,8 +9,10 @@ import java.util.Map;
 import caevo.Main;
 import caevo.SieveDocument;
 import caevo.SieveDocuments;
+import caevo.SieveSentence;
 import caevo.TextEvent;
 import caevo.Timex;
+import caevo.TokenAnnotations;
 import caevo.tlink.EventEventLink;
 import caevo.tlink.TLink;
 import caevo.tlink.TimeTimeLink;
@@ -128,8 +130,8 @@ public class WordNet209 implements Sieve {
     List<List<TextEvent>> allEvents = doc.getEventsBySentence();
     List<List<Timex>> allTimexes = doc.getTimexesBySentence();
 
-    // we need all trees in order to get pos tags
-    List<Tree> trees = doc.getAllParseTrees();
+    // we need all sentences in order to get pos tags and lemmas
+    List<SieveSentence> sents = doc.getSentences();
 
     // hold all pairs to be classified (in accordance with sentWindow)
     // in array lists. No need for ET pairs here.
@@ -139,7 +141,7 @@ public class WordNet209 implements Sieve {
     // classify each type of pair based on parameter settings
     if (eePairs == true) {
       for (TextEvent[] eventPair : eventPairs) {
-        TLink tlink = getEELink(eventPair[0], eventPair[1], trees);
+        TLink tlink = getEELink(eventPair[0], eventPair[1], sents);
         if (tlink != null) {
           proposed.add(tlink);
         }
@@ -147,7 +149,7 @@ public class WordNet209 implements Sieve {
     }
     if (ttPairs == true) {
       for (Timex[] timexPair : TimexPairs) {
-        TLink tlink = getTTLink(timexPair[0], timexPair[1], trees);
+        TLink tlink = getTTLink(timexPair[0], timexPair[1], sents);
         if (tlink != null) {
           proposed.add(tlink);
         }
@@ -250,7 +252,8 @@ public class WordNet209 implements Sieve {
    * all pairs of events that are siblings (i.e. their WordNet synsets overlap)
    * are labeled VAGUE. D&G use SIMULTANEOUS.
    */
-  private TLink getEELink(TextEvent e1, TextEvent e2, List<Tree> trees) {
+  private TLink getEELink(TextEvent e1, TextEvent e2,
+      List<SieveSentence> sents) {
     // Check if any of the ignore criteria hold
     // If so, do not classify the pair
     boolean e1IsReporting = e1.getTheClass() == TextEvent.Class.REPORTING;
@@ -263,10 +266,10 @@ public class WordNet209 implements Sieve {
     // Get the word, lemma, and pos tag
     // (the penn treebank string and the more basic wordnet POS via
     // postagSimpleToPOS)
-    Tree sentParseTree1 = trees.get(e1.getSid());
-    Tree sentParseTree2 = trees.get(e2.getSid());
-    String postagStr1 = posTagFromTree(sentParseTree1, e1.getIndex());
-    String postagStr2 = posTagFromTree(sentParseTree2, e2.getIndex());
+    TokenAnnotations tokens1 = sents.get(e1.getSid()).annotations();
+    TokenAnnotations tokens2 = sents.get(e2.getSid()).annotations();
+    String postagStr1 = tokens1.posTag(e1.getIndex());
+    String postagStr2 = tokens2.posTag(e2.getIndex());
 
     if (postagStr1.length() < 2 || postagStr2.length() < 2) {
       return null;
@@ -276,10 +279,8 @@ public class WordNet209 implements Sieve {
     String postagSimple2 = postagStr2.substring(0, 2);
     POS pos1 = postagSimpleToPOS.get(postagSimple1);
     POS pos2 = postagSimpleToPOS.get(postagSimple2);
-    String lemma1 = Main.wordnet.lemmatizeTaggedWord(e1.getString(),
-        postagStr1);
-    String lemma2 = Main.wordnet.lemmatizeTaggedWord(e2.getString(),
-        postagStr2);
+    String lemma1 = tokens1.lemma(e1.getIndex(), e1.getString(), Main.wordnet);
+    String lemma2 = tokens2.lemma(e2.getIndex(), e2.getString(), Main.wordnet);
     // Synset[] syns1 = Main.wordnet.synsetsOf(e1.getString(), pos1);
     // Synset[] syns2 = Main.wordnet.synsetsOf(e2.getString(), pos2);
     // Only proceed if pos1 and pos2 are non-null and equal,
@@ -302,17 +303,17 @@ public class WordNet209 implements Sieve {
     }
   }
 
-  private TLink getTTLink(Timex e1, Timex e2, List<Tree> trees) {
+  private TLink getTTLink(Timex e1, Timex e2, List<SieveSentence> sents) {
     //
     if (ignoreSameSentence && e1.getSid() == e2.getSid())
       return null;
     // Get the word, lemma, and pos tag
     // (the penn treebank string and the more basic wordnet POS via
     // postagSimpleToPOS)
-    Tree sentParseTree1 = trees.get(e1.getSid());
-    Tree sentParseTree2 = trees.get(e2.getSid());
-    String postagStr1 = posTagFromTree(sentParseTree1, e1.getTokenOffset());
-    String postagStr2 = posTagFromTree(sentParseTree2, e2.getTokenOffset());
+    TokenAnnotations tokens1 = sents.get(e1.getSid()).annotations();
+    TokenAnnotations tokens2 = sents.get(e2.getSid()).annotations();
+    String postagStr1 = tokens1.posTag(e1.getTokenOffset());
+    String postagStr2 = tokens2.posTag(e2.getTokenOffset());
 
     if (postagStr1.length() < 2 || postagStr2.length() < 2) {
       return null;
@@ -323,8 +324,10 @@ public class WordNet209 implements Sieve {
 
     POS pos1 = postagSimpleToPOS.get(postagSimple1);
     POS pos2 = postagSimpleToPOS.get(postagSimple2);
-    String lemma1 = Main.wordnet.lemmatizeTaggedWord(e1.getText(), postagStr1);
-    String lemma2 = Main.wordnet.lemmatizeTaggedWord(e2.getText(), postagStr2);
+    String lemma1 = tokens1.lemma(e1.getTokenOffset(), e1.getText(),
+        Main.wordnet);
+    String lemma2 = tokens2.lemma(e2.getTokenOffset(), e2.getText(),
+        Main.wordnet);
     // Synset[] syns1 = Main.wordnet.synsetsOf(e1.getString(), pos1);
     // Synset[] syns2 = Main.wordnet.synsetsOf(e2.getString(), pos2);
     // Only proceed if pos1 and pos2 are non-null and equal,
@@ -349,12 +352,6 @@ public class WordNet209 implements Sieve {
     }
   }
 
-  // Use posTagFromTree(sidToTree(*),i) to get pos tag for index i in a sentence
-  private String posTagFromTree(Tree sentParseTree, int tokenIndex) {
-    String posTag = TreeOperator.indexToPOSTag(sentParseTree, tokenIndex);
-    return posTag;
-  }
-
   private Tree sidToTree(int sid, List<String> allParseStrings) {
     String sentParseString = allParseStrings.get(sid);
     Tree sentParseTree = TreeOperator.stringToTree(sentParseString, tf);
@@ -32,34 +32,20 @@ public class EventTimeLink extends TLink {
   }
 
   public TextEvent getEvent() {
-    TextEvent event = this.document.getEventByEiid(this.id1);
-    if (event != null)
-      return event;
-    else
-      return this.document.getEventByEiid(this.id2);
+    return (isTimex1() ? this.document.getEventById(getIntId2())
+        : this.document.getEventById(getIntId1()));
   }
 
   public Timex getTime() {
-    Timex time = this.document.getTimexByTid(this.id2);
-    if (time != null)
-      return time;
-    else
-      return this.document.getTimexByTid(this.id1);
+    return (isTimex1() ? this.document.getTimexById(getIntId1())
+        : this.document.getTimexById(getIntId2()));
   }
 
   public String getTimeId() {
-    Timex time = this.document.getTimexByTid(this.id2);
-    if (time != null)
-      return this.id2;
-    else
-      return this.id1;
+    return (isTimex1() ? this.id1 : this.id2);
   }
 
   public String getEventId() {
-    TextEvent event = this.document.getEventByEiid(this.id1);
-    if (event != null)
-      return this.id1;
-    else
-      return this.id2;
+    return (isTimex1() ? this.id2 : this.id1);
   }
 }
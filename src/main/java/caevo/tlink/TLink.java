@@ -34,7 +34,7 @@ public class TLink implements Comparable<TLink> {
     FULL, REDUCED, BASIC, SYMMETRY, FULLSYMMETRY, BEFORE, TEMPEVAL
   };
 
-  public static Mode currentMode = TLink.Mode.FULL;
+  public static volatile Mode currentMode = TLink.Mode.FULL;
 
   public static void changeMode(TLink.Mode newmode) {
     currentMode = newmode;
@@ -98,6 +98,9 @@ public class TLink implements Comparable<TLink> {
   }
 
   protected String id1, id2; // These should be timex tids or event eiids
+  // The ids' int ids in the document (see SieveDocument.getEntityId()), or -1
+  // if not yet looked up.
+  protected int intId1 = -1, intId2 = -1;
   protected TLink.Type relation;
   protected String originalRelation;
   protected boolean closed = false;
@@ -209,9 +212,7 @@ public class TLink implements Comparable<TLink> {
     if (this.relation == TLink.Type.BEGINS
         || this.relation == TLink.Type.ENDS) {
       this.relation = TLink.Type.INCLUDES;
-      String temp = this.id1;
-      this.id1 = this.id2;
-      this.id2 = temp;
+      swapIds();
     }
   }
 
@@ -236,10 +237,7 @@ public class TLink implements Comparable<TLink> {
         || this.relation == TLink.Type.IS_INCLUDED
         || this.relation == TLink.Type.BEGUN_BY
         || this.relation == TLink.Type.ENDED_BY) {
-      String temp = this.id1;
-      this.id1 = this.id2;
-      this.id2 = temp;
-
+      swapIds();
     }
 
     // Flip the relation.
@@ -255,6 +253,15 @@ public class TLink implements Comparable<TLink> {
       this.relation = TLink.Type.ENDS;
   }
 
+  private void swapIds() {
+    String temp = this.id1;
+    this.id1 = this.id2;
+    this.id2 = temp;
+    int tempInt = this.intId1;
+    this.intId1 = this.intId2;
+    this.intId2 = tempInt;
+  }
+
   public void setRelation(TLink.Type r) {
     this.relation = r;
   }
@@ -269,6 +276,8 @@ public class TLink implements Comparable<TLink> {
 
   public void setDocument(SieveDocument document) {
     this.document = document;
+    this.intId1 = -1;
+    this.intId2 = -1;
   }
 
   public void setClosure(boolean closed) {
@@ -277,10 +286,12 @@ public class TLink implements Comparable<TLink> {
 
   public void setId1(String id) {
     id1 = id;
+    intId1 = -1;
   }
 
   public void setId2(String id) {
     id2 = id;
+    intId2 = -1;
   }
 
   public String getId1() {
@@ -291,6 +302,46 @@ public class TLink implements Comparable<TLink> {
     return this.id2;
   }
 
+  /**
+   * @return The first id's int id in this link's document, or -1 if the link
+   *         has no document or the document doesn't know the id.
+   */
+  public int getIntId1() {
+    if (intId1 < 0 && document != null)
+      intId1 = document.getEntityId(id1);
+    return intId1;
+  }
+
+  /**
+   * @return The second id's int id in this link's document, or -1 if the link
+   *         has no document or the document doesn't know the id.
+   */
+  public int getIntId2() {
+    if (intId2 < 0 && document != null)
+      intId2 = document.getEntityId(id2);
+    return intId2;
+  }
+
+  /**
+   * @return True if the first id is a timex. This asks the document when it
+   *         knows the id, and otherwise goes by the id's name: timex ids start
+   *         with 't'.
+   */
+  public boolean isTimex1() {
+    if (getIntId1() >= 0)
+      return document.isTimexId(intId1);
+    return id1 != null && id1.startsWith("t");
+  }
+
+  /**
+   * @return True if the second id is a timex. See isTimex1().
+   */
+  public boolean isTimex2() {
+    if (getIntId2() >= 0)
+      return document.isTimexId(intId2);
+    return id2 != null && id2.startsWith("t");
+  }
+
   public TLink.Type getRelation() {
     return this.relation;
   }
@@ -21,6 +21,7 @@ import caevo.TextEvent;
 import caevo.Timex;
 import caevo.util.ClassifiedDatum;
 import caevo.util.HandleParameters;
+import caevo.util.ModelRegistry;
 import caevo.util.Pair;
 import caevo.util.TimebankUtil;
 import caevo.util.TreeOperator;
@@ -1091,7 +1092,7 @@ public class TLinkClassifier {
           if (link instanceof EventTimeLink) {
             // event-dct
             if (TimebankUtil.isEventDCTLink(link, doc.getDocstamp())) {
-              TextEvent e1 = (link.getId1().startsWith("e")
+              TextEvent e1 = (!link.isTimex1()
                   ? idToEvent.get(link.getId1())
                   : idToEvent.get(link.getId2()));
               TLinkDatum datum = featurizer.createEventDocumentTimeDatum(doc,
@@ -1101,10 +1102,10 @@ public class TLinkClassifier {
             }
             // event-time
             else {
-              TextEvent e1 = (link.getId1().startsWith("e")
+              TextEvent e1 = (!link.isTimex1()
                   ? idToEvent.get(link.getId1())
                   : idToEvent.get(link.getId2()));
-              Timex timex = (link.getId1().startsWith("e")
+              Timex timex = (!link.isTimex1()
                   ? idToTimex.get(link.getId2())
                   : idToTimex.get(link.getId1()));
               System.out.println(e1 + " and " + timex);
@@ -1245,36 +1246,31 @@ public class TLinkClassifier {
   }
 
   public void readClassifiersFromDirectory(String dirpath) {
+    String[] names = { "tlink.ee.samesent.classifier-all",
+        "tlink.ee.samesent.exists.classifier-all",
+        "tlink.ee.samesent.dominate.classifier-all",
+        "tlink.ee.samesent.nodominate.classifier-all",
+        "tlink.ee.diffsent.classifier-all", "tlink.et.samesent.classifier-all",
+        "tlink.et.samesent.exists.classifier-all",
+        "tlink.et.diffsent.classifier-all", "tlink.et.dct.classifier-all",
+        "tlink.et.dct.exists.classifier-all" };
+    String[] paths = new String[names.length];
+    for (int i = 0; i < names.length; i++) {
+      paths[i] = dirpath + File.separator + names[i];
+      // Read them all at once.
+      ModelRegistry.prefetch(paths[i]);
+    }
     try {
-      eeSameSentClassifier = (Classifier<String, String>) IOUtils
-          .readObjectFromFile(
-              dirpath + File.separator + "tlink.ee.samesent.classifier-all");
-      eeSameSentExistsClassifier = (Classifier<String, String>) IOUtils
-          .readObjectFromFile(dirpath + File.separator
-              + "tlink.ee.samesent.exists.classifier-all");
-      eeSameSentDominatesClassifier = (Classifier<String, String>) IOUtils
-          .readObjectFromFile(dirpath + File.separator
-              + "tlink.ee.samesent.dominate.classifier-all");
-      eeSameSentNoDominatesClassifier = (Classifier<String, String>) IOUtils
-          .readObjectFromFile(dirpath + File.separator
-              + "tlink.ee.samesent.nodominate.classifier-all");
-      eeDiffSentClassifier = (Classifier<String, String>) IOUtils
-          .readObjectFromFile(
-              dirpath + File.separator + "tlink.ee.diffsent.classifier-all");
-      etSameSentClassifier = (Classifier<String, String>) IOUtils
-          .readObjectFromFile(
-              dirpath + File.separator + "tlink.et.samesent.classifier-all");
-      etSameSentExistsClassifier = (Classifier<String, String>) IOUtils
-          .readObjectFromFile(dirpath + File.separator
-              + "tlink.et.samesent.exists.classifier-all");
-      etDiffSentClassifier = (Classifier<String, String>) IOUtils
-          .readObjectFromFile(
-              dirpath + File.separator + "tlink.et.diffsent.classifier-all");
-      etDCTClassifier = (Classifier<String, String>) IOUtils.readObjectFromFile(
-          dirpath + File.separator + "tlink.et.dct.classifier-all");
-      etDCTExistsClassifier = (Classifier<String, String>) IOUtils
-          .readObjectFromFile(
-              dirpath + File.separator + "tlink.et.dct.exists.classifier-all");
+      eeSameSentClassifier = ModelRegistry.getRequired(paths[0]);
+      eeSameSentExistsClassifier = ModelRegistry.getRequired(paths[1]);
+      eeSameSentDominatesClassifier = ModelRegistry.getRequired(paths[2]);
+      eeSameSentNoDominatesClassifier = ModelRegistry.getRequired(paths[3]);
+      eeDiffSentClassifier = ModelRegistry.getRequired(paths[4]);
+      etSameSentClassifier = ModelRegistry.getRequired(paths[5]);
+      etSameSentExistsClassifier = ModelRegistry.getRequired(paths[6]);
+      etDiffSentClassifier = ModelRegistry.getRequired(paths[7]);
+      etDCTClassifier = ModelRegistry.getRequired(paths[8]);
+      etDCTExistsClassifier = ModelRegistry.getRequired(paths[9]);
     } catch (Exception ex) {
       System.out.println("Had fatal trouble loading " + dirpath);
       ex.printStackTrace();
@@ -16,12 +16,12 @@ import caevo.SieveDocuments;
 import caevo.SieveSentence;
 import caevo.TextEvent;
 import caevo.Timex;
+import caevo.TokenAnnotations;
 import caevo.util.HandleParameters;
 import caevo.util.TimebankUtil;
 import caevo.util.TreeOperator;
 import caevo.util.WordNet;
 import net.didion.jwnl.data.POS;
-import net.didion.jwnl.data.Synset;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.trees.LabeledScoredTreeFactory;
@@ -366,15 +366,15 @@ public class TLinkFeaturizer {
       TextEvent event2 = doc.getEventByEiid(link.getId2());
       return Math.abs(event1.getSid() - event2.getSid());
     } else if (link instanceof EventTimeLink) {
+      int id1 = doc.getEntityId(link.getId1());
+      int id2 = doc.getEntityId(link.getId2());
       int first = 0, second = 0;
-      if (link.getId1().startsWith("e")) {
-        TextEvent event = doc.getEventByEiid(link.getId1());
-        first = event.getSid();
-        second = doc.getTimexByTid(link.getId2()).getSid();
+      if (doc.isEventId(id1)) {
+        first = doc.getEventById(id1).getSid();
+        second = doc.getTimexById(id2).getSid();
       } else {
-        TextEvent event = doc.getEventByEiid(link.getId2());
-        first = event.getSid();
-        second = doc.getTimexByTid(link.getId1()).getSid();
+        first = doc.getEventById(id2).getSid();
+        second = doc.getTimexById(id1).getSid();
       }
       return Math.abs(first - second);
     } else {
@@ -430,12 +430,14 @@ public class TLinkFeaturizer {
 
       TextEvent event = null;
       Timex timex = null;
-      if (link.getId1().startsWith("e")) {
-        event = doc.getEventByEiid(link.getId1());
-        timex = doc.getTimexByTid(link.getId2());
-      } else if (link.getId1().startsWith("t")) {
-        event = doc.getEventByEiid(link.getId2());
-        timex = doc.getTimexByTid(link.getId1());
+      int id1 = doc.getEntityId(link.getId1());
+      int id2 = doc.getEntityId(link.getId2());
+      if (doc.isEventId(id1) || doc.isTimexId(id2)) {
+        event = doc.getEventById(id1);
+        timex = doc.getTimexById(id2);
+      } else if (doc.isTimexId(id1) || doc.isEventId(id2)) {
+        event = doc.getEventById(id2);
+        timex = doc.getTimexById(id1);
         label = EventTimeLink.invertRelation(label); // Always make it the (e,t)
                                                      // relation, not the (t,e)
                                                      // relation.
@@ -503,10 +505,10 @@ public class TLinkFeaturizer {
     else
       feats.incrementCount("time-first");
 
-    feats.addAll(getSingleEventPOSFeatures("pos1", event, trees));
+    feats.addAll(getSingleEventPOSFeatures("pos1", event, doc));
     feats.addAll(getSingleEventFeatures(event, trees)); // tense, modality, etc.
-    feats.addAll(getSingleEventTokenFeatures(1, event, trees)); // token, lemma,
-                                                                // wordnet
+    feats.addAll(getSingleEventTokenFeatures(1, event, doc)); // token, lemma,
+                                                              // wordnet
     feats.addAll(getTimexFeatures(time, trees));
     feats.addAll(getEventTimeBigram(event, time, trees));
     feats.addAll(getEventTimeTokenPathFeature(event, time, trees));
@@ -538,10 +540,10 @@ public class TLinkFeaturizer {
       System.out.println("Null event in createEventDocumentTimeDatum(): "
           + event + " and " + time);
 
-    feats.addAll(getSingleEventPOSFeatures("pos1", event, trees));
+    feats.addAll(getSingleEventPOSFeatures("pos1", event, doc));
     feats.addAll(getSingleEventFeatures(event, trees)); // tense, modality, etc.
-    feats.addAll(getSingleEventTokenFeatures(1, event, trees)); // token, lemma,
-                                                                // wordnet
+    feats.addAll(getSingleEventTokenFeatures(1, event, doc)); // token, lemma,
+                                                              // wordnet
     feats.addAll(getSingleEventNearbyBOWFeatures(event, trees)); // +.01
                                                                  // accuracy,
                                                                  // very
@@ -593,12 +595,12 @@ public class TLinkFeaturizer {
         label = TLink.invertRelation(label);
     }
 
-    feats.addAll(getPOSFeatures(event1, event2, trees));
+    feats.addAll(getPOSFeatures(event1, event2, doc));
     feats.addAll(getEventFeatures(event1, event2, trees)); // tense, modality,
                                                            // etc.
-    feats.addAll(getTokenFeatures(event1, event2, trees, events)); // token,
-                                                                   // lemma,
-                                                                   // wordnet
+    feats.addAll(getTokenFeatures(event1, event2, doc, events)); // token,
+                                                                 // lemma,
+                                                                 // wordnet
     feats.addAll(getSyntacticFeatures(event1, event2, trees)); // prep phrases?
     feats.addAll(getDominanceFeatures(event1, event2, trees));
     feats.addAll(getTextOrderFeatures(event1, event2, trees));
@@ -622,18 +624,25 @@ public class TLinkFeaturizer {
     return datum;
   }
 
+  /**
+   * @return The token annotations of the event's sentence.
+   */
+  private TokenAnnotations annotations(SieveDocument doc, TextEvent event) {
+    return doc.getSentences().get(event.getSid()).annotations();
+  }
+
   /**
    * Event features using just its event POS tags.
    */
   private Counter<String> getSingleEventPOSFeatures(String featprefix,
-      TextEvent event1, List<Tree> trees) {
+      TextEvent event1, SieveDocument doc) {
     Counter<String> feats = new ClassicCounter<String>();
 
-    Tree tree1 = trees.get(event1.getSid());
+    TokenAnnotations tokens1 = annotations(doc, event1);
 
-    String pos10 = TreeOperator.indexToPOSTag(tree1, event1.getIndex());
-    String pos11 = TreeOperator.indexToPOSTag(tree1, event1.getIndex() - 1);
-    String pos12 = TreeOperator.indexToPOSTag(tree1, event1.getIndex() - 2);
+    String pos10 = tokens1.posTag(event1.getIndex());
+    String pos11 = tokens1.posTag(event1.getIndex() - 1);
+    String pos12 = tokens1.posTag(event1.getIndex() - 2);
     if (event1.getIndex() == 2) {
       pos12 = "<s>";
     } else if (event1.getIndex() == 1) {
@@ -652,17 +661,15 @@ public class TLinkFeaturizer {
    * All features using just the event POS tags.
    */
   private Counter<String> getPOSFeatures(TextEvent event1, TextEvent event2,
-      List<Tree> trees) {
+      SieveDocument doc) {
     Counter<String> feats = new ClassicCounter<String>();
 
-    feats.addAll(getSingleEventPOSFeatures("pos1", event1, trees));
-    feats.addAll(getSingleEventPOSFeatures("pos2", event2, trees));
+    feats.addAll(getSingleEventPOSFeatures("pos1", event1, doc));
+    feats.addAll(getSingleEventPOSFeatures("pos2", event2, doc));
 
     // bigram
-    Tree tree1 = trees.get(event1.getSid());
-    Tree tree2 = trees.get(event2.getSid());
-    String pos10 = TreeOperator.indexToPOSTag(tree1, event1.getIndex());
-    String pos20 = TreeOperator.indexToPOSTag(tree2, event2.getIndex());
+    String pos10 = annotations(doc, event1).posTag(event1.getIndex());
+    String pos20 = annotations(doc, event2).posTag(event2.getIndex());
     feats.incrementCount("posBi-" + pos10 + "-" + pos20);
 
     return feats;
@@ -842,27 +849,26 @@ public class TLinkFeaturizer {
    *          differentiates the feature names.
    */
   private Counter<String> getSingleEventTokenFeatures(int eventIndex,
-      TextEvent event1, List<Tree> trees) {
+      TextEvent event1, SieveDocument doc) {
     Counter<String> feats = new ClassicCounter<String>();
 
+    TokenAnnotations tokens1 = annotations(doc, event1);
     String token = event1.getString();
-    String postag = TreeOperator.indexToPOSTag(trees.get(event1.getSid()),
-        event1.getIndex());
-    String lemma = _wordnet.lemmatizeTaggedWord(token, postag);
+    String postag = tokens1.posTag(event1.getIndex());
+    String lemma = tokens1.lemma(event1.getIndex(), token, _wordnet);
 
     // Token and Lemma
     feats.incrementCount("token" + eventIndex + "-" + token);
     feats.incrementCount("lemma" + eventIndex + "-" + lemma);
 
     // WordNet synset
-    Synset[] synsets = null;
+    long offset = -1;
     if (postag.startsWith("VB"))
-      synsets = _wordnet.synsetsOf(token, POS.VERB);
+      offset = _wordnet.firstSynsetOffset(token, POS.VERB);
     else if (postag.startsWith("NN"))
-      synsets = _wordnet.synsetsOf(token, POS.NOUN);
-    if (synsets != null && synsets.length > 0)
-      feats
-          .incrementCount("synset" + eventIndex + "-" + synsets[0].getOffset());
+      offset = _wordnet.firstSynsetOffset(token, POS.NOUN);
+    if (offset >= 0)
+      feats.incrementCount("synset" + eventIndex + "-" + offset);
 
     return feats;
   }
@@ -889,11 +895,11 @@ public class TLinkFeaturizer {
    * Create token/lemma/synset features with the events.
    */
   private Counter<String> getTokenFeatures(TextEvent event1, TextEvent event2,
-      List<Tree> trees, List<TextEvent> events) {
+      SieveDocument doc, List<TextEvent> events) {
     Counter<String> feats = new ClassicCounter<String>();
 
-    feats.addAll(getSingleEventTokenFeatures(1, event1, trees));
-    feats.addAll(getSingleEventTokenFeatures(2, event2, trees));
+    feats.addAll(getSingleEventTokenFeatures(1, event1, doc));
+    feats.addAll(getSingleEventTokenFeatures(2, event2, doc));
     feats.addAll(getEventEventBigram(event1, event2, events));
 
     return feats;
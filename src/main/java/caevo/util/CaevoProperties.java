@@ -37,7 +37,7 @@ public class CaevoProperties {
       .getLogger(CaevoProperties.class.getName());
 
   static Properties properties;
-  static boolean isLoaded = false;
+  static volatile boolean isLoaded = false;
   static Hashtable<String, String> variables;
 
   static Pattern variablePattern = Pattern.compile("\\{[^\\\\}]+\\}");
@@ -72,7 +72,7 @@ public class CaevoProperties {
    * 
    * @throws IOException
    */
-  public static void load() throws IOException {
+  public static synchronized void load() throws IOException {
     String filename = System.getProperty("props");
     logger.info("Loading properties file: " + filename);
     if (filename != null)
@@ -89,7 +89,7 @@ public class CaevoProperties {
    *          - the name of the file to be loaded in the properties object
    * @throws IOException
    */
-  public static void load(String filename) throws IOException {
+  public static synchronized void load(String filename) throws IOException {
     logger.config("Reading JerboaProperty file [" + filename + "]");
     if (properties == null)
       properties = new java.util.Properties();
@@ -98,6 +98,21 @@ public class CaevoProperties {
     isLoaded = true;
   }
 
+  /**
+   * Adds the given properties to the static {@link Properties} object, for
+   * programs that build their configuration in code rather than reading a
+   * file. Values given here override any already loaded for the same keys.
+   * 
+   * @param props
+   *          - the properties to add
+   */
+  public static synchronized void load(Properties props) {
+    if (properties == null)
+      properties = new java.util.Properties();
+    properties.putAll(props);
+    isLoaded = true;
+  }
+
   public static boolean hasProperty(String key) {
     return System.getProperty(key) != null
         || (properties != null && properties.containsKey(key));
@@ -0,0 +1,292 @@
+package caevo.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.stanford.nlp.ling.CoreAnnotations.CopyAnnotation;
+import edu.stanford.nlp.ling.Word;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.trees.TreeGraphNode;
+import edu.stanford.nlp.trees.TypedDependency;
+
+/**
+ * A sentence's typed dependencies stored as one int array, seven ints per
+ * dependency: relation id, then the governor's word id, index and copy count,
+ * then the same for the dependent. Ids are into the LabelTable the
+ * dependencies were built with.
+ *
+ * Build one from the info file's "rel(gov-i, dep-j)" lines with fromString().
+ * toDependencies() builds the same TypedDependency objects as
+ * TreeOperator.stringToDependencies(), without splitting strings, and the
+ * path functions here work on the ints directly.
+ */
+public class EncodedDependencies {
+  private static final int STRIDE = 7;
+  // Offsets within a dependency. Each word is its id, index and copies.
+  private static final int REL = 0, GOV_WORD = 1, GOV_INDEX = 2,
+      GOV_COPIES = 3, DEP_WORD = 4, DEP_INDEX = 5, DEP_COPIES = 6;
+
+  private final LabelTable table;
+  private final int[] data;
+
+  private EncodedDependencies(LabelTable table, int[] data) {
+    this.table = table;
+    this.data = data;
+  }
+
+  /**
+   * Dependencies from an array already in this form, such as one stored in a
+   * binary documents file.
+   *
+   * @return The dependencies, or null if the array doesn't describe any.
+   */
+  public static EncodedDependencies of(LabelTable table, int[] data) {
+    if (data.length % STRIDE != 0)
+      return null;
+    int numLabels = table.size();
+    for (int i = 0; i < data.length; i += STRIDE)
+      if (!isLabel(data[i + REL], numLabels)
+          || !isLabel(data[i + GOV_WORD], numLabels)
+          || !isLabel(data[i + DEP_WORD], numLabels) || data[i + GOV_INDEX] < 0
+          || data[i + DEP_INDEX] < 0 || data[i + GOV_COPIES] < 0
+          || data[i + DEP_COPIES] < 0)
+        return null;
+    return new EncodedDependencies(table, data);
+  }
+
+  private static boolean isLabel(int id, int numLabels) {
+    return id >= 0 && id < numLabels;
+  }
+
+  /**
+   * Read one dependency per line, e.g. nsubj(testified-17, dealer-16).
+   *
+   * @param table
+   *          Where the relations and words get their ids.
+   * @return The dependencies, or null if any line isn't in that form (leave
+   *         those to TreeOperator, which reports them).
+   */
+  public static EncodedDependencies fromString(String strdeps,
+      LabelTable table) {
+    if (strdeps == null)
+      return null;
+    int[] data = new int[STRIDE * 16];
+    int size = 0;
+    int start = 0;
+    int n = strdeps.length();
+    while (start < n) {
+      int end = strdeps.indexOf('\n', start);
+      if (end < 0)
+        end = n;
+      String line = strdeps.substring(start, end).trim();
+      start = end + 1;
+      if (line.length() == 0)
+        continue;
+
+      if (size + STRIDE > data.length)
+        data = Arrays.copyOf(data, 2 * data.length);
+      if (!parseLine(line, data, size, table))
+        return null;
+      size += STRIDE;
+    }
+    return new EncodedDependencies(table, Arrays.copyOf(data, size));
+  }
+
+  /**
+   * Parse "rel(gov-i, dep-j)" into data at offset.
+   */
+  private static boolean parseLine(String line, int[] data, int offset,
+      LabelTable table) {
+    int open = line.indexOf('(');
+    int comma = line.indexOf(", ", open + 1);
+    if (open <= 0 || comma < open || !line.endsWith(")")
+        || line.indexOf(' ', comma + 2) >= 0)
+      return false;
+    data[offset + REL] = table.id(line.substring(0, open));
+    return parseWord(line.substring(open + 1, comma), data, offset + GOV_WORD,
+        table)
+        && parseWord(line.substring(comma + 2, line.length() - 1), data,
+            offset + DEP_WORD, table);
+  }
+
+  /**
+   * Parse "word-12''" into word id, index and number of apostrophes, the way
+   * TreeOperator.createDependency() splits it.
+   */
+  private static boolean parseWord(String str, int[] data, int offset,
+      LabelTable table) {
+    if (str.length() < 2 || str.indexOf(' ') >= 0)
+      return false;
+    int hyphen = str.length() - 2;
+    while (hyphen > -1 && str.charAt(hyphen) != '-')
+      hyphen--;
+    if (hyphen < 0)
+      return false;
+    int end = str.length();
+    int copies = 0;
+    while (end > hyphen + 1 && str.charAt(end - 1) == '\'') {
+      copies++;
+      end--;
+    }
+    int index = 0;
+    if (end == hyphen + 1)
+      return false;
+    for (int i = hyphen + 1; i < end; i++) {
+      char c = str.charAt(i);
+      if (c < '0' || c > '9' || index > 100000000)
+        return false;
+      index = 10 * index + (c - '0');
+    }
+    data[offset] = table.id(str.substring(0, hyphen));
+    data[offset + 1] = index;
+    data[offset + 2] = copies;
+    return true;
+  }
+
+  public int size() {
+    return data.length / STRIDE;
+  }
+
+  public String relation(int i) {
+    return table.label(data[STRIDE * i + REL]);
+  }
+
+  public String govWord(int i) {
+    return table.label(data[STRIDE * i + GOV_WORD]);
+  }
+
+  public int govIndex(int i) {
+    return data[STRIDE * i + GOV_INDEX];
+  }
+
+  public String depWord(int i) {
+    return table.label(data[STRIDE * i + DEP_WORD]);
+  }
+
+  public int depIndex(int i) {
+    return data[STRIDE * i + DEP_INDEX];
+  }
+
+  /**
+   * @return The number of copy marks on the governor, as in "word-3'".
+   */
+  public int govCopies(int i) {
+    return data[STRIDE * i + GOV_COPIES];
+  }
+
+  public int depCopies(int i) {
+    return data[STRIDE * i + DEP_COPIES];
+  }
+
+  /**
+   * Build the Stanford objects, the same as
+   * TreeOperator.stringToDependencies() would.
+   */
+  public List<TypedDependency> toDependencies() {
+    List<TypedDependency> deps = new ArrayList<TypedDependency>(size());
+    for (int i = 0; i < data.length; i += STRIDE) {
+      GrammaticalRelation rel = GrammaticalRelation.valueOf(table
+          .label(data[i + REL]));
+      deps.add(new TypedDependency(rel, node(i + GOV_WORD),
+          node(i + DEP_WORD)));
+    }
+    return deps;
+  }
+
+  private TreeGraphNode node(int offset) {
+    TreeGraphNode node = new TreeGraphNode(new Word(table
+        .label(data[offset])));
+    if (data[offset + 2] > 0)
+      node.label().set(CopyAnnotation.class, data[offset + 2]);
+    node.label().setIndex(data[offset + 1]);
+    return node;
+  }
+
+  /**
+   * The same as TreeOperator.dependencyPath(), without TypedDependency
+   * objects.
+   */
+  public String dependencyPath(int start, int end) {
+    List<String> paths = paths(start, end, null);
+    if (paths.size() == 1)
+      return paths.get(0);
+
+    String shortest = null;
+    int dist = Integer.MAX_VALUE;
+    for (String path : paths) {
+      int count = path.split("->").length;
+      count += path.split("<-").length;
+      if (count < dist) {
+        dist = count;
+        shortest = path;
+      }
+    }
+    return shortest;
+  }
+
+  private List<String> paths(int start, int end, Set<Integer> visited) {
+    List<String> paths = new ArrayList<String>();
+    if (start == end) {
+      paths.add("");
+      return paths;
+    }
+
+    if (visited == null)
+      visited = new HashSet<Integer>();
+    visited.add(start);
+
+    for (int i = 0; i < data.length; i += STRIDE) {
+      int gov = data[i + GOV_INDEX];
+      int dep = data[i + DEP_INDEX];
+      if (gov == start && !visited.contains(dep)) {
+        String rel = table.label(data[i + REL]);
+        for (String newpath : paths(dep, end, visited))
+          paths.add(rel + "->" + newpath);
+      }
+      if (dep == start && !visited.contains(gov)) {
+        String rel = table.label(data[i + REL]);
+        for (String newpath : paths(gov, end, visited))
+          paths.add(rel + "<-" + newpath);
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * The same as TreeOperator.directPath(): the shortest path, or null if it
+   * goes up and then back down.
+   */
+  public String directPath(int start, int end) {
+    String shortestPath = dependencyPath(start, end);
+    if (shortestPath != null && shortestPath.indexOf(">-") >= 0)
+      return null;
+    return shortestPath;
+  }
+
+  /**
+   * @return The dependencies in the info file format, one per line.
+   */
+  public String toString() {
+    StringBuffer buf = new StringBuffer();
+    for (int i = 0; i < data.length; i += STRIDE) {
+      if (i > 0)
+        buf.append('\n');
+      buf.append(table.label(data[i + REL])).append('(');
+      appendWord(buf, i + GOV_WORD);
+      buf.append(", ");
+      appendWord(buf, i + DEP_WORD);
+      buf.append(')');
+    }
+    return buf.toString();
+  }
+
+  private void appendWord(StringBuffer buf, int offset) {
+    buf.append(table.label(data[offset])).append('-')
+        .append(data[offset + 1]);
+    for (int i = 0; i < data[offset + 2]; i++)
+      buf.append('\'');
+  }
+}
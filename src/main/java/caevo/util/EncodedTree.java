@@ -0,0 +1,313 @@
+package caevo.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasIndex;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.trees.LabeledScoredTreeFactory;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeFactory;
+
+/**
+ * A phrase structure tree stored as two int arrays: the label id of each node
+ * in preorder, and for each node the preorder position just past its subtree.
+ * A node's first child is the next node, and a child's next sibling starts
+ * where the child's subtree ends. Leaves are nodes whose subtree is just
+ * themselves.
+ *
+ * Build one from a Penn Treebank string with fromString(). toTree() turns it
+ * into a Stanford Tree much faster than re-reading the string, and the
+ * token-level lookups here (POS tag or word at an index) need no Tree at all.
+ * Label ids are into the LabelTable the tree was built with.
+ */
+public class EncodedTree {
+  // Label id for a node with no label, like the outer "( (S ...))".
+  public static final int NO_LABEL = -1;
+
+  private final LabelTable table;
+  private final int[] labels;
+  private final int[] ends;
+
+  private EncodedTree(LabelTable table, int[] labels, int[] ends) {
+    this.table = table;
+    this.labels = labels;
+    this.ends = ends;
+  }
+
+  /**
+   * A tree from arrays already in this form, such as those stored in a binary
+   * documents file.
+   *
+   * @return The tree, or null if the arrays don't describe one.
+   */
+  public static EncodedTree of(LabelTable table, int[] labels, int[] ends) {
+    if (labels.length == 0 || labels.length != ends.length
+        || ends[0] != labels.length)
+      return null;
+    int numLabels = table.size();
+    for (int node = 0; node < labels.length; node++)
+      if (labels[node] < NO_LABEL || labels[node] >= numLabels
+          || ends[node] <= node || ends[node] > labels.length)
+        return null;
+    return new EncodedTree(table, labels, ends);
+  }
+
+  /**
+   * Read the first tree in a Penn Treebank string, the way PennTreeReader
+   * does: an unlabeled node gets a null label, empty "()" trees are skipped,
+   * and \* and \/ are unescaped.
+   *
+   * @param table
+   *          Where the labels get their ids.
+   * @return The tree, or null if the string is null, empty or malformed.
+   */
+  public static EncodedTree fromString(String str, LabelTable table) {
+    if (str == null)
+      return null;
+    int[] labels = new int[64];
+    int[] ends = new int[64];
+    int numNodes = 0;
+    int[] stack = new int[32];
+    int depth = 0;
+
+    int i = 0;
+    int n = str.length();
+    while (i < n) {
+      char c = str.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+        continue;
+      }
+
+      if (c == '(') {
+        i = skipWhitespace(str, i + 1);
+        int label = NO_LABEL;
+        if (i < n && str.charAt(i) == ')') {
+          // Empty tree.
+          i++;
+          continue;
+        } else if (i < n && str.charAt(i) != '(') {
+          int end = tokenEnd(str, i);
+          label = table.id(unescape(str.substring(i, end)));
+          i = end;
+        }
+        if (numNodes == labels.length) {
+          labels = Arrays.copyOf(labels, 2 * numNodes);
+          ends = Arrays.copyOf(ends, 2 * numNodes);
+        }
+        labels[numNodes] = label;
+        if (depth == stack.length)
+          stack = Arrays.copyOf(stack, 2 * depth);
+        stack[depth++] = numNodes++;
+      }
+
+      else if (c == ')') {
+        i++;
+        if (depth == 0)
+          return null;
+        int node = stack[--depth];
+        ends[node] = numNodes;
+        if (depth == 0)
+          break;
+      }
+
+      else {
+        int end = tokenEnd(str, i);
+        if (depth == 0)
+          return null;
+        if (numNodes == labels.length) {
+          labels = Arrays.copyOf(labels, 2 * numNodes);
+          ends = Arrays.copyOf(ends, 2 * numNodes);
+        }
+        labels[numNodes] = table.id(unescape(str.substring(i, end)));
+        ends[numNodes] = numNodes + 1;
+        numNodes++;
+        i = end;
+      }
+    }
+
+    if (numNodes == 0 || depth != 0)
+      return null;
+    return new EncodedTree(table, Arrays.copyOf(labels, numNodes),
+        Arrays.copyOf(ends, numNodes));
+  }
+
+  private static int skipWhitespace(String str, int i) {
+    while (i < str.length() && Character.isWhitespace(str.charAt(i)))
+      i++;
+    return i;
+  }
+
+  private static int tokenEnd(String str, int i) {
+    while (i < str.length()) {
+      char c = str.charAt(i);
+      if (c == '(' || c == ')' || Character.isWhitespace(c))
+        break;
+      i++;
+    }
+    return i;
+  }
+
+  private static String unescape(String token) {
+    if (token.indexOf('\\') < 0)
+      return token;
+    return token.replace("\\*", "*").replace("\\/", "/");
+  }
+
+  /**
+   * @return The number of nodes, leaves included.
+   */
+  public int size() {
+    return labels.length;
+  }
+
+  public boolean isLeaf(int node) {
+    return ends[node] == node + 1;
+  }
+
+  /**
+   * @return The node's label, or null if it has none.
+   */
+  public String label(int node) {
+    return (labels[node] == NO_LABEL ? null : table.label(labels[node]));
+  }
+
+  /**
+   * @return The position just past the node's subtree.
+   */
+  public int subtreeEnd(int node) {
+    return ends[node];
+  }
+
+  public int numLeaves() {
+    int count = 0;
+    for (int node = 0; node < labels.length; node++)
+      if (isLeaf(node))
+        count++;
+    return count;
+  }
+
+  /**
+   * @return The leaf words, in order.
+   */
+  public List<String> leaves() {
+    List<String> words = new ArrayList<String>();
+    for (int node = 0; node < labels.length; node++)
+      if (isLeaf(node))
+        words.add(label(node));
+    return words;
+  }
+
+  /**
+   * Find the preterminal above a token, as TreeOperator.indexToSubtree()
+   * does. Like TreeOperator.countLeaves(), that counts each node whose first
+   * child is a leaf as one token, and nothing under it: a word directly under
+   * a phrase, or after the first under a tag, isn't a token.
+   *
+   * @param goal
+   *          The token's index, starting at 1.
+   * @return The preterminal node, or -1 if there is no such token.
+   */
+  public int preterminal(int goal) {
+    if (goal < 1)
+      return -1;
+    int count = 0;
+    for (int node = 0; node + 1 < labels.length; node++) {
+      // A node whose first child is a leaf; skip the rest of its subtree.
+      if (!isLeaf(node) && isLeaf(node + 1)) {
+        if (++count == goal)
+          return node;
+        node = ends[node] - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Every token's POS tag in one pass over the tree.
+   *
+   * @return tags[i] is posTag(i + 1).
+   */
+  public String[] posTags() {
+    List<String> tags = new ArrayList<String>();
+    for (int node = 0; node + 1 < labels.length; node++) {
+      if (!isLeaf(node) && isLeaf(node + 1)) {
+        tags.add(label(node));
+        node = ends[node] - 1;
+      }
+    }
+    return tags.toArray(new String[tags.size()]);
+  }
+
+  /**
+   * @return The POS tag of the token at the index (starting at 1), or null.
+   */
+  public String posTag(int goal) {
+    int node = preterminal(goal);
+    return (node < 0 ? null : label(node));
+  }
+
+  /**
+   * @return The word at the index (starting at 1), or null.
+   */
+  public String token(int goal) {
+    int node = preterminal(goal);
+    return (node < 0 ? null : label(node + 1));
+  }
+
+  public Tree toTree() {
+    return toTree(new LabeledScoredTreeFactory());
+  }
+
+  /**
+   * Build the Stanford Tree, with the same labels PennTreeReader gives it:
+   * leaf labels carry their word and their index, starting at 1.
+   */
+  public Tree toTree(TreeFactory tf) {
+    int[] leafIndex = new int[] { 1 };
+    return build(0, tf, leafIndex);
+  }
+
+  private Tree build(int node, TreeFactory tf, int[] leafIndex) {
+    if (isLeaf(node) && node > 0) {
+      Tree leaf = tf.newLeaf(label(node));
+      if (leaf.label() instanceof HasIndex)
+        ((HasIndex) leaf.label()).setIndex(leafIndex[0]);
+      if (leaf.label() instanceof HasWord)
+        ((HasWord) leaf.label()).setWord(leaf.label().value());
+      leafIndex[0]++;
+      return leaf;
+    }
+    List<Tree> children = new ArrayList<Tree>();
+    for (int child = node + 1; child < ends[node]; child = ends[child])
+      children.add(build(child, tf, leafIndex));
+    return tf.newTreeNode(label(node), children);
+  }
+
+  /**
+   * @return The tree as a one-line Penn Treebank string.
+   */
+  public String toString() {
+    StringBuffer buf = new StringBuffer();
+    append(0, buf);
+    return buf.toString();
+  }
+
+  private void append(int node, StringBuffer buf) {
+    if (isLeaf(node) && node > 0) {
+      buf.append(label(node));
+      return;
+    }
+    buf.append('(');
+    if (labels[node] != NO_LABEL)
+      buf.append(label(node));
+    for (int child = node + 1; child < ends[node]; child = ends[child]) {
+      if (buf.charAt(buf.length() - 1) != '(')
+        buf.append(' ');
+      append(child, buf);
+    }
+    buf.append(')');
+  }
+}
@@ -0,0 +1,606 @@
+package caevo.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import edu.stanford.nlp.classify.Classifier;
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.ling.RVFDatum;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.stats.Counters;
+import edu.stanford.nlp.util.Index;
+
+/**
+ * A LinearClassifier flattened into one file that loads without building any
+ * objects per feature: the label strings, the feature strings with a hash
+ * table over them, and the weights as a matrix with a row per feature. It
+ * scores datums like the LinearClassifier it came from, up to the rounding of
+ * its weights.
+ *
+ * Convert serialized classifiers with:
+ *
+ * <pre>
+ * java caevo.util.FlatClassifier [-prune <min weight>]
+ *     [-precision float32|float16|int8] model.classifier [more.classifier ...]
+ * </pre>
+ *
+ * which writes model.classifier.flat next to each. ModelRegistry reads the
+ * .flat file instead of the serialized one when it is there. A .flat file on
+ * disk is memory mapped, so the weights are paged in as they are used and
+ * shared between processes on the same host.
+ *
+ * To make models smaller, -prune drops the features whose weights are all no
+ * bigger than the given size (0, the default, drops only features with no
+ * weight), and -precision stores weights as 16 bit floats or as 8 bit ints
+ * scaled per label. "java caevo.Evaluate" reports how much the pipeline's
+ * results change with the .flat models.
+ *
+ * The file records the size, time and checksum of the serialized model it was
+ * made from, so ModelRegistry can tell when the model has been trained again
+ * since and the flat copy is stale.
+ *
+ * The file is MAGIC, the precision and the model's size, time and checksum,
+ * then a series of arrays, each preceded by its length, in the order the
+ * constructor reads them.
+ *
+ * A FlatClassifier can't be serialized: its weights are views of its file.
+ * Serialize the LinearClassifier, or write() the flat file again.
+ */
+public class FlatClassifier implements Classifier<String, String> {
+  private static final long serialVersionUID = 1L;
+  private static final byte[] MAGIC = { 'C', 'A', 'E', 'V', 'O', 'L', 'C',
+      '3' };
+  // The first version, with float weights and no precision or scales.
+  private static final byte[] MAGIC_V1 = { 'C', 'A', 'E', 'V', 'O', 'L', 'C',
+      '1' };
+  // The second, without the model's size, time and checksum.
+  private static final byte[] MAGIC_V2 = { 'C', 'A', 'E', 'V', 'O', 'L', 'C',
+      '2' };
+  public static final String SUFFIX = ".flat";
+
+  /**
+   * How the weights are stored. INT8 weights are multiplied by their label's
+   * scale.
+   */
+  public static enum Precision {
+    FLOAT32, FLOAT16, INT8
+  }
+
+  private final String name;
+  // The serialized model this was made from, or -1 if the file doesn't say.
+  private final long sourceLength;
+  private final long sourceModified;
+  private final long sourceChecksum;
+  private final String[] labels;
+  // Feature strings, as chars between offsets[i] and offsets[i+1].
+  private final int numFeatures;
+  private final transient IntBuffer featureOffsets;
+  private final transient CharBuffer featureChars;
+  // Open addressing on String.hashCode(): feature id + 1, or 0 if empty.
+  private final transient IntBuffer slots;
+  // The weight for feature f and label l is at f * labels.length + l, in
+  // whichever of these the precision uses.
+  private final Precision precision;
+  private final transient FloatBuffer floatWeights;
+  private final transient ShortBuffer halfWeights;
+  private final transient ByteBuffer byteWeights;
+  private final float[] scales;
+  private final float[] biases;
+
+  private FlatClassifier(String name, ByteBuffer buf) throws IOException {
+    this.name = name;
+    byte[] magic = new byte[MAGIC.length];
+    buf.get(magic);
+    boolean v1 = Arrays.equals(magic, MAGIC_V1);
+    boolean v2 = Arrays.equals(magic, MAGIC_V2);
+    if (!v1 && !v2 && !Arrays.equals(magic, MAGIC))
+      throw new IOException("Not a flat classifier: " + name);
+    precision = (v1 ? Precision.FLOAT32 : Precision.values()[buf.getInt()]);
+    boolean hasSource = (!v1 && !v2);
+    sourceLength = (hasSource ? buf.getLong() : -1);
+    sourceModified = (hasSource ? buf.getLong() : -1);
+    sourceChecksum = (hasSource ? buf.getLong() : -1);
+
+    IntBuffer labelOffsets = ints(buf);
+    CharBuffer labelChars = chars(buf);
+    labels = new String[labelOffsets.limit() - 1];
+    for (int l = 0; l < labels.length; l++)
+      labels[l] = string(labelOffsets, labelChars, l);
+    featureOffsets = ints(buf);
+    numFeatures = featureOffsets.limit() - 1;
+    featureChars = chars(buf);
+    slots = ints(buf);
+
+    int numWeights = buf.getInt();
+    if (numWeights != numFeatures * labels.length)
+      throw new IOException("Bad weight matrix in " + name);
+    int width = (precision == Precision.FLOAT32 ? 4
+        : precision == Precision.FLOAT16 ? 2 : 1);
+    ByteBuffer weights = buf.slice();
+    weights.limit(width * numWeights);
+    buf.position(buf.position() + width * numWeights);
+    floatWeights = (precision == Precision.FLOAT32 ? weights.asFloatBuffer()
+        : null);
+    halfWeights = (precision == Precision.FLOAT16 ? weights.asShortBuffer()
+        : null);
+    byteWeights = (precision == Precision.INT8 ? weights : null);
+    scales = (v1 ? null : toArray(floats(buf)));
+    biases = toArray(floats(buf));
+    if (biases.length != labels.length
+        || (scales != null && scales.length != labels.length))
+      throw new IOException("Bad label scales in " + name);
+  }
+
+  /**
+   * Read a flat classifier file, mapping it into memory if map is true.
+   */
+  public static FlatClassifier load(String path, boolean map)
+      throws IOException {
+    RandomAccessFile file = new RandomAccessFile(path, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      ByteBuffer buf;
+      if (map)
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      else {
+        buf = ByteBuffer.allocate((int) channel.size());
+        while (buf.hasRemaining())
+          if (channel.read(buf) < 0)
+            throw new IOException("Truncated flat classifier: " + path);
+        buf.flip();
+      }
+      return new FlatClassifier(path, buf);
+    } finally {
+      // A mapping stays valid after the file is closed.
+      file.close();
+    }
+  }
+
+  /**
+   * Read a flat classifier from a stream, such as a resource in a jar, into
+   * memory. The stream is closed.
+   */
+  public static FlatClassifier read(String name, InputStream in)
+      throws IOException {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+      byte[] chunk = new byte[1 << 16];
+      int n;
+      while ((n = in.read(chunk)) > 0)
+        bytes.write(chunk, 0, n);
+      return new FlatClassifier(name, ByteBuffer.wrap(bytes.toByteArray()));
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @return The CRC32 of the stream's bytes. The stream is closed.
+   */
+  public static long checksum(InputStream in) throws IOException {
+    try {
+      CRC32 crc = new CRC32();
+      byte[] chunk = new byte[1 << 16];
+      int n;
+      while ((n = in.read(chunk)) > 0)
+        crc.update(chunk, 0, n);
+      return crc.getValue();
+    } finally {
+      in.close();
+    }
+  }
+
+  private static IntBuffer ints(ByteBuffer buf) {
+    int n = buf.getInt();
+    ByteBuffer slice = buf.slice();
+    slice.limit(4 * n);
+    buf.position(buf.position() + 4 * n);
+    return slice.asIntBuffer();
+  }
+
+  private static CharBuffer chars(ByteBuffer buf) {
+    int n = buf.getInt();
+    ByteBuffer slice = buf.slice();
+    slice.limit(2 * n);
+    buf.position(buf.position() + 2 * n);
+    return slice.asCharBuffer();
+  }
+
+  private static FloatBuffer floats(ByteBuffer buf) {
+    int n = buf.getInt();
+    ByteBuffer slice = buf.slice();
+    slice.limit(4 * n);
+    buf.position(buf.position() + 4 * n);
+    return slice.asFloatBuffer();
+  }
+
+  private static float[] toArray(FloatBuffer floats) {
+    float[] array = new float[floats.limit()];
+    floats.get(array);
+    return array;
+  }
+
+  private static String string(IntBuffer offsets, CharBuffer chars, int id) {
+    int start = offsets.get(id);
+    char[] str = new char[offsets.get(id + 1) - start];
+    for (int i = 0; i < str.length; i++)
+      str[i] = chars.get(start + i);
+    return new String(str);
+  }
+
+  private static int slot(int hash, int numSlots) {
+    hash ^= (hash >>> 16);
+    return hash & (numSlots - 1);
+  }
+
+  /**
+   * @return The feature's row, or -1 if the classifier has no such feature.
+   */
+  private int feature(String feature) {
+    int numSlots = slots.limit();
+    if (numSlots == 0)
+      return -1;
+    for (int s = slot(feature.hashCode(), numSlots);; s = (s + 1)
+        & (numSlots - 1)) {
+      int id = slots.get(s) - 1;
+      if (id < 0)
+        return -1;
+      if (featureEquals(id, feature))
+        return id;
+    }
+  }
+
+  private boolean featureEquals(int id, String feature) {
+    int start = featureOffsets.get(id);
+    if (featureOffsets.get(id + 1) - start != feature.length())
+      return false;
+    for (int i = 0; i < feature.length(); i++)
+      if (featureChars.get(start + i) != feature.charAt(i))
+        return false;
+    return true;
+  }
+
+  private void addWeights(double[] scores, String feature, double value) {
+    int f = feature(feature);
+    if (f < 0)
+      return;
+    int row = f * labels.length;
+    for (int l = 0; l < labels.length; l++)
+      scores[l] += weight(row + l, l) * value;
+  }
+
+  private float weight(int i, int label) {
+    switch (precision) {
+    case FLOAT16:
+      return halfToFloat(halfWeights.get(i));
+    case INT8:
+      return byteWeights.get(i) * scales[label];
+    default:
+      return floatWeights.get(i);
+    }
+  }
+
+  /**
+   * The same as LinearClassifier.scoresOf(): each label's weights summed over
+   * the datum's features, times their values for an RVFDatum.
+   */
+  @SuppressWarnings("unchecked")
+  public Counter<String> scoresOf(Datum<String, String> example) {
+    double[] scores = new double[labels.length];
+    for (int l = 0; l < labels.length; l++)
+      scores[l] = biases[l];
+    if (example instanceof RVFDatum<?, ?>) {
+      Counter<String> features = ((RVFDatum<String, String>) example)
+          .asFeaturesCounter();
+      for (String feature : features.keySet())
+        addWeights(scores, feature, features.getCount(feature));
+    } else {
+      for (String feature : example.asFeatures())
+        addWeights(scores, feature, 1.0);
+    }
+
+    Counter<String> counter = new ClassicCounter<String>();
+    for (int l = 0; l < labels.length; l++)
+      counter.setCount(labels[l], scores[l]);
+    return counter;
+  }
+
+  public String classOf(Datum<String, String> example) {
+    return Counters.argmax(scoresOf(example));
+  }
+
+  public Collection<String> labels() {
+    return Arrays.asList(labels);
+  }
+
+  public int numFeatures() {
+    return numFeatures;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Precision getPrecision() {
+    return precision;
+  }
+
+  /**
+   * @return The size in bytes of the serialized model this was made from, or
+   *         -1 if the file doesn't say.
+   */
+  public long getSourceLength() {
+    return sourceLength;
+  }
+
+  /**
+   * @return The modification time of the serialized model this was made
+   *         from, or -1 if the file doesn't say.
+   */
+  public long getSourceModified() {
+    return sourceModified;
+  }
+
+  /**
+   * @return The checksum() of the serialized model this was made from, or -1
+   *         if the file doesn't say.
+   */
+  public long getSourceChecksum() {
+    return sourceChecksum;
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    throw new NotSerializableException("FlatClassifier " + name
+        + ": serialize the LinearClassifier instead");
+  }
+
+  public String toString() {
+    return "FlatClassifier " + name + " (" + labels.length + " labels, "
+        + numFeatures + " features, " + precision.toString().toLowerCase()
+        + ")";
+  }
+
+  /**
+   * Flatten a LinearClassifier into the file, with float weights and only the
+   * features that have any weight.
+   */
+  public static void write(LinearClassifier<String, String> classifier,
+      File out) throws IOException {
+    write(classifier, out, Precision.FLOAT32, 0.0, null);
+  }
+
+  /**
+   * Flatten a LinearClassifier into the file.
+   *
+   * @param prune
+   *          Drop features whose weights for every label are this small or
+   *          smaller, or that round to 0 at the precision.
+   * @param source
+   *          The serialized model the classifier was read from, whose size,
+   *          time and checksum are recorded, or null if there is none.
+   */
+  public static void write(LinearClassifier<String, String> classifier,
+      File out, Precision precision, double prune, File source)
+      throws IOException {
+    Index<String> labelIndex = classifier.labelIndex();
+    Index<String> featureIndex = classifier.featureIndex();
+    double[][] matrix = classifier.weights();
+    int numLabels = labelIndex.size();
+
+    // Whatever a datum with no features scores, such as the classifier's
+    // thresholds.
+    Counter<String> empty = classifier
+        .scoresOf(new RVFDatum<String, String>(new ClassicCounter<String>()));
+
+    // INT8 weights are multiples of 1/127th of the label's biggest weight.
+    float[] scales = new float[numLabels];
+    Arrays.fill(scales, 1.0f);
+    if (precision == Precision.INT8) {
+      for (int l = 0; l < numLabels; l++) {
+        double max = 0.0;
+        for (int f = 0; f < matrix.length; f++)
+          max = Math.max(max, Math.abs(matrix[f][l]));
+        if (max > 0.0)
+          scales[l] = (float) (max / 127.0);
+      }
+    }
+
+    // The stored weights, for the features kept.
+    List<String> features = new ArrayList<String>();
+    List<int[]> rows = new ArrayList<int[]>();
+    for (int f = 0; f < matrix.length; f++) {
+      int[] row = new int[numLabels];
+      boolean keep = false;
+      for (int l = 0; l < numLabels; l++) {
+        double w = matrix[f][l];
+        if (precision == Precision.FLOAT32)
+          row[l] = Float.floatToIntBits((float) w);
+        else if (precision == Precision.FLOAT16)
+          row[l] = floatToHalf((float) w);
+        else
+          row[l] = (int) Math.round(w / scales[l]);
+        boolean zero = (precision == Precision.FLOAT32 ? (float) w == 0.0f
+            : (precision == Precision.FLOAT16 ? (row[l] & 0x7fff) == 0
+                : row[l] == 0));
+        if (Math.abs(w) > prune && !zero)
+          keep = true;
+      }
+      if (keep) {
+        features.add(featureIndex.get(f));
+        rows.add(row);
+      }
+    }
+    int numFeatures = features.size();
+
+    int numSlots = 1;
+    while (numSlots < 2 * numFeatures)
+      numSlots <<= 1;
+    int[] slots = new int[numSlots];
+    for (int f = 0; f < numFeatures; f++) {
+      int s = slot(features.get(f).hashCode(), numSlots);
+      while (slots[s] != 0)
+        s = (s + 1) & (numSlots - 1);
+      slots[s] = f + 1;
+    }
+
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(out)));
+    try {
+      data.write(MAGIC);
+      data.writeInt(precision.ordinal());
+      if (source != null) {
+        data.writeLong(source.length());
+        data.writeLong(source.lastModified());
+        data.writeLong(checksum(new FileInputStream(source)));
+      } else {
+        data.writeLong(-1);
+        data.writeLong(-1);
+        data.writeLong(-1);
+      }
+      String[] labels = new String[numLabels];
+      for (int l = 0; l < numLabels; l++)
+        labels[l] = labelIndex.get(l);
+      writeStrings(data, labels);
+      writeStrings(data, features.toArray(new String[numFeatures]));
+      data.writeInt(numSlots);
+      for (int s : slots)
+        data.writeInt(s);
+      data.writeInt(numFeatures * numLabels);
+      for (int[] row : rows) {
+        for (int w : row) {
+          if (precision == Precision.FLOAT32)
+            data.writeInt(w);
+          else if (precision == Precision.FLOAT16)
+            data.writeShort(w);
+          else
+            data.writeByte(w);
+        }
+      }
+      data.writeInt(numLabels);
+      for (float scale : scales)
+        data.writeFloat(scale);
+      data.writeInt(numLabels);
+      for (int l = 0; l < numLabels; l++)
+        data.writeFloat((float) empty.getCount(labels[l]));
+    } finally {
+      data.close();
+    }
+  }
+
+  /**
+   * @return The float nearest to the 16 bit float.
+   */
+  static float halfToFloat(short half) {
+    int sign = (half & 0x8000) << 16;
+    int exp = (half >>> 10) & 0x1f;
+    int mantissa = half & 0x3ff;
+    // Zero or subnormal.
+    if (exp == 0) {
+      float value = mantissa * 0x1p-24f;
+      return (sign == 0 ? value : -value);
+    }
+    // Infinite or NaN.
+    if (exp == 31)
+      return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+    return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mantissa << 13));
+  }
+
+  /**
+   * @return The nearest 16 bit float, ties to even. Finite values too big for
+   *         16 bits become the biggest one.
+   */
+  static short floatToHalf(float value) {
+    int bits = Float.floatToIntBits(value);
+    int sign = (bits >>> 16) & 0x8000;
+    int abs = bits & 0x7fffffff;
+    if (abs > 0x7f800000)
+      return (short) (sign | 0x7e00);
+    if (abs == 0x7f800000)
+      return (short) (sign | 0x7c00);
+    // Rounds to more than 65504.
+    if (abs >= 0x477ff000)
+      return (short) (sign | 0x7bff);
+    // Subnormal, in multiples of 2^-24.
+    if (abs < 0x38800000) {
+      float units = Float.intBitsToFloat(abs) * 0x1p24f;
+      return (short) (sign | (int) Math.rint(units));
+    }
+    // Round off the 13 low bits, then move the exponent's bias from 127 to 15.
+    int rounded = abs + 0xfff + ((abs >>> 13) & 1);
+    return (short) (sign | ((rounded - 0x38000000) >>> 13));
+  }
+
+  private static void writeStrings(DataOutputStream data, String[] strings)
+      throws IOException {
+    data.writeInt(strings.length + 1);
+    int offset = 0;
+    data.writeInt(offset);
+    for (String str : strings) {
+      offset += str.length();
+      data.writeInt(offset);
+    }
+    data.writeInt(offset);
+    for (String str : strings)
+      data.writeChars(str);
+  }
+
+  /**
+   * Write path.flat for each serialized LinearClassifier path given.
+   */
+  @SuppressWarnings("unchecked")
+  public static void main(String[] args) throws Exception {
+    Precision precision = Precision.FLOAT32;
+    double prune = 0.0;
+    List<String> paths = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-prune") && i + 1 < args.length)
+        prune = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-precision") && i + 1 < args.length)
+        precision = Precision.valueOf(args[++i].toUpperCase());
+      else
+        paths.add(args[i]);
+    }
+    if (paths.isEmpty()) {
+      System.out.println("FlatClassifier [-prune <min weight>] "
+          + "[-precision float32|float16|int8] <classifier> [<classifier> ...]");
+      System.exit(1);
+    }
+
+    for (String path : paths) {
+      Classifier<String, String> classifier = Util.readClassifierFromFile(path);
+      if (!(classifier instanceof LinearClassifier<?, ?>)) {
+        System.out.println("ERROR: not a LinearClassifier, skipping " + path);
+        continue;
+      }
+      LinearClassifier<String, String> linear = (LinearClassifier<String, String>) classifier;
+      File out = new File(path + SUFFIX);
+      write(linear, out, precision, prune, new File(path));
+      System.out.println("Wrote " + out + ": "
+          + load(out.getPath(), false).numFeatures() + " of "
+          + linear.featureIndex().size() + " features, " + out.length()
+          + " bytes");
+    }
+  }
+}
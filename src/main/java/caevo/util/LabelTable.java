@@ -0,0 +1,69 @@
+package caevo.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table of the strings used in encoded trees and dependencies (tags, words,
+ * relation names), so each distinct string is held once and the encodings can
+ * be plain int arrays. Ids are never reused or removed, so a table lives as
+ * long as the encodings that use it: SieveDocument keeps one for its own
+ * sentences, and it goes away with the document. A long-running server does
+ * not collect the words of every request it has seen.
+ *
+ * Safe to share between threads.
+ */
+public final class LabelTable {
+  private final ConcurrentHashMap<String, Integer> ids;
+  private volatile String[] labels;
+  private int size;
+
+  public LabelTable() {
+    ids = new ConcurrentHashMap<String, Integer>();
+    labels = new String[64];
+    size = 0;
+  }
+
+  /**
+   * A table whose ids are the positions in the given array, such as the
+   * string table of a binary documents file.
+   */
+  public LabelTable(String[] initial) {
+    ids = new ConcurrentHashMap<String, Integer>(2 * initial.length);
+    labels = Arrays.copyOf(initial, Math.max(64, initial.length));
+    size = initial.length;
+    for (int i = 0; i < initial.length; i++)
+      ids.putIfAbsent(initial[i], i);
+  }
+
+  /**
+   * @return The id of the string, adding it if it is new.
+   */
+  public int id(String label) {
+    Integer id = ids.get(label);
+    if (id != null)
+      return id;
+    synchronized (this) {
+      id = ids.get(label);
+      if (id != null)
+        return id;
+      String[] current = labels;
+      if (size == current.length)
+        current = Arrays.copyOf(current, 2 * current.length);
+      current[size] = label;
+      // Publish the array before the id, so readers that find the id can see
+      // the string.
+      labels = current;
+      ids.put(label, size);
+      return size++;
+    }
+  }
+
+  public String label(int id) {
+    return labels[id];
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+}
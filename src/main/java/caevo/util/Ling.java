@@ -415,14 +415,9 @@ public class Ling {
   public static boolean isNominative(String govLemma, char normalPOS,
       WordNet wordnet) {
     if (normalPOS == 'n') {
-      if (wordnet.isNominalization(govLemma)) {
-        // System.out.println("isNominalization " + govLemma);
+      int categories = wordnet.categories(govLemma);
+      if ((categories & (WordNet.NOMINALIZATION | WordNet.NOUN_EVENT)) != 0)
         return true;
-      }
-      if (wordnet.isNounEvent(govLemma)) {
-        // System.out.println("isNounEvent " + govLemma);
-        return true;
-      }
     }
 
     return false;
@@ -0,0 +1,174 @@
+package caevo.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memo table that is safe to share between threads and holds at most a
+ * fixed number of entries, dropping the least recently used first. Keys are
+ * spread over a few independently locked segments, so threads looking up
+ * different keys rarely wait on each other. A get() locks its segment too,
+ * because a hit moves the entry to the most recently used end.
+ *
+ * Null values are cached like any other, so get() returns MISSING, not null,
+ * for a key that isn't cached.
+ */
+public class LookupCache<K, V> {
+  public static final Object MISSING = new Object();
+  // Stands in for a cached null.
+  private static final Object NULL = new Object();
+  private static final int SEGMENTS = 16;
+
+  private final String name;
+  private final int capacity;
+  private final Segment[] segments;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * @param name
+   *          What the cache holds, for its stats.
+   * @param capacity
+   *          The most entries to hold. 0 or less means no limit.
+   */
+  public LookupCache(String name, int capacity) {
+    this.name = name;
+    this.capacity = capacity;
+    int numSegments = (capacity > 0 && capacity < 4 * SEGMENTS ? 1 : SEGMENTS);
+    segments = new Segment[numSegments];
+    // Split the capacity exactly, the first segments taking the remainder.
+    for (int i = 0; i < numSegments; i++) {
+      int max = (capacity > 0 ? capacity / numSegments
+          + (i < capacity % numSegments ? 1 : 0) : 0);
+      segments[i] = new Segment(max, evictions);
+    }
+  }
+
+  private Segment segmentFor(Object key) {
+    int h = (key == null ? 0 : key.hashCode());
+    h ^= (h >>> 16);
+    return segments[(h & 0x7fffffff) % segments.length];
+  }
+
+  /**
+   * @return The cached value, which may be null, or MISSING if the key isn't
+   *         cached.
+   */
+  public Object get(K key) {
+    Segment segment = segmentFor(key);
+    Object value;
+    synchronized (segment) {
+      value = segment.get(key);
+    }
+    if (value == null) {
+      misses.incrementAndGet();
+      return MISSING;
+    }
+    hits.incrementAndGet();
+    return (value == NULL ? null : value);
+  }
+
+  public void put(K key, V value) {
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, (value == null ? NULL : value));
+    }
+  }
+
+  /**
+   * @return A copy of the entries, each segment's least recently used first.
+   *         Cached nulls are null values.
+   */
+  @SuppressWarnings("unchecked")
+  public Map<K, V> toMap() {
+    Map<K, V> map = new LinkedHashMap<K, V>();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        for (Map.Entry<Object, Object> entry : segment.entrySet())
+          map.put((K) entry.getKey(),
+              (entry.getValue() == NULL ? null : (V) entry.getValue()));
+      }
+    }
+    return map;
+  }
+
+  public void clear() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /**
+   * @return The fraction of gets that were cached, or 0 before any get.
+   */
+  public double hitRate() {
+    long h = hits.get();
+    long total = h + misses.get();
+    return (total == 0 ? 0.0 : (double) h / total);
+  }
+
+  public String statsString() {
+    return name + ": " + size() + "/"
+        + (capacity > 0 ? String.valueOf(capacity) : "unbounded") + ", "
+        + hits.get() + " hits, " + misses.get() + " misses ("
+        + String.format("%.1f", 100.0 * hitRate()) + "%), " + evictions.get()
+        + " evictions";
+  }
+
+  /**
+   * One lock's share of the entries, in least recently used order.
+   */
+  private static class Segment extends LinkedHashMap<Object, Object> {
+    private static final long serialVersionUID = 1L;
+    private final int max;
+    private final AtomicLong evictions;
+
+    Segment(int max, AtomicLong evictions) {
+      super(16, 0.75f, true);
+      this.max = max;
+      this.evictions = evictions;
+    }
+
+    protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+      if (max > 0 && size() > max) {
+        evictions.incrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+}
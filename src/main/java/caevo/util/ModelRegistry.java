@@ -0,0 +1,320 @@
+package caevo.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+
+import edu.stanford.nlp.classify.Classifier;
+import edu.stanford.nlp.io.IOUtils;
+
+/**
+ * The serialized classifiers this process has read, one instance per model,
+ * shared by every sieve and classifier that asks for the same resource or
+ * file. Classifiers are only read once trained, so sharing them is safe.
+ *
+ * prefetch() starts reading a model on a background thread and returns at
+ * once, so a caller can name all the models it needs up front and have them
+ * read in parallel. get() returns the model, waiting for a prefetch under way
+ * or reading it on the calling thread if none was started. A model nobody
+ * prefetches is read the first time it is asked for.
+ *
+ * If a model has a FlatClassifier copy next to it (its path plus ".flat"),
+ * that is read instead, memory mapped if it is a file. The properties
+ * ModelRegistry.flat and ModelRegistry.mmap turn these off. A flat copy that
+ * wasn't made from the model as it is now, because the model was trained
+ * again since, is reported and the serialized model is read instead.
+ *
+ * A model that can't be read is reported once as an ERROR, whichever thread
+ * read it, and get() returns null for it from then on without reading it
+ * again, so a caller can carry on without an optional model. getRequired()
+ * throws instead, for callers that can't work without the model. clear()
+ * forgets failures too.
+ */
+public class ModelRegistry {
+  private static final ConcurrentMap<String, FutureTask<Classifier<String, String>>> models = new ConcurrentHashMap<String, FutureTask<Classifier<String, String>>>();
+  // Tasks whose failure has been reported.
+  private static final Set<FutureTask<Classifier<String, String>>> reported = Collections
+      .newSetFromMap(new ConcurrentHashMap<FutureTask<Classifier<String, String>>, Boolean>());
+  private static ExecutorService loader = null;
+
+  /**
+   * Start reading the model at the URL in the background, unless it is
+   * already read or being read.
+   */
+  public static void prefetch(URL url) {
+    if (url == null)
+      System.out.println("ERROR: null classifier path!");
+    else
+      start(task(url));
+  }
+
+  /**
+   * Start reading the model in the file in the background, unless it is
+   * already read or being read.
+   */
+  public static void prefetch(String path) {
+    start(task(path));
+  }
+
+  /**
+   * @return The model at the URL, or null if the URL is null or the model
+   *         can't be read.
+   */
+  public static Classifier<String, String> get(URL url) {
+    if (url == null)
+      return null;
+    return result(task(url), url.toString());
+  }
+
+  /**
+   * @return The model in the file, or null if it can't be read.
+   */
+  public static Classifier<String, String> get(String path) {
+    return result(task(path), path);
+  }
+
+  /**
+   * @return The model at the URL.
+   * @throws RuntimeException
+   *           If the URL is null or the model can't be read.
+   */
+  public static Classifier<String, String> getRequired(URL url) {
+    if (url == null)
+      throw new RuntimeException("No model to read: null classifier path");
+    return required(task(url), url.toString());
+  }
+
+  /**
+   * @return The model in the file.
+   * @throws RuntimeException
+   *           If the model can't be read.
+   */
+  public static Classifier<String, String> getRequired(String path) {
+    return required(task(path), path);
+  }
+
+  /**
+   * Forget every model and failure, so the next get() reads it again.
+   */
+  public static void clear() {
+    models.clear();
+    reported.clear();
+  }
+
+  private static FutureTask<Classifier<String, String>> task(final URL url) {
+    return task(url.toString(), new Callable<Classifier<String, String>>() {
+      public Classifier<String, String> call() throws Exception {
+        Classifier<String, String> flat = readFlat(url);
+        return (flat != null ? flat : readSerialized(url));
+      }
+    });
+  }
+
+  /**
+   * A file's models are keyed by its size and time too, so a model that is
+   * trained and written again is read again.
+   */
+  private static FutureTask<Classifier<String, String>> task(final String path) {
+    File file = new File(path);
+    String key = file.getAbsolutePath() + "\t" + file.length() + "\t"
+        + file.lastModified();
+    return task(key, new Callable<Classifier<String, String>>() {
+      public Classifier<String, String> call() throws Exception {
+        Classifier<String, String> flat = readFlat(path);
+        return (flat != null ? flat : readSerialized(path));
+      }
+    });
+  }
+
+  private static FutureTask<Classifier<String, String>> task(String key,
+      Callable<Classifier<String, String>> read) {
+    FutureTask<Classifier<String, String>> task = models.get(key);
+    if (task == null) {
+      FutureTask<Classifier<String, String>> created = new FutureTask<Classifier<String, String>>(
+          read);
+      task = models.putIfAbsent(key, created);
+      if (task == null)
+        task = created;
+    }
+    return task;
+  }
+
+  /**
+   * Read a model as Util.readClassifierFromFile() does, but throw instead of
+   * exiting, since this may run on a loader thread.
+   */
+  @SuppressWarnings("unchecked")
+  private static Classifier<String, String> readSerialized(URL url)
+      throws IOException, ClassNotFoundException {
+    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+        new GZIPInputStream(url.openStream())));
+    try {
+      return (Classifier<String, String>) in.readObject();
+    } finally {
+      in.close();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Classifier<String, String> readSerialized(String path)
+      throws IOException, ClassNotFoundException {
+    return (Classifier<String, String>) IOUtils.readObjectFromFile(path);
+  }
+
+  /**
+   * @return The model's flat copy, or null if it has none or it can't be read.
+   */
+  private static FlatClassifier readFlat(URL url) {
+    if (!property("ModelRegistry.flat", true))
+      return null;
+    try {
+      if (url.getProtocol().equals("file"))
+        return readFlat(new File(url.toURI()).getPath());
+      URL flatUrl = new URL(url.toString() + FlatClassifier.SUFFIX);
+      InputStream in;
+      try {
+        in = flatUrl.openStream();
+      } catch (IOException ex) {
+        return null;
+      }
+      FlatClassifier flat = FlatClassifier.read(flatUrl.toString(), in);
+      // No reliable time for a resource, so compare the contents.
+      if (flat.getSourceChecksum() < 0
+          || flat.getSourceChecksum() != FlatClassifier.checksum(url
+              .openStream())) {
+        System.out.println("WARNING: " + flatUrl
+            + " wasn't made from the current " + url + ", not using it.");
+        return null;
+      }
+      return flat;
+    } catch (Exception ex) {
+      System.out.println("WARNING: could not read the flat copy of " + url);
+      ex.printStackTrace();
+      return null;
+    }
+  }
+
+  private static FlatClassifier readFlat(String path) {
+    if (!property("ModelRegistry.flat", true))
+      return null;
+    File file = new File(path + FlatClassifier.SUFFIX);
+    if (!file.exists())
+      return null;
+    try {
+      FlatClassifier flat = FlatClassifier.load(file.getPath(),
+          property("ModelRegistry.mmap", true));
+      if (!isCurrent(flat, file, new File(path))) {
+        System.out.println("WARNING: " + file
+            + " wasn't made from the current " + path + ", not using it.");
+        return null;
+      }
+      return flat;
+    } catch (IOException ex) {
+      System.out.println("WARNING: could not read the flat copy of " + path);
+      ex.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * @return True if the flat copy was made from the model file as it is now,
+   *         or there is no model file to read instead. The model's size and
+   *         time settle it when they match what the flat copy recorded; if only
+   *         the time differs, as for a copy of both files, the checksum does.
+   *         A flat file too old to record them must be newer than the model.
+   */
+  private static boolean isCurrent(FlatClassifier flat, File flatFile,
+      File model) throws IOException {
+    if (!model.exists())
+      return true;
+    if (flat.getSourceLength() < 0)
+      return flatFile.lastModified() >= model.lastModified();
+    if (flat.getSourceLength() != model.length())
+      return false;
+    if (flat.getSourceModified() == model.lastModified())
+      return true;
+    return flat.getSourceChecksum() == FlatClassifier
+        .checksum(new FileInputStream(model));
+  }
+
+  private static boolean property(String key, boolean defaultValue) {
+    try {
+      return CaevoProperties.getBoolean(key, defaultValue);
+    } catch (IOException ex) {
+      return defaultValue;
+    }
+  }
+
+  private static void start(FutureTask<Classifier<String, String>> task) {
+    if (!task.isDone())
+      loader().execute(task);
+  }
+
+  private static Classifier<String, String> result(
+      FutureTask<Classifier<String, String>> task, String name) {
+    try {
+      return await(task, name);
+    } catch (ExecutionException ex) {
+      // The failure stays in the map, so later calls return null at once.
+      if (reported.add(task)) {
+        System.out.println("ERROR: Had fatal trouble loading " + name);
+        ex.getCause().printStackTrace();
+      }
+      return null;
+    }
+  }
+
+  private static Classifier<String, String> required(
+      FutureTask<Classifier<String, String>> task, String name) {
+    try {
+      return await(task, name);
+    } catch (ExecutionException ex) {
+      reported.add(task);
+      throw new RuntimeException("Had fatal trouble loading " + name,
+          ex.getCause());
+    }
+  }
+
+  private static Classifier<String, String> await(
+      FutureTask<Classifier<String, String>> task, String name)
+      throws ExecutionException {
+    // Read it here if no loader thread has started it; run() does nothing if
+    // one has.
+    task.run();
+    try {
+      return task.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while reading " + name, ex);
+    }
+  }
+
+  private static synchronized ExecutorService loader() {
+    if (loader == null) {
+      loader = Executors.newFixedThreadPool(Runtime.getRuntime()
+          .availableProcessors(), new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "model-loader");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return loader;
+  }
+}
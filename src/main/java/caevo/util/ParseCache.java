@@ -0,0 +1,371 @@
+package caevo.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.stanford.nlp.ling.HasWord;
+
+/**
+ * A persistent cache of sentence parses, so that sentences we have seen in an
+ * earlier run skip the parser entirely. Each entry is keyed by a SHA-1 hash of
+ * the grammar identity and the sentence's tokens, and stores the phrase tree
+ * and dependency strings that Tempeval3Parser.parseDep returns.
+ *
+ * The cache is a directory with two append-only files: parses.dat holds the
+ * records, and parses.idx maps each key to its record's offset in parses.dat.
+ * The data file is read through memory-mapped segments. Records are always
+ * written before their index entries, so a crash can at worst leave records
+ * that are re-indexed (or a partial record that is dropped) on the next open.
+ *
+ * All public methods are synchronized, so one cache can be shared by parser
+ * threads.
+ */
+public class ParseCache {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final byte[] MAGIC = "CAEVOPC1".getBytes(UTF8);
+  private static final int KEY_LENGTH = 20; // SHA-1
+  private static final int INDEX_ENTRY_LENGTH = KEY_LENGTH + 8;
+  private static final long SEGMENT_SIZE = 1L << 30;
+
+  public static final String DATA_FILE = "parses.dat";
+  public static final String INDEX_FILE = "parses.idx";
+
+  private final String grammarIdentity;
+  private final RandomAccessFile dataFile;
+  private final RandomAccessFile indexFile;
+  private final FileChannel dataChannel;
+  private final FileChannel indexChannel;
+  private final Map<Key, Long> index = new HashMap<Key, Long>();
+
+  // Read-only maps of the data file, SEGMENT_SIZE bytes each (the last may be
+  // shorter). Remapped as the file grows.
+  private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+  private long mappedLength = 0;
+
+  private int hits = 0;
+  private int misses = 0;
+
+  /**
+   * Opens (or creates) the cache in the given directory.
+   *
+   * @param dirpath
+   *          Directory holding the cache files.
+   * @param grammarPath
+   *          The grammar the parses come from. Parses from other grammars are
+   *          never returned.
+   */
+  public ParseCache(String dirpath, String grammarPath) throws IOException {
+    File dir = new File(dirpath);
+    if (!dir.exists() && !dir.mkdirs())
+      throw new IOException("Could not create parse cache directory " + dirpath);
+
+    grammarIdentity = grammarIdentity(grammarPath);
+    dataFile = new RandomAccessFile(new File(dir, DATA_FILE), "rw");
+    indexFile = new RandomAccessFile(new File(dir, INDEX_FILE), "rw");
+    dataChannel = dataFile.getChannel();
+    indexChannel = indexFile.getChannel();
+
+    if (dataChannel.size() == 0) {
+      dataChannel.write(ByteBuffer.wrap(MAGIC), 0);
+      indexChannel.truncate(0);
+    } else {
+      byte[] magic = new byte[MAGIC.length];
+      dataFile.seek(0);
+      dataFile.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC))
+        throw new IOException("Not a parse cache: " + dirpath);
+    }
+
+    long lastIndexed = loadIndex();
+    recoverUnindexed(lastIndexed);
+    System.out.println("Parse cache " + dirpath + " has " + index.size()
+        + " parses.");
+  }
+
+  /**
+   * @return The cached (phrase tree, dependencies) pair for the sentence, or
+   *         null if it has not been parsed before.
+   */
+  public synchronized Pair<String, String> get(List<HasWord> sentence) {
+    Long offset = index.get(key(sentence));
+    if (offset == null) {
+      misses++;
+      return null;
+    }
+    try {
+      ByteBuffer record = readRecord(offset);
+      record.position(KEY_LENGTH);
+      String parse = readString(record);
+      String deps = readString(record);
+      hits++;
+      return new Pair<String, String>(parse, deps);
+    } catch (IOException ex) {
+      System.out.println("ERROR: parse cache read failed at offset " + offset);
+      ex.printStackTrace();
+      misses++;
+      return null;
+    }
+  }
+
+  /**
+   * Appends a sentence's parse to the cache, unless it is already there.
+   */
+  public synchronized void put(List<HasWord> sentence,
+      Pair<String, String> parseDep) {
+    Key key = key(sentence);
+    if (parseDep == null || index.containsKey(key))
+      return;
+
+    byte[] parse = parseDep.first().getBytes(UTF8);
+    byte[] deps = parseDep.second().getBytes(UTF8);
+    ByteBuffer record = ByteBuffer
+        .allocate(KEY_LENGTH + 4 + parse.length + 4 + deps.length);
+    record.put(key.bytes);
+    record.putInt(parse.length).put(parse);
+    record.putInt(deps.length).put(deps);
+    record.flip();
+
+    try {
+      long offset = dataChannel.size();
+      writeFully(dataChannel, record, offset);
+      appendIndexEntry(key, offset);
+      index.put(key, offset);
+    } catch (IOException ex) {
+      System.out.println("ERROR: parse cache write failed");
+      ex.printStackTrace();
+    }
+  }
+
+  public synchronized int size() {
+    return index.size();
+  }
+
+  public synchronized int getHits() {
+    return hits;
+  }
+
+  public synchronized int getMisses() {
+    return misses;
+  }
+
+  public synchronized String statsString() {
+    return "Parse cache: " + hits + " hits, " + misses + " misses, "
+        + index.size() + " parses stored.";
+  }
+
+  public synchronized void close() throws IOException {
+    segments.clear();
+    dataChannel.force(false);
+    indexChannel.force(false);
+    dataFile.close();
+    indexFile.close();
+  }
+
+  /**
+   * Reads the index file. Entries pointing past the end of the data file are
+   * dropped (and the index truncated to the last good entry).
+   *
+   * @return The offset in the data file just past the last indexed record.
+   */
+  private long loadIndex() throws IOException {
+    long dataLength = dataChannel.size();
+    long numEntries = indexChannel.size() / INDEX_ENTRY_LENGTH;
+    long end = MAGIC.length;
+
+    ByteBuffer buf = ByteBuffer.allocate(INDEX_ENTRY_LENGTH);
+    long entry = 0;
+    for (; entry < numEntries; entry++) {
+      buf.clear();
+      readFully(indexChannel, buf, entry * INDEX_ENTRY_LENGTH);
+      buf.flip();
+      byte[] keyBytes = new byte[KEY_LENGTH];
+      buf.get(keyBytes);
+      long offset = buf.getLong();
+      if (offset < MAGIC.length || offset >= dataLength)
+        break;
+      long recordEnd = recordEnd(offset, dataLength);
+      if (recordEnd < 0)
+        break;
+      index.put(new Key(keyBytes), offset);
+      end = Math.max(end, recordEnd);
+    }
+    indexChannel.truncate(entry * INDEX_ENTRY_LENGTH);
+    return end;
+  }
+
+  /**
+   * Indexes any complete records after the last indexed one, and cuts off a
+   * partially written record at the end of the data file.
+   */
+  private void recoverUnindexed(long offset) throws IOException {
+    long dataLength = dataChannel.size();
+    while (offset < dataLength) {
+      long recordEnd = recordEnd(offset, dataLength);
+      if (recordEnd < 0) {
+        System.out.println("Parse cache: dropping partial record at offset "
+            + offset);
+        dataChannel.truncate(offset);
+        break;
+      }
+      byte[] keyBytes = new byte[KEY_LENGTH];
+      ByteBuffer buf = ByteBuffer.wrap(keyBytes);
+      readFully(dataChannel, buf, offset);
+      Key key = new Key(keyBytes);
+      if (!index.containsKey(key)) {
+        appendIndexEntry(key, offset);
+        index.put(key, offset);
+      }
+      offset = recordEnd;
+    }
+  }
+
+  /**
+   * @return The offset just past the record that starts at the given offset,
+   *         or -1 if the record runs past the end of the file or has a
+   *         negative (corrupt) length.
+   */
+  private long recordEnd(long offset, long dataLength) throws IOException {
+    long pos = offset + KEY_LENGTH;
+    for (int field = 0; field < 2; field++) {
+      if (pos + 4 > dataLength)
+        return -1;
+      ByteBuffer len = ByteBuffer.allocate(4);
+      readFully(dataChannel, len, pos);
+      len.flip();
+      int length = len.getInt();
+      if (length < 0)
+        return -1;
+      pos += 4 + length;
+    }
+    return (pos > dataLength || pos <= offset ? -1 : pos);
+  }
+
+  private void appendIndexEntry(Key key, long offset) throws IOException {
+    ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_LENGTH);
+    entry.put(key.bytes).putLong(offset);
+    entry.flip();
+    writeFully(indexChannel, entry, indexChannel.size());
+  }
+
+  /**
+   * @return A buffer holding the whole record at the given offset, positioned
+   *         at its start.
+   */
+  private ByteBuffer readRecord(long offset) throws IOException {
+    long end = recordEnd(offset, dataChannel.size());
+    if (end < 0)
+      throw new IOException("Truncated parse cache record at " + offset);
+    if (end > mappedLength)
+      remap();
+
+    int segi = (int) (offset / SEGMENT_SIZE);
+    int segEnd = (int) ((end - 1) / SEGMENT_SIZE);
+    if (segi == segEnd) {
+      ByteBuffer seg = segments.get(segi).duplicate();
+      seg.position((int) (offset - segi * SEGMENT_SIZE));
+      seg.limit((int) (end - segi * SEGMENT_SIZE));
+      return seg.slice();
+    }
+    // Records that straddle two segments are rare; just read them directly.
+    ByteBuffer buf = ByteBuffer.allocate((int) (end - offset));
+    readFully(dataChannel, buf, offset);
+    buf.flip();
+    return buf;
+  }
+
+  private void remap() throws IOException {
+    segments.clear();
+    long length = dataChannel.size();
+    for (long start = 0; start < length; start += SEGMENT_SIZE)
+      segments.add(dataChannel.map(FileChannel.MapMode.READ_ONLY, start,
+          Math.min(SEGMENT_SIZE, length - start)));
+    mappedLength = length;
+  }
+
+  private static String readString(ByteBuffer buf) {
+    byte[] bytes = new byte[buf.getInt()];
+    buf.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buf, long pos)
+      throws IOException {
+    while (buf.hasRemaining()) {
+      int read = channel.read(buf, pos);
+      if (read < 0)
+        throw new IOException("Unexpected end of parse cache file");
+      pos += read;
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buf, long pos)
+      throws IOException {
+    while (buf.hasRemaining())
+      pos += channel.write(buf, pos);
+  }
+
+  /**
+   * The cache key: grammar identity plus every token, each on its own line.
+   */
+  private Key key(List<HasWord> sentence) {
+    StringBuffer buf = new StringBuffer(grammarIdentity);
+    for (HasWord word : sentence)
+      buf.append('\n').append(word.word());
+    try {
+      MessageDigest sha = MessageDigest.getInstance("SHA-1");
+      return new Key(sha.digest(buf.toString().getBytes(UTF8)));
+    } catch (NoSuchAlgorithmException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Identifies a grammar by its path plus its size and modification time if it
+   * is a file, or the URL it resolves to if it is on the classpath (the URL
+   * names the models jar and so its version).
+   */
+  private static String grammarIdentity(String grammarPath) {
+    File file = new File(grammarPath);
+    if (file.exists())
+      return file.getAbsolutePath() + " " + file.length() + " "
+          + file.lastModified();
+    URL url = ParseCache.class.getClassLoader().getResource(grammarPath);
+    return (url != null ? url.toString() : grammarPath);
+  }
+
+  /**
+   * A SHA-1 key with value equality, for the in-memory index.
+   */
+  private static final class Key {
+    final byte[] bytes;
+    final int hash;
+
+    Key(byte[] bytes) {
+      this.bytes = bytes;
+      this.hash = Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Key && Arrays.equals(bytes, ((Key) other).bytes);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package caevo.util;
+
+import java.util.Calendar;
+
+/**
+ * The span of time a TimeML value names, as the first and last second it
+ * covers (seconds since the epoch, read in the default time zone), with the
+ * granularity of the value. Intervals are immutable, so every Timex with the
+ * same value can share one, and ordering two intervals is a couple of long
+ * comparisons.
+ *
+ * TimeValueParser.interval() gives a value's full range, times of day and
+ * weeks included. ofDate() reads only the value's leading YYYY-MM-DD, which is
+ * what Timex.before() and Timex.includes() compare.
+ *
+ * Seconds rather than minutes, since values may name a second and the ranges
+ * were always compared to the second.
+ */
+public final class TimeInterval {
+  public enum Granularity {
+    YEAR, MONTH, DAY, HOUR, MINUTE, SECOND
+  };
+
+  private final long start;
+  private final long end;
+  private final Granularity granularity;
+  private final boolean partial;
+
+  public TimeInterval(long start, long end, Granularity granularity) {
+    this(start, end, granularity, false);
+  }
+
+  private TimeInterval(long start, long end, Granularity granularity,
+      boolean partial) {
+    this.start = start;
+    this.end = end;
+    this.granularity = granularity;
+    this.partial = partial;
+  }
+
+  /**
+   * The interval of a value's date, to the finest of year, month and day that
+   * it gives as numbers. A month or day that isn't a number, like the week in
+   * "1998-W12", or that is not on the calendar, like "1998-02-30", leaves the
+   * interval at the coarser granularity and partial.
+   *
+   * @return The interval, or null if the value doesn't start with a four digit
+   *         year.
+   */
+  public static TimeInterval ofDate(String value) {
+    if (value == null || value.length() < 4 || !isDigits(value, 0, 4))
+      return null;
+    int year = Integer.parseInt(value.substring(0, 4));
+
+    // The fields the value has room for, whether or not they are numbers.
+    Granularity given = (value.length() == 4 ? Granularity.YEAR : (value
+        .length() <= 7 ? Granularity.MONTH : Granularity.DAY));
+
+    if (given == Granularity.YEAR || !isDigits(value, 5, 7))
+      return new TimeInterval(seconds(year, 0, 1), seconds(year + 1, 0, 1) - 1,
+          Granularity.YEAR, given != Granularity.YEAR);
+    int month = Integer.parseInt(value.substring(5, 7)) - 1;
+    if (month < 0 || month > 11)
+      return new TimeInterval(seconds(year, 0, 1), seconds(year + 1, 0, 1) - 1,
+          Granularity.YEAR, true);
+
+    if (given == Granularity.MONTH || !isDigits(value, 8, 10)
+        || !isDay(year, month, Integer.parseInt(value.substring(8, 10))))
+      return new TimeInterval(seconds(year, month, 1), seconds(year,
+          month + 1, 1) - 1, Granularity.MONTH, given != Granularity.MONTH);
+    int day = Integer.parseInt(value.substring(8, 10));
+    return new TimeInterval(seconds(year, month, day), seconds(year, month,
+        day + 1) - 1, Granularity.DAY);
+  }
+
+  private static boolean isDigits(String value, int from, int to) {
+    if (value.length() < to)
+      return false;
+    for (int i = from; i < to; i++)
+      if (value.charAt(i) < '0' || value.charAt(i) > '9')
+        return false;
+    return true;
+  }
+
+  private static boolean isDay(int year, int month, int day) {
+    Calendar time = Calendar.getInstance();
+    time.clear();
+    time.set(year, month, 1);
+    return day >= 1 && day <= time.getActualMaximum(Calendar.DAY_OF_MONTH);
+  }
+
+  /**
+   * @return The start of the day, in seconds. Months and days past the end
+   *         roll over into the next year or month.
+   */
+  private static long seconds(int year, int month, int day) {
+    Calendar time = Calendar.getInstance();
+    time.clear();
+    time.set(year, month, day);
+    return time.getTimeInMillis() / 1000;
+  }
+
+  /**
+   * @return The first second of the interval.
+   */
+  public long getStart() {
+    return start;
+  }
+
+  /**
+   * @return The last second of the interval.
+   */
+  public long getEnd() {
+    return end;
+  }
+
+  public Granularity getGranularity() {
+    return granularity;
+  }
+
+  /**
+   * @return True if the value names something finer than the granularity that
+   *         couldn't be read, like the week of "1998-W12".
+   */
+  public boolean isPartial() {
+    return partial;
+  }
+
+  /**
+   * @return True if this interval ends before the other starts.
+   */
+  public boolean before(TimeInterval other) {
+    return end < other.start;
+  }
+
+  /**
+   * @return True if the other interval lies within this one, or is the same.
+   */
+  public boolean contains(TimeInterval other) {
+    return start <= other.start && other.end <= end;
+  }
+
+  public boolean equals(Object obj) {
+    if (!(obj instanceof TimeInterval))
+      return false;
+    TimeInterval other = (TimeInterval) obj;
+    return start == other.start && end == other.end
+        && granularity == other.granularity && partial == other.partial;
+  }
+
+  public int hashCode() {
+    return (int) (start ^ (start >>> 32)) * 31 + (int) (end ^ (end >>> 32));
+  }
+
+  public String toString() {
+    return "[" + start + ", " + end + "] " + granularity
+        + (partial ? " partial" : "");
+  }
+}
@@ -1,5 +1,6 @@
 package caevo.util;
 
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -11,11 +12,21 @@ import java.util.regex.Pattern;
  * Dates based on weeks are currently only roughly estimated, although it's
  * possible to represent them precisely.
  * 
+ * The patterns are compiled once, and a value is only matched against the one
+ * pattern its shape allows. TimeML values repeat heavily, so interval() keeps
+ * the intervals of the values it has parsed, up to TimeValueParser.cacheSize
+ * of them.
+ * 
  * @author Bill McDowell
  * 
  */
 public class TimeValueParser {
-  private class TimePattern {
+  public static final int DEFAULT_CACHE_SIZE = 10000;
+
+  // Each value's interval, or null if it has none.
+  private static final LookupCache<String, TimeInterval> intervals = newCache();
+
+  private static class TimePattern {
     private Pattern pattern;
 
     private int yearGroup;
@@ -102,21 +113,21 @@ public class TimeValueParser {
 
   }
 
-  private TimePattern DATE_PATTERN = new TimePattern(
+  private static final TimePattern DATE_PATTERN = new TimePattern(
       "([0-9X]{1,4})(-([0-9X]{1,2})(-([0-9X]{1,2}))?)?", 1, 3, 5, 0, 0, 0, 0, 0,
       0, 0, 0);
-  private TimePattern TIME_PATTERN = new TimePattern(
+  private static final TimePattern TIME_PATTERN = new TimePattern(
       "(([0-9X]{1,4})-([0-9X]{1,2})-([0-9X]{1,2}))?T((([0-9]{2})(:([0-9]{2})(:([0-9]{2}))?)?)|(MO|MI|AF|EV|NI|DT))",
       2, 3, 4, 7, 9, 11, 0, 0, 0, 12, 0);
-  private TimePattern WEEK_DATE_PATTERN = new TimePattern(
+  private static final TimePattern WEEK_DATE_PATTERN = new TimePattern(
       "([0-9X]{1,4})-W([0-9X]{1,2})(-([1-7X]|WE))?", 1, 0, 0, 0, 0, 0, 0, 0, 2,
       0, 4);
-  private TimePattern WEEK_TIME_PATTERN = new TimePattern(
+  private static final TimePattern WEEK_TIME_PATTERN = new TimePattern(
       "([0-9X]{1,4})-W([0-9X]{1,2})-([1-7X])T((([0-9]{2})(:([0-9]{2})(:([0-9]{2}))?)?)|(MO|MI|AF|EV|NI|DT))",
       1, 0, 0, 6, 8, 10, 0, 0, 2, 11, 3);
-  private TimePattern SEASON_PATTERN = new TimePattern(
+  private static final TimePattern SEASON_PATTERN = new TimePattern(
       "([0-9X]{1,4})-(SP|SU|WI|FA)", 1, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0);
-  private TimePattern PART_OF_YEAR_PATTERN = new TimePattern(
+  private static final TimePattern PART_OF_YEAR_PATTERN = new TimePattern(
       "([0-9X]{1,4})-(H[1-2X]|Q[1-4X])", 1, 0, 0, 0, 0, 0, 2, 0, 0, 0, 0);
 
   private String value;
@@ -126,34 +137,90 @@ public class TimeValueParser {
   public TimeValueParser(String value) {
     this.value = value;
 
-    Matcher dateMatcher = this.DATE_PATTERN.getMatcher(this.value);
-    Matcher timeMatcher = this.TIME_PATTERN.getMatcher(this.value);
-    Matcher weekDateMatcher = this.WEEK_DATE_PATTERN.getMatcher(this.value);
-    Matcher weekTimeMatcher = this.WEEK_TIME_PATTERN.getMatcher(this.value);
-    Matcher seasonMatcher = this.SEASON_PATTERN.getMatcher(this.value);
-    Matcher partOfYearMatcher = this.PART_OF_YEAR_PATTERN
-        .getMatcher(this.value);
-
-    if (dateMatcher.matches()) {
-      this.pattern = this.DATE_PATTERN;
-      this.matcher = dateMatcher;
-    } else if (timeMatcher.matches()) {
-      this.pattern = this.TIME_PATTERN;
-      this.matcher = timeMatcher;
-    } else if (weekDateMatcher.matches()) {
-      this.pattern = this.WEEK_DATE_PATTERN;
-      this.matcher = weekDateMatcher;
-    } else if (weekTimeMatcher.matches()) {
-      this.pattern = this.WEEK_TIME_PATTERN;
-      this.matcher = weekTimeMatcher;
-    } else if (seasonMatcher.matches()) {
-      this.pattern = this.SEASON_PATTERN;
-      this.matcher = seasonMatcher;
-    } else if (partOfYearMatcher.matches()) {
-      this.pattern = this.PART_OF_YEAR_PATTERN;
-      this.matcher = partOfYearMatcher;
+    TimePattern candidate = patternFor(this.value);
+    if (candidate != null) {
+      Matcher candidateMatcher = candidate.getMatcher(this.value);
+      if (candidateMatcher.matches()) {
+        this.pattern = candidate;
+        this.matcher = candidateMatcher;
+      }
+    }
+  }
+
+  /**
+   * @return The interval of the value's range, as getInterval() gives it, from
+   *         the cache if the value has been parsed before.
+   */
+  public static TimeInterval interval(String value) {
+    Object cached = intervals.get(value);
+    if (cached != LookupCache.MISSING)
+      return (TimeInterval) cached;
+    TimeInterval interval = new TimeValueParser(value).getInterval();
+    intervals.put(value, interval);
+    return interval;
+  }
+
+  /**
+   * @return The range of the value, as getRange() gives it, from the cache if
+   *         the value has been parsed before. The calendars are new copies, so
+   *         callers may change them.
+   */
+  public static Pair<Calendar, Calendar> range(String value) {
+    TimeInterval interval = interval(value);
+    if (interval == null)
+      return null;
+    return new Pair<Calendar, Calendar>(calendar(interval.getStart()),
+        calendar(interval.getEnd()));
+  }
+
+  private static Calendar calendar(long seconds) {
+    Calendar time = Calendar.getInstance();
+    time.setTimeInMillis(seconds * 1000);
+    return time;
+  }
+
+  public static String cacheStats() {
+    return intervals.statsString();
+  }
+
+  /**
+   * The only pattern that could match the value, going by the characters after
+   * its first dash (if any) and whether it has a time: "1998-SU" can only be a
+   * season, "1998-W12" a week, and so on.
+   */
+  private static TimePattern patternFor(String value) {
+    if (value == null)
+      return null;
+    boolean hasTime = value.indexOf('T') >= 0;
+    int dash = value.indexOf('-');
+    if (dash < 0 || dash + 1 == value.length())
+      return (hasTime ? TIME_PATTERN : DATE_PATTERN);
+
+    switch (value.charAt(dash + 1)) {
+    case 'W':
+      if (dash + 2 < value.length() && value.charAt(dash + 2) == 'I')
+        return SEASON_PATTERN;
+      return (hasTime ? WEEK_TIME_PATTERN : WEEK_DATE_PATTERN);
+    case 'S':
+    case 'F':
+      return SEASON_PATTERN;
+    case 'H':
+    case 'Q':
+      return PART_OF_YEAR_PATTERN;
+    default:
+      return (hasTime ? TIME_PATTERN : DATE_PATTERN);
     }
+  }
 
+  private static LookupCache<String, TimeInterval> newCache() {
+    int size = DEFAULT_CACHE_SIZE;
+    try {
+      size = CaevoProperties.getInt("TimeValueParser.cacheSize", size);
+    } catch (IOException ex) {
+      System.out.println("WARNING: couldn't read TimeValueParser.cacheSize, "
+          + "using " + size);
+    }
+    return new LookupCache<String, TimeInterval>("time intervals", size);
   }
 
   public Pair<Integer, Integer> getYears() {
@@ -164,16 +231,16 @@ public class TimeValueParser {
     if (!isInteger(yearStr))
       return null;
 
-    StringBuilder minYear = new StringBuilder().append(yearStr);
-    StringBuilder maxYear = new StringBuilder().append(yearStr);
-
+    // A year of fewer than four digits is a decade, century or millennium:
+    // "199" is 1990 to 1999.
+    int minYear = Integer.parseInt(yearStr);
+    int span = 1;
     for (int i = yearStr.length(); i < 4; i++) {
-      minYear.append("0");
-      maxYear.append("9");
+      minYear *= 10;
+      span *= 10;
     }
 
-    return new Pair<Integer, Integer>(Integer.valueOf(minYear.toString()),
-        Integer.valueOf(maxYear.toString()));
+    return new Pair<Integer, Integer>(minYear, minYear + span - 1);
   }
 
   public Pair<Integer, Integer> getMonths() {
@@ -346,7 +413,35 @@ public class TimeValueParser {
     return new Pair<Calendar, Calendar>(minTime, maxTime);
   }
 
-  private int weekToMonth(int week) {
+  /**
+   * @return getRange() as seconds, with the finest field the value gives, or
+   *         null if there is no range.
+   */
+  public TimeInterval getInterval() {
+    Pair<Calendar, Calendar> range = getRange();
+    if (range == null)
+      return null;
+
+    TimeInterval.Granularity granularity;
+    if (getSeconds() != null)
+      granularity = TimeInterval.Granularity.SECOND;
+    else if (getMinutes() != null)
+      granularity = TimeInterval.Granularity.MINUTE;
+    else if (getHours() != null)
+      granularity = TimeInterval.Granularity.HOUR;
+    else if (getDays() != null)
+      granularity = TimeInterval.Granularity.DAY;
+    else if (getMonths() != null)
+      granularity = TimeInterval.Granularity.MONTH;
+    else
+      granularity = TimeInterval.Granularity.YEAR;
+
+    // The calendars are set to whole seconds.
+    return new TimeInterval(range.first().getTimeInMillis() / 1000, range
+        .second().getTimeInMillis() / 1000, granularity);
+  }
+
+  private static int weekToMonth(int week) {
     return (int) Math.ceil(Math.min(12, week / 4.33)); // FIXME: This is just a
                                                        // rough estimate
   }
@@ -359,7 +454,7 @@ public class TimeValueParser {
       return Integer.valueOf(str);
   }
 
-  private boolean isInteger(String str) {
+  private static boolean isInteger(String str) {
     if (str == null)
       return false;
 
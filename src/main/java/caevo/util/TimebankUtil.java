@@ -1,6 +1,7 @@
 package caevo.util;
 
 import java.io.File;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -14,6 +15,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node; // yes?
 import org.w3c.dom.NodeList; // yes?
 import org.w3c.dom.Text; // yes?
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
@@ -21,12 +23,12 @@ import caevo.BethardAnnotation;
 import caevo.SieveDocument;
 import caevo.SieveDocuments;
 import caevo.SieveSentence;
+import caevo.SieveTokens;
 import caevo.TextEvent;
 import caevo.Timex;
 import caevo.tlink.EventEventLink;
 import caevo.tlink.EventTimeLink;
 import caevo.tlink.TLink;
-import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.trees.TreeGraphNode;
 import edu.stanford.nlp.trees.TypedDependency;
 
@@ -134,11 +136,24 @@ public class TimebankUtil {
    * @return Document representation of the xml
    */
   public static Document getXMLDoc(String filename) {
+    return getXMLDoc(new InputSource(new File(filename).toURI().toString()));
+  }
+
+  /**
+   * Read an XML Document from a string of XML
+   * 
+   * @return Document representation of the xml
+   */
+  public static Document getXMLDocFromString(String xml) {
+    return getXMLDoc(new InputSource(new StringReader(xml)));
+  }
+
+  private static Document getXMLDoc(InputSource source) {
     try {
       DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory
           .newInstance();
       DocumentBuilder docBuilder = docBuilderFactory.newDocumentBuilder();
-      Document doc = docBuilder.parse(new File(filename));
+      Document doc = docBuilder.parse(source);
 
       // normalize text representation
       doc.getDocumentElement().normalize();
@@ -299,9 +314,9 @@ public class TimebankUtil {
   public static TextEvent.Tense pseudoTense2(SieveSentence sent,
       List<TypedDependency> tds, TextEvent event) {
     int eventIndex = event.getIndex();
-    List<CoreLabel> tokens = sent.tokens();
+    SieveTokens tokens = sent.tokens();
     for (int t = 0; t < tokens.size(); t++) {
-      String tokenText = tokens.get(t).originalText();
+      String tokenText = tokens.text(t);
       if (isModalWord(tokenText)) {
         String dp = TreeOperator.directPath(eventIndex, t + 1, tds); // add 1
                                                                      // because
@@ -342,9 +357,17 @@ public class TimebankUtil {
    * @return
    */
   public static boolean compareTimexesByValue(Timex t1, Timex t2) {
-    if (t1 == null && t2 == null || t1.getValue().equals(t2.getValue())) {
-      return true;
-    } else
+    if (t1 == null || t2 == null)
+      return t1 == t2;
+
+    // Different intervals are different values, without looking at the
+    // strings. The same interval isn't enough, as weeks are only read roughly.
+    TimeInterval interval1 = t1.getInterval();
+    TimeInterval interval2 = t2.getInterval();
+    if (interval1 != null && interval2 != null && !interval1.equals(interval2))
       return false;
+    if (t1.getValue() == null)
+      return t2.getValue() == null;
+    return t1.getValue().equals(t2.getValue());
   }
 }
@@ -293,6 +293,16 @@ public class TreeOperator {
       return subtree.label().value();
   }
 
+  /**
+   * The same as indexToPOSTag(Tree, int), without building a Tree.
+   */
+  public static String indexToPOSTag(EncodedTree full, int goal) {
+    // Hack fix for old parser error with indices from conjunctions.
+    if (goal > 1000)
+      goal -= 1000;
+    return (full == null ? null : full.posTag(goal));
+  }
+
   public static String indexToToken(Tree full, int goal) {
     // Hack fix for old parser error with indices from conjunctions.
     if (goal > 1000)
@@ -305,6 +315,16 @@ public class TreeOperator {
       return subtree.children()[0].nodeString();// .value().toString();
   }
 
+  /**
+   * The same as indexToToken(Tree, int), without building a Tree.
+   */
+  public static String indexToToken(EncodedTree full, int goal) {
+    // Hack fix for old parser error with indices from conjunctions.
+    if (goal > 1000)
+      goal -= 1000;
+    return (full == null ? null : full.token(goal));
+  }
+
   /**
    * Assumes the goal is a word index in the sentence, and the first word starts
    * at index 1.
@@ -685,6 +705,16 @@ public class TreeOperator {
     return paths;
   }
 
+  public static String dependencyPath(int start, int end,
+      EncodedDependencies deps) {
+    return deps.dependencyPath(start, end);
+  }
+
+  public static String directPath(int start, int end,
+      EncodedDependencies deps) {
+    return deps.directPath(start, end);
+  }
+
   public static String directPath(int start, int end,
       List<TypedDependency> deps) {
     String shortestPath = dependencyPath(start, end, deps);
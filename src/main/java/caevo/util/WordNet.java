@@ -1,13 +1,25 @@
 package caevo.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import net.didion.jwnl.JWNL;
 import net.didion.jwnl.JWNLException;
@@ -26,22 +38,81 @@ import net.didion.jwnl.dictionary.Dictionary;
  * Looks for the environment variable "JWNL" to find the path to
  * jwnl_file_properties.xml
  *
+ * The noun category predicates (isTime(), isLocation(), ...) all come from
+ * categories(), which walks each sense's hypernyms once and remembers, per
+ * synset, which category roots it is under.
+ *
+ * One WordNet is shared by every sieve and thread. The caches are
+ * LookupCaches, and each holds at most WordNet.cacheSize entries (or
+ * WordNet.cacheSize.&lt;name&gt; for one cache, e.g.
+ * WordNet.cacheSize.nounToLemma) from the properties file. A cached answer
+ * takes only the lock of its cache segment, which also keeps the LRU order,
+ * so threads rarely wait on each other for one. JWNL itself is not thread
+ * safe, so anything that reads the dictionary is synchronized on the
+ * instance.
+ *
+ * With WordNet.snapshot set to a file compiled by WordNetSnapshot, the
+ * lemmatizers, areSiblings() and the is* predicates answer from that file
+ * instead of JWNL, without the instance lock. JWNL is then only needed for
+ * the methods that take or return its Synsets, and for words the snapshot
+ * wasn't compiled with, which go to JWNL if it is set up and are otherwise
+ * unknown.
+ *
+ * With WordNet.diskCache set to a file, the lemma and category caches are
+ * read from it at startup and written back to it at exit, so a run starts
+ * with the lookups of the runs before it. The file records which dictionary
+ * and snapshot it came from, and is ignored if they change. WordNets that
+ * share a file write it in turn, each replacing it whole.
+ *
  * @author chambers
  */
 public class WordNet {
-  private Map<String, String> _verbToLemma;
-  private Map<String, String> _nounToLemma;
-  private Map<String, String> _adjToLemma;
-  private Map<String, Boolean> _isNounEvent;
-  private Map<String, Boolean> _isPhysicalObject;
-  private Map<String, Boolean> _isNonPersonLocationPhysicalObject;
-  private Map<String, Boolean> _isMaterial;
-  private Map<String, Boolean> _isPersonOrGroup;
-  private Map<String, Boolean> _isNamedEntity;
-  private Map<String, Boolean> _isLocation;
-  private Map<String, Boolean> _isStructure;
-  private Map<String, Boolean> _isMeasure;
-  private Map<String, Boolean> _isTime;
+  public static final int DEFAULT_CACHE_SIZE = 50000;
+
+  private final LookupCache<String, String> _verbToLemma = newCache(
+      "verbToLemma");
+  private final LookupCache<String, String> _nounToLemma = newCache(
+      "nounToLemma");
+  private final LookupCache<String, String> _adjToLemma = newCache(
+      "adjToLemma");
+  private final LookupCache<String, Integer> _categories = newCache(
+      "categories");
+  // The *_ROOT bits of each noun synset looked up, guarded by the instance.
+  private final Map<Synset, Integer> _synsetRoots =
+      new HashMap<Synset, Integer>();
+
+  // A noun's categories, as returned by categories().
+  public static final int NOUN_EVENT = 1 << 0;
+  public static final int PHYSICAL_OBJECT = 1 << 1;
+  public static final int NON_PERSON_LOCATION_PHYSICAL_OBJECT = 1 << 2;
+  public static final int MATERIAL = 1 << 3;
+  public static final int PERSON_OR_GROUP = 1 << 4;
+  public static final int PERSON = 1 << 5;
+  public static final int MAIN_PERSON_OR_GROUP = 1 << 6;
+  public static final int MAIN_PERSON = 1 << 7;
+  public static final int NAMED_ENTITY = 1 << 8;
+  public static final int LOCATION = 1 << 9;
+  public static final int STRUCTURE = 1 << 10;
+  public static final int MEASURE = 1 << 11;
+  public static final int TIME = 1 << 12;
+  public static final int INTEGER = 1 << 13;
+  public static final int NOMINALIZATION = 1 << 14;
+
+  // What a synset descends from, or is, as returned by synsetRoots().
+  private static final int TIME_ROOT = 1 << 0;
+  private static final int LOCATION_ROOT = 1 << 1;
+  private static final int PERSON_ROOT = 1 << 2;
+  private static final int SOCIAL_GROUP_ROOT = 1 << 3;
+  private static final int PHYSICAL_OBJECT_ROOT = 1 << 4;
+  private static final int STRUCTURE_ROOT = 1 << 5;
+  private static final int MATERIAL_ROOT = 1 << 6;
+  private static final int MEASURE_ROOT = 1 << 7;
+  private static final int INTEGER_ROOT = 1 << 8;
+  private static final int EVENT_ROOT = 1 << 9;
+  private static final int PERSON_OR_LOCATION_FIRST = 1 << 10;
+  private static final int PHYSICAL_OBJECT_FIRST = 1 << 11;
+  private static final int INSTANCE_ROOT = 1 << 12;
+  private static final int NOMINALIZATION_ROOT = 1 << 13;
 
   // HYPERNYM is the main link in WordNet. However, they also have an "instance
   // hypernym"
@@ -53,11 +124,46 @@ public class WordNet {
   public final char hypernymChar = '@';
   public final String hypernymInstance = "@i";
 
+  private final WordNetSnapshot snapshot;
+  // True if JWNL can read the dictionary.
+  private final boolean hasDictionary;
+
+  // Bump when what the caches hold changes, e.g. the categories() bits.
+  private static final int DISK_CACHE_FORMAT = 1;
+  private static final String DISK_CACHE_MAGIC = "CAEVOWC";
+  // Which dictionary and snapshot answered, so a disk cache written with
+  // others isn't used.
+  private final String dictionaryVersion;
+  private String diskCachePath = null;
+  private long missesAtLoad = 0;
+
+  // The WordNets with a disk cache, which one shutdown hook saves. Held
+  // weakly, so the hook doesn't keep a dropped WordNet and its caches alive.
+  private static final Set<WordNet> savedAtExit = Collections
+      .newSetFromMap(new WeakHashMap<WordNet, Boolean>());
+  private static boolean saveHookAdded = false;
+  // One lock per disk cache file, by absolute path.
+  private static final Map<String, Object> diskCacheLocks =
+      new HashMap<String, Object>();
+
   public WordNet() {
-    this(findWordnetPath());
+    this(defaultWordnetPath(), snapshotProperty());
+    useDiskCache(diskCacheProperty());
   }
 
   public WordNet(String wordnetPath) {
+    this(wordnetPath, snapshotProperty());
+    useDiskCache(diskCacheProperty());
+  }
+
+  /**
+   * @param wordnetPath
+   *          JWNL's jwnl_file_properties.xml, or null to not use JWNL.
+   * @param snapshotPath
+   *          A compiled WordNetSnapshot, or null to look everything up with
+   *          JWNL.
+   */
+  public WordNet(String wordnetPath, String snapshotPath) {
     // Load WordNet
     if (wordnetPath != null && wordnetPath.length() > 0)
       try {
@@ -67,6 +173,84 @@ public class WordNet {
       } catch (JWNLException e) {
         throw new RuntimeException(e);
       }
+    hasDictionary = (Dictionary.getInstance() != null);
+
+    WordNetSnapshot loaded = null;
+    if (snapshotPath != null && snapshotPath.length() > 0) {
+      try {
+        loaded = WordNetSnapshot.load(snapshotPath);
+      } catch (IOException ex) {
+        if (!hasDictionary)
+          throw new RuntimeException(ex);
+        System.out.println("WARNING: couldn't load WordNet snapshot "
+            + snapshotPath + ", using JWNL");
+        ex.printStackTrace();
+      }
+    }
+    snapshot = loaded;
+    dictionaryVersion = "jwnl=" + fileVersion(wordnetPath, true)
+        + " snapshot=" + (snapshot == null ? "none" : fileVersion(
+            snapshotPath, false));
+  }
+
+  /**
+   * @param hash
+   *          Include a checksum of the contents, for small files.
+   * @return The file's path and what it holds, to tell when it changes.
+   */
+  private static String fileVersion(String path, boolean hash) {
+    if (path == null || path.length() == 0)
+      return "none";
+    File file = new File(path);
+    String version = file.getAbsolutePath() + ":" + file.length() + ":"
+        + file.lastModified();
+    if (hash && file.isFile()) {
+      CRC32 crc = new CRC32();
+      try {
+        FileInputStream in = new FileInputStream(file);
+        try {
+          byte[] buf = new byte[8192];
+          int n;
+          while ((n = in.read(buf)) > 0)
+            crc.update(buf, 0, n);
+        } finally {
+          in.close();
+        }
+        version += ":" + Long.toHexString(crc.getValue());
+      } catch (IOException ex) {
+        System.out.println("WARNING: couldn't read " + path);
+      }
+    }
+    return version;
+  }
+
+  /**
+   * The JWNL environment variable, which may be unset if there is a snapshot.
+   */
+  private static String defaultWordnetPath() {
+    if (System.getenv("JWNL") == null && snapshotProperty() != null)
+      return null;
+    return findWordnetPath();
+  }
+
+  private static String snapshotProperty() {
+    try {
+      String path = CaevoProperties.getString("WordNet.snapshot", null);
+      return (path == null || path.trim().length() == 0 ? null : path.trim());
+    } catch (IOException ex) {
+      System.out.println("WARNING: couldn't read WordNet.snapshot");
+      return null;
+    }
+  }
+
+  private static String diskCacheProperty() {
+    try {
+      String path = CaevoProperties.getString("WordNet.diskCache", null);
+      return (path == null || path.trim().length() == 0 ? null : path.trim());
+    } catch (IOException ex) {
+      System.out.println("WARNING: couldn't read WordNet.diskCache");
+      return null;
+    }
   }
 
   public static String findWordnetPath() {
@@ -79,42 +263,288 @@ public class WordNet {
     return path;
   }
 
+  /**
+   * @return The compiled snapshot answering lookups, or null if there is none.
+   */
+  public WordNetSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * @return True if the snapshot should answer for this token: it was compiled
+   *         with it, or there is no JWNL to ask instead.
+   */
+  private boolean fromSnapshot(String token) {
+    return snapshot != null && (!hasDictionary || snapshot.contains(token));
+  }
+
+  /**
+   * A cache holding the configured number of entries: WordNet.cacheSize.name,
+   * else WordNet.cacheSize, else DEFAULT_CACHE_SIZE.
+   */
+  private static <V> LookupCache<String, V> newCache(String name) {
+    int size = DEFAULT_CACHE_SIZE;
+    try {
+      size = CaevoProperties.getInt("WordNet.cacheSize", size);
+      size = CaevoProperties.getInt("WordNet.cacheSize." + name, size);
+    } catch (IOException ex) {
+      System.out.println("WARNING: couldn't read WordNet cache size for "
+          + name + ", using " + size);
+    }
+    return new LookupCache<String, V>(name, size);
+  }
+
+  private List<LookupCache<String, ?>> caches() {
+    List<LookupCache<String, ?>> caches =
+        new ArrayList<LookupCache<String, ?>>();
+    caches.add(_verbToLemma);
+    caches.add(_nounToLemma);
+    caches.add(_adjToLemma);
+    caches.add(_categories);
+    return caches;
+  }
+
   public String hashSizes() {
     String str = "WordNet sizes: ";
-    str += " " + (_verbToLemma != null ? _verbToLemma.size() : 0);
-    str += " " + (_nounToLemma != null ? _nounToLemma.size() : 0);
-    str += " " + (_adjToLemma != null ? _adjToLemma.size() : 0);
-    str += " " + (_isNounEvent != null ? _isNounEvent.size() : 0);
-    str += " " + (_isPhysicalObject != null ? _isPhysicalObject.size() : 0);
-    str += " " + (_isNonPersonLocationPhysicalObject != null
-        ? _isNonPersonLocationPhysicalObject.size() : 0);
-    str += " " + (_isMaterial != null ? _isMaterial.size() : 0);
-    str += " " + (_isPersonOrGroup != null ? _isPersonOrGroup.size() : 0);
-    str += " " + (_isNamedEntity != null ? _isNamedEntity.size() : 0);
-    str += " " + (_isLocation != null ? _isLocation.size() : 0);
-    str += " " + (_isStructure != null ? _isStructure.size() : 0);
-    str += " " + (_isMeasure != null ? _isMeasure.size() : 0);
-    str += " " + (_isTime != null ? _isTime.size() : 0);
+    for (LookupCache<String, ?> cache : caches())
+      str += " " + cache.size();
     return str;
   }
 
+  /**
+   * @return One line per cache: its size, capacity, hit rate and evictions.
+   */
+  public String cacheStats() {
+    StringBuffer buf = new StringBuffer("WordNet caches:");
+    for (LookupCache<String, ?> cache : caches())
+      buf.append("\n  ").append(cache.statsString());
+    return buf.toString();
+  }
+
+  /**
+   * The caches whose answers are saved to the disk cache: the lemmas, keyed
+   * by POS through the cache they are in, and the noun categories.
+   */
+  private List<LookupCache<String, ?>> persistentCaches() {
+    List<LookupCache<String, ?>> caches =
+        new ArrayList<LookupCache<String, ?>>();
+    caches.add(_verbToLemma);
+    caches.add(_nounToLemma);
+    caches.add(_adjToLemma);
+    caches.add(_categories);
+    return caches;
+  }
+
+  /**
+   * Keep the lookups across runs in the given file: fill the caches from it
+   * now, if it was written with the same dictionary, and write them back to it
+   * when the JVM exits (or whenever saveDiskCache() is called).
+   *
+   * @param path
+   *          The cache file, or null to not use one.
+   */
+  public void useDiskCache(String path) {
+    if (path == null || path.equals(diskCachePath))
+      return;
+    diskCachePath = path;
+    loadDiskCache();
+    saveAtExit(this);
+  }
+
+  private static synchronized void saveAtExit(WordNet wordnet) {
+    savedAtExit.add(wordnet);
+    if (saveHookAdded)
+      return;
+    saveHookAdded = true;
+    Runtime.getRuntime().addShutdownHook(new Thread("WordNet disk cache") {
+      public void run() {
+        for (WordNet wordnet : savedAtExit())
+          wordnet.saveDiskCache();
+      }
+    });
+  }
+
+  private static synchronized List<WordNet> savedAtExit() {
+    return new ArrayList<WordNet>(savedAtExit);
+  }
+
+  private static synchronized Object diskCacheLock(File file) {
+    String path = file.getAbsolutePath();
+    Object lock = diskCacheLocks.get(path);
+    if (lock == null) {
+      lock = new Object();
+      diskCacheLocks.put(path, lock);
+    }
+    return lock;
+  }
+
+  private void loadDiskCache() {
+    File file = new File(diskCachePath);
+    if (!file.exists())
+      return;
+    int count = 0;
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+          new GZIPInputStream(new FileInputStream(file))));
+      try {
+        if (!in.readUTF().equals(DISK_CACHE_MAGIC)
+            || in.readInt() != DISK_CACHE_FORMAT
+            || !in.readUTF().equals(dictionaryVersion)) {
+          System.out.println("WordNet disk cache " + diskCachePath
+              + " is from another dictionary or version, not using it.");
+          return;
+        }
+        int numCaches = in.readInt();
+        for (int i = 0; i < numCaches; i++) {
+          LookupCache<String, Object> cache = persistentCache(in.readUTF());
+          int size = in.readInt();
+          for (int j = 0; j < size; j++) {
+            String key = in.readUTF();
+            Object value = readValue(in);
+            if (cache != null)
+              cache.put(key, value);
+          }
+          count += size;
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException ex) {
+      System.out.println("WARNING: couldn't read WordNet disk cache "
+          + diskCachePath);
+      ex.printStackTrace();
+    }
+    missesAtLoad = totalMisses();
+    System.out.println("Loaded " + count + " WordNet lookups from "
+        + diskCachePath);
+  }
+
+  @SuppressWarnings("unchecked")
+  private LookupCache<String, Object> persistentCache(String name) {
+    for (LookupCache<String, ?> cache : persistentCaches())
+      if (cache.getName().equals(name))
+        return (LookupCache<String, Object>) cache;
+    return null;
+  }
+
+  private long totalMisses() {
+    long misses = 0;
+    for (LookupCache<String, ?> cache : persistentCaches())
+      misses += cache.getMisses();
+    return misses;
+  }
+
+  /**
+   * Write the caches to the disk cache file, if there is one and anything was
+   * looked up since it was read. It is written to a new temporary file next to
+   * it, which is then renamed over it, so readers never see a partial file.
+   * Where a rename can't replace a file (Windows), the old file is deleted
+   * first, and a reader in that moment finds no cache and starts empty. Only
+   * one WordNet in this JVM writes a given file at a time.
+   */
+  public synchronized void saveDiskCache() {
+    if (diskCachePath == null
+        || (totalMisses() == missesAtLoad && new File(diskCachePath).exists()))
+      return;
+    File file = new File(diskCachePath).getAbsoluteFile();
+    synchronized (diskCacheLock(file)) {
+      File temp = null;
+      try {
+        temp = File.createTempFile(file.getName() + ".tmp", "",
+            file.getParentFile());
+        writeDiskCache(temp);
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+          throw new IOException("Could not rename " + temp + " to " + file);
+        temp = null;
+        missesAtLoad = totalMisses();
+      } catch (IOException ex) {
+        System.out.println("WARNING: couldn't write WordNet disk cache "
+            + diskCachePath);
+        ex.printStackTrace();
+      } finally {
+        if (temp != null)
+          temp.delete();
+      }
+    }
+  }
+
+  private void writeDiskCache(File temp) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new GZIPOutputStream(new FileOutputStream(temp))));
+    try {
+      out.writeUTF(DISK_CACHE_MAGIC);
+      out.writeInt(DISK_CACHE_FORMAT);
+      out.writeUTF(dictionaryVersion);
+      List<LookupCache<String, ?>> caches = persistentCaches();
+      out.writeInt(caches.size());
+      for (LookupCache<String, ?> cache : caches) {
+        Map<String, ?> entries = cache.toMap();
+        out.writeUTF(cache.getName());
+        out.writeInt(entries.size());
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+          out.writeUTF(entry.getKey());
+          writeValue(out, entry.getValue());
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void writeValue(DataOutputStream out, Object value)
+      throws IOException {
+    if (value == null)
+      out.writeByte(0);
+    else if (value instanceof String) {
+      out.writeByte(1);
+      out.writeUTF((String) value);
+    } else {
+      out.writeByte(2);
+      out.writeInt((Integer) value);
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    if (type == 0)
+      return null;
+    else if (type == 1)
+      return in.readUTF();
+    else if (type == 2)
+      return in.readInt();
+    throw new IOException("Unknown value type " + type);
+  }
+
+  /**
+   * Empty every cache, e.g. to get its memory back between runs.
+   */
+  public void clearCaches() {
+    for (LookupCache<String, ?> cache : caches())
+      cache.clear();
+    synchronized (this) {
+      _synsetRoots.clear();
+    }
+  }
+
   /**
    * @param word
    *          A word
    * @return The lemma of the word if it is a verb, null otherwise
    */
   public String verbToLemma(String word) {
-    if (_verbToLemma == null)
-      _verbToLemma = new HashMap<String, String>();
-
-    // save time with a table lookup
-    if (_verbToLemma.containsKey(word))
-      return _verbToLemma.get(word);
+    Object cached = _verbToLemma.get(word);
+    if (cached != LookupCache.MISSING)
+      return (String) cached;
+    String result = (fromSnapshot(word) ? snapshot.lemma(word, POS.VERB)
+        : lookupVerbLemma(word));
+    _verbToLemma.put(word, result);
+    return result;
+  }
 
+  private synchronized String lookupVerbLemma(String word) {
     try {
       // don't return lemmas for hyphenated words
       if (word.indexOf('-') > -1 || word.indexOf('/') > -1) {
-        _verbToLemma.put(word, null);
         return null;
       }
 
@@ -122,14 +552,12 @@ public class WordNet {
       IndexWord iword = Dictionary.getInstance().lookupIndexWord(POS.VERB,
           word);
       if (iword == null) {
-        _verbToLemma.put(word, null);
         return null;
       } else {
         String lemma = iword.getLemma();
         if (lemma.indexOf(' ') != -1) // Sometimes it returns a two word phrase
           lemma = lemma.trim().replace(' ', '_');
 
-        _verbToLemma.put(word, lemma);
         return lemma;
       }
     } catch (Exception ex) {
@@ -145,17 +573,19 @@ public class WordNet {
    * @return The lemma of the word if it is a noun, null otherwise
    */
   public String nounToLemma(String word) {
-    if (_nounToLemma == null)
-      _nounToLemma = new HashMap<String, String>();
-
-    // save time with a table lookup
-    if (_nounToLemma.containsKey(word))
-      return _nounToLemma.get(word);
+    Object cached = _nounToLemma.get(word);
+    if (cached != LookupCache.MISSING)
+      return (String) cached;
+    String result = (fromSnapshot(word) ? snapshot.lemma(word, POS.NOUN)
+        : lookupNounLemma(word));
+    _nounToLemma.put(word, result);
+    return result;
+  }
 
+  private synchronized String lookupNounLemma(String word) {
     try {
       // don't return lemmas for hyphenated words
       if (word.indexOf('-') > -1 || word.indexOf('/') > -1) {
-        _nounToLemma.put(word, null);
         return null;
       }
 
@@ -163,7 +593,6 @@ public class WordNet {
       IndexWord iword = Dictionary.getInstance().lookupIndexWord(POS.NOUN,
           word);
       if (iword == null) {
-        _nounToLemma.put(word, null);
         return null;
       } else {
         String lemma = iword.getLemma();
@@ -204,7 +633,6 @@ public class WordNet {
         if (lemma.indexOf(' ') != -1) // Sometimes it returns a two word phrase
           lemma = lemma.trim().replace(' ', '_');
 
-        _nounToLemma.put(word, lemma);
         return lemma;
       }
     } catch (Exception ex) {
@@ -220,17 +648,19 @@ public class WordNet {
    * @return The lemma of the word if it is an adjective, null otherwise
    */
   public String adjectiveToLemma(String word) {
-    if (_adjToLemma == null)
-      _adjToLemma = new HashMap<String, String>();
-
-    // save time with a table lookup
-    if (_adjToLemma.containsKey(word))
-      return _adjToLemma.get(word);
+    Object cached = _adjToLemma.get(word);
+    if (cached != LookupCache.MISSING)
+      return (String) cached;
+    String result = (fromSnapshot(word) ? snapshot.lemma(word, POS.ADJECTIVE)
+        : lookupAdjectiveLemma(word));
+    _adjToLemma.put(word, result);
+    return result;
+  }
 
+  private synchronized String lookupAdjectiveLemma(String word) {
     try {
       // don't return lemmas for hyphenated words
       if (word.indexOf('-') > -1 || word.indexOf('/') > -1) {
-        _adjToLemma.put(word, null);
         return null;
       }
 
@@ -238,14 +668,12 @@ public class WordNet {
       IndexWord iword = Dictionary.getInstance().lookupIndexWord(POS.ADJECTIVE,
           word);
       if (iword == null) {
-        _adjToLemma.put(word, null);
         return null;
       } else {
         String lemma = iword.getLemma();
         if (lemma.indexOf(' ') != -1) // Sometimes it returns a two word phrase
           lemma = lemma.trim().replace(' ', '_');
 
-        _adjToLemma.put(word, lemma);
         return lemma;
       }
     } catch (Exception ex) {
@@ -282,7 +710,7 @@ public class WordNet {
   /**
    * @return All synsets for the given word and POS category.
    */
-  public Synset[] synsetsOf(String token, POS postag) {
+  public synchronized Synset[] synsetsOf(String token, POS postag) {
     try {
       IndexWord iword = Dictionary.getInstance().lookupIndexWord(postag, token);
       if (iword != null) {
@@ -295,6 +723,20 @@ public class WordNet {
     return null;
   }
 
+  /**
+   * @return The WordNet offset of the token's most common sense, or -1 if it
+   *         has none in this POS.
+   */
+  public long firstSynsetOffset(String token, POS postag) {
+    if (postag != POS.ADVERB && fromSnapshot(token)) {
+      int[] senses = snapshot.senses(token, postag);
+      return (senses == null ? -1 : snapshot.offset(senses[0]));
+    }
+    Synset[] synsets = synsetsOf(token, postag);
+    return (synsets == null || synsets.length == 0 ? -1 : synsets[0]
+        .getOffset());
+  }
+
   /**
    * Returns true if the two tokens are under the same immediate synset
    * (siblings).
@@ -308,6 +750,21 @@ public class WordNet {
    * @return True if the tokens are siblings, false otherwise.
    */
   public boolean areSiblings(String token1, String token2, POS postag) {
+    if (postag != POS.ADVERB && fromSnapshot(token1) && fromSnapshot(token2)) {
+      int[] senses1 = snapshot.senses(token1, postag);
+      int[] senses2 = snapshot.senses(token2, postag);
+      if (senses1 != null && senses2 != null)
+        for (int sense1 : senses1)
+          for (int sense2 : senses2)
+            if (sense1 == sense2)
+              return true;
+      return false;
+    }
+    return lookupSiblings(token1, token2, postag);
+  }
+
+  private synchronized boolean lookupSiblings(String token1, String token2,
+      POS postag) {
     Synset[] synsets1 = synsetsOf(token1, postag);
     Synset[] synsets2 = synsetsOf(token2, postag);
     if (synsets1 != null && synsets2 != null) {
@@ -328,7 +785,7 @@ public class WordNet {
   /**
    * @return All lemmas that are under the given synset.
    */
-  public List<String> wordsInSynset(Synset synset) {
+  public synchronized List<String> wordsInSynset(Synset synset) {
     List<String> strings = new ArrayList<String>();
     Word[] words = synset.getWords();
     for (Word word : words)
@@ -339,7 +796,7 @@ public class WordNet {
   /**
    * @return True if the synset has a "hypernym instance" link.
    */
-  public boolean hasHypernymInstance(Synset synset) {
+  public synchronized boolean hasHypernymInstance(Synset synset) {
     Pointer[] links = synset.getPointers();
     if (links != null) {
       for (Pointer link : links)
@@ -353,7 +810,7 @@ public class WordNet {
    * Get the chain of parents from the given synset to the top of the wordnet
    * hierarchy.
    */
-  public List<Synset> hypernymChain(Synset synset) {
+  public synchronized List<Synset> hypernymChain(Synset synset) {
     List<Synset> history = new ArrayList<Synset>();
     history.add(synset);
     return hypernymChain(synset, history);
@@ -369,7 +826,8 @@ public class WordNet {
    *          The list of synsets we've already traversed.
    * @return The hypernym chain.
    */
-  public List<Synset> hypernymChain(Synset synset, List<Synset> history) {
+  public synchronized List<Synset> hypernymChain(Synset synset,
+      List<Synset> history) {
     List<Synset> chain = new ArrayList<Synset>();
 
     Pointer[] links = synset.getPointers();
@@ -412,7 +870,7 @@ public class WordNet {
    * Get the chain of parents from the given synset to the top of the wordnet
    * hierarchy. Return the chain, but rooted with the given synset.
    */
-  public List<Synset> hypernymChainKeepChild(Synset synset) {
+  public synchronized List<Synset> hypernymChainKeepChild(Synset synset) {
     List<Synset> chain = new ArrayList<Synset>();
     chain.add(synset);
 
@@ -426,7 +884,7 @@ public class WordNet {
   /**
    * Get all synsets that are reachable by hypernym relations from this token.
    */
-  public Set<Synset> getAllSynsetAncestors(String token, POS tag) {
+  public synchronized Set<Synset> getAllSynsetAncestors(String token, POS tag) {
     Synset[] synsets = synsetsOf(token, tag);
     if (synsets != null) {
       Set<Synset> allsynsets = new HashSet<Synset>();
@@ -446,34 +904,7 @@ public class WordNet {
    *         nominalization relation attached to it.
    */
   public boolean isNominalization(String token) {
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    if (synsets == null) {
-      // System.out.println("isNominalization null synsets: " + token);
-    } else {
-      for (Synset synset : synsets) {
-        Pointer[] links = synset.getPointers();
-        if (links != null) {
-          for (Pointer link : links) {
-            // Found a link from this noun as a Nominalization to another.
-            if (link.getType() == PointerType.NOMINALIZATION) {
-              // Check that the nominalized word is a verb (e.g. not an
-              // adjective).
-              try {
-                Synset target = link.getTargetSynset();
-                if (target.getPOS() == POS.VERB) {
-                  // System.out.println("WordNet isNom() link found: " + link);
-                  // System.out.println(" --> " + link.getTargetSynset());
-                  return true;
-                }
-              } catch (Exception ex) {
-                ex.printStackTrace();
-              }
-            }
-          }
-        }
-      }
-    }
-    return false;
+    return (categories(token) & NOMINALIZATION) != 0;
   }
 
   /**
@@ -485,6 +916,19 @@ public class WordNet {
    * @return A list of strings that are verbs e.g. explode, detonate
    */
   public List<String> getVerbsOfNominalization(String token) {
+    if (fromSnapshot(token)) {
+      int[] senses = snapshot.senses(token, POS.NOUN);
+      if (senses != null)
+        for (int sense : senses)
+          for (int target : snapshot.nominalizations(sense))
+            if (snapshot.pos(target) == POS.VERB)
+              return snapshot.words(target);
+      return null;
+    }
+    return lookupVerbsOfNominalization(token);
+  }
+
+  private synchronized List<String> lookupVerbsOfNominalization(String token) {
     Synset[] synsets = synsetsOf(token, POS.NOUN);
     if (synsets != null) {
       for (Synset synset : synsets) {
@@ -520,6 +964,12 @@ public class WordNet {
    * @return True if the token is not known in WordNet
    */
   public boolean isUnknown(String token) {
+    if (fromSnapshot(token))
+      return snapshot.senses(token, POS.NOUN) == null;
+    return lookupUnknown(token);
+  }
+
+  private synchronized boolean lookupUnknown(String token) {
     Synset[] synsets = synsetsOf(token, POS.NOUN);
     if (synsets == null)
       return true;
@@ -543,31 +993,161 @@ public class WordNet {
 
   public boolean isNounPersonOrGroup(String token, boolean mainSynsetOnly,
       boolean justPerson) {
-    if (_isPersonOrGroup == null)
-      _isPersonOrGroup = new HashMap<String, Boolean>();
-    if (_isPersonOrGroup.containsKey(token))
-      return _isPersonOrGroup.get(token);
+    int flag = (mainSynsetOnly ? (justPerson ? MAIN_PERSON
+        : MAIN_PERSON_OR_GROUP) : (justPerson ? PERSON : PERSON_OR_GROUP));
+    return (categories(token) & flag) != 0;
+  }
+
+  /**
+   * Assumes the given token is a noun. Answers every category predicate
+   * (isTime(), isLocation(), isNounPersonOrGroup(), ...) at once, from one
+   * walk up the hypernyms of each of its senses.
+   * 
+   * @return The categories the token is in, as a bitmask of TIME, LOCATION,
+   *         etc. Test one with (categories(token) &amp; WordNet.TIME) != 0.
+   */
+  public int categories(String token) {
+    Object cached = _categories.get(token);
+    if (cached != LookupCache.MISSING)
+      return (Integer) cached;
+    int result = (fromSnapshot(token) ? snapshot.categories(token)
+        : lookupCategories(token));
+    _categories.put(token, result);
+    return result;
+  }
 
+  private synchronized int lookupCategories(String token) {
+    int categories = 0;
     Synset[] synsets = synsetsOf(token, POS.NOUN);
-    if (synsets == null) {
-    } else {
-      for (Synset synset : synsets) {
-        List<Synset> chain = hypernymChainKeepChild(synset);
-        if (chain != null) {
-          for (Synset parent : chain) {
-            if (isPersonSynset(parent)
-                || (!justPerson && isSocialGroupSynset(parent))) {
-              _isPersonOrGroup.put(token, true);
+    if (synsets != null) {
+      int any = 0;
+      boolean decided = false;
+      boolean allInstances = true;
+      for (int i = 0; i < synsets.length; i++) {
+        int roots = synsetRoots(synsets[i]);
+        any |= roots;
+        // The main synset is the first, most common, sense.
+        if (i == 0) {
+          if ((roots & PERSON_ROOT) != 0)
+            categories |= MAIN_PERSON | MAIN_PERSON_OR_GROUP;
+          if ((roots & SOCIAL_GROUP_ROOT) != 0)
+            categories |= MAIN_PERSON_OR_GROUP;
+        }
+        // The first sense under a person, location or physical object
+        // decides this one.
+        if (!decided && (roots & (PERSON_OR_LOCATION_FIRST
+            | PHYSICAL_OBJECT_FIRST)) != 0) {
+          decided = true;
+          if ((roots & PHYSICAL_OBJECT_FIRST) != 0)
+            categories |= NON_PERSON_LOCATION_PHYSICAL_OBJECT;
+        }
+        if ((roots & INSTANCE_ROOT) == 0)
+          allInstances = false;
+      }
+      if ((any & TIME_ROOT) != 0)
+        categories |= TIME;
+      if ((any & LOCATION_ROOT) != 0)
+        categories |= LOCATION;
+      if ((any & STRUCTURE_ROOT) != 0)
+        categories |= STRUCTURE;
+      if ((any & PHYSICAL_OBJECT_ROOT) != 0)
+        categories |= PHYSICAL_OBJECT;
+      if ((any & MATERIAL_ROOT) != 0)
+        categories |= MATERIAL;
+      if ((any & MEASURE_ROOT) != 0)
+        categories |= MEASURE;
+      if ((any & EVENT_ROOT) != 0)
+        categories |= NOUN_EVENT;
+      if ((any & INTEGER_ROOT) != 0)
+        categories |= INTEGER;
+      if ((any & PERSON_ROOT) != 0)
+        categories |= PERSON | PERSON_OR_GROUP;
+      if ((any & SOCIAL_GROUP_ROOT) != 0)
+        categories |= PERSON_OR_GROUP;
+      if ((any & NOMINALIZATION_ROOT) != 0)
+        categories |= NOMINALIZATION;
+      if (allInstances)
+        categories |= NAMED_ENTITY;
+    }
+    return categories;
+  }
+
+  /**
+   * The category roots that the synset descends from, and a few facts about
+   * the synset itself, as a bitmask of the *_ROOT and *_FIRST bits. Each synset
+   * walks its hypernym chain once; the answer is then remembered for every
+   * token that has that sense.
+   */
+  private int synsetRoots(Synset synset) {
+    Integer cached = _synsetRoots.get(synset);
+    if (cached != null)
+      return cached;
+
+    int roots = 0;
+    boolean first = true;
+    for (Synset parent : hypernymChainKeepChild(synset)) {
+      if (isTimeSynset(parent))
+        roots |= TIME_ROOT;
+      if (isLocationSynset(parent))
+        roots |= LOCATION_ROOT;
+      if (isPersonSynset(parent))
+        roots |= PERSON_ROOT;
+      if (isSocialGroupSynset(parent))
+        roots |= SOCIAL_GROUP_ROOT;
+      if (isPhysicalObjectSynset(parent))
+        roots |= PHYSICAL_OBJECT_ROOT;
+      if (isFirstWord(parent, "structure"))
+        roots |= STRUCTURE_ROOT;
+      if (isFirstWord(parent, "material"))
+        roots |= MATERIAL_ROOT;
+      if (isFirstWord(parent, "measure"))
+        roots |= MEASURE_ROOT;
+      if (isFirstWord(parent, "integer"))
+        roots |= INTEGER_ROOT;
+      if (parent.getWords().length == 1 && isFirstWord(parent, "event"))
+        roots |= EVENT_ROOT;
+      // Which comes first up the chain: a person or location, or a physical
+      // object.
+      if (first && (isPersonSynset(parent) || isLocationSynset(parent))) {
+        roots |= PERSON_OR_LOCATION_FIRST;
+        first = false;
+      } else if (first && isPhysicalObjectSynset(parent)) {
+        roots |= PHYSICAL_OBJECT_FIRST;
+        first = false;
+      }
+    }
+    if (hasHypernymInstance(synset))
+      roots |= INSTANCE_ROOT;
+    if (hasVerbNominalization(synset))
+      roots |= NOMINALIZATION_ROOT;
+
+    _synsetRoots.put(synset, roots);
+    return roots;
+  }
+
+  private boolean isFirstWord(Synset synset, String lemma) {
+    Word[] words = synset.getWords();
+    return words.length > 0 && words[0].getLemma().equals(lemma);
+  }
+
+  /**
+   * @return True if the synset has a nominalization link to a verb (e.g. not
+   *         an adjective).
+   */
+  private boolean hasVerbNominalization(Synset synset) {
+    Pointer[] links = synset.getPointers();
+    if (links != null) {
+      for (Pointer link : links) {
+        if (link.getType() == PointerType.NOMINALIZATION) {
+          try {
+            if (link.getTargetSynset().getPOS() == POS.VERB)
               return true;
-            }
+          } catch (Exception ex) {
+            ex.printStackTrace();
           }
         }
-        // Stop now if we are only checking the main synset.
-        if (mainSynsetOnly)
-          return false;
       }
     }
-    _isPersonOrGroup.put(token, false);
     return false;
   }
 
@@ -609,7 +1189,7 @@ public class WordNet {
     return false;
   }
 
-  public boolean isTimeSynset(Synset synset) {
+  public synchronized boolean isTimeSynset(Synset synset) {
     if (synset != null) {
       Word[] words = synset.getWords();
       if (words.length >= 1 && (words[0].getLemma().equals("time_period")
@@ -621,57 +1201,11 @@ public class WordNet {
   }
 
   public boolean isTime(String token) {
-    if (_isTime == null)
-      _isTime = new HashMap<String, Boolean>();
-    if (_isTime.containsKey(token))
-      return _isTime.get(token);
-
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    // System.out.println("isTime top " + token);
-    if (synsets == null) {
-      // System.out.println("isTime null synsets: " + token);
-    } else {
-      for (Synset synset : synsets) {
-        List<Synset> chain = hypernymChainKeepChild(synset);
-        if (chain != null) {
-          for (Synset parent : chain) {
-            if (isTimeSynset(parent)) {
-              _isTime.put(token, true);
-              return true;
-            }
-          }
-        }
-      }
-    }
-    _isTime.put(token, false);
-    return false;
+    return (categories(token) & TIME) != 0;
   }
 
   public boolean isLocation(String token) {
-    if (_isLocation == null)
-      _isLocation = new HashMap<String, Boolean>();
-    if (_isLocation.containsKey(token))
-      return _isLocation.get(token);
-
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    // System.out.println("isNounEntity top " + token);
-    if (synsets == null) {
-      // System.out.println("isNounEntity null synsets: " + token);
-    } else {
-      for (Synset synset : synsets) {
-        List<Synset> chain = hypernymChainKeepChild(synset);
-        if (chain != null) {
-          for (Synset parent : chain) {
-            if (isLocationSynset(parent)) {
-              _isLocation.put(token, true);
-              return true;
-            }
-          }
-        }
-      }
-    }
-    _isLocation.put(token, false);
-    return false;
+    return (categories(token) & LOCATION) != 0;
   }
 
   /**
@@ -679,32 +1213,7 @@ public class WordNet {
    * physical objects)
    */
   public boolean isStructure(String token) {
-    if (_isStructure == null)
-      _isStructure = new HashMap<String, Boolean>();
-    if (_isStructure.containsKey(token))
-      return _isStructure.get(token);
-
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    // System.out.println("isNounEntity top " + token);
-    if (synsets == null) {
-      // System.out.println("isNounEntity null synsets: " + token);
-    } else {
-      for (Synset synset : synsets) {
-        List<Synset> chain = hypernymChainKeepChild(synset);
-        if (chain != null) {
-          for (Synset parent : chain) {
-            // System.out.println("\t" + parent);
-            Word[] words = parent.getWords();
-            if (words.length > 0 && words[0].getLemma().equals("structure")) {
-              _isStructure.put(token, true);
-              return true;
-            }
-          }
-        }
-      }
-    }
-    _isStructure.put(token, false);
-    return false;
+    return (categories(token) & STRUCTURE) != 0;
   }
 
   /**
@@ -713,24 +1222,7 @@ public class WordNet {
    * @return true if the token has a synset with an ancestor that is Integer
    */
   public boolean isInteger(String token) {
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    // System.out.println("isNounEntity top " + token);
-    if (synsets == null) {
-      // System.out.println("isNounEntity null synsets: " + token);
-    } else {
-      for (Synset synset : synsets) {
-        List<Synset> chain = hypernymChainKeepChild(synset);
-        if (chain != null) {
-          for (Synset parent : chain) {
-            // System.out.println(parent);
-            Word[] words = parent.getWords();
-            if ((words.length > 0 && words[0].getLemma().equals("integer")))
-              return true;
-          }
-        }
-      }
-    }
-    return false;
+    return (categories(token) & INTEGER) != 0;
   }
 
   /**
@@ -740,32 +1232,7 @@ public class WordNet {
    *         object synset.
    */
   public boolean isNonPersonLocationPhysicalObject(String token) {
-    if (_isNonPersonLocationPhysicalObject == null)
-      _isNonPersonLocationPhysicalObject = new HashMap<String, Boolean>();
-    if (_isNonPersonLocationPhysicalObject.containsKey(token))
-      return _isNonPersonLocationPhysicalObject.get(token);
-
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    if (synsets == null) {
-    } else {
-      for (Synset synset : synsets) {
-        List<Synset> chain = hypernymChainKeepChild(synset);
-        if (chain != null) {
-          for (Synset parent : chain) {
-            // False, it is a type of person or location.
-            if (isPersonSynset(parent) || isLocationSynset(parent))
-              return false;
-            // True, is a physical object.
-            if (isPhysicalObjectSynset(parent)) {
-              _isNonPersonLocationPhysicalObject.put(token, true);
-              return true;
-            }
-          }
-        }
-      }
-    }
-    _isNonPersonLocationPhysicalObject.put(token, false);
-    return false;
+    return (categories(token) & NON_PERSON_LOCATION_PHYSICAL_OBJECT) != 0;
   }
 
   /**
@@ -775,28 +1242,7 @@ public class WordNet {
    *         object synset.
    */
   public boolean isPhysicalObject(String token) {
-    if (_isPhysicalObject == null)
-      _isPhysicalObject = new HashMap<String, Boolean>();
-    if (_isPhysicalObject.containsKey(token))
-      return _isPhysicalObject.get(token);
-
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    if (synsets == null) {
-    } else {
-      for (Synset synset : synsets) {
-        List<Synset> chain = hypernymChainKeepChild(synset);
-        if (chain != null) {
-          for (Synset parent : chain) {
-            if (isPhysicalObjectSynset(parent)) {
-              _isPhysicalObject.put(token, true);
-              return true;
-            }
-          }
-        }
-      }
-    }
-    _isPhysicalObject.put(token, false);
-    return false;
+    return (categories(token) & PHYSICAL_OBJECT) != 0;
   }
 
   /**
@@ -808,30 +1254,7 @@ public class WordNet {
    * 
    */
   public boolean isMaterial(String token) {
-    if (_isMaterial == null)
-      _isMaterial = new HashMap<String, Boolean>();
-    if (_isMaterial.containsKey(token))
-      return _isMaterial.get(token);
-
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    // System.out.println("isMatter top " + token);
-    if (synsets == null) {
-    } else {
-      for (Synset synset : synsets) {
-        List<Synset> chain = hypernymChainKeepChild(synset);
-        if (chain != null) {
-          for (Synset parent : chain) {
-            Word[] words = parent.getWords();
-            if (words.length >= 1 && words[0].getLemma().equals("material")) {
-              _isMaterial.put(token, true);
-              return true;
-            }
-          }
-        }
-      }
-    }
-    _isMaterial.put(token, false);
-    return false;
+    return (categories(token) & MATERIAL) != 0;
   }
 
   /**
@@ -841,33 +1264,7 @@ public class WordNet {
    *         synset.
    */
   public boolean isMeasure(String token) {
-    // save time with a table lookup
-    if (_isMeasure == null)
-      _isMeasure = new HashMap<String, Boolean>();
-    if (_isMeasure.containsKey(token))
-      return _isMeasure.get(token);
-
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    // System.out.println("isPhysicalObject top " + token);
-    if (synsets == null) {
-      // System.out.println("isNounEvent null synsets: " + token);
-    } else {
-      for (Synset synset : synsets) {
-        List<Synset> chain = hypernymChainKeepChild(synset);
-        if (chain != null) {
-          for (Synset parent : chain) {
-            // System.out.println("parent = " + parent);
-            Word[] words = parent.getWords();
-            if (words.length >= 1 && words[0].getLemma().equals("measure")) {
-              _isMeasure.put(token, true);
-              return true;
-            }
-          }
-        }
-      }
-    }
-    _isMeasure.put(token, false);
-    return false;
+    return (categories(token) & MEASURE) != 0;
   }
 
   /**
@@ -877,32 +1274,7 @@ public class WordNet {
    *         synset.
    */
   public boolean isNounEvent(String token) {
-    // save time with a table lookup
-    if (_isNounEvent == null)
-      _isNounEvent = new HashMap<String, Boolean>();
-    if (_isNounEvent.containsKey(token))
-      return _isNounEvent.get(token);
-
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    // System.out.println("isNounEvent top " + token);
-    if (synsets == null) {
-      // System.out.println("isNounEvent null synsets: " + token);
-    } else {
-      for (Synset synset : synsets) {
-        List<Synset> chain = hypernymChainKeepChild(synset);
-        if (chain != null) {
-          for (Synset parent : chain) {
-            Word[] words = parent.getWords();
-            if (words.length == 1 && words[0].getLemma().equals("event")) {
-              _isNounEvent.put(token, true);
-              return true;
-            }
-          }
-        }
-      }
-    }
-    _isNounEvent.put(token, false);
-    return false;
+    return (categories(token) & NOUN_EVENT) != 0;
   }
 
   /**
@@ -913,31 +1285,10 @@ public class WordNet {
    *         false.
    */
   public boolean isNamedEntity(String token) {
-    // save time with a table lookup
-    if (_isNamedEntity == null)
-      _isNamedEntity = new HashMap<String, Boolean>();
-    if (_isNamedEntity.containsKey(token))
-      return _isNamedEntity.get(token);
-
-    Synset[] synsets = synsetsOf(token, POS.NOUN);
-    // System.out.println("isNounEvent top " + token);
-    if (synsets == null) {
-      // System.out.println("isNounEvent null synsets: " + token);
-    } else {
-      for (Synset synset : synsets) {
-        if (!hasHypernymInstance(synset)) {
-          _isNamedEntity.put(token, false);
-          return false;
-        }
-      }
-      _isNamedEntity.put(token, true);
-      return true;
-    }
-    _isNamedEntity.put(token, false);
-    return false;
+    return (categories(token) & NAMED_ENTITY) != 0;
   }
 
-  public Synset getRootSynset() {
+  public synchronized Synset getRootSynset() {
     Synset[] synsets = synsetsOf("entity", POS.NOUN);
     return synsets[0];
   }
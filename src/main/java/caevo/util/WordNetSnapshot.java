@@ -0,0 +1,667 @@
+package caevo.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.didion.jwnl.data.Exc;
+import net.didion.jwnl.data.IndexWord;
+import net.didion.jwnl.data.POS;
+import net.didion.jwnl.data.Pointer;
+import net.didion.jwnl.data.PointerType;
+import net.didion.jwnl.data.Synset;
+import net.didion.jwnl.data.Word;
+import net.didion.jwnl.dictionary.Dictionary;
+
+/**
+ * A compiled, read-only copy of the parts of WordNet that CAEVO uses, so that
+ * WordNet can answer without JWNL reading the dictionary files. It holds, for
+ * every word form it was compiled with, the noun, verb and adjective lemmas
+ * that WordNet's lemmatizers give, the word's senses, and its noun
+ * categories(). For the senses it holds each synset's offset, words,
+ * hypernyms and nominalization links.
+ *
+ * Compile one with JWNL installed:
+ *
+ * <pre>
+ * java caevo.util.WordNetSnapshot -wordnet jwnl_file_properties.xml
+ *     -out wordnet.snapshot [-words more-words.txt]
+ * </pre>
+ *
+ * It compiles every lemma in the dictionary, the irregular forms in its
+ * exception lists, and regular inflections of the lemmas. Any other word
+ * forms, such as capitalized ones from your corpus, can be listed one per line
+ * in the -words file. Then point the WordNet.snapshot property at the output.
+ *
+ * The file is memory mapped, so loading it is quick and the pages are shared
+ * between processes. It is a series of int arrays, each preceded by its
+ * length, in the order load() reads them.
+ */
+public class WordNetSnapshot {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final byte[] MAGIC = "CAEVOWN1".getBytes(UTF8);
+
+  // The lemma and sense tables, in this order. Synsets may also be adverbs.
+  private static final POS[] TABLE_POS = { POS.NOUN, POS.VERB, POS.ADJECTIVE };
+  private static final POS[] SYNSET_POS = { POS.NOUN, POS.VERB, POS.ADJECTIVE,
+      POS.ADVERB };
+
+  // Marks a hypernym that is an "@i" instance hypernym.
+  private static final int INSTANCE = 1 << 31;
+
+  private final String path;
+
+  // Strings, sorted, as UTF-8 bytes between offsets[i] and offsets[i+1].
+  private final int numStrings;
+  private final IntBuffer stringOffsets;
+  private final ByteBuffer stringBytes;
+  // The string ids of the word forms this was compiled with, sorted.
+  private final IntBuffer compiled;
+  // Per TABLE_POS: string id (sorted), lemma id or -1, senses, and for nouns
+  // the categories.
+  private final IntBuffer[] tokens = new IntBuffer[TABLE_POS.length];
+  private final IntBuffer[] lemmas = new IntBuffer[TABLE_POS.length];
+  private final IntBuffer[] senseStarts = new IntBuffer[TABLE_POS.length];
+  private final IntBuffer[] flags = new IntBuffer[TABLE_POS.length];
+  private final IntBuffer senses;
+  // Per synset: index into SYNSET_POS, offset, and where its words, hypernyms
+  // and nominalization targets start in the arrays after them.
+  private final IntBuffer synsetPos;
+  private final IntBuffer synsetOffsets;
+  private final IntBuffer wordStarts;
+  private final IntBuffer words;
+  private final IntBuffer hypernymStarts;
+  private final IntBuffer hypernyms;
+  private final IntBuffer nominalizationStarts;
+  private final IntBuffer nominalizations;
+
+  private WordNetSnapshot(String path, ByteBuffer buf) throws IOException {
+    this.path = path;
+    byte[] magic = new byte[MAGIC.length];
+    buf.get(magic);
+    if (!Arrays.equals(magic, MAGIC))
+      throw new IOException("Not a WordNet snapshot: " + path);
+
+    stringOffsets = ints(buf);
+    numStrings = stringOffsets.limit() - 1;
+    int numBytes = buf.getInt();
+    stringBytes = buf.slice();
+    stringBytes.limit(numBytes);
+    buf.position(buf.position() + numBytes);
+    compiled = ints(buf);
+    for (int i = 0; i < TABLE_POS.length; i++) {
+      tokens[i] = ints(buf);
+      lemmas[i] = ints(buf);
+      senseStarts[i] = ints(buf);
+      flags[i] = ints(buf);
+    }
+    senses = ints(buf);
+    synsetPos = ints(buf);
+    synsetOffsets = ints(buf);
+    wordStarts = ints(buf);
+    words = ints(buf);
+    hypernymStarts = ints(buf);
+    hypernyms = ints(buf);
+    nominalizationStarts = ints(buf);
+    nominalizations = ints(buf);
+  }
+
+  /**
+   * Map a compiled snapshot.
+   */
+  public static WordNetSnapshot load(String path) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(path, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          channel.size());
+      WordNetSnapshot snapshot = new WordNetSnapshot(path, buf);
+      System.out.println("Loaded WordNet snapshot " + path + " ("
+          + snapshot.compiled.limit() + " words, " + snapshot.numSynsets()
+          + " synsets)");
+      return snapshot;
+    } finally {
+      // The mapping stays valid after the file is closed.
+      file.close();
+    }
+  }
+
+  private static IntBuffer ints(ByteBuffer buf) {
+    int n = buf.getInt();
+    ByteBuffer slice = buf.slice();
+    slice.limit(4 * n);
+    buf.position(buf.position() + 4 * n);
+    return slice.asIntBuffer();
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  private String string(int id) {
+    int start = stringOffsets.get(id);
+    byte[] bytes = new byte[stringOffsets.get(id + 1) - start];
+    for (int i = 0; i < bytes.length; i++)
+      bytes[i] = stringBytes.get(start + i);
+    return new String(bytes, UTF8);
+  }
+
+  private int stringId(String str) {
+    int lo = 0, hi = numStrings - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = string(mid).compareTo(str);
+      if (cmp < 0)
+        lo = mid + 1;
+      else if (cmp > 0)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return -1;
+  }
+
+  private static int find(IntBuffer sorted, int value) {
+    int lo = 0, hi = sorted.limit() - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int v = sorted.get(mid);
+      if (v < value)
+        lo = mid + 1;
+      else if (v > value)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return -1;
+  }
+
+  private static int table(POS pos) {
+    for (int i = 0; i < TABLE_POS.length; i++)
+      if (TABLE_POS[i] == pos)
+        return i;
+    return -1;
+  }
+
+  /**
+   * @return The token's row in the POS table, or -1 if it has none.
+   */
+  private int row(String token, POS pos) {
+    int table = table(pos);
+    int id = stringId(token);
+    if (table < 0 || id < 0)
+      return -1;
+    return find(tokens[table], id);
+  }
+
+  /**
+   * @return True if the snapshot was compiled with this word form, so its
+   *         answers for it are WordNet's. For other words it answers as if
+   *         WordNet did not know them.
+   */
+  public boolean contains(String token) {
+    int id = stringId(token);
+    return id >= 0 && find(compiled, id) >= 0;
+  }
+
+  /**
+   * @return What WordNet's verbToLemma(), nounToLemma() or adjectiveToLemma()
+   *         gives for the token, or null.
+   */
+  public String lemma(String token, POS pos) {
+    int row = row(token, pos);
+    if (row < 0)
+      return null;
+    int lemma = lemmas[table(pos)].get(row);
+    return (lemma < 0 ? null : string(lemma));
+  }
+
+  /**
+   * @return The synset ids of the token's senses, most common first, or null
+   *         if it has none in this POS.
+   */
+  public int[] senses(String token, POS pos) {
+    int row = row(token, pos);
+    if (row < 0)
+      return null;
+    IntBuffer starts = senseStarts[table(pos)];
+    int start = starts.get(row);
+    int end = starts.get(row + 1);
+    if (start == end)
+      return null;
+    int[] ids = new int[end - start];
+    for (int i = 0; i < ids.length; i++)
+      ids[i] = senses.get(start + i);
+    return ids;
+  }
+
+  /**
+   * @return What WordNet.categories() gives for the token.
+   */
+  public int categories(String token) {
+    int row = row(token, POS.NOUN);
+    return (row < 0 ? 0 : flags[table(POS.NOUN)].get(row));
+  }
+
+  public int numSynsets() {
+    return synsetPos.limit();
+  }
+
+  public POS pos(int synset) {
+    return SYNSET_POS[synsetPos.get(synset)];
+  }
+
+  /**
+   * @return The synset's offset in the WordNet data file for its POS.
+   */
+  public long offset(int synset) {
+    return synsetOffsets.get(synset);
+  }
+
+  /**
+   * @return The synset's lemmas, in WordNet's order.
+   */
+  public List<String> words(int synset) {
+    List<String> strings = new ArrayList<String>();
+    for (int i = wordStarts.get(synset); i < wordStarts.get(synset + 1); i++)
+      strings.add(string(words.get(i)));
+    return strings;
+  }
+
+  public boolean hasHypernymInstance(int synset) {
+    for (int i = hypernymStarts.get(synset); i < hypernymStarts
+        .get(synset + 1); i++)
+      if ((hypernyms.get(i) & INSTANCE) != 0)
+        return true;
+    return false;
+  }
+
+  /**
+   * The chain of parents from the synset to the top of the hierarchy, as
+   * WordNet.hypernymChain() follows it: the first hypernym (or instance
+   * hypernym) not already on the chain.
+   *
+   * @return The parents' synset ids, or null if the synset has no parent.
+   */
+  public int[] hypernymChain(int synset) {
+    List<Integer> chain = new ArrayList<Integer>();
+    chain.add(synset);
+    int current = synset;
+    boolean found = true;
+    while (found) {
+      found = false;
+      for (int i = hypernymStarts.get(current); i < hypernymStarts
+          .get(current + 1); i++) {
+        int target = hypernyms.get(i) & ~INSTANCE;
+        if (!chain.contains(target)) {
+          chain.add(target);
+          current = target;
+          found = true;
+          break;
+        }
+      }
+    }
+    if (chain.size() == 1)
+      return null;
+    int[] ids = new int[chain.size() - 1];
+    for (int i = 0; i < ids.length; i++)
+      ids[i] = chain.get(i + 1);
+    return ids;
+  }
+
+  /**
+   * @return The targets of the synset's nominalization links, in order.
+   */
+  public int[] nominalizations(int synset) {
+    int start = nominalizationStarts.get(synset);
+    int[] ids = new int[nominalizationStarts.get(synset + 1) - start];
+    for (int i = 0; i < ids.length; i++)
+      ids[i] = nominalizations.get(start + i);
+    return ids;
+  }
+
+  /**
+   * Look up everything the snapshot holds through the given WordNet, which
+   * must be reading the dictionary through JWNL, and write it to the file.
+   *
+   * @param extraWords
+   *          Word forms to compile as well as the dictionary's own.
+   */
+  public static void compile(WordNet wordnet, Set<String> extraWords,
+      File out) throws Exception {
+    Set<String> candidates = new TreeSet<String>(extraWords);
+    Dictionary dict = Dictionary.getInstance();
+    for (POS pos : TABLE_POS) {
+      Iterator<?> iter = dict.getIndexWordIterator(pos);
+      while (iter.hasNext()) {
+        String lemma = ((IndexWord) iter.next()).getLemma().replace(' ', '_');
+        candidates.add(lemma);
+        candidates.addAll(inflections(lemma, pos));
+      }
+      iter = dict.getExceptionIterator(pos);
+      while (iter.hasNext())
+        candidates.add(((Exc) iter.next()).getLemma().replace(' ', '_'));
+    }
+    System.out.println("Looking up " + candidates.size() + " word forms.");
+
+    Builder builder = new Builder();
+    int count = 0;
+    for (String token : candidates) {
+      builder.addToken(wordnet, token);
+      if (++count % 50000 == 0)
+        System.out.println("..." + count + " (" + builder.compiled.size()
+            + " known, " + builder.synsetIds.size() + " synsets)");
+    }
+    builder.addSynsets();
+    builder.write(out);
+    System.out.println("Wrote " + builder.compiled.size() + " words and "
+        + builder.synsetIds.size() + " synsets to " + out);
+  }
+
+  /**
+   * Regular inflections of a lemma, which WordNet's morphology maps back to
+   * it. Forms that aren't words are dropped later, when WordNet doesn't know
+   * them.
+   */
+  static List<String> inflections(String lemma, POS pos) {
+    List<String> forms = new ArrayList<String>();
+    if (lemma.length() < 2 || lemma.indexOf('_') >= 0)
+      return forms;
+    String stem = lemma.substring(0, lemma.length() - 1);
+    char last = lemma.charAt(lemma.length() - 1);
+    if (pos == POS.NOUN) {
+      forms.add(lemma + "s");
+      forms.add(lemma + "es");
+      if (last == 'y')
+        forms.add(stem + "ies");
+      if (lemma.endsWith("man"))
+        forms.add(lemma.substring(0, lemma.length() - 3) + "men");
+    } else if (pos == POS.VERB) {
+      forms.add(lemma + "s");
+      forms.add(lemma + "es");
+      forms.add(lemma + "ed");
+      forms.add(lemma + "d");
+      forms.add(lemma + "ing");
+      forms.add(lemma + last + "ed");
+      forms.add(lemma + last + "ing");
+      if (last == 'e')
+        forms.add(stem + "ing");
+      if (last == 'y') {
+        forms.add(stem + "ies");
+        forms.add(stem + "ied");
+      }
+    } else if (pos == POS.ADJECTIVE) {
+      forms.add(lemma + "er");
+      forms.add(lemma + "est");
+      forms.add(lemma + "r");
+      forms.add(lemma + "st");
+      forms.add(lemma + last + "er");
+      forms.add(lemma + last + "est");
+      if (last == 'y') {
+        forms.add(stem + "ier");
+        forms.add(stem + "iest");
+      }
+    }
+    return forms;
+  }
+
+  /**
+   * Collects the snapshot's tables in memory while compiling.
+   */
+  private static class Builder {
+    final List<String> compiled = new ArrayList<String>();
+    // Per TABLE_POS, per compiled token: lemma, senses, flags.
+    final List<Map<String, String>> lemmas = new ArrayList<Map<String, String>>();
+    final List<Map<String, int[]>> senses = new ArrayList<Map<String, int[]>>();
+    final Map<String, Integer> flags = new HashMap<String, Integer>();
+    // Synsets by "pos offset", numbered as they are found.
+    final Map<String, Integer> synsetIds = new HashMap<String, Integer>();
+    final List<Synset> synsets = new ArrayList<Synset>();
+    final LinkedList<Synset> pending = new LinkedList<Synset>();
+
+    Builder() {
+      for (int i = 0; i < TABLE_POS.length; i++) {
+        lemmas.add(new HashMap<String, String>());
+        senses.add(new HashMap<String, int[]>());
+      }
+    }
+
+    void addToken(WordNet wordnet, String token) {
+      boolean known = false;
+      for (int i = 0; i < TABLE_POS.length; i++) {
+        POS pos = TABLE_POS[i];
+        String lemma = (pos == POS.NOUN ? wordnet.nounToLemma(token)
+            : pos == POS.VERB ? wordnet.verbToLemma(token) : wordnet
+                .adjectiveToLemma(token));
+        Synset[] tokenSenses = wordnet.synsetsOf(token, pos);
+        if (lemma == null && tokenSenses == null)
+          continue;
+        known = true;
+        lemmas.get(i).put(token, lemma);
+        if (tokenSenses != null) {
+          int[] ids = new int[tokenSenses.length];
+          for (int j = 0; j < ids.length; j++)
+            ids[j] = synsetId(tokenSenses[j]);
+          senses.get(i).put(token, ids);
+        }
+        if (pos == POS.NOUN && tokenSenses != null)
+          flags.put(token, wordnet.categories(token));
+      }
+      if (known)
+        compiled.add(token);
+    }
+
+    int synsetId(Synset synset) {
+      String key = synset.getPOS().getKey() + " " + synset.getOffset();
+      Integer id = synsetIds.get(key);
+      if (id == null) {
+        id = synsets.size();
+        synsetIds.put(key, id);
+        synsets.add(synset);
+        pending.add(synset);
+      }
+      return id;
+    }
+
+    /**
+     * Number every synset reachable from the senses, through hypernyms and
+     * nominalizations.
+     */
+    void addSynsets() throws Exception {
+      while (!pending.isEmpty()) {
+        Synset synset = pending.removeFirst();
+        for (Pointer link : links(synset))
+          synsetId(link.getTargetSynset());
+      }
+    }
+
+    /**
+     * The synset's hypernym and nominalization links, in order.
+     */
+    List<Pointer> links(Synset synset) {
+      List<Pointer> links = new ArrayList<Pointer>();
+      Pointer[] pointers = synset.getPointers();
+      if (pointers != null)
+        for (Pointer link : pointers)
+          if (link.getType() != null
+              && (link.getType().getKey().charAt(0) == '@'
+                  || link.getType() == PointerType.NOMINALIZATION))
+            links.add(link);
+      return links;
+    }
+
+    void write(File out) throws Exception {
+      // The string table: every token, lemma and synset word.
+      TreeSet<String> all = new TreeSet<String>(compiled);
+      for (Map<String, String> table : lemmas)
+        for (String lemma : table.values())
+          if (lemma != null)
+            all.add(lemma);
+      for (Synset synset : synsets)
+        for (Word word : synset.getWords())
+          all.add(word.getLemma());
+      String[] strings = all.toArray(new String[all.size()]);
+      Map<String, Integer> ids = new HashMap<String, Integer>();
+      for (int i = 0; i < strings.length; i++)
+        ids.put(strings[i], i);
+
+      DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(out)));
+      try {
+        data.write(MAGIC);
+        int[] offsets = new int[strings.length + 1];
+        byte[][] bytes = new byte[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+          bytes[i] = strings[i].getBytes(UTF8);
+          offsets[i + 1] = offsets[i] + bytes[i].length;
+        }
+        writeInts(data, offsets);
+        data.writeInt(offsets[strings.length]);
+        for (byte[] b : bytes)
+          data.write(b);
+
+        int[] compiledIds = new int[compiled.size()];
+        for (int i = 0; i < compiledIds.length; i++)
+          compiledIds[i] = ids.get(compiled.get(i));
+        Arrays.sort(compiledIds);
+        writeInts(data, compiledIds);
+
+        List<Integer> senseList = new ArrayList<Integer>();
+        for (int t = 0; t < TABLE_POS.length; t++) {
+          // Rows in string id order, which is the tokens' sorted order.
+          List<String> rows = new ArrayList<String>(new TreeSet<String>(lemmas
+              .get(t).keySet()));
+          int[] tokenIds = new int[rows.size()];
+          int[] lemmaIds = new int[rows.size()];
+          int[] starts = new int[rows.size() + 1];
+          int[] rowFlags = new int[rows.size()];
+          for (int r = 0; r < rows.size(); r++) {
+            String token = rows.get(r);
+            tokenIds[r] = ids.get(token);
+            String lemma = lemmas.get(t).get(token);
+            lemmaIds[r] = (lemma == null ? -1 : ids.get(lemma));
+            starts[r] = senseList.size();
+            int[] tokenSenses = senses.get(t).get(token);
+            if (tokenSenses != null)
+              for (int s : tokenSenses)
+                senseList.add(s);
+            Integer f = (TABLE_POS[t] == POS.NOUN ? flags.get(token) : null);
+            rowFlags[r] = (f == null ? 0 : f);
+          }
+          starts[rows.size()] = senseList.size();
+          writeInts(data, tokenIds);
+          writeInts(data, lemmaIds);
+          writeInts(data, starts);
+          writeInts(data, rowFlags);
+        }
+        writeInts(data, toArray(senseList));
+
+        int n = synsets.size();
+        int[] pos = new int[n];
+        int[] offsets2 = new int[n];
+        int[] wordStarts = new int[n + 1];
+        int[] hypernymStarts = new int[n + 1];
+        int[] nomStarts = new int[n + 1];
+        List<Integer> wordList = new ArrayList<Integer>();
+        List<Integer> hypernymList = new ArrayList<Integer>();
+        List<Integer> nomList = new ArrayList<Integer>();
+        for (int s = 0; s < n; s++) {
+          Synset synset = synsets.get(s);
+          pos[s] = Arrays.asList(SYNSET_POS).indexOf(synset.getPOS());
+          offsets2[s] = (int) synset.getOffset();
+          wordStarts[s] = wordList.size();
+          for (Word word : synset.getWords())
+            wordList.add(ids.get(word.getLemma()));
+          hypernymStarts[s] = hypernymList.size();
+          nomStarts[s] = nomList.size();
+          for (Pointer link : links(synset)) {
+            int target = synsetId(link.getTargetSynset());
+            if (link.getType() == PointerType.NOMINALIZATION)
+              nomList.add(target);
+            else if (link.getType().getKey().equals("@i"))
+              hypernymList.add(target | INSTANCE);
+            else
+              hypernymList.add(target);
+          }
+        }
+        wordStarts[n] = wordList.size();
+        hypernymStarts[n] = hypernymList.size();
+        nomStarts[n] = nomList.size();
+        writeInts(data, pos);
+        writeInts(data, offsets2);
+        writeInts(data, wordStarts);
+        writeInts(data, toArray(wordList));
+        writeInts(data, hypernymStarts);
+        writeInts(data, toArray(hypernymList));
+        writeInts(data, nomStarts);
+        writeInts(data, toArray(nomList));
+      } finally {
+        data.close();
+      }
+    }
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++)
+      array[i] = list.get(i);
+    return array;
+  }
+
+  private static void writeInts(DataOutputStream data, int[] ints)
+      throws IOException {
+    data.writeInt(ints.length);
+    for (int i : ints)
+      data.writeInt(i);
+  }
+
+  private static Set<String> readWords(String path) throws IOException {
+    Set<String> words = new TreeSet<String>();
+    BufferedReader in = new BufferedReader(new InputStreamReader(
+        new FileInputStream(path), UTF8));
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0)
+          words.add(line);
+      }
+    } finally {
+      in.close();
+    }
+    return words;
+  }
+
+  public static void main(String[] args) throws Exception {
+    HandleParameters params = new HandleParameters(args);
+    if (!params.hasFlag("-out")) {
+      System.out.println("WordNetSnapshot [-wordnet <jwnl.xml>] -out <file> "
+          + "[-words <file>]");
+      System.exit(1);
+    }
+    String jwnl = (params.hasFlag("-wordnet") ? params.get("-wordnet")
+        : WordNet.findWordnetPath());
+    Set<String> extra = (params.hasFlag("-words") ? readWords(params
+        .get("-words")) : new TreeSet<String>());
+    compile(new WordNet(jwnl, null), extra, new File(params.get("-out")));
+  }
+}
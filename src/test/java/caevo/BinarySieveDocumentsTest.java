@@ -0,0 +1,85 @@
+package caevo;
+
+import java.io.File;
+import java.util.List;
+
+import org.jdom.output.XMLOutputter;
+
+import caevo.util.EncodedTree;
+import junit.framework.TestCase;
+
+/**
+ * Write documents to the binary format, load them back through
+ * SieveDocuments, and make sure nothing changed.
+ */
+public class BinarySieveDocumentsTest extends TestCase {
+  private static final String INFO_FILE =
+      "src/main/resources/tempeval3-timebankonly-SIEVE.xml";
+
+  public void testRoundTrip() throws Exception {
+    SieveDocuments docs = new SieveDocuments(INFO_FILE);
+    File bin = write(docs);
+    assertTrue(BinarySieveDocuments.isBinary(bin.getPath()));
+    assertFalse(BinarySieveDocuments.isBinary(INFO_FILE));
+
+    SieveDocuments loaded = new SieveDocuments(bin.getPath());
+    assertEquals(docs.getDocnames(), loaded.getDocnames());
+    XMLOutputter out = new XMLOutputter();
+    for (String docname : docs.getDocnames()) {
+      SieveDocument doc = docs.getDocument(docname);
+      SieveDocument back = loaded.getDocument(docname);
+      assertEquals(docname, out.outputString(doc.toXML()),
+          out.outputString(back.toXML()));
+    }
+  }
+
+  public void testEncodedParses() throws Exception {
+    SieveDocuments docs = new SieveDocuments(INFO_FILE);
+    File bin = write(docs);
+
+    // Parses come back as EncodedTrees, with the same tags.
+    BinarySieveDocuments binary = new BinarySieveDocuments(bin.getPath());
+    String docname = docs.getDocnames().get(3);
+    SieveDocument doc = docs.getDocument(docname);
+    SieveDocument back = binary.getDocument(docname);
+    binary.close();
+    List<SieveSentence> sentences = doc.getSentences();
+    assertEquals(sentences.size(), back.getSentences().size());
+    for (int s = 0; s < sentences.size(); s++) {
+      EncodedTree tree = sentences.get(s).getEncodedParse();
+      EncodedTree backTree = back.getSentences().get(s).getEncodedParse();
+      assertNotNull(backTree);
+      assertEquals(tree.toString(), backTree.toString());
+      for (int i = 1; i <= tree.numLeaves(); i++)
+        assertEquals(tree.posTag(i), backTree.posTag(i));
+      assertEquals(sentences.get(s).getEncodedDeps().toString(), back
+          .getSentences().get(s).getEncodedDeps().toString());
+    }
+  }
+
+  public void testUnreadableParseKept() throws Exception {
+    SieveDocuments docs = new SieveDocuments();
+    SieveDocument doc = new SieveDocument("broken.tml");
+    doc.addSentence("One two", "(S (NP One", "not a dependency", null, null);
+    doc.addSentence("Three", null, null, null, null);
+    docs.addDocument(doc);
+    File bin = write(docs);
+
+    SieveDocument back = new SieveDocuments(bin.getPath())
+        .getDocument("broken.tml");
+    assertEquals("(S (NP One", back.getSentences().get(0).parseString());
+    assertEquals("not a dependency", back.getSentences().get(0).depsString());
+    assertNull(back.getSentences().get(1).parseString());
+    assertNull(back.getSentences().get(1).depsString());
+  }
+
+  private File write(SieveDocuments docs) throws Exception {
+    File bin = File.createTempFile("sievedocs", ".bin");
+    bin.deleteOnExit();
+    BinarySieveDocuments.Writer writer = new BinarySieveDocuments.Writer(
+        bin.getPath());
+    writer.write(docs);
+    writer.close();
+    return bin;
+  }
+}
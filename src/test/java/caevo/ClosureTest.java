@@ -6,7 +6,9 @@ import java.util.List;
 import caevo.Closure;
 import caevo.Evaluate;
 import caevo.tlink.EventEventLink;
+import caevo.tlink.EventTimeLink;
 import caevo.tlink.TLink;
+import caevo.tlink.TimeTimeLink;
 import junit.framework.TestCase;
 
 public class ClosureTest extends TestCase {
@@ -49,4 +51,34 @@ public class ClosureTest extends TestCase {
           Evaluate.isLinkCorrect(link, newClosed));
   }
 
+  /**
+   * Event-time links without a document, one written time first. Which ids
+   * are times comes from their names, so each inferred link gets the class of
+   * the kinds it joins.
+   */
+  public void testTimeFirstEventTimeLink() throws Exception {
+    List<TLink> links = new ArrayList<TLink>();
+    links.add(new EventTimeLink("t1", "e1", TLink.Type.BEFORE));
+    links.add(new EventTimeLink("e1", "t2", TLink.Type.BEFORE));
+    links.add(new EventTimeLink("t2", "e3", TLink.Type.BEFORE));
+
+    List<TLink> expected = new ArrayList<TLink>();
+    expected.add(new TimeTimeLink("t1", "t2", TLink.Type.BEFORE));
+    expected.add(new EventTimeLink("t1", "e3", TLink.Type.BEFORE));
+    expected.add(new EventEventLink("e1", "e3", TLink.Type.BEFORE));
+
+    List<TLink> closed = new Closure().computeClosure(links);
+    assertEquals(expected.size(), closed.size());
+    for (TLink link : expected) {
+      TLink found = null;
+      for (TLink other : closed)
+        if (other.getId1().equals(link.getId1())
+            && other.getId2().equals(link.getId2()))
+          found = other;
+      assertNotNull("Didn't find (" + link + ") in the closure.", found);
+      assertEquals(link.getRelation(), found.getRelation());
+      assertEquals(link.toString(), link.getClass(), found.getClass());
+    }
+  }
+
 }
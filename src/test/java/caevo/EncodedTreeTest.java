@@ -0,0 +1,172 @@
+package caevo;
+
+import java.util.List;
+
+import caevo.util.EncodedDependencies;
+import caevo.util.EncodedTree;
+import caevo.util.LabelTable;
+import caevo.util.TreeOperator;
+import edu.stanford.nlp.ling.CoreAnnotations.CopyAnnotation;
+import edu.stanford.nlp.ling.HasIndex;
+import edu.stanford.nlp.trees.LabeledScoredTreeFactory;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeGraphNode;
+import edu.stanford.nlp.trees.TypedDependency;
+import junit.framework.TestCase;
+
+/**
+ * Read parses and dependencies both as EncodedTree and EncodedDependencies and
+ * the old way through TreeOperator, and make sure they give the same trees,
+ * tags, words and dependencies.
+ */
+public class EncodedTreeTest extends TestCase {
+  private static final String INFO_FILE =
+      "src/main/resources/tempeval3-timebankonly-SIEVE.xml";
+
+  public void testInfoFile() throws Exception {
+    InfoFile info = new InfoFile(INFO_FILE);
+    LabelTable table = new LabelTable();
+    int sentences = 0;
+    for (String file : info.getFiles()) {
+      List<String> parses = info.getParses(file);
+      List<String> deps = info.getDependencies(file);
+      assertEquals(file, parses.size(), deps.size());
+      for (int s = 0; s < parses.size(); s++) {
+        assertSameTree(file + " " + s, parses.get(s), table);
+        assertSameDeps(file + " " + s, deps.get(s), table);
+        sentences++;
+      }
+    }
+    assertTrue(sentences > 400);
+  }
+
+  public void testEscapes() {
+    LabelTable table = new LabelTable();
+    String str = "(ROOT (S (NP (NN 1\\/2) (NNS cups)) (VP (VBD sold) "
+        + "(NP (-NONE- \\*T\\*-1))) (. .)))";
+    assertSameTree("escapes", str, table);
+    EncodedTree tree = EncodedTree.fromString(str, table);
+    assertEquals("1/2", tree.token(1));
+    assertEquals("*T*-1", tree.token(4));
+    assertEquals("-NONE-", tree.posTag(4));
+  }
+
+  public void testEmptyTrees() {
+    LabelTable table = new LabelTable();
+    assertSameTree("empty", "(ROOT (S (NP (DT the) (NN dog)) () "
+        + "(VP (VBZ barks)) ( ) (. .)))", table);
+    assertSameTree("unlabeled", "( (S (NP (PRP It)) (VP (VBD rained)) (. .)))",
+        table);
+    assertEquals(2, EncodedTree.fromString("(ROOT () (NP (DT a) (NN b)))",
+        table).posTags().length);
+  }
+
+  public void testWordsUnderPhrase() {
+    LabelTable table = new LabelTable();
+    // TreeOperator takes a phrase whose first child is a word as that word's
+    // tag, and doesn't count the rest of the phrase, or a later word directly
+    // under a phrase, or a second word under a tag.
+    String str = "(ROOT (S (NP the (NN dog)) (VP (VBZ runs) fast) "
+        + "(NP (NNP New York)) (. .)))";
+    assertSameTree("phrase words", str, table);
+    EncodedTree tree = EncodedTree.fromString(str, table);
+    String[] tags = tree.posTags();
+    assertEquals(4, tags.length);
+    assertEquals("NP", tags[0]);
+    assertEquals("VBZ", tags[1]);
+    assertEquals("NNP", tags[2]);
+    assertEquals(".", tags[3]);
+    assertEquals("the", tree.token(1));
+    assertEquals("runs", tree.token(2));
+    assertEquals("New", tree.token(3));
+    assertEquals(".", tree.token(4));
+    assertNull(tree.posTag(0));
+    assertNull(tree.posTag(5));
+    assertEquals(7, tree.numLeaves());
+  }
+
+  public void testDependencies() {
+    LabelTable table = new LabelTable();
+    assertSameDeps("copies", "nsubj(ran-2, dog-1)\n"
+        + "conj_and(ran-2', barked-4)\n" + "nsubj(barked-4, dog-1'')\n",
+        table);
+    assertSameDeps("hyphens", "amod(company-3, well-known-2)\n"
+        + "num(shares-6, 1-5)\n" + "root(ROOT-0, said-7)", table);
+    assertSameDeps("empty", "", table);
+  }
+
+  /**
+   * The encoding of the parse should build the same tree as TreeOperator,
+   * with the same leaf indexes, and give the tag and word of each token that
+   * TreeOperator finds.
+   */
+  private static void assertSameTree(String name, String str,
+      LabelTable table) {
+    Tree expected = TreeOperator.stringToTree(str,
+        new LabeledScoredTreeFactory());
+    EncodedTree encoded = EncodedTree.fromString(str, table);
+    assertNotNull(name, encoded);
+    Tree tree = encoded.toTree();
+    assertEquals(name, expected, tree);
+    assertEquals(name, expected.toString(), tree.toString());
+
+    List<Tree> expectedLeaves = expected.getLeaves();
+    List<Tree> leaves = tree.getLeaves();
+    assertEquals(name, expectedLeaves.size(), leaves.size());
+    assertEquals(name, expectedLeaves.size(), encoded.numLeaves());
+    for (int i = 0; i < leaves.size(); i++) {
+      assertEquals(name, expectedLeaves.get(i).value(), leaves.get(i).value());
+      assertEquals(name, expectedLeaves.get(i).value(), encoded.leaves()
+          .get(i));
+      assertEquals(name, index(expectedLeaves.get(i)), index(leaves.get(i)));
+    }
+
+    String[] tags = encoded.posTags();
+    assertEquals(name, TreeOperator.countLeaves(expected), tags.length);
+    for (int i = 1; i <= tags.length + 1; i++) {
+      String tag = TreeOperator.indexToPOSTag(expected, i);
+      if (i <= tags.length)
+        assertEquals(name + " token " + i, tag, tags[i - 1]);
+      assertEquals(name + " token " + i, tag, encoded.posTag(i));
+      assertEquals(name + " token " + i, tag,
+          TreeOperator.indexToPOSTag(encoded, i));
+      assertEquals(name + " token " + i, TreeOperator.indexToToken(expected,
+          i), encoded.token(i));
+    }
+  }
+
+  /**
+   * The encoding of the dependencies should build the same ones as
+   * TreeOperator.
+   */
+  private static void assertSameDeps(String name, String str,
+      LabelTable table) {
+    List<TypedDependency> expected = TreeOperator.stringToDependencies(str);
+    EncodedDependencies encoded = EncodedDependencies.fromString(str, table);
+    assertNotNull(name, encoded);
+    List<TypedDependency> deps = encoded.toDependencies();
+    assertEquals(name, expected.size(), encoded.size());
+    assertEquals(name, expected.size(), deps.size());
+    for (int i = 0; i < deps.size(); i++) {
+      TypedDependency dep = deps.get(i);
+      TypedDependency other = expected.get(i);
+      assertEquals(name, other.toString(), dep.toString());
+      assertEquals(name, other.reln().toString(), dep.reln().toString());
+      assertSameNode(name, other.gov(), dep.gov());
+      assertSameNode(name, other.dep(), dep.dep());
+    }
+  }
+
+  private static void assertSameNode(String name, TreeGraphNode expected,
+      TreeGraphNode node) {
+    assertEquals(name, expected.value(), node.value());
+    assertEquals(name, expected.index(), node.index());
+    assertEquals(name, expected.label().get(CopyAnnotation.class), node
+        .label().get(CopyAnnotation.class));
+  }
+
+  private static int index(Tree leaf) {
+    return (leaf.label() instanceof HasIndex ? ((HasIndex) leaf.label())
+        .index() : -1);
+  }
+}
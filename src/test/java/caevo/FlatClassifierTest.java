@@ -0,0 +1,145 @@
+package caevo;
+
+import java.io.File;
+import java.util.Random;
+
+import caevo.util.FlatClassifier;
+import caevo.util.FlatClassifier.Precision;
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.ling.RVFDatum;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import junit.framework.TestCase;
+
+/**
+ * Flatten a small LinearClassifier at each precision, and make sure every
+ * weight comes back within the precision's rounding, and that pruning drops
+ * exactly the features it should.
+ */
+public class FlatClassifierTest extends TestCase {
+  private static final String[] LABELS = { "BEFORE", "AFTER", "VAGUE" };
+  private static final int NUM_FEATURES = 200;
+
+  private double[][] weights;
+  private LinearClassifier<String, String> linear;
+
+  protected void setUp() {
+    Index<String> labelIndex = new HashIndex<String>();
+    for (String label : LABELS)
+      labelIndex.add(label);
+    Index<String> featureIndex = new HashIndex<String>();
+    Random random = new Random(7);
+    weights = new double[NUM_FEATURES][LABELS.length];
+    for (int f = 0; f < NUM_FEATURES; f++) {
+      featureIndex.add("feature-" + f);
+      // Every tenth feature has only tiny weights, and feature 1 has none.
+      double size = (f % 10 == 0 ? 0.001 : 1.0);
+      for (int l = 0; l < LABELS.length; l++)
+        weights[f][l] = (f == 1 ? 0.0 : size * random.nextGaussian());
+    }
+    linear = new LinearClassifier<String, String>(weights, featureIndex,
+        labelIndex);
+  }
+
+  public void testFloat32() throws Exception {
+    FlatClassifier flat = flatten(Precision.FLOAT32, 0.0);
+    assertEquals(Precision.FLOAT32, flat.getPrecision());
+    for (int f = 0; f < NUM_FEATURES; f++)
+      for (int l = 0; l < LABELS.length; l++)
+        assertWeight(flat, f, l, Math.abs(weights[f][l]) * 0x1p-24);
+  }
+
+  public void testFloat16() throws Exception {
+    FlatClassifier flat = flatten(Precision.FLOAT16, 0.0);
+    assertEquals(Precision.FLOAT16, flat.getPrecision());
+    // Half of the last of 11 significant bits, or of the smallest subnormal.
+    for (int f = 0; f < NUM_FEATURES; f++)
+      for (int l = 0; l < LABELS.length; l++)
+        assertWeight(flat, f, l,
+            Math.max(Math.abs(weights[f][l]) * 0x1p-11, 0x1p-25));
+  }
+
+  public void testInt8() throws Exception {
+    FlatClassifier flat = flatten(Precision.INT8, 0.0);
+    assertEquals(Precision.INT8, flat.getPrecision());
+    // Half a step, where a step is 1/127th of the label's biggest weight.
+    for (int l = 0; l < LABELS.length; l++) {
+      double max = 0.0;
+      for (int f = 0; f < NUM_FEATURES; f++)
+        max = Math.max(max, Math.abs(weights[f][l]));
+      for (int f = 0; f < NUM_FEATURES; f++) {
+        double score = score(flat, f, l);
+        if (score == 0.0)
+          // The whole row rounded to 0 and was dropped.
+          assertTrue(Math.abs(weights[f][l]) <= max / 254.0);
+        else
+          assertWeight(flat, f, l, max / 254.0 * (1 + 1e-6));
+      }
+    }
+  }
+
+  public void testPrune() throws Exception {
+    double prune = 0.01;
+    FlatClassifier flat = flatten(Precision.FLOAT32, prune);
+    int kept = 0;
+    for (int f = 0; f < NUM_FEATURES; f++) {
+      boolean keep = false;
+      for (int l = 0; l < LABELS.length; l++)
+        keep |= Math.abs(weights[f][l]) > prune;
+      if (keep)
+        kept++;
+      for (int l = 0; l < LABELS.length; l++) {
+        // A kept feature keeps all of its weights, even small ones.
+        if (keep)
+          assertWeight(flat, f, l, Math.abs(weights[f][l]) * 0x1p-24);
+        else
+          assertEquals(0.0, score(flat, f, l), 0.0);
+      }
+    }
+    assertEquals(kept, flat.numFeatures());
+    assertTrue(kept < NUM_FEATURES - 10);
+
+    // Without pruning, only the feature with no weights is dropped.
+    assertEquals(NUM_FEATURES - 1, flatten(Precision.FLOAT32, 0.0)
+        .numFeatures());
+  }
+
+  public void testUnknownFeature() throws Exception {
+    FlatClassifier flat = flatten(Precision.FLOAT16, 0.0);
+    ClassicCounter<String> features = new ClassicCounter<String>();
+    features.setCount("no such feature", 1.0);
+    Counter<String> scores = flat
+        .scoresOf(new RVFDatum<String, String>(features));
+    for (String label : LABELS)
+      assertEquals(0.0, scores.getCount(label), 0.0);
+  }
+
+  private FlatClassifier flatten(Precision precision, double prune)
+      throws Exception {
+    File file = File.createTempFile("classifier", FlatClassifier.SUFFIX);
+    file.deleteOnExit();
+    FlatClassifier.write(linear, file, precision, prune, null);
+    return FlatClassifier.load(file.getPath(), true);
+  }
+
+  /**
+   * @return The flat classifier's score for the label on a datum with just
+   *         the feature, which is the feature's weight for the label.
+   */
+  private double score(FlatClassifier flat, int feature, int label) {
+    ClassicCounter<String> features = new ClassicCounter<String>();
+    features.setCount("feature-" + feature, 1.0);
+    return flat.scoresOf(new RVFDatum<String, String>(features)).getCount(
+        LABELS[label]);
+  }
+
+  private void assertWeight(FlatClassifier flat, int feature, int label,
+      double bound) {
+    double weight = weights[feature][label];
+    double score = score(flat, feature, label);
+    assertTrue("feature-" + feature + " " + LABELS[label] + ": " + score
+        + " for " + weight, Math.abs(score - weight) <= bound);
+  }
+}
@@ -0,0 +1,78 @@
+package caevo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Adding documents to lazily read SieveDocuments, before and after all of
+ * them have been built.
+ */
+public class LazySieveDocumentsTest extends TestCase {
+  private static final String INFO_FILE =
+      "src/main/resources/tempeval3-timebankonly-SIEVE.xml";
+
+  public void testAddReplaces() throws Exception {
+    LazySieveDocuments docs = new LazySieveDocuments(tempCopy(), 4);
+    List<String> names = docs.getDocnames();
+    String first = names.get(0);
+    String second = names.get(1);
+
+    // Replace a document before getDocuments().
+    SieveDocument replaced = new SieveDocument(first);
+    docs.addDocument(replaced);
+    assertSame(replaced, docs.getDocument(first));
+    assertEquals(names, docs.getDocnames());
+
+    List<SieveDocument> all = docs.getDocuments();
+    assertEquals(names.size(), all.size());
+    assertSame(replaced, all.get(0));
+
+    // And after, keeping its place in the list.
+    SieveDocument again = new SieveDocument(second);
+    docs.addDocument(again);
+    all = docs.getDocuments();
+    assertEquals(names.size(), all.size());
+    assertSame(again, all.get(1));
+    assertSame(again, docs.getDocument(second));
+    // No stale documents left in the list.
+    for (SieveDocument doc : all)
+      assertSame(doc.getDocname(), docs.getDocument(doc.getDocname()), doc);
+
+    // A new document goes on the end.
+    SieveDocument added = new SieveDocument("new.tml");
+    docs.addDocument(added);
+    all = docs.getDocuments();
+    assertEquals(names.size() + 1, all.size());
+    assertSame(added, all.get(all.size() - 1));
+    assertEquals(names.size() + 1, docs.size());
+    assertEquals("new.tml", docs.getDocnames().get(names.size()));
+  }
+
+  /**
+   * A copy of the info file, so its index sidecar isn't written next to the
+   * original.
+   */
+  private String tempCopy() throws Exception {
+    File copy = File.createTempFile("lazydocs", ".xml");
+    copy.deleteOnExit();
+    new File(copy.getPath() + SieveDocumentsIndex.SUFFIX).deleteOnExit();
+    InputStream in = new FileInputStream(INFO_FILE);
+    OutputStream out = new FileOutputStream(copy);
+    try {
+      byte[] buf = new byte[65536];
+      int n;
+      while ((n = in.read(buf)) > 0)
+        out.write(buf, 0, n);
+    } finally {
+      in.close();
+      out.close();
+    }
+    return copy.getPath();
+  }
+}
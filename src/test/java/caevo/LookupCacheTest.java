@@ -0,0 +1,133 @@
+package caevo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import caevo.util.LookupCache;
+import junit.framework.TestCase;
+
+/**
+ * LookupCache's cached nulls, its least recently used eviction, its bound on
+ * size, and many threads sharing one.
+ */
+public class LookupCacheTest extends TestCase {
+
+  public void testMissingAndNull() {
+    LookupCache<String, String> cache = new LookupCache<String, String>(
+        "test", 10);
+    assertSame(LookupCache.MISSING, cache.get("a"));
+    cache.put("a", null);
+    assertNull(cache.get("a"));
+    cache.put("b", "B");
+    assertEquals("B", cache.get("b"));
+    assertEquals(2, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(2, cache.size());
+    assertTrue(cache.toMap().containsKey("a"));
+    assertNull(cache.toMap().get("a"));
+  }
+
+  public void testEvictsLeastRecentlyUsed() {
+    LookupCache<String, Integer> cache = new LookupCache<String, Integer>(
+        "test", 3);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    // Reading a makes b the least recently used.
+    assertEquals(1, cache.get("a"));
+    cache.put("d", 4);
+    assertEquals(3, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertSame(LookupCache.MISSING, cache.get("b"));
+    assertEquals(1, cache.get("a"));
+
+    List<String> order = new ArrayList<String>(cache.toMap().keySet());
+    assertEquals("[c, d, a]", order.toString());
+
+    // Putting a key again replaces it without evicting.
+    cache.put("c", 30);
+    assertEquals(30, cache.get("c"));
+    assertEquals(3, cache.size());
+    assertEquals(1, cache.getEvictions());
+  }
+
+  public void testBounded() {
+    // Big enough to be split into segments.
+    LookupCache<String, Integer> cache = new LookupCache<String, Integer>(
+        "test", 1000);
+    for (int i = 0; i < 10000; i++)
+      cache.put("key" + i, i);
+    assertEquals(1000, cache.size());
+    assertEquals(9000, cache.getEvictions());
+    for (Map.Entry<String, Integer> entry : cache.toMap().entrySet())
+      assertEquals("key" + entry.getValue(), entry.getKey());
+
+    LookupCache<String, Integer> unbounded = new LookupCache<String, Integer>(
+        "test", 0);
+    for (int i = 0; i < 10000; i++)
+      unbounded.put("key" + i, i);
+    assertEquals(10000, unbounded.size());
+    assertEquals(0, unbounded.getEvictions());
+  }
+
+  /**
+   * Threads reading and filling one small cache, with another copying it,
+   * only ever see the values that were put, and the cache stays in bounds.
+   */
+  public void testConcurrent() throws InterruptedException {
+    final LookupCache<Integer, Integer> cache =
+        new LookupCache<Integer, Integer>("test", 100);
+    final List<Throwable> errors = Collections
+        .synchronizedList(new ArrayList<Throwable>());
+    final int numThreads = 8;
+    final int numGets = 20000;
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < numThreads; t++) {
+      final int seed = t;
+      threads.add(new Thread() {
+        public void run() {
+          try {
+            for (int i = 0; i < numGets; i++) {
+              int key = (i * 31 + seed * 7) % 500;
+              Object value = cache.get(key);
+              if (value == LookupCache.MISSING)
+                cache.put(key, key * 2);
+              else
+                assertEquals(key * 2, value);
+            }
+          } catch (Throwable ex) {
+            errors.add(ex);
+          }
+        }
+      });
+    }
+    Thread copier = new Thread() {
+      public void run() {
+        try {
+          for (int i = 0; i < 200; i++) {
+            for (Map.Entry<Integer, Integer> entry : cache.toMap().entrySet())
+              assertEquals(entry.getKey() * 2, (int) entry.getValue());
+            assertTrue(cache.size() <= 100);
+          }
+        } catch (Throwable ex) {
+          errors.add(ex);
+        }
+      }
+    };
+    threads.add(copier);
+    for (Thread thread : threads)
+      thread.start();
+    for (Thread thread : threads)
+      thread.join();
+
+    assertEquals(errors.toString(), 0, errors.size());
+    assertEquals(numThreads * numGets, cache.getHits() + cache.getMisses());
+    assertTrue(cache.size() <= 100);
+    // Two threads can miss the same key and both put it, the second only
+    // replacing it.
+    assertTrue(cache.getEvictions() > 0);
+    assertTrue(cache.getEvictions() <= cache.getMisses() - cache.size());
+  }
+}
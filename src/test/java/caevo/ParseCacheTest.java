@@ -0,0 +1,99 @@
+package caevo;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import caevo.util.Pair;
+import caevo.util.ParseCache;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Word;
+import junit.framework.TestCase;
+
+/**
+ * Store some parses, reopen the cache, and make sure they come back.
+ */
+public class ParseCacheTest extends TestCase {
+
+  public void testReopen() throws Exception {
+    File dir = tempDir();
+    ParseCache cache = new ParseCache(dir.getPath(), "test-grammar");
+    List<HasWord> sent = words("Libya hailed the ruling .");
+    assertNull(cache.get(sent));
+    cache.put(sent, new Pair<String, String>("(ROOT (S ...))", "nsubj(hailed-2, Libya-1)\n"));
+    cache.close();
+
+    cache = new ParseCache(dir.getPath(), "test-grammar");
+    Pair<String, String> parse = cache.get(sent);
+    assertNotNull(parse);
+    assertEquals("(ROOT (S ...))", parse.first());
+    assertEquals("nsubj(hailed-2, Libya-1)\n", parse.second());
+    assertNull(cache.get(words("Britain will complain .")));
+    cache.close();
+
+    // A different grammar never sees these parses.
+    cache = new ParseCache(dir.getPath(), "other-grammar");
+    assertNull(cache.get(sent));
+    cache.close();
+  }
+
+  public void testPartialRecordDropped() throws Exception {
+    File dir = tempDir();
+    ParseCache cache = new ParseCache(dir.getPath(), "test-grammar");
+    cache.put(words("one ."), new Pair<String, String>("(A)", "a"));
+    cache.put(words("two ."), new Pair<String, String>("(B)", "b"));
+    cache.close();
+
+    // Chop the end off the last record and lose the whole index.
+    RandomAccessFile data = new RandomAccessFile(new File(dir, ParseCache.DATA_FILE), "rw");
+    data.setLength(data.length() - 1);
+    data.close();
+    new File(dir, ParseCache.INDEX_FILE).delete();
+
+    cache = new ParseCache(dir.getPath(), "test-grammar");
+    assertEquals(1, cache.size());
+    assertEquals("(A)", cache.get(words("one .")).first());
+    assertNull(cache.get(words("two .")));
+    cache.close();
+  }
+
+  public void testNegativeLengthDropped() throws Exception {
+    File dir = tempDir();
+    ParseCache cache = new ParseCache(dir.getPath(), "test-grammar");
+    cache.put(words("one ."), new Pair<String, String>("(A)", "a"));
+    cache.put(words("two ."), new Pair<String, String>("(B)", "b"));
+    cache.close();
+
+    // Corrupt the parse length of the second record, after the 8-byte header
+    // and the first record (20-byte key, two length-prefixed strings).
+    RandomAccessFile data = new RandomAccessFile(new File(dir, ParseCache.DATA_FILE), "rw");
+    long second = 8 + 20 + 4 + 3 + 4 + 1;
+    data.seek(second + 20);
+    data.writeInt(-100);
+    data.close();
+    new File(dir, ParseCache.INDEX_FILE).delete();
+
+    // Reopening must not loop, and keeps only the good record.
+    cache = new ParseCache(dir.getPath(), "test-grammar");
+    assertEquals(1, cache.size());
+    assertEquals("(A)", cache.get(words("one .")).first());
+    assertNull(cache.get(words("two .")));
+    cache.close();
+  }
+
+  private List<HasWord> words(String sentence) {
+    List<HasWord> words = new ArrayList<HasWord>();
+    for (String token : sentence.split(" "))
+      words.add(new Word(token));
+    return words;
+  }
+
+  private File tempDir() throws Exception {
+    File dir = File.createTempFile("parsecache", "");
+    dir.delete();
+    dir.mkdirs();
+    dir.deleteOnExit();
+    return dir;
+  }
+}
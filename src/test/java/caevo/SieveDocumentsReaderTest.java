@@ -0,0 +1,68 @@
+package caevo;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Reading info XML that is cut off partway through a document.
+ */
+public class SieveDocumentsReaderTest extends TestCase {
+  private static final String INFO_FILE =
+      "src/main/resources/tempeval3-timebankonly-SIEVE.xml";
+
+  public void testCutOff() throws IOException {
+    byte[] cut = cutOffInThirdFile();
+    assertCutOff(new SieveDocumentsReader(new ByteArrayInputStream(cut)));
+    assertCutOff(new SieveDocumentsReader(new ByteArrayInputStream(cut), 4));
+
+    // SieveDocuments keeps none of them, as for a file that doesn't parse.
+    SieveDocuments docs = new SieveDocuments();
+    docs.readFromXML(new ByteArrayInputStream(cut));
+    assertEquals(0, docs.getDocuments().size());
+  }
+
+  /**
+   * The two whole documents come back, and then the error, once.
+   */
+  private static void assertCutOff(SieveDocumentsReader reader) {
+    for (int i = 0; i < 2; i++) {
+      assertTrue(reader.hasNext());
+      assertNotNull(reader.next().getDocname());
+    }
+    assertTrue(reader.hasNext());
+    try {
+      reader.next();
+      fail("Read past the end of the XML");
+    } catch (SieveDocumentsReader.ReadException ex) {
+      assertEquals(2, ex.getNumRead());
+      assertTrue(ex.getMessage(), ex.getMessage().contains("2 documents"));
+    }
+    assertFalse(reader.hasNext());
+    reader.close();
+  }
+
+  /**
+   * @return The info file up to the middle of its third <file> element.
+   */
+  private static byte[] cutOffInThirdFile() throws IOException {
+    File file = new File(INFO_FILE);
+    byte[] bytes = new byte[(int) file.length()];
+    FileInputStream in = new FileInputStream(file);
+    try {
+      int off = 0;
+      while (off < bytes.length)
+        off += in.read(bytes, off, bytes.length - off);
+    } finally {
+      in.close();
+    }
+    String xml = new String(bytes, "UTF-8");
+    int third = xml.indexOf("<file ", xml.indexOf("<file ",
+        xml.indexOf("<file ") + 1) + 1);
+    assertTrue(third > 0);
+    return xml.substring(0, third + 200).getBytes("UTF-8");
+  }
+}
@@ -0,0 +1,217 @@
+package caevo;
+
+import java.util.Calendar;
+
+import caevo.util.TimeInterval;
+import caevo.util.TimeInterval.Granularity;
+import caevo.util.TimeValueParser;
+import caevo.util.TimebankUtil;
+import junit.framework.TestCase;
+
+/**
+ * The intervals of date values, partial ones included, and how Timex.before(),
+ * Timex.includes() and TimebankUtil.compareTimexesByValue() use them.
+ */
+public class TimeIntervalTest extends TestCase {
+
+  public void testOfDate() {
+    assertInterval("1998", 1998, 0, 1, 1999, 0, 1, Granularity.YEAR, false);
+    assertInterval("1998-10", 1998, 9, 1, 1998, 10, 1, Granularity.MONTH,
+        false);
+    assertInterval("1998-10-05", 1998, 9, 5, 1998, 9, 6, Granularity.DAY,
+        false);
+    assertInterval("1998-12-31T10:00", 1998, 11, 31, 1999, 0, 1,
+        Granularity.DAY, false);
+
+    assertNull(TimeInterval.ofDate(null));
+    assertNull(TimeInterval.ofDate(""));
+    assertNull(TimeInterval.ofDate("98"));
+    assertNull(TimeInterval.ofDate("XXXX-10-05"));
+    assertNull(TimeInterval.ofDate("PAST_REF"));
+  }
+
+  public void testOfPartialDate() {
+    // A week, season or unknown month leaves just the year.
+    assertInterval("1998-W12", 1998, 0, 1, 1999, 0, 1, Granularity.YEAR, true);
+    assertInterval("1998-SU", 1998, 0, 1, 1999, 0, 1, Granularity.YEAR, true);
+    assertInterval("1998-XX-05", 1998, 0, 1, 1999, 0, 1, Granularity.YEAR,
+        true);
+    assertInterval("1998-13", 1998, 0, 1, 1999, 0, 1, Granularity.YEAR, true);
+    assertInterval("1998-00-05", 1998, 0, 1, 1999, 0, 1, Granularity.YEAR,
+        true);
+
+    // An unknown or impossible day leaves the month.
+    assertInterval("1998-10-XX", 1998, 9, 1, 1998, 10, 1, Granularity.MONTH,
+        true);
+    assertInterval("1998-02-30", 1998, 1, 1, 1998, 2, 1, Granularity.MONTH,
+        true);
+    assertInterval("1998-10-00", 1998, 9, 1, 1998, 10, 1, Granularity.MONTH,
+        true);
+    assertInterval("2000-02-29", 2000, 1, 29, 2000, 2, 1, Granularity.DAY,
+        false);
+
+    assertFalse(TimeInterval.ofDate("1998").equals(
+        TimeInterval.ofDate("1998-W12")));
+  }
+
+  public void testCompareIntervals() {
+    TimeInterval year = TimeInterval.ofDate("1998");
+    TimeInterval month = TimeInterval.ofDate("1998-10");
+    TimeInterval day = TimeInterval.ofDate("1998-10-05");
+    TimeInterval nextDay = TimeInterval.ofDate("1998-10-06");
+    TimeInterval nextYear = TimeInterval.ofDate("1999-01-01");
+
+    assertTrue(day.before(nextDay));
+    assertFalse(nextDay.before(day));
+    assertFalse(day.before(day));
+    assertTrue(year.before(nextYear));
+    assertFalse(month.before(day));
+
+    assertTrue(year.contains(month));
+    assertTrue(month.contains(day));
+    assertTrue(day.contains(day));
+    assertFalse(day.contains(month));
+    assertFalse(year.contains(nextYear));
+  }
+
+  public void testBefore() {
+    assertTrue(date("1998-10-05").before(date("1998-10-06")));
+    assertTrue(date("1998-10-05T10:00").before(date("1998-10-06")));
+    assertTrue(date("1997").before(date("1998-10")));
+    assertFalse(date("1998-10-06").before(date("1998-10-05")));
+    assertFalse(date("1998-10-05").before(date("1998-10-05")));
+    assertFalse(date("1998-10").before(date("1998-10-05")));
+
+    // Partial dates compare only the fields both can read.
+    assertTrue(date("1998-W12").before(date("1999-01-04")));
+    assertTrue(date("1998-02-30").before(date("1998-03-01")));
+    assertFalse(date("1998-W12").before(date("1998-10")));
+    assertFalse(date("1998-10").before(date("1998-W52")));
+
+    // Only dates and times, and only values that start with a year.
+    assertFalse(date("XXXX-10-05").before(date("1998-10-06")));
+    assertFalse(date("PAST_REF").before(date("1998")));
+    assertFalse(timex("1998", Timex.Type.DURATION).before(date("1999")));
+    assertFalse(date("1998").before(timex("1999", Timex.Type.SET)));
+    assertFalse(new Timex("1998").before(date("1999")));
+  }
+
+  public void testIncludes() {
+    assertTrue(date("1998").includes(date("1998-10")));
+    assertTrue(date("1998").includes(date("1998-10-05")));
+    assertTrue(date("1998-10").includes(date("1998-10-05T10:00")));
+    assertTrue(timex("1998", Timex.Type.DURATION).includes(date("1998-10")));
+    assertFalse(date("1998-10").includes(date("1998")));
+    assertFalse(date("1998").includes(date("1999-10")));
+
+    // The same dates don't include each other.
+    assertFalse(date("1998-10-05").includes(date("1998-10-05")));
+    assertFalse(date("1998-10-05").includes(date("1998-10-05T10:00")));
+
+    // A partial date is included by its year or month, but includes nothing.
+    assertTrue(date("1998").includes(date("1998-W12")));
+    assertTrue(date("1998-02").includes(date("1998-02-30")));
+    assertFalse(date("1997").includes(date("1998-W12")));
+    assertFalse(date("1998-W12").includes(date("1998-03-18")));
+    assertFalse(date("1998-W12").includes(date("1998-W12")));
+
+    assertFalse(date("1998").includes(timex("1998-10", Timex.Type.SET)));
+    assertFalse(date("PRESENT_REF").includes(date("1998-10")));
+  }
+
+  public void testCompareTimexesByValue() {
+    assertTrue(TimebankUtil.compareTimexesByValue(date("1998-10-05"),
+        date("1998-10-05")));
+    assertFalse(TimebankUtil.compareTimexesByValue(date("1998-10-05"),
+        date("1998-10-06")));
+    assertFalse(TimebankUtil.compareTimexesByValue(date("1998-10"),
+        date("1998-10-05")));
+    assertFalse(TimebankUtil.compareTimexesByValue(date("1998-10-05"),
+        date("1998-10-05T10:00")));
+    assertTrue(TimebankUtil.compareTimexesByValue(date("1998-W12"),
+        date("1998-W12")));
+    assertFalse(TimebankUtil.compareTimexesByValue(date("1998-W12"),
+        date("1998-W13")));
+  }
+
+  public void testCompareTimexesByValueWithoutIntervals() {
+    // Null timexes are only equal to each other.
+    assertTrue(TimebankUtil.compareTimexesByValue(null, null));
+    assertFalse(TimebankUtil.compareTimexesByValue(date("1998"), null));
+    assertFalse(TimebankUtil.compareTimexesByValue(null, date("1998")));
+
+    // Durations, sets and references have no interval, so their strings
+    // decide.
+    Timex day = timex("P1D", Timex.Type.DURATION);
+    assertNull(day.getInterval());
+    assertTrue(TimebankUtil.compareTimexesByValue(day,
+        timex("P1D", Timex.Type.DURATION)));
+    assertFalse(TimebankUtil.compareTimexesByValue(day,
+        timex("P2D", Timex.Type.DURATION)));
+    assertTrue(TimebankUtil.compareTimexesByValue(
+        timex("1998", Timex.Type.DURATION), timex("1998", Timex.Type.SET)));
+    assertNull(date("PAST_REF").getInterval());
+    assertTrue(TimebankUtil.compareTimexesByValue(date("PAST_REF"),
+        date("PAST_REF")));
+    assertFalse(TimebankUtil.compareTimexesByValue(date("PAST_REF"),
+        date("FUTURE_REF")));
+
+    // Only one of them has an interval.
+    assertFalse(TimebankUtil.compareTimexesByValue(date("PAST_REF"),
+        date("1998")));
+    assertFalse(TimebankUtil.compareTimexesByValue(date("1998"),
+        timex("P1D", Timex.Type.DURATION)));
+    assertTrue(TimebankUtil.compareTimexesByValue(date("1998"),
+        timex("1998", Timex.Type.SET)));
+
+    // Timexes without values.
+    Timex empty = new Timex();
+    assertNull(empty.getInterval());
+    assertTrue(TimebankUtil.compareTimexesByValue(empty, new Timex()));
+    assertFalse(TimebankUtil.compareTimexesByValue(empty, date("1998")));
+    assertFalse(TimebankUtil.compareTimexesByValue(date("1998"), empty));
+  }
+
+  public void testSetValueResetsIntervals() {
+    Timex timex = date("1998");
+    assertTrue(timex.includes(date("1998-10")));
+    assertFalse(timex.before(date("1998-10")));
+    timex.setValue("1997");
+    assertFalse(timex.includes(date("1998-10")));
+    assertTrue(timex.before(date("1998-10")));
+    assertEquals(TimeValueParser.interval("1997"), timex.getInterval());
+  }
+
+  private static Timex date(String value) {
+    return timex(value, Timex.Type.DATE);
+  }
+
+  private static Timex timex(String value, Timex.Type type) {
+    Timex timex = new Timex(value);
+    timex.setType(type);
+    return timex;
+  }
+
+  /**
+   * The interval of the value should run from the first given day up to the
+   * second, in the default time zone.
+   */
+  private static void assertInterval(String value, int year, int month,
+      int day, int endYear, int endMonth, int endDay, Granularity granularity,
+      boolean partial) {
+    TimeInterval interval = TimeInterval.ofDate(value);
+    assertNotNull(value, interval);
+    assertEquals(value, seconds(year, month, day), interval.getStart());
+    assertEquals(value, seconds(endYear, endMonth, endDay) - 1,
+        interval.getEnd());
+    assertEquals(value, granularity, interval.getGranularity());
+    assertEquals(value, partial, interval.isPartial());
+  }
+
+  private static long seconds(int year, int month, int day) {
+    Calendar time = Calendar.getInstance();
+    time.clear();
+    time.set(year, month, day);
+    return time.getTimeInMillis() / 1000;
+  }
+}
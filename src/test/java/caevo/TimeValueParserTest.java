@@ -0,0 +1,132 @@
+package caevo;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import caevo.util.Pair;
+import caevo.util.TimeInterval;
+import caevo.util.TimeValueParser;
+import junit.framework.TestCase;
+
+/**
+ * Parse a fixed sample of TimeML values, and make sure the ranges are the ones
+ * TimeValueParser gave before it shared its compiled patterns and cached its
+ * ranges, quirks and all (a year's range ends on December 28th). Then make
+ * sure the cached range() and interval() agree with a fresh parse.
+ */
+public class TimeValueParserTest extends TestCase {
+  // A value, then the start and end of its range in UTC, or nulls if it has
+  // none.
+  private static final String[][] RANGES = {
+      { "1998", "1998-02-01T00:00:00", "1998-12-28T23:59:59" },
+      { "199", "1990-02-01T00:00:00", "1999-12-28T23:59:59" },
+      { "19", "1900-02-01T00:00:00", "1999-12-28T23:59:59" },
+      { "1", "1000-02-01T00:00:00", "1999-12-28T23:59:59" },
+      { "1998-03", "1998-03-01T00:00:00", "1998-03-28T23:59:59" },
+      { "1998-3", "1998-03-01T00:00:00", "1998-03-28T23:59:59" },
+      { "1998-03-04", "1998-03-04T00:00:00", "1998-03-04T23:59:59" },
+      { "1998-3-4", "1998-03-04T00:00:00", "1998-03-04T23:59:59" },
+      { "1998-XX", "1998-02-01T00:00:00", "1998-12-28T23:59:59" },
+      { "1998-XX-04", "1998-02-04T00:00:00", "1998-12-04T23:59:59" },
+      { "1998-03-XX", "1998-03-01T00:00:00", "1998-03-28T23:59:59" },
+      { "XXXX", null, null },
+      { "XXXX-03-04", null, null },
+      { "19XX", null, null },
+      { "1998-02-30", "1998-03-02T00:00:00", "1998-03-02T23:59:59" },
+      { "1998-13", "1999-01-01T00:00:00", "1999-01-28T23:59:59" },
+      { "1998-03-04T10", "1998-03-04T10:00:00", "1998-03-04T10:59:59" },
+      { "1998-03-04T10:30", "1998-03-04T10:30:00", "1998-03-04T10:30:59" },
+      { "1998-03-04T10:30:15", "1998-03-04T10:30:15", "1998-03-04T10:30:15" },
+      { "1998-12-31T23:59:59", "1998-12-31T23:59:59", "1998-12-31T23:59:59" },
+      { "T10:00", null, null },
+      { "1998-03-04TMO", "1998-03-04T04:00:00", "1998-03-04T07:59:59" },
+      { "1998-03-04TNI", "1998-03-04T20:00:00", "1998-03-04T23:59:59" },
+      { "1998-03-04TDT", "1998-03-04T00:00:00", "1998-03-04T03:59:59" },
+      { "1998-W12", "1998-03-01T00:00:00", "1998-03-28T23:59:59" },
+      { "1998-W1", "1998-01-01T00:00:00", "1998-01-28T23:59:59" },
+      { "1998-WXX", "1998-02-01T00:00:00", "1998-12-28T23:59:59" },
+      { "1998-W12-3", "1998-03-01T00:00:00", "1998-03-28T23:59:59" },
+      { "1998-W12-WE", "1998-03-01T00:00:00", "1998-03-28T23:59:59" },
+      { "1998-W52-7", "1998-12-01T00:00:00", "1998-12-28T23:59:59" },
+      { "1998-W12-3T10:30", "1998-03-01T10:30:00", "1998-03-28T10:30:59" },
+      { "1998-W12-3TNI", "1998-03-01T20:00:00", "1998-03-28T23:59:59" },
+      { "1998-SU", "1998-06-21T00:00:00", "1998-09-21T23:59:59" },
+      { "1998-SP", "1998-03-20T00:00:00", "1998-06-20T23:59:59" },
+      { "1998-FA", "1998-09-22T00:00:00", "1998-12-20T23:59:59" },
+      { "1998-WI", "1998-12-21T00:00:00", "1998-03-19T23:59:59" },
+      { "XXXX-WI", null, null },
+      { "1998-H1", "1998-01-01T00:00:00", "1998-06-28T23:59:59" },
+      { "1998-H2", "1998-07-01T00:00:00", "1998-12-28T23:59:59" },
+      { "1998-HX", "1998-02-01T00:00:00", "1998-12-28T23:59:59" },
+      { "1998-Q1", "1998-01-01T00:00:00", "1998-03-28T23:59:59" },
+      { "1998-Q3", "1998-07-01T00:00:00", "1998-09-28T23:59:59" },
+      { "1998-Q4", "1998-10-01T00:00:00", "1998-12-28T23:59:59" },
+      { "1998-QX", "1998-02-01T00:00:00", "1998-12-28T23:59:59" },
+      { "1998-Q5", null, null },
+      { "1998-SUT10", null, null },
+      { "1998-WE", null, null },
+      { "PRESENT_REF", null, null },
+      { "PAST_REF", null, null },
+      { "P1D", null, null },
+      { "", null, null },
+      { "1998-03-04T", null, null },
+      { "T", null, null },
+      { "-", null, null },
+      { "1998-", null, null }
+  };
+
+  public void testRanges() {
+    TimeZone zone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    try {
+      SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+      for (String[] expected : RANGES) {
+        String value = expected[0];
+        Pair<Calendar, Calendar> range = new TimeValueParser(value).getRange();
+        if (expected[1] == null) {
+          assertNull(value, range);
+          continue;
+        }
+        assertNotNull(value, range);
+        assertEquals(value, expected[1],
+            format.format(range.first().getTime()));
+        assertEquals(value, expected[2],
+            format.format(range.second().getTime()));
+      }
+    } finally {
+      TimeZone.setDefault(zone);
+    }
+  }
+
+  public void testCached() {
+    // Twice, so the second time comes from the cache.
+    for (int pass = 0; pass < 2; pass++) {
+      for (String[] expected : RANGES) {
+        String value = expected[0];
+        Pair<Calendar, Calendar> parsed = new TimeValueParser(value)
+            .getRange();
+        Pair<Calendar, Calendar> cached = TimeValueParser.range(value);
+        TimeInterval interval = TimeValueParser.interval(value);
+        if (parsed == null) {
+          assertNull(value, cached);
+          assertNull(value, interval);
+          continue;
+        }
+        assertEquals(value, parsed.first().getTimeInMillis(), cached.first()
+            .getTimeInMillis());
+        assertEquals(value, parsed.second().getTimeInMillis(), cached
+            .second().getTimeInMillis());
+        assertEquals(value, parsed.first().getTimeInMillis() / 1000,
+            interval.getStart());
+        assertEquals(value, parsed.second().getTimeInMillis() / 1000,
+            interval.getEnd());
+
+        // The cached calendars are copies.
+        cached.first().add(Calendar.YEAR, 1);
+        assertEquals(value, parsed.first().getTimeInMillis(), TimeValueParser
+            .range(value).first().getTimeInMillis());
+      }
+    }
+  }
+}
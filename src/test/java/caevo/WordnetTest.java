@@ -1,5 +1,17 @@
 package caevo;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
 import caevo.util.WordNet;
 import junit.framework.TestCase;
 
@@ -15,6 +27,123 @@ public class WordnetTest extends TestCase {
     testSynsets(wordnet);
   }
 
+  /**
+   * Lookups saved to a disk cache come back in a new WordNet on the same
+   * dictionary, which then answers them without missing its caches.
+   */
+  public void testDiskCacheRoundTrip() throws IOException {
+    File file = tempCacheFile();
+    WordNet wordnet = new WordNet(WordNet.findWordnetPath(), null);
+    wordnet.useDiskCache(file.getPath());
+    testLemmas(wordnet);
+    testSynsets(wordnet);
+    wordnet.saveDiskCache();
+    assertTrue(file.exists());
+
+    WordNet loaded = new WordNet(WordNet.findWordnetPath(), null);
+    loaded.useDiskCache(file.getPath());
+    assertEquals(wordnet.hashSizes(), loaded.hashSizes());
+    testLemmas(loaded);
+    testSynsets(loaded);
+    assertFalse(loaded.cacheStats(), loaded.cacheStats().matches(
+        "(?s).*, [1-9][0-9]* misses.*"));
+  }
+
+  /**
+   * A disk cache written with another dictionary, or in another format, is
+   * not used.
+   */
+  public void testDiskCacheVersionMismatch() throws IOException {
+    File file = tempCacheFile();
+    String wordnetPath = WordNet.findWordnetPath();
+    String empty = new WordNet(wordnetPath, null).hashSizes();
+    WordNet wordnet = new WordNet(wordnetPath, null);
+    wordnet.useDiskCache(file.getPath());
+    testLemmas(wordnet);
+    wordnet.saveDiskCache();
+    assertFalse(empty.equals(wordnet.hashSizes()));
+
+    // The dictionary's properties file has another checksum.
+    rewriteHeader(file, 0, true);
+    WordNet loaded = new WordNet(wordnetPath, null);
+    loaded.useDiskCache(file.getPath());
+    assertEquals(empty, loaded.hashSizes());
+
+    // The file is from another version of the format (with the checksum put
+    // back).
+    rewriteHeader(file, 1, true);
+    loaded = new WordNet(wordnetPath, null);
+    loaded.useDiskCache(file.getPath());
+    assertEquals(empty, loaded.hashSizes());
+
+    // And put back, it is used again.
+    rewriteHeader(file, -1, false);
+    loaded = new WordNet(wordnetPath, null);
+    loaded.useDiskCache(file.getPath());
+    assertEquals(wordnet.hashSizes(), loaded.hashSizes());
+  }
+
+  /**
+   * A name for a disk cache that doesn't exist yet. The WordNets using it save
+   * it again at exit, so it is deleted then rather than now.
+   */
+  private static File tempCacheFile() throws IOException {
+    File file = File.createTempFile("wordnet", ".cache");
+    file.delete();
+    file.deleteOnExit();
+    return file;
+  }
+
+  /**
+   * Rewrite a disk cache's header, keeping its entries.
+   * 
+   * @param formatChange
+   *          Added to the format number.
+   * @param flipChecksum
+   *          Flip the low bit of the properties file's checksum in the
+   *          dictionary version, so flipping it twice puts it back.
+   */
+  private static void rewriteHeader(File file, int formatChange,
+      boolean flipChecksum) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(new FileInputStream(file))));
+    String magic;
+    int format;
+    String version;
+    ByteArrayOutputStream rest = new ByteArrayOutputStream();
+    try {
+      magic = in.readUTF();
+      format = in.readInt();
+      version = in.readUTF();
+      byte[] buf = new byte[8192];
+      int n;
+      while ((n = in.read(buf)) > 0)
+        rest.write(buf, 0, n);
+    } finally {
+      in.close();
+    }
+
+    if (flipChecksum) {
+      // jwnl=path:length:modified:crc snapshot=...
+      int end = version.indexOf(" snapshot=");
+      int start = version.lastIndexOf(':', end) + 1;
+      long crc = Long.parseLong(version.substring(start, end), 16);
+      version = version.substring(0, start) + Long.toHexString(crc ^ 1)
+          + version.substring(end);
+    }
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new GZIPOutputStream(new FileOutputStream(file))));
+    try {
+      out.writeUTF(magic);
+      out.writeInt(format + formatChange);
+      out.writeUTF(version);
+      rest.writeTo(out);
+    } finally {
+      out.close();
+    }
+  }
+
   private void testLemmas(WordNet wordnet) {
     assertEquals("Checking WordNet lemmatization.",
         wordnet.lemmatizeTaggedWord("running", "VBG"), "run");